@@ -0,0 +1,175 @@
+package nablarch.common.web.session;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.http.Cookie;
+
+import nablarch.common.web.MockHttpSession;
+import nablarch.common.web.session.store.HiddenStore;
+import nablarch.common.web.session.store.HttpSessionStore;
+import nablarch.core.date.BasicSystemTimeProvider;
+import nablarch.core.repository.ObjectLoader;
+import nablarch.core.repository.SystemRepository;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.web.HttpRequest;
+import nablarch.fw.web.HttpResponse;
+import nablarch.fw.web.servlet.BenchmarkFixtures;
+import nablarch.fw.web.servlet.BenchmarkServletResponse;
+import nablarch.fw.web.servlet.MockServletContext;
+import nablarch.fw.web.servlet.MockServletRequest;
+import nablarch.fw.web.servlet.ServletExecutionContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link SessionStoreHandler}によるセッションの読み込みと保存のコストを計測するベンチマーク。
+ * <p/>
+ * 既存のセッションを持つリクエストで、業務アクションが1件のエントリを参照して更新した場合を計測する。
+ * セッションストアは{@code storeName}で、セッションの大きさはエントリ数{@code entryCount}で変える。
+ * 値1つ当たりの文字数は256とする。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionStoreHandlerBenchmark {
+
+    /** 値1つ当たりの文字数 */
+    private static final int VALUE_SIZE = 256;
+
+    /** セッションストア名 */
+    @Param({"httpSession", "hidden"})
+    private String storeName;
+
+    /** セッションのエントリ数 */
+    @Param({"1", "10", "50"})
+    private int entryCount;
+
+    /** テスト対象 */
+    private final SessionStoreHandler handler = new SessionStoreHandler();
+
+    /** サーブレットコンテキスト */
+    private final MockServletContext servletContext = new MockServletContext();
+
+    /** HTTPセッション */
+    private final MockHttpSession httpSession = BenchmarkFixtures.httpSession();
+
+    /** セッションIDを保持するクッキー */
+    private Cookie sessionCookie;
+
+    /** HiddenStoreに保存されたセッション(HiddenStoreを使用しない場合は{@code null}) */
+    private String hiddenValue;
+
+    /** エントリを参照して更新する業務アクション */
+    private final Handler<HttpRequest, HttpResponse> updateAction = new Handler<HttpRequest, HttpResponse>() {
+        @Override
+        public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+            String value = SessionUtil.get(context, "entry0");
+            SessionUtil.put(context, "entry0", value);
+            return new HttpResponse(200);
+        }
+    };
+
+    /**
+     * セッションストアを設定し、初回のリクエストでセッションを作成する。
+     */
+    @Setup
+    public void setUp() {
+        final SessionManager sessionManager = new SessionManager();
+        sessionManager.setAvailableStores(Arrays.<SessionStore>asList(new HttpSessionStore(), new HiddenStore()));
+        sessionManager.setDefaultStoreName(storeName);
+        handler.setSessionManager(sessionManager);
+        SystemRepository.load(new ObjectLoader() {
+            @Override
+            public Map<String, Object> load() {
+                Map<String, Object> components = new HashMap<String, Object>();
+                components.put("sessionManager", sessionManager);
+                components.put("systemTimeProvider", new BasicSystemTimeProvider());
+                return components;
+            }
+        });
+
+        final Map<String, String> values = BenchmarkFixtures.sessionValues(entryCount, VALUE_SIZE);
+        BenchmarkServletResponse response = new BenchmarkServletResponse();
+        ServletExecutionContext context = handle(request(), response, new Handler<HttpRequest, HttpResponse>() {
+            @Override
+            public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+                for (Map.Entry<String, String> value : values.entrySet()) {
+                    SessionUtil.put(context, value.getKey(), value.getValue());
+                }
+                return new HttpResponse(200);
+            }
+        });
+        sessionCookie = response.getCookies().get(0);
+        hiddenValue = context.getRequestScopedVar("nablarch_hiddenStore");
+    }
+
+    /**
+     * リポジトリを初期化する。
+     */
+    @TearDown
+    public void tearDown() {
+        SystemRepository.clear();
+    }
+
+    /**
+     * 既存のセッションを読み込み、1件のエントリを更新して保存する。
+     *
+     * @return 実行コンテキスト
+     */
+    @Benchmark
+    public ExecutionContext update() {
+        MockServletRequest request = request();
+        request.setCookies(sessionCookie);
+        if (hiddenValue != null) {
+            request.getParams().put("nablarch_hiddenStore", new String[] {hiddenValue});
+        }
+        return handle(request, new BenchmarkServletResponse(), updateAction);
+    }
+
+    /**
+     * HTTPセッションを持つリクエストを作成する。
+     *
+     * @return サーブレットリクエスト
+     */
+    private MockServletRequest request() {
+        MockServletRequest request = BenchmarkFixtures.browserRequest("POST", "/app/action/update");
+        request.setSession(httpSession);
+        return request;
+    }
+
+    /**
+     * {@link SessionStoreHandler}と業務アクションでリクエストを処理する。
+     *
+     * @param request サーブレットリクエスト
+     * @param response サーブレットレスポンス
+     * @param action 業務アクション
+     * @return 実行コンテキスト
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private ServletExecutionContext handle(MockServletRequest request, BenchmarkServletResponse response,
+                                           Handler<HttpRequest, HttpResponse> action) {
+        ServletExecutionContext context = new ServletExecutionContext(request, response, servletContext);
+        context.setHandlerQueue((List) Arrays.asList(handler, action));
+        context.handleNext(context.getHttpRequest());
+        return context;
+    }
+}
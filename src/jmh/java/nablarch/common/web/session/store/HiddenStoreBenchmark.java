@@ -0,0 +1,111 @@
+package nablarch.common.web.session.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.common.web.session.SessionEntry;
+import nablarch.common.web.session.encoder.JavaSerializeStateEncoder;
+import nablarch.fw.web.servlet.BenchmarkFixtures;
+import nablarch.fw.web.servlet.BenchmarkServletResponse;
+import nablarch.fw.web.servlet.MockServletContext;
+import nablarch.fw.web.servlet.MockServletRequest;
+import nablarch.fw.web.servlet.ServletExecutionContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link HiddenStore}の保存と読み込みのコストを計測するベンチマーク。
+ * <p/>
+ * 保存はセッションエントリの直列化、暗号化、Base64エンコードを、
+ * 読み込みはその逆の処理とセッションIDの検証を含む。
+ * セッションの大きさは、エントリ数{@code entryCount}と値1つ当たりの文字数{@code valueSize}で変える。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HiddenStoreBenchmark {
+
+    /** セッションID */
+    private static final String SESSION_ID = "2f1a6c3e-5b7d-4e8f-9a0b-1c2d3e4f5a6b";
+
+    /** セッションのエントリ数 */
+    @Param({"1", "10", "50"})
+    private int entryCount;
+
+    /** 値1つ当たりの文字数 */
+    @Param({"16", "1024"})
+    private int valueSize;
+
+    /** テスト対象 */
+    private final HiddenStore store = new HiddenStore();
+
+    /** サーブレットコンテキスト */
+    private final MockServletContext servletContext = new MockServletContext();
+
+    /** 保存するセッションエントリ */
+    private final List<SessionEntry> entries = new ArrayList<SessionEntry>();
+
+    /** 保存済みのセッション(hiddenパラメータの値) */
+    private String saved;
+
+    /**
+     * セッションエントリと保存済みのセッションを準備する。
+     */
+    @Setup
+    public void setUp() {
+        store.setStateEncoder(new JavaSerializeStateEncoder());
+        for (Map.Entry<String, String> value : BenchmarkFixtures.sessionValues(entryCount, valueSize).entrySet()) {
+            entries.add(new SessionEntry(value.getKey(), value.getValue(), store));
+        }
+        saved = save();
+    }
+
+    /**
+     * セッションを保存する。
+     *
+     * @return hiddenパラメータの値
+     */
+    @Benchmark
+    public String save() {
+        ServletExecutionContext context = context(BenchmarkFixtures.browserRequest("POST", "/app/action/confirm"));
+        store.save(SESSION_ID, entries, context);
+        return context.getRequestScopedVar("nablarch_hiddenStore");
+    }
+
+    /**
+     * 保存済みのセッションを読み込む。
+     *
+     * @return セッションエントリ
+     */
+    @Benchmark
+    public List<SessionEntry> load() {
+        MockServletRequest request = BenchmarkFixtures.browserRequest("POST", "/app/action/register");
+        request.getParams().put("nablarch_hiddenStore", new String[] {saved});
+        return store.load(SESSION_ID, context(request));
+    }
+
+    /**
+     * 実行コンテキストを生成する。
+     *
+     * @param request サーブレットリクエスト
+     * @return 実行コンテキスト
+     */
+    private ServletExecutionContext context(MockServletRequest request) {
+        return new ServletExecutionContext(request, new BenchmarkServletResponse(), servletContext);
+    }
+}
@@ -0,0 +1,79 @@
+package nablarch.core.util.map;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.fw.web.servlet.BenchmarkFixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link CopyOnReadMap}のスナップショット作成と反映のコストを計測するベンチマーク。
+ * <p/>
+ * {@link nablarch.fw.web.handler.SessionConcurrentAccessHandler}と同様に、
+ * 1リクエストにつき1度スナップショットを作成し、リクエストの終了時に反映する。
+ * セッションの大きさは、エントリ数{@code entryCount}と値1つ当たりの文字数{@code valueSize}で変える。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CopyOnReadMapBenchmark {
+
+    /** セッションのエントリ数 */
+    @Param({"10", "100"})
+    private int entryCount;
+
+    /** 値1つ当たりの文字数 */
+    @Param({"16", "1024"})
+    private int valueSize;
+
+    /** テスト対象 */
+    private CopyOnReadMap<String, Object> map;
+
+    /**
+     * セッションを準備する。
+     */
+    @Setup
+    public void setUp() {
+        map = new CopyOnReadMap<String, Object>(new ConcurrentHashMap<String, Object>(
+                BenchmarkFixtures.sessionValues(entryCount, valueSize)));
+    }
+
+    /**
+     * セッションを参照するのみのリクエスト。
+     *
+     * @return 参照した値
+     */
+    @Benchmark
+    public Object read() {
+        Object value = map.get("entry0");
+        map.save();
+        return value;
+    }
+
+    /**
+     * セッションを更新するリクエスト。
+     *
+     * @return 参照した値
+     */
+    @Benchmark
+    public Object readWrite() {
+        Object value = map.get("entry0");
+        map.put("entry0", value);
+        map.save();
+        return value;
+    }
+}
@@ -0,0 +1,148 @@
+package nablarch.fw.web;
+
+import java.util.concurrent.TimeUnit;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.web.interceptor.OnError;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link HttpMethodBinding}による業務アクションの呼び出しコストを計測するベンチマーク。
+ * <p/>
+ * {@link HttpMethodBinding.Binder}と同様に、リクエスト毎に{@link HttpMethodBinding}を生成して呼び出す。
+ * {@code reflection}で始まるものはリフレクションによる呼び出し、
+ * {@code direct}で始まるものは{@link HttpMethodBinding.Binder#setDirectInvocation(boolean)}を有効にした場合を表す。
+ * {@code Intercepted}で終わるものは、インターセプタが付与されたメソッドの呼び出しを表す。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpMethodBindingBenchmark {
+
+    /** 業務アクション */
+    private final BenchmarkAction action = new BenchmarkAction();
+
+    /** リフレクションで呼び出すファクトリ */
+    private final HttpMethodBinding.Binder reflectionBinder = new HttpMethodBinding.Binder();
+
+    /** 直接呼び出すファクトリ */
+    private final HttpMethodBinding.Binder directBinder = new HttpMethodBinding.Binder();
+
+    /** インターセプタが付与されていないメソッドへのリクエスト */
+    private HttpRequest plainRequest;
+
+    /** インターセプタが付与されたメソッドへのリクエスト */
+    private HttpRequest interceptedRequest;
+
+    /** 実行コンテキスト */
+    private ExecutionContext context;
+
+    /**
+     * リクエストを準備する。
+     */
+    @Setup
+    public void setUp() {
+        directBinder.setDirectInvocation(true);
+        plainRequest = request("/app/action/list");
+        interceptedRequest = request("/app/action/register");
+        context = new ExecutionContext();
+    }
+
+    /**
+     * インターセプタが付与されていないメソッドをリフレクションで呼び出す。
+     *
+     * @return HTTPレスポンス
+     */
+    @Benchmark
+    public HttpResponse reflection() {
+        return ((HttpMethodBinding) reflectionBinder.bind(action)).handle(plainRequest, context);
+    }
+
+    /**
+     * インターセプタが付与されていないメソッドを直接呼び出す。
+     *
+     * @return HTTPレスポンス
+     */
+    @Benchmark
+    public HttpResponse direct() {
+        return ((HttpMethodBinding) directBinder.bind(action)).handle(plainRequest, context);
+    }
+
+    /**
+     * インターセプタが付与されたメソッドをリフレクションで呼び出す。
+     *
+     * @return HTTPレスポンス
+     */
+    @Benchmark
+    public HttpResponse reflectionIntercepted() {
+        return ((HttpMethodBinding) reflectionBinder.bind(action)).handle(interceptedRequest, context);
+    }
+
+    /**
+     * インターセプタが付与されたメソッドを直接呼び出す。
+     *
+     * @return HTTPレスポンス
+     */
+    @Benchmark
+    public HttpResponse directIntercepted() {
+        return ((HttpMethodBinding) directBinder.bind(action)).handle(interceptedRequest, context);
+    }
+
+    /**
+     * リクエストを生成する。
+     *
+     * @param uri リクエストURI
+     * @return リクエスト
+     */
+    private static HttpRequest request(String uri) {
+        MockHttpRequest request = new MockHttpRequest();
+        request.setMethod("POST");
+        request.setRequestUri(uri);
+        return request;
+    }
+
+    /**
+     * 計測対象の業務アクション。
+     */
+    public static class BenchmarkAction {
+
+        /** レスポンス */
+        private final HttpResponse response = new HttpResponse(200);
+
+        /**
+         * インターセプタが付与されていないメソッド。
+         *
+         * @param req HTTPリクエスト
+         * @param ctx 実行コンテキスト
+         * @return HTTPレスポンス
+         */
+        public HttpResponse doList(HttpRequest req, ExecutionContext ctx) {
+            return response;
+        }
+
+        /**
+         * インターセプタが付与されたメソッド。
+         *
+         * @param req HTTPリクエスト
+         * @param ctx 実行コンテキスト
+         * @return HTTPレスポンス
+         */
+        @OnError(type = IllegalStateException.class, path = "/error.jsp")
+        public HttpResponse postRegister(HttpRequest req, ExecutionContext ctx) {
+            return response;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package nablarch.fw.web;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link ResourceLocator}の解析コストを計測するベンチマーク。
+ * <p/>
+ * 業務アクションが{@link HttpResponse}に指定する代表的な形式のコンテンツパスを解析する。
+ * {@code path}の値は、スキームの省略、フォワード、リダイレクト、絶対URIへのリダイレクト、クラスパスを表す。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceLocatorBenchmark {
+
+    /** コンテンツパス */
+    @Param({
+            "/WEB-INF/view/menu/index.jsp",
+            "forward://register",
+            "redirect:///action/menu/index",
+            "redirect:https://www.example.com/app/menu?lang=ja",
+            "classpath://nablarch/fw/web/message.html"})
+    private String path;
+
+    /**
+     * コンテンツパスを解析する。
+     *
+     * @param blackhole ブラックホール
+     */
+    @Benchmark
+    public void valueOf(Blackhole blackhole) {
+        ResourceLocator locator = ResourceLocator.valueOf(path);
+        blackhole.consume(locator.getScheme());
+        blackhole.consume(locator.getPath());
+    }
+
+    /**
+     * {@link HttpResponse}を生成してコンテンツパスを設定する。
+     *
+     * @return HTTPレスポンス
+     */
+    @Benchmark
+    public HttpResponse response() {
+        return new HttpResponse(200, path);
+    }
+}
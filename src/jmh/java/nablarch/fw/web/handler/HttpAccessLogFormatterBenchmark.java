@@ -0,0 +1,135 @@
+package nablarch.fw.web.handler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.common.web.MockHttpSession;
+import nablarch.fw.web.HttpResponse;
+import nablarch.fw.web.handler.HttpAccessLogFormatter.HttpAccessLogContext;
+import nablarch.fw.web.servlet.BenchmarkFixtures;
+import nablarch.fw.web.servlet.BenchmarkServletResponse;
+import nablarch.fw.web.servlet.MockServletContext;
+import nablarch.fw.web.servlet.MockServletRequest;
+import nablarch.fw.web.servlet.ServletExecutionContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link HttpAccessLogFormatter}によるアクセスログの整形コストを計測するベンチマーク。
+ * <p/>
+ * {@code format}の値は以下のフォーマットを表す。
+ * <pre>
+ *   default: デフォルトのフォーマット
+ *   masked : リクエストパラメータとセッションスコープを出力し、パスワードなどをマスクするフォーマット
+ *   json   : {@link HttpAccessJsonLogFormatter}のデフォルトのフォーマット
+ * </pre>
+ * {@link #request}は{@link nablarch.common.web.handler.HttpAccessLogHandler}と同様に、
+ * 1リクエストにつき全ての出力を整形する。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpAccessLogFormatterBenchmark {
+
+    /** フォーマット */
+    @Param({"default", "masked", "json"})
+    private String format;
+
+    /** テスト対象 */
+    private HttpAccessLogFormatter formatter;
+
+    /** アクセスログのコンテキスト */
+    private HttpAccessLogContext logContext;
+
+    /**
+     * フォーマッタとアクセスログのコンテキストを準備する。
+     */
+    @Setup
+    public void setUp() {
+        if ("json".equals(format)) {
+            formatter = new HttpAccessJsonLogFormatter();
+        } else if ("masked".equals(format)) {
+            Map<String, String> props = new HashMap<String, String>();
+            props.put(HttpAccessLogFormatter.PROPS_PREFIX + "parametersFormat",
+                      "@@@@ PARAMETERS @@@@\n\tparameters  = [$parameters$]\n\tsession     = [$sessionScope$]");
+            props.put(HttpAccessLogFormatter.PROPS_PREFIX + "maskingPatterns", "password,card.*");
+            formatter = new ConfiguredFormatter(props);
+        } else {
+            formatter = new HttpAccessLogFormatter();
+        }
+
+        MockHttpSession session = BenchmarkFixtures.httpSession();
+        MockServletRequest request = BenchmarkFixtures.addParams(
+                BenchmarkFixtures.browserRequest("POST", "/app/action/user/register"), 20);
+        request.getParams().put("password", new String[] {"secret"});
+        request.getParams().put("cardNumber", new String[] {"4111111111111111"});
+        request.setSession(session);
+        ServletExecutionContext context = new ServletExecutionContext(
+                request, new BenchmarkServletResponse(), new MockServletContext());
+        for (Map.Entry<String, String> value : BenchmarkFixtures.sessionValues(5, 32).entrySet()) {
+            context.setSessionScopedVar(value.getKey(), value.getValue());
+        }
+
+        logContext = formatter.createAccessLogContext();
+        logContext.setContext(context);
+        logContext.setRequest(context.getHttpRequest());
+        logContext.setDispatchingClass("com.example.action.UserAction");
+        logContext.setResponse(new HttpResponse(200, "/WEB-INF/view/user/complete.jsp"));
+        logContext.setStartTime(System.currentTimeMillis());
+        logContext.setEndTime(logContext.getStartTime() + 12);
+        logContext.setMaxMemory(Runtime.getRuntime().maxMemory());
+    }
+
+    /**
+     * 1リクエスト分の全ての出力を整形する。
+     *
+     * @param blackhole ブラックホール
+     */
+    @Benchmark
+    public void request(Blackhole blackhole) {
+        blackhole.consume(formatter.formatBegin(logContext));
+        blackhole.consume(formatter.formatParameters(logContext));
+        blackhole.consume(formatter.formatDispatchingClass(logContext));
+        blackhole.consume(formatter.formatEnd(logContext));
+    }
+
+    /**
+     * リクエスト処理終了時の出力のみを整形する。
+     *
+     * @return 整形したログ
+     */
+    @Benchmark
+    public String end() {
+        return formatter.formatEnd(logContext);
+    }
+
+    /**
+     * 設定情報を指定して初期化するフォーマッタ。
+     */
+    private static class ConfiguredFormatter extends HttpAccessLogFormatter {
+
+        /**
+         * コンストラクタ。
+         *
+         * @param props 各種ログ出力の設定情報
+         */
+        ConfiguredFormatter(Map<String, String> props) {
+            initialize(props);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package nablarch.fw.web.handler;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.web.HttpRequest;
+import nablarch.fw.web.HttpResponse;
+import nablarch.fw.web.servlet.BenchmarkFixtures;
+import nablarch.fw.web.servlet.BenchmarkServletResponse;
+import nablarch.fw.web.servlet.MockServletContext;
+import nablarch.fw.web.servlet.ServletExecutionContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link HttpResponseHandler}によるレスポンスの書き込みコストを計測するベンチマーク。
+ * <p/>
+ * 後続のハンドラが返す{@link HttpResponse}の種類毎に、ヘッダーとボディの書き込みまでを計測する。
+ * {@link #body}はレスポンスボディのサイズを{@code bodySize}で変えて計測する。
+ * {@link #redirect}はリダイレクトのレスポンスを表す。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpResponseHandlerBenchmark {
+
+    /** レスポンスボディのサイズ(バイト) */
+    @Param({"256", "16384", "262144"})
+    private int bodySize;
+
+    /** テスト対象 */
+    private final HttpResponseHandler handler = new HttpResponseHandler();
+
+    /** サーブレットコンテキスト */
+    private final MockServletContext servletContext = new MockServletContext();
+
+    /** レスポンスボディ */
+    private String body;
+
+    /**
+     * レスポンスボディを準備する。
+     */
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder(bodySize);
+        while (builder.length() < bodySize) {
+            builder.append("<p>benchmark</p>\n");
+        }
+        body = builder.substring(0, bodySize);
+    }
+
+    /**
+     * レスポンスボディを書き込む。
+     *
+     * @return 書き込まれたバイト数
+     */
+    @Benchmark
+    public long body() {
+        return handle(new Handler<HttpRequest, HttpResponse>() {
+            @Override
+            public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+                return new HttpResponse(200)
+                        .setContentType("text/html;charset=UTF-8")
+                        .write(body);
+            }
+        });
+    }
+
+    /**
+     * リダイレクトする。
+     *
+     * @return 書き込まれたバイト数
+     */
+    @Benchmark
+    public long redirect() {
+        return handle(new Handler<HttpRequest, HttpResponse>() {
+            @Override
+            public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+                return new HttpResponse(303, "redirect://menu");
+            }
+        });
+    }
+
+    /**
+     * 後続のハンドラが返すレスポンスを{@link HttpResponseHandler}で書き込む。
+     *
+     * @param action 後続のハンドラ
+     * @return 書き込まれたバイト数
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private long handle(Handler<HttpRequest, HttpResponse> action) {
+        BenchmarkServletResponse servletResponse = new BenchmarkServletResponse();
+        ServletExecutionContext context = new ServletExecutionContext(
+                BenchmarkFixtures.browserRequest("GET", "/app/action/list"), servletResponse, servletContext);
+        context.setHandlerQueue((List) Arrays.asList(handler, action));
+        context.handleNext(context.getHttpRequest());
+        return servletResponse.getWrittenBytes();
+    }
+}
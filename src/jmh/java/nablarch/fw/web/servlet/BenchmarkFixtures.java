@@ -0,0 +1,161 @@
+package nablarch.fw.web.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jakarta.servlet.http.Cookie;
+
+import nablarch.common.web.MockHttpSession;
+
+/**
+ * ベンチマークで共通に使用する入力データ。
+ * <p/>
+ * 各ベンチマークの計測結果を比較できるよう、リクエストやセッションの内容は本クラスで一元的に作成する。
+ */
+public final class BenchmarkFixtures {
+
+    /** コンテキストパス */
+    public static final String CONTEXT_PATH = "/app";
+
+    /** マルチパートの境界文字列 */
+    public static final String BOUNDARY = "----BenchmarkBoundary7MA4YWxkTrZu0gW";
+
+    /**
+     * 隠蔽コンストラクタ。
+     */
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * 一般的なブラウザからのリクエストを模したサーブレットリクエストを作成する。
+     * <p/>
+     * ブラウザが送信する標準的なヘッダーと、言語を保持するクッキーを含む。
+     *
+     * @param method HTTPメソッド
+     * @param uri リクエストURI(コンテキストパスを含む)
+     * @return サーブレットリクエスト
+     */
+    public static MockServletRequest browserRequest(String method, String uri) {
+        MockServletRequest request = new MockServletRequest();
+        request.setMethod(method);
+        request.setContextPath(CONTEXT_PATH);
+        request.setRequestURI(uri);
+        request.setRequestUrl("https://www.example.com" + uri);
+        request.setServerPort(443);
+        request.setRemoteAddr("192.0.2.10");
+        request.setRemoteHost("192.0.2.10");
+        request.addHeader("Host", "www.example.com");
+        request.addHeader("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36");
+        request.addHeader("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+        request.addHeader("Accept-Language", "ja,en-US;q=0.7,en;q=0.3");
+        request.addHeader("Accept-Encoding", "gzip, deflate, br");
+        request.addHeader("Connection", "keep-alive");
+        request.addHeader("Referer", "https://www.example.com/app/index.html");
+        request.setCookies(new Cookie("JSESSIONID", "0123456789ABCDEF"), new Cookie("nablarch_lang", "ja"));
+        return request;
+    }
+
+    /**
+     * サーブレットリクエストにリクエストパラメータを追加する。
+     * <p/>
+     * "param0"から始まる名前で、指定した件数のパラメータを追加する。
+     *
+     * @param request サーブレットリクエスト
+     * @param count パラメータの件数
+     * @return 引数のサーブレットリクエスト
+     */
+    public static MockServletRequest addParams(MockServletRequest request, int count) {
+        for (int i = 0; i < count; i++) {
+            request.getParams().put("param" + i, new String[] {"value" + i});
+        }
+        return request;
+    }
+
+    /**
+     * HTTPセッションを作成する。
+     *
+     * @return HTTPセッション
+     */
+    public static MockHttpSession httpSession() {
+        MockHttpSession session = new MockHttpSession();
+        session.setId("BENCHMARK0123456789ABCDEF");
+        return session;
+    }
+
+    /**
+     * セッションに格納する値を作成する。
+     * <p/>
+     * "entry0"から始まるキーで、指定したサイズの文字列を値とする。
+     *
+     * @param count 値の件数
+     * @param valueSize 値1つ当たりの文字数
+     * @return セッションに格納する値(キーの順序を保持する)
+     */
+    public static Map<String, String> sessionValues(int count, int valueSize) {
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder value = new StringBuilder(valueSize);
+            while (value.length() < valueSize) {
+                value.append((char) ('a' + (value.length() + i) % 26));
+            }
+            values.put("entry" + i, value.toString());
+        }
+        return values;
+    }
+
+    /**
+     * ファイルパートのみで構成されるマルチパートのリクエストボディを作成する。
+     * <p/>
+     * パートの内容には、境界文字列の先頭文字と改行を含める。
+     *
+     * @param partCount パート数
+     * @param partSize パート1つ当たりのサイズ(バイト)
+     * @return リクエストボディ(境界文字列は{@link #BOUNDARY})
+     */
+    public static byte[] multipartFileBody(int partCount, int partSize) {
+        byte[] content = new byte[partSize];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ("-\r\nabcdefghij".charAt(i % 13));
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (int i = 0; i < partCount; i++) {
+            write(body, "--" + BOUNDARY + "\r\n"
+                    + "Content-Disposition: form-data; name=\"file" + i + "\"; filename=\"file" + i + ".bin\"\r\n"
+                    + "Content-Type: application/octet-stream\r\n\r\n");
+            body.write(content, 0, content.length);
+            write(body, "\r\n");
+        }
+        write(body, "--" + BOUNDARY + "--\r\n");
+        return body.toByteArray();
+    }
+
+    /**
+     * 同名のパラメータパートで構成されるマルチパートのリクエストボディを作成する。
+     *
+     * @param paramCount パラメータパートの数
+     * @return リクエストボディ(境界文字列は{@link #BOUNDARY})
+     */
+    public static byte[] multipartParamBody(int paramCount) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (int i = 0; i < paramCount; i++) {
+            write(body, "--" + BOUNDARY + "\r\n"
+                    + "Content-Disposition: form-data; name=\"items\"\r\n\r\n"
+                    + "value" + i + "\r\n");
+        }
+        write(body, "--" + BOUNDARY + "--\r\n");
+        return body.toByteArray();
+    }
+
+    /**
+     * 文字列をバイト列として書き込む。
+     *
+     * @param out 出力先
+     * @param str 文字列
+     */
+    private static void write(ByteArrayOutputStream out, String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.ISO_8859_1);
+        out.write(bytes, 0, bytes.length);
+    }
+}
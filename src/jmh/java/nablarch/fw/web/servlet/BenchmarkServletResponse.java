@@ -0,0 +1,68 @@
+package nablarch.fw.web.servlet;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+/**
+ * ベンチマーク用のサーブレットレスポンス。
+ * <p/>
+ * {@link MockServletResponse}と異なり、レスポンスボディを書き込むことができる。
+ * 書き込んだ内容は破棄し、バイト数のみを保持する。
+ */
+public class BenchmarkServletResponse extends MockServletResponse {
+
+    /** 書き込まれたバイト数 */
+    private long writtenBytes;
+
+    /** レスポンスボディの書き込み先 */
+    private final ServletOutputStream outputStream = new ServletOutputStream() {
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+
+        @Override
+        public void write(int b) {
+            writtenBytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            writtenBytes += len;
+        }
+    };
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        return outputStream;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        return new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 書き込まれたバイト数を取得する。
+     *
+     * @return 書き込まれたバイト数
+     */
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+}
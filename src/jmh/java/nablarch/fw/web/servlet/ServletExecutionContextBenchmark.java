@@ -0,0 +1,93 @@
+package nablarch.fw.web.servlet;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link ServletExecutionContext}の生成コストを計測するベンチマーク。
+ * <p/>
+ * リクエスト毎の割り当てバイト数は{@code -prof gc}を指定して{@code gc.alloc.rate.norm}で比較する。
+ * {@link #eagerMaterialization}は、ヘッダー、クッキー、リクエストパラメータを全て展開した場合
+ * (遅延生成導入前の実装で常に発生していた処理)のコストを表す。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServletExecutionContextBenchmark {
+
+    /** サーブレットリクエスト */
+    private MockServletRequest servletRequest;
+
+    /** サーブレットレスポンス */
+    private MockServletResponse servletResponse;
+
+    /** サーブレットコンテキスト */
+    private MockServletContext servletContext;
+
+    /**
+     * 一般的なブラウザからのリクエストを模したサーブレットリクエストを準備する。
+     */
+    @Setup
+    public void setUp() {
+        servletRequest = BenchmarkFixtures.addParams(
+                BenchmarkFixtures.browserRequest("GET", "/app/css/style.css"), 20);
+        servletResponse = new MockServletResponse();
+        servletContext = new MockServletContext();
+    }
+
+    /**
+     * 静的リソースやヘルスチェックのように、リクエストURIとHTTPメソッドのみを参照するリクエスト。
+     *
+     * @param blackhole ブラックホール
+     */
+    @Benchmark
+    public void staticResource(Blackhole blackhole) {
+        ServletExecutionContext context = new ServletExecutionContext(servletRequest, servletResponse, servletContext);
+        blackhole.consume(context.getHttpRequest().getRequestPath());
+        blackhole.consume(context.getHttpRequest().getMethod());
+    }
+
+    /**
+     * 業務アクションのように、パラメータやヘッダーを読み取るリクエスト。
+     *
+     * @param blackhole ブラックホール
+     */
+    @Benchmark
+    public void readParameters(Blackhole blackhole) {
+        ServletExecutionContext context = new ServletExecutionContext(servletRequest, servletResponse, servletContext);
+        HttpRequestWrapper request = context.getHttpRequest();
+        blackhole.consume(request.getRequestPath());
+        blackhole.consume(request.getParam("param1"));
+        blackhole.consume(request.getHeader("User-Agent"));
+        blackhole.consume(request.getCookie().get("nablarch_lang"));
+    }
+
+    /**
+     * ヘッダー、クッキー、リクエストパラメータを全て展開するリクエスト。
+     *
+     * @param blackhole ブラックホール
+     */
+    @Benchmark
+    public void eagerMaterialization(Blackhole blackhole) {
+        ServletExecutionContext context = new ServletExecutionContext(servletRequest, servletResponse, servletContext);
+        HttpRequestWrapper request = context.getHttpRequest();
+        blackhole.consume(request.getRequestPath());
+        blackhole.consume(request.getHeaderMap());
+        blackhole.consume(request.getCookie());
+        blackhole.consume(request.setParam("param0", "changed"));
+    }
+}
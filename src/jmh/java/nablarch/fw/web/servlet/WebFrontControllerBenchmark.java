@@ -0,0 +1,169 @@
+package nablarch.fw.web.servlet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.ServletException;
+
+import nablarch.common.web.session.SessionManager;
+import nablarch.common.web.session.SessionStore;
+import nablarch.common.web.session.SessionStoreHandler;
+import nablarch.common.web.session.store.HttpSessionStore;
+import nablarch.core.date.BasicSystemTimeProvider;
+import nablarch.core.repository.ObjectLoader;
+import nablarch.core.repository.SystemRepository;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.web.HttpMethodBinding;
+import nablarch.fw.web.HttpRequest;
+import nablarch.fw.web.HttpResponse;
+import nablarch.fw.web.handler.HttpCharacterEncodingHandler;
+import nablarch.fw.web.handler.HttpResponseHandler;
+import nablarch.fw.web.handler.SecureHandler;
+import nablarch.fw.web.handler.latency.HandlerLatencyRecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link WebFrontController}でハンドラキュー全体を通してリクエストを処理するスループットを計測するベンチマーク。
+ * <p/>
+ * {@code queue}の値は以下のハンドラキューを表す。
+ * <pre>
+ *   minimal : HttpResponseHandler、業務アクション
+ *   standard: HttpCharacterEncodingHandler、HttpResponseHandler、SecureHandler、
+ *             SessionStoreHandler(HttpSessionStore)、業務アクション
+ * </pre>
+ * 業務アクションはリクエストパラメータを1つ参照し、約700バイトのHTMLをレスポンスボディに書き込む。
+ * セッションを持たないリクエストのため、セッションストアの読み込みと保存は行われない。
+ * {@code instrumented}が{@code true}の場合は{@link HandlerLatencyRecorder}で各ハンドラの処理時間を記録する。
+ * 複数スレッドでのスループットは、JMHの{@code -t}オプションでスレッド数を指定して計測する。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebFrontControllerBenchmark {
+
+    /** ハンドラキュー */
+    @Param({"minimal", "standard"})
+    private String queue;
+
+    /** 各ハンドラの処理時間を記録するか否か */
+    @Param({"false", "true"})
+    private boolean instrumented;
+
+    /** テスト対象 */
+    private final WebFrontController controller = new WebFrontController();
+
+    /**
+     * ハンドラキューを構築する。
+     */
+    @Setup
+    public void setUp() {
+        final SessionManager sessionManager = new SessionManager();
+        sessionManager.setAvailableStores(Collections.<SessionStore>singletonList(new HttpSessionStore()));
+        sessionManager.setDefaultStoreName("httpSession");
+        SystemRepository.load(new ObjectLoader() {
+            @Override
+            public Map<String, Object> load() {
+                Map<String, Object> components = new HashMap<String, Object>();
+                components.put("sessionManager", sessionManager);
+                components.put("systemTimeProvider", new BasicSystemTimeProvider());
+                return components;
+            }
+        });
+
+        List<Object> handlers = new ArrayList<Object>();
+        if ("standard".equals(queue)) {
+            handlers.add(new HttpCharacterEncodingHandler());
+            handlers.add(new HttpResponseHandler());
+            handlers.add(new SecureHandler());
+            SessionStoreHandler sessionStoreHandler = new SessionStoreHandler();
+            sessionStoreHandler.setSessionManager(sessionManager);
+            handlers.add(sessionStoreHandler);
+        } else {
+            handlers.add(new HttpResponseHandler());
+        }
+        handlers.add(new HttpMethodBinding(new BenchmarkAction()));
+
+        controller.setServletFilterConfig(new MockServletFilterConfig().setServletContext(new MockServletContext()));
+        controller.setHandlerQueue(handlers);
+        if (instrumented) {
+            HandlerLatencyRecorder recorder = new HandlerLatencyRecorder();
+            recorder.setJmxEnabled(false);
+            controller.setHandlerLatencyRecorder(recorder);
+        }
+    }
+
+    /**
+     * リポジトリを初期化する。
+     */
+    @TearDown
+    public void tearDown() {
+        SystemRepository.clear();
+    }
+
+    /**
+     * 1リクエストを処理する。
+     *
+     * @return サーブレットレスポンス
+     * @throws ServletException サーブレット例外
+     * @throws IOException 入出力例外
+     */
+    @Benchmark
+    public BenchmarkServletResponse request() throws ServletException, IOException {
+        MockServletRequest request = BenchmarkFixtures.addParams(
+                BenchmarkFixtures.browserRequest("GET", "/app/action/list"), 5);
+        BenchmarkServletResponse response = new BenchmarkServletResponse();
+        controller.doFilter(request, response, null);
+        return response;
+    }
+
+    /**
+     * 計測対象の業務アクション。
+     */
+    public static class BenchmarkAction {
+
+        /** レスポンスボディ */
+        private static final String BODY;
+
+        static {
+            StringBuilder body = new StringBuilder("<html><body><ul>");
+            for (int i = 0; i < 40; i++) {
+                body.append("<li>item").append(i).append("</li>");
+            }
+            BODY = body.append("</ul></body></html>").toString();
+        }
+
+        /**
+         * 一覧を表示する。
+         *
+         * @param req HTTPリクエスト
+         * @param ctx 実行コンテキスト
+         * @return HTTPレスポンス
+         */
+        public HttpResponse getList(HttpRequest req, ExecutionContext ctx) {
+            ctx.setRequestScopedVar("param0", req.getParam("param0"));
+            return new HttpResponse(200)
+                    .setContentType("text/html;charset=UTF-8")
+                    .write(BODY);
+        }
+    }
+}
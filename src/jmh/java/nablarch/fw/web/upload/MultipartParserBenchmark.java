@@ -0,0 +1,133 @@
+package nablarch.fw.web.upload;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.core.util.FilePathSetting;
+import nablarch.fw.web.servlet.BenchmarkFixtures;
+import nablarch.fw.web.servlet.MockServletInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link MultipartParser}の解析コストを計測するベンチマーク。
+ * <p/>
+ * パート数とパートサイズを組み合わせたリクエストボディを解析する。
+ * {@link #streaming}は一時ファイルへの書き込みを伴わないため、境界文字列の探索コストのみを表す。
+ * {@link #repeatedParams}は同名のパラメータが多数送信されるフォームの解析コストを表す。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultipartParserBenchmark {
+
+    /** パート数 */
+    @Param({"1", "10", "100"})
+    private int partCount;
+
+    /** パート1つ当たりのサイズ(バイト) */
+    @Param({"1024", "65536", "1048576"})
+    private int partSize;
+
+    /** ファイルパートのみで構成されるリクエストボディ */
+    private byte[] fileBody;
+
+    /** 同名のパラメータパートで構成されるリクエストボディ */
+    private byte[] paramBody;
+
+    /** アップロード設定 */
+    private UploadSettings settings;
+
+    /**
+     * リクエストボディと一時ファイルの保存先を準備する。
+     *
+     * @throws IOException 入出力例外
+     */
+    @Setup
+    public void setUp() throws IOException {
+        File tempDir = new File(System.getProperty("java.io.tmpdir"), "nablarch_multipart_benchmark");
+        tempDir.mkdirs();
+        FilePathSetting.getInstance().addBasePathSetting(UploadSettings.UPLOAD_FILE_TMP_DIR, tempDir.toURI().toString());
+        settings = new UploadSettings();
+        settings.setContentLengthLimit(Integer.MAX_VALUE);
+
+        fileBody = BenchmarkFixtures.multipartFileBody(partCount, partSize);
+        paramBody = BenchmarkFixtures.multipartParamBody(partCount * 100);
+    }
+
+    /**
+     * 全てのパートを一時ファイルに保存する。
+     *
+     * @param blackhole ブラックホール
+     */
+    @Benchmark
+    public void buffered(Blackhole blackhole) {
+        PartInfoHolder parts = createParser(fileBody, new HashMap<String, String[]>()).parse();
+        blackhole.consume(parts);
+        parts.cleanup();
+    }
+
+    /**
+     * ストリーミングモードで全てのパートを読み込む。
+     *
+     * @param blackhole ブラックホール
+     * @throws IOException 入出力例外
+     */
+    @Benchmark
+    public void streaming(Blackhole blackhole) throws IOException {
+        MultipartParser parser = createParser(fileBody, new HashMap<String, String[]>());
+        byte[] buf = new byte[8192];
+        Iterator<StreamingPart> parts = parser.streamingIterator();
+        while (parts.hasNext()) {
+            InputStream in = parts.next().getInputStream();
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                blackhole.consume(n);
+            }
+        }
+        parser.finish();
+    }
+
+    /**
+     * 同名のパラメータを多数含むフォームを解析する。
+     *
+     * @param blackhole ブラックホール
+     */
+    @Benchmark
+    public void repeatedParams(Blackhole blackhole) {
+        Map<String, String[]> paramMap = new HashMap<String, String[]>();
+        createParser(paramBody, paramMap).parse();
+        blackhole.consume(paramMap);
+    }
+
+    /**
+     * パーサを生成する。
+     *
+     * @param body     リクエストボディ
+     * @param paramMap HTTPリクエストパラメータ
+     * @return パーサ
+     */
+    private MultipartParser createParser(byte[] body, Map<String, String[]> paramMap) {
+        MultipartContext ctx = new MultipartContext("multipart/form-data; boundary=" + BenchmarkFixtures.BOUNDARY, body.length, "UTF-8");
+        return new MultipartParser(new MockServletInputStream(body), paramMap, settings, ctx);
+    }
+}
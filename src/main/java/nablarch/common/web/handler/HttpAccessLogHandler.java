@@ -3,6 +3,7 @@ package nablarch.common.web.handler;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
 
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.Handler;
@@ -19,6 +20,12 @@ import nablarch.fw.web.servlet.ServletExecutionContext;
  * ロガー名は"HTTP_ACCESS"を使用し、INFOレベルで出力する。
  * {@link #handle(HttpRequest, ExecutionContext)}メソッドの引数{@link ExecutionContext}は、
  * リクエスト情報を取得するために{@link nablarch.fw.web.servlet.ServletExecutionContext}にダウンキャストして使用する。
+ *
+ * 出力対象にCPU時間または割り当てたメモリ量の項目が含まれている場合は、
+ * {@link #writeBeginLog}から{@link #writeEndLog}までの間にリクエストスレッドが使用した量を{@link ThreadMXBean}で計測する。
+ * 割り当てたメモリ量は{@code com.sun.management.ThreadMXBean}を提供するJVMでのみ計測できる。
+ *
+ * {@link nablarch.fw.web.servlet.WebFrontControllerWarmup}の疑似リクエストは、フォーマットまで行い出力しない。
  * </pre>
  * @author Kiyohito Itoh
  */
@@ -76,6 +83,13 @@ public class HttpAccessLogHandler implements Handler<HttpRequest, HttpResponse>
             logContext.setFreeMemory(max - heapMemory.getUsed());
         }
         
+        if (HttpAccessLogUtil.containsCpuTimeItem()) {
+            logContext.setStartCpuTime(ThreadResourceMeter.getCpuTime());
+        }
+        if (HttpAccessLogUtil.containsAllocatedBytesItem()) {
+            logContext.setStartAllocatedBytes(ThreadResourceMeter.getAllocatedBytes());
+        }
+        
         logContext.setStartTime(System.currentTimeMillis());
     }
     
@@ -90,6 +104,13 @@ public class HttpAccessLogHandler implements Handler<HttpRequest, HttpResponse>
         
         logContext.setEndTime(System.currentTimeMillis());
         
+        if (HttpAccessLogUtil.containsCpuTimeItem()) {
+            logContext.setEndCpuTime(ThreadResourceMeter.getCpuTime());
+        }
+        if (HttpAccessLogUtil.containsAllocatedBytesItem()) {
+            logContext.setEndAllocatedBytes(ThreadResourceMeter.getAllocatedBytes());
+        }
+        
         if (response != null) {
             logContext.setResponse(response);
         }
@@ -123,4 +144,61 @@ public class HttpAccessLogHandler implements Handler<HttpRequest, HttpResponse>
     protected Object[] getResponseOptions(HttpRequest request, HttpResponse response, ExecutionContext context) {
         return EMPTY_OPTIONS;
     }
+
+    /**
+     * リクエストスレッドが使用したCPU時間と割り当てたメモリ量を取得するクラス。
+     * <p/>
+     * {@code com.sun.management.ThreadMXBean}を提供しないJVMでもクラスをロードできるよう、
+     * 割り当てたメモリ量を取得できるか否かは初回使用時に判定する。
+     */
+    private static final class ThreadResourceMeter {
+
+        /** {@link ThreadMXBean} */
+        private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+        /** CPU時間を取得できるか否か */
+        private static final boolean CPU_TIME_SUPPORTED = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported();
+
+        /** 割り当てたメモリ量を取得できるか否か */
+        private static final boolean ALLOCATED_BYTES_SUPPORTED = isAllocatedBytesSupported();
+
+        /**
+         * 隠蔽コンストラクタ。
+         */
+        private ThreadResourceMeter() {
+        }
+
+        /**
+         * 現在のスレッドのCPU時間を取得する。
+         * @return CPU時間(ナノ秒)。取得できない場合は-1
+         */
+        static long getCpuTime() {
+            return CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : -1;
+        }
+
+        /**
+         * 現在のスレッドが割り当てたメモリ量の累計を取得する。
+         * @return 割り当てたメモリ量(バイト)。取得できない場合は-1
+         */
+        static long getAllocatedBytes() {
+            if (!ALLOCATED_BYTES_SUPPORTED) {
+                return -1;
+            }
+            return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        /**
+         * 割り当てたメモリ量を取得できるか否かを判定する。
+         * @return 取得できる場合はtrue
+         */
+        private static boolean isAllocatedBytesSupported() {
+            try {
+                return THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).isThreadAllocatedMemorySupported();
+            } catch (LinkageError e) {
+                return false;
+            }
+        }
+    }
 }
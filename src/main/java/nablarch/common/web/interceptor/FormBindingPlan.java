@@ -0,0 +1,104 @@
+package nablarch.common.web.interceptor;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.web.HttpRequest;
+
+/**
+ * {@link InjectForm}で指定されたフォームクラス毎の、フォームの生成と初期化の手順。
+ * <p/>
+ * デフォルトコンストラクタと初期化メソッドの{@link MethodHandle}をフォームクラス毎に1度だけ取得し、
+ * 以降のリクエストで使い回す。
+ * アクセス権の判定は、{@link InjectForm.Impl}からリフレクションで呼び出す場合と同じとなる。
+ */
+final class FormBindingPlan {
+
+    /** フォームクラス毎の{@link FormBindingPlan} */
+    private static final ClassValue<FormBindingPlan> PLANS = new ClassValue<FormBindingPlan>() {
+        @Override
+        protected FormBindingPlan computeValue(Class<?> type) {
+            return new FormBindingPlan(type);
+        }
+    };
+
+    /** 初期化メソッドの型 */
+    private static final MethodType INITIALIZER_TYPE =
+            MethodType.methodType(void.class, Object.class, HttpRequest.class, ExecutionContext.class);
+
+    /** フォームクラス */
+    private final Class<?> formClass;
+
+    /** デフォルトコンストラクタ(取得に失敗した場合は{@code null}) */
+    private final MethodHandle constructor;
+
+    /** デフォルトコンストラクタの取得に失敗した原因 */
+    private final Exception constructorError;
+
+    /** 初期化メソッド名毎の初期化メソッド */
+    private final ConcurrentMap<String, MethodHandle> initializers = new ConcurrentHashMap<String, MethodHandle>();
+
+    /**
+     * コンストラクタ。
+     * @param formClass フォームクラス
+     */
+    private FormBindingPlan(Class<?> formClass) {
+        this.formClass = formClass;
+        MethodHandle handle = null;
+        Exception error = null;
+        try {
+            handle = MethodHandles.lookup()
+                                  .findConstructor(formClass, MethodType.methodType(void.class))
+                                  .asType(MethodType.methodType(Serializable.class));
+        } catch (Exception e) {
+            error = e;
+        }
+        this.constructor = handle;
+        this.constructorError = error;
+    }
+
+    /**
+     * フォームクラスに対応する{@link FormBindingPlan}を取得する。
+     * @param formClass フォームクラス
+     * @return {@link FormBindingPlan}
+     */
+    static FormBindingPlan of(Class<?> formClass) {
+        return PLANS.get(formClass);
+    }
+
+    /**
+     * デフォルトコンストラクタでフォームを生成する。
+     * @return フォーム
+     * @throws Throwable 生成に失敗した場合
+     */
+    Serializable newInstance() throws Throwable {
+        if (constructor == null) {
+            throw constructorError;
+        }
+        return (Serializable) constructor.invokeExact();
+    }
+
+    /**
+     * 初期化メソッドを実行する。
+     * @param name 初期化メソッド名
+     * @param form フォーム
+     * @param request リクエスト
+     * @param context 実行コンテキスト
+     * @throws Throwable 初期化メソッドの取得、もしくは実行に失敗した場合
+     */
+    void initialize(String name, Serializable form, HttpRequest request, ExecutionContext context) throws Throwable {
+        MethodHandle initializer = initializers.get(name);
+        if (initializer == null) {
+            initializer = MethodHandles.lookup()
+                                       .unreflect(formClass.getMethod(name, HttpRequest.class, ExecutionContext.class))
+                                       .asType(INITIALIZER_TYPE);
+            initializers.putIfAbsent(name, initializer);
+        }
+        initializer.invokeExact((Object) form, request, context);
+    }
+}
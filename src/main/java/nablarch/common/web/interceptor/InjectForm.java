@@ -6,6 +6,8 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import nablarch.common.web.validator.NablarchValidationStrategy;
 import nablarch.common.web.validator.ValidationStrategy;
@@ -140,8 +142,17 @@ public @interface InjectForm {
     @SuppressWarnings("ClassNameSameAsAncestorName")
     class Impl extends Interceptor.Impl<HttpRequest, HttpResponse, InjectForm> {
 
-        /** バリデーションストラテジ */
-        private final ValidationStrategy validationStrategy = getValidationStrategy();
+        /**
+         * アクションメソッドに付与された{@link InjectForm}毎のバリデーションストラテジ。
+         * <p/>
+         * 同じアクションメソッドのアノテーションは同じインスタンスとなるため、インスタンスの同一性で判定する。
+         * 読み取りで排他制御を行わないよう、追加する際はコピーを作成して置き換える。
+         */
+        private static volatile Map<InjectForm, ValidationStrategy> strategies =
+                new IdentityHashMap<InjectForm, ValidationStrategy>();
+
+        /** {@link #strategies}を置き換える際のロック */
+        private static final Object STRATEGIES_LOCK = new Object();
 
         /**
          * フォームを生成し、リクエストスコープに設定する。
@@ -156,7 +167,7 @@ public @interface InjectForm {
             boolean canInitialize = StringUtil.hasValue(annotation.initialize());
             boolean canValidate = StringUtil.hasValue(annotation.validate());
 
-            Serializable form = validationStrategy.validate(request, annotation, canValidate,
+            Serializable form = getValidationStrategy(annotation).validate(request, annotation, canValidate,
                     (ServletExecutionContext) context);
 
             if (canInitialize) {
@@ -180,21 +191,13 @@ public @interface InjectForm {
          * @return 生成したフォーム
          */
         private Serializable createForm(InjectForm annotation) {
-            return newInstance(annotation.form());
-        }
-
-        /**
-         * クラスのインスタンスを生成する。
-         * @param <T> クラスの型
-         * @param c クラス
-         * @return インスタンス
-         */
-        private <T> T newInstance(Class<T> c) {
             try {
-                return c.newInstance();
-            } catch (Exception e) {
+                return FormBindingPlan.of(annotation.form()).newInstance();
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
                 throw new IllegalArgumentException(
-                    "class instantiation failed. class = [" + c.getName() + "]", e);
+                    "class instantiation failed. class = [" + annotation.form().getName() + "]", e);
             }
         }
 
@@ -207,9 +210,8 @@ public @interface InjectForm {
          */
         private void initializeForm(HttpRequest request, ExecutionContext context, InjectForm annotation, Serializable form) {
             try {
-                annotation.form().getMethod(annotation.initialize(), HttpRequest.class, ExecutionContext.class)
-                                 .invoke(form, request, context);
-            } catch (Exception e) {
+                FormBindingPlan.of(annotation.form()).initialize(annotation.initialize(), form, request, context);
+            } catch (Throwable e) {
                 throw new IllegalArgumentException(
                         "form initialization failed. form = [" + annotation.form().getName() + "], method = [" + annotation.initialize() + "]", e);
             }
@@ -225,14 +227,30 @@ public @interface InjectForm {
          * コンポーネント定義が指定されていない場合、デフォルトのStrategyとして{@link NablarchValidationStrategy}を返す.
          * </li>
          * </ul>
+         * アクションメソッド毎に、最初のリクエストで1度だけ取得する。
+         * このため、取得した後にリポジトリを再読み込みしても、そのアクションメソッドには反映されない。
+         * @param annotation アクションメソッドに付与されたInjectFormアノテーション
          * @return Strategyの具象クラス
          */
-        private static synchronized ValidationStrategy getValidationStrategy() {
-            ValidationStrategy validationStrategy = SystemRepository.get("validationStrategy");
-            if (validationStrategy == null) {
-                validationStrategy = new NablarchValidationStrategy();
+        private static ValidationStrategy getValidationStrategy(InjectForm annotation) {
+            ValidationStrategy validationStrategy = strategies.get(annotation);
+            if (validationStrategy != null) {
+                return validationStrategy;
+            }
+            synchronized (STRATEGIES_LOCK) {
+                validationStrategy = strategies.get(annotation);
+                if (validationStrategy == null) {
+                    validationStrategy = SystemRepository.get("validationStrategy");
+                    if (validationStrategy == null) {
+                        validationStrategy = new NablarchValidationStrategy();
+                    }
+                    Map<InjectForm, ValidationStrategy> copied =
+                            new IdentityHashMap<InjectForm, ValidationStrategy>(strategies);
+                    copied.put(annotation, validationStrategy);
+                    strategies = copied;
+                }
+                return validationStrategy;
             }
-            return validationStrategy;
         }
 
     }
@@ -9,12 +9,15 @@ import nablarch.fw.web.HttpCookie;
 import nablarch.fw.web.HttpRequest;
 import nablarch.fw.web.HttpResponse;
 import nablarch.fw.web.servlet.ServletExecutionContext;
+import nablarch.fw.web.servlet.WebFrontControllerWarmup;
 
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * ストアを選択できるセッション保存機能のためのハンドラ。
@@ -111,6 +114,13 @@ public class SessionStoreHandler implements Handler<Object, Object> {
 
         final Object res = context.handleNext(data);
 
+        if (WebFrontControllerWarmup.isWarmupRequest(context)) {
+            // ウォームアップの疑似リクエストでは、セッションエントリのエンコードとクッキーの設定のみ行い、結果は破棄する。
+            // ストアと有効期限の保存先は外部のリソースの場合があるため、保存は行わない。
+            encodeForWarmup(session != null ? session : sessionManager.create(context), servletContext);
+            return res;
+        }
+
         if (sessionId != null && !expiration.isDeterminable(sessionId, context)) {
             // 往路処理でセッションが存在していたが、復路処理までの間にセッションが破棄された場合は、
             // セッションストアの保存処理は行わない。
@@ -154,6 +164,37 @@ public class SessionStoreHandler implements Handler<Object, Object> {
         return res;
     }
 
+    /**
+     * ウォームアップの疑似リクエストで、リクエストスコープに格納されているセッションエントリをストア毎にエンコードし、
+     * セッションIDを疑似レスポンスのクッキーに設定する。
+     * <p/>
+     * エンコードしたセッションエントリは破棄する。
+     *
+     * @param session セッション
+     * @param context Servlet実行コンテキスト
+     */
+    private void encodeForWarmup(final Session session, final ServletExecutionContext context) {
+        Map<SessionStore, List<SessionEntry>> entriesByStorage = new HashMap<SessionStore, List<SessionEntry>>();
+        for (Object sessionStoreVar : context.getSessionStoreMap().values()) {
+            if (sessionStoreVar instanceof SessionEntry) {
+                SessionEntry entry = (SessionEntry) sessionStoreVar;
+                List<SessionEntry> entries = entriesByStorage.get(entry.getStorage());
+                if (entries == null) {
+                    entries = new ArrayList<SessionEntry>();
+                    entriesByStorage.put(entry.getStorage(), entries);
+                }
+                entries.add(entry);
+            }
+        }
+        if (entriesByStorage.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<SessionStore, List<SessionEntry>> e : entriesByStorage.entrySet()) {
+            e.getKey().encode(e.getValue());
+        }
+        setSessionTrackingCookie(session, context.getServletResponse());
+    }
+
     /**
      * HttpSessionを無効化する。
      *
@@ -1,12 +1,19 @@
 package nablarch.common.web.validator;
 
 import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import jakarta.servlet.ServletRequest;
 import jakarta.validation.ConstraintViolation;
@@ -20,6 +27,7 @@ import nablarch.core.message.Message;
 import nablarch.core.util.StringUtil;
 import nablarch.core.util.annotation.Published;
 import nablarch.core.validation.ValidationResultMessage;
+import nablarch.core.validation.ee.ConstraintViolationConverter;
 import nablarch.core.validation.ee.ConstraintViolationConverterFactory;
 import nablarch.core.validation.ee.ValidatorUtil;
 import nablarch.fw.web.HttpRequest;
@@ -42,6 +50,12 @@ import nablarch.fw.web.servlet.ServletExecutionContext;
 @Published(tag = "architect")
 public class BeanValidationStrategy implements ValidationStrategy {
 
+    /** パラメータ名とその位置の索引をリクエストスコープに保持する際のキー */
+    private static final String PARAMETER_INDEX_KEY = "nablarch_parameter_position_index";
+
+    /** prefix毎の{@link ConstraintViolationConverter} */
+    private final ConcurrentMap<String, ConstraintViolationConverter> converters = new ConcurrentHashMap<>();
+
     /** バリデーションエラー時にBeanをリクエストスコープにコピーするかどうか */
     private boolean copyBeanToRequestScopeOnError = false;
 
@@ -84,7 +98,7 @@ public class BeanValidationStrategy implements ValidationStrategy {
                 // エラーのとき、リクエストスコープにbeanを設定する
                 context.setRequestScopedVar(annotation.name(), form);
             }
-            List<Message> messages = new ConstraintViolationConverterFactory().create(annotation.prefix()).convert(results);
+            List<Message> messages = getConverter(annotation.prefix()).convert(results);
             throw new ApplicationException(sortMessages(messages, context, annotation));
         }
         return form;
@@ -95,6 +109,10 @@ public class BeanValidationStrategy implements ValidationStrategy {
      * <p>
      * ソートされる順序は、{@link ServletRequest#getParameterNames()}の順となる。
      * {@link ServletRequest#getParameterNames()}に存在しない項目は、メッセージリストの末尾に移動する。
+     * <p>
+     * パラメータ名の位置は索引を作成してリクエストスコープに保持し、
+     * 同一リクエスト内で再度ソートする場合は作成済みの索引を使用する。
+     * ただし、フォワードなどでリクエストパラメータが変更された場合は、索引を作成し直す。
      *
      * @param messages ソート対象のメッセージリスト
      * @param context Servlet実行コンテキスト
@@ -103,48 +121,92 @@ public class BeanValidationStrategy implements ValidationStrategy {
      */
     protected List<Message> sortMessages(
             final List<Message> messages, final ServletExecutionContext context, final InjectForm injectForm) {
+        final Map<String, Integer> parameterIndex = getParameterIndex(context);
+
+        // メッセージ毎の位置を先に求め、比較時には検索しない
+        final int size = messages.size();
+        final long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) getParameterIndex(parameterIndex, messages.get(i)) << 32) | i;
+        }
+        // 位置が同じ場合は元の順序を維持する
+        Arrays.sort(keys);
+
+        final List<Message> sortedMessage = new ArrayList<>(size);
+        for (long key : keys) {
+            sortedMessage.add(messages.get((int) key));
+        }
+        return sortedMessage;
+    }
+
+    /**
+     * パラメータ名とその位置の索引を取得する。
+     * <p>
+     * 索引は作成元のパラメータMapと、作成時のパラメータ名のスナップショットとともにリクエストスコープに保持する。
+     * 保持していない場合や、パラメータMapが保持している索引の作成元と異なる
+     * (別のMapに置き換えられた、もしくはパラメータ名やその順序が変わった)場合は、索引を作成し直す。
+     *
+     * @param context Servlet実行コンテキスト
+     * @return パラメータ名とその位置の索引
+     */
+    private static Map<String, Integer> getParameterIndex(final ServletExecutionContext context) {
         final ServletRequest request = context.getServletRequest()
                                               .getRequest();
-
-        final List<String> parameterNames = Collections.list(request.getParameterNames());
-
-        final List<Message> sortedMessage = new ArrayList<>(messages);
-        sortedMessage.sort((m1, m2) -> {
-            final int index1 = getParameterIndex(parameterNames, m1);
-            final int index2 = getParameterIndex(parameterNames, m2);
-
-            if (index1 < index2) {
-                // m1のほうが小さい場合
-                return -1;
-            } else if (index2 < index1) {
-                // m2のほうが小さい場合
-                return 1;
-            } else {
-                // それ以外は同じと扱う
-                return 0;
+        final Map<String, String[]> parameterMap = request.getParameterMap();
+        ParameterIndex parameterIndex = context.getRequestScopedVar(PARAMETER_INDEX_KEY);
+        if (parameterIndex == null || !parameterIndex.isCreatedFrom(parameterMap)) {
+            final Map<String, Integer> positions = new HashMap<>();
+            final Enumeration<String> parameterNames = request.getParameterNames();
+            int index = 0;
+            while (parameterNames != null && parameterNames.hasMoreElements()) {
+                positions.putIfAbsent(parameterNames.nextElement(), index++);
             }
-        });
-        return sortedMessage;
+            parameterIndex = new ParameterIndex(parameterMap, positions);
+            context.setRequestScopedVar(PARAMETER_INDEX_KEY, parameterIndex);
+        }
+        return parameterIndex.positions;
     }
 
     /**
      * メッセージが持つプロパティ名がパラメータ名の何番目の要素か返す。
      *
-     * @param parameterNames パラメータ名のリスト
+     * @param parameterIndex パラメータ名とその位置の索引
      * @param message メッセージ
      * @return パラメータ名の何番目か(パラメータ名にない場合はプロパティ名を持たない場合は{@link Integer#MAX_VALUE}) 
      */
-    private static int getParameterIndex(final List<String> parameterNames, final Message message) {
+    private static int getParameterIndex(final Map<String, Integer> parameterIndex, final Message message) {
         if (message instanceof ValidationResultMessage) {
-            final int index = parameterNames.indexOf(((ValidationResultMessage) message).getPropertyName());
-            return index == -1 ? Integer.MAX_VALUE : index;
+            final Integer index = parameterIndex.get(((ValidationResultMessage) message).getPropertyName());
+            return index == null ? Integer.MAX_VALUE : index;
         } else {
             return Integer.MAX_VALUE;
         }
     }
 
+    /**
+     * {@link InjectForm}のprefixに対応する{@link ConstraintViolationConverter}を取得する。
+     * <p>
+     * 作成した{@link ConstraintViolationConverter}はprefix毎に保持し、以降のバリデーションで使い回す。
+     *
+     * @param prefix プレフィックス
+     * @return {@link ConstraintViolationConverter}
+     */
+    private ConstraintViolationConverter getConverter(final String prefix) {
+        ConstraintViolationConverter converter = converters.get(prefix);
+        if (converter == null) {
+            converter = new ConstraintViolationConverterFactory().create(prefix);
+            final ConstraintViolationConverter prev = converters.putIfAbsent(prefix, converter);
+            if (prev != null) {
+                converter = prev;
+            }
+        }
+        return converter;
+    }
+
     /**
      * {@link InjectForm}のprefixに指定した文字列を、キーの先頭から削除したMapオブジェクトを返す.<br>
+     * 返却するMapはリクエストパラメータを格納したMapのビューであり、内容はコピーしない。
+     * プレフィックスが指定されない場合は、リクエストパラメータを格納したMapをそのまま返す。
      *
      * @param prefix 項目名から削除するプレフィックス
      * @param reqParamMap リクエストパラメータを格納したMap
@@ -153,21 +215,9 @@ public class BeanValidationStrategy implements ValidationStrategy {
     private Map<String, String[]> getMapWithConvertedKey(String prefix, Map<String, String[]> reqParamMap) {
         if (StringUtil.isNullOrEmpty(prefix)) {
             // プレフィックスが指定されない場合、全てが対象とする
-            return new HashMap<>(reqParamMap);
+            return reqParamMap;
         }
-
-        final String prefixName = prefix + '.';
-        final int prefixLength = prefixName.length();
-        Map<String, String[]> convertedMap = new HashMap<>();
-        for (Map.Entry<String, String[]> entry : reqParamMap.entrySet()) {
-            final String key = entry.getKey();
-            final String[] value = entry.getValue();
-            
-            if (key.startsWith(prefixName)) {
-                convertedMap.put(key.substring(prefixLength), value);
-            }
-        }
-        return convertedMap;
+        return new PrefixedParameterMap(prefix + '.', reqParamMap);
     }
 
     /**
@@ -183,4 +233,178 @@ public class BeanValidationStrategy implements ValidationStrategy {
     public void setFormFactory(BeanValidationFormFactory formFactory) {
         this.formFactory = formFactory;
     }
+
+    /**
+     * プレフィックスで始まるリクエストパラメータのみを、キーからプレフィックスを削除して参照するビュー。
+     */
+    private static final class PrefixedParameterMap extends AbstractMap<String, String[]> {
+
+        /** プレフィックス(末尾の"."を含む) */
+        private final String prefixName;
+
+        /** リクエストパラメータを格納したMap */
+        private final Map<String, String[]> paramMap;
+
+        /** エントリのビュー */
+        private final Set<Entry<String, String[]>> entrySet = new AbstractSet<Entry<String, String[]>>() {
+            @Override
+            public Iterator<Entry<String, String[]>> iterator() {
+                return new EntryIterator(paramMap.entrySet().iterator());
+            }
+
+            @Override
+            public int size() {
+                return countEntries();
+            }
+        };
+
+        /** 要素数(未計算の場合は-1) */
+        private int size = -1;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param prefixName プレフィックス(末尾の"."を含む)
+         * @param paramMap リクエストパラメータを格納したMap
+         */
+        PrefixedParameterMap(String prefixName, Map<String, String[]> paramMap) {
+            this.prefixName = prefixName;
+            this.paramMap = paramMap;
+        }
+
+        @Override
+        public String[] get(Object key) {
+            return key instanceof String ? paramMap.get(prefixName + key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && paramMap.containsKey(prefixName + key);
+        }
+
+        @Override
+        public Set<Entry<String, String[]>> entrySet() {
+            return entrySet;
+        }
+
+        /**
+         * プレフィックスで始まるリクエストパラメータの数を数える。
+         *
+         * @return 要素数
+         */
+        private int countEntries() {
+            if (size < 0) {
+                int count = 0;
+                for (String key : paramMap.keySet()) {
+                    if (key.startsWith(prefixName)) {
+                        count++;
+                    }
+                }
+                size = count;
+            }
+            return size;
+        }
+
+        /**
+         * プレフィックスで始まるエントリのみを返す{@link Iterator}。
+         */
+        private final class EntryIterator implements Iterator<Entry<String, String[]>> {
+
+            /** リクエストパラメータのエントリ */
+            private final Iterator<Entry<String, String[]>> entries;
+
+            /** 次に返すエントリ */
+            private Entry<String, String[]> next;
+
+            /**
+             * コンストラクタ。
+             *
+             * @param entries リクエストパラメータのエントリ
+             */
+            EntryIterator(Iterator<Entry<String, String[]>> entries) {
+                this.entries = entries;
+            }
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && entries.hasNext()) {
+                    Entry<String, String[]> entry = entries.next();
+                    if (entry.getKey().startsWith(prefixName)) {
+                        next = new SimpleImmutableEntry<String, String[]>(
+                                entry.getKey().substring(prefixName.length()), entry.getValue());
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Entry<String, String[]> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Entry<String, String[]> result = next;
+                next = null;
+                return result;
+            }
+        }
+    }
+
+    /**
+     * パラメータ名とその位置の索引。
+     */
+    private static final class ParameterIndex {
+
+        /** 索引の作成元のパラメータMap */
+        private final Map<String, String[]> parameterMap;
+
+        /** 索引の作成時のパラメータMapのキー(パラメータ名のスナップショット) */
+        private final List<String> parameterNames = new ArrayList<>();
+
+        /** パラメータ名とその位置 */
+        private final Map<String, Integer> positions;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param parameterMap 索引の作成元のパラメータMap
+         * @param positions パラメータ名とその位置
+         */
+        private ParameterIndex(final Map<String, String[]> parameterMap, final Map<String, Integer> positions) {
+            this.parameterMap = parameterMap;
+            if (parameterMap != null) {
+                for (String name : parameterMap.keySet()) {
+                    parameterNames.add(name);
+                }
+            }
+            this.positions = positions;
+        }
+
+        /**
+         * 指定されたパラメータMapから作成した索引か判定する。
+         * <p>
+         * 同じMapであっても、索引の作成後にパラメータ名やその順序が変わった場合は{@code false}を返す。
+         * パラメータの値の変更は索引に影響しないため判定に含めない。
+         *
+         * @param parameterMap パラメータMap
+         * @return 指定されたパラメータMapから作成した索引の場合は{@code true}
+         */
+        private boolean isCreatedFrom(final Map<String, String[]> parameterMap) {
+            if (this.parameterMap != parameterMap) {
+                return false;
+            }
+            if (parameterMap == null) {
+                return true;
+            }
+            if (parameterNames.size() != parameterMap.size()) {
+                return false;
+            }
+            final Iterator<String> names = parameterNames.iterator();
+            for (String name : parameterMap.keySet()) {
+                if (!names.hasNext() || !name.equals(names.next())) {
+                    return false;
+                }
+            }
+            return !names.hasNext();
+        }
+    }
 }
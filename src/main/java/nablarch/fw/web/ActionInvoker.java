@@ -0,0 +1,261 @@
+package nablarch.fw.web;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.Interceptor;
+
+/**
+ * 委譲先メソッドを、リフレクションを使用せずに呼び出すクラス。
+ * <pre>
+ * 委譲先メソッド毎に以下を1度だけ作成し、以降のリクエストで使い回す。
+ *   - 委譲先メソッドを直接呼び出す{@link Invoker}
+ *     委譲先メソッドとそのクラスが公開されている場合は{@link LambdaMetafactory}で生成し、
+ *     それ以外の場合は{@link MethodHandle}を使用する。
+ *   - 委譲先メソッドに付与されたインターセプタを{@link Interceptor.Factory}で組み立てたハンドラ
+ * インターセプタを組み立てたハンドラは全リクエストで共有するため、
+ * インターセプタの実装はリクエスト毎の状態をフィールドに保持してはならない。
+ * </pre>
+ */
+final class ActionInvoker {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(ActionInvoker.class);
+
+    /**
+     * 委譲先メソッドの宣言クラス毎の、委譲先メソッドと{@link ActionInvoker}の対応表。
+     * <p/>
+     * 宣言クラスに紐付けて保持するため、アプリケーションのクラスローダが破棄された場合は、
+     * 作成した{@link ActionInvoker}も合わせて破棄される。
+     */
+    private static final ClassValue<ConcurrentMap<Method, ActionInvoker>> INVOKERS =
+            new ClassValue<ConcurrentMap<Method, ActionInvoker>>() {
+                @Override
+                protected ConcurrentMap<Method, ActionInvoker> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<Method, ActionInvoker>();
+                }
+            };
+
+    /** 直接呼び出しができない委譲先メソッドを表すオブジェクト */
+    private static final ActionInvoker UNSUPPORTED = new ActionInvoker();
+
+    /** 委譲先メソッドの型 */
+    private static final MethodType INVOKE_TYPE =
+            MethodType.methodType(HttpResponse.class, Object.class, HttpRequest.class, ExecutionContext.class);
+
+    /** インターセプタの処理中に呼び出される委譲先オブジェクト */
+    private static final ThreadLocal<Object> CURRENT_ACTION = new ThreadLocal<Object>();
+
+    /**
+     * 委譲先メソッドを呼び出すインタフェース。
+     */
+    public interface Invoker {
+
+        /**
+         * 委譲先メソッドを呼び出す。
+         * @param action 委譲先オブジェクト
+         * @param req HTTPリクエスト
+         * @param ctx 実行コンテキスト
+         * @return HTTPレスポンス
+         * @throws Throwable 委譲先メソッドで発生した例外
+         */
+        HttpResponse invoke(Object action, HttpRequest req, ExecutionContext ctx) throws Throwable;
+    }
+
+    /** 委譲先メソッドを直接呼び出す{@link Invoker} */
+    private final Invoker invoker;
+
+    /** インターセプタを組み立てたハンドラ(インターセプタがない場合は{@code null}) */
+    private final Handler<HttpRequest, HttpResponse> interceptors;
+
+    /**
+     * 直接呼び出しができない委譲先メソッドを表すオブジェクトを生成する。
+     */
+    private ActionInvoker() {
+        invoker = null;
+        interceptors = null;
+    }
+
+    /**
+     * コンストラクタ。
+     * @param invoker 委譲先メソッドを直接呼び出す{@link Invoker}
+     * @param method 委譲先メソッド
+     */
+    private ActionInvoker(final Invoker invoker, Method method) {
+        this.invoker = invoker;
+        Handler<HttpRequest, HttpResponse> action = new Handler<HttpRequest, HttpResponse>() {
+            @Override
+            public HttpResponse handle(HttpRequest req, ExecutionContext ctx) {
+                return invoke(invoker, CURRENT_ACTION.get(), req, ctx);
+            }
+        };
+        Handler<HttpRequest, HttpResponse> wrapped = Interceptor.Factory.wrap(action, method.getAnnotations());
+        this.interceptors = (wrapped == action) ? null : wrapped;
+    }
+
+    /**
+     * 委譲先メソッドに対応する{@link ActionInvoker}を取得する。
+     * <p/>
+     * 初回の呼び出し時に作成し、以降は同じオブジェクトを返す。
+     * @param method 委譲先メソッド
+     * @return {@link ActionInvoker}(直接呼び出しができない場合は{@code null})
+     */
+    static ActionInvoker of(Method method) {
+        final ConcurrentMap<Method, ActionInvoker> invokers = INVOKERS.get(method.getDeclaringClass());
+        ActionInvoker result = invokers.get(method);
+        if (result == null) {
+            result = create(method);
+            ActionInvoker prev = invokers.putIfAbsent(method, result);
+            if (prev != null) {
+                result = prev;
+            }
+        }
+        return result == UNSUPPORTED ? null : result;
+    }
+
+    /**
+     * 委譲先メソッドに対応する{@link ActionInvoker}を作成する。
+     * @param method 委譲先メソッド
+     * @return {@link ActionInvoker}(直接呼び出しができない場合は{@link #UNSUPPORTED})
+     */
+    private static ActionInvoker create(Method method) {
+        if (Modifier.isStatic(method.getModifiers())) {
+            return UNSUPPORTED;
+        }
+        Invoker invoker;
+        try {
+            invoker = isLinkable(method) ? createLambda(method) : createMethodHandle(method);
+        } catch (Throwable e) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.logDebug("method can not be invoked directly. use reflection instead. method = [" + method + "]", e);
+            }
+            return UNSUPPORTED;
+        }
+        return new ActionInvoker(invoker, method);
+    }
+
+    /**
+     * 委譲先メソッドを直接呼び出すクラスを生成できるか判定する。
+     * <p/>
+     * 生成したクラスは本クラスと同じクラスローダで定義されるため、
+     * 委譲先メソッドとその宣言クラスが公開されており、本クラスのクラスローダから参照できる必要がある。
+     * @param method 委譲先メソッド
+     * @return 生成できる場合は{@code true}
+     */
+    private static boolean isLinkable(Method method) {
+        if (!Modifier.isPublic(method.getModifiers())
+                || method.getReturnType() != HttpResponse.class
+                || method.getParameterTypes()[0] != HttpRequest.class
+                || method.getParameterTypes()[1] != ExecutionContext.class) {
+            return false;
+        }
+        Class<?> declaringClass = method.getDeclaringClass();
+        for (Class<?> type = declaringClass; type != null; type = type.getEnclosingClass()) {
+            if (!Modifier.isPublic(type.getModifiers())) {
+                return false;
+            }
+        }
+        try {
+            return Class.forName(declaringClass.getName(), false, ActionInvoker.class.getClassLoader()) == declaringClass;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * {@link LambdaMetafactory}で、委譲先メソッドを直接呼び出す{@link Invoker}を生成する。
+     * @param method 委譲先メソッド
+     * @return {@link Invoker}
+     * @throws Throwable 生成に失敗した場合
+     */
+    private static Invoker createLambda(Method method) throws Throwable {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle target = lookup.unreflect(method);
+        CallSite site = LambdaMetafactory.metafactory(
+                lookup,
+                "invoke",
+                MethodType.methodType(Invoker.class),
+                INVOKE_TYPE,
+                target,
+                target.type());
+        return (Invoker) site.getTarget().invokeExact();
+    }
+
+    /**
+     * {@link MethodHandle}で委譲先メソッドを呼び出す{@link Invoker}を生成する。
+     * @param method 委譲先メソッド
+     * @return {@link Invoker}
+     * @throws Throwable 生成に失敗した場合
+     */
+    private static Invoker createMethodHandle(Method method) throws Throwable {
+        method.setAccessible(true);
+        final MethodHandle target = MethodHandles.lookup().unreflect(method).asType(INVOKE_TYPE);
+        return new Invoker() {
+            @Override
+            public HttpResponse invoke(Object action, HttpRequest req, ExecutionContext ctx) throws Throwable {
+                return (HttpResponse) target.invokeExact(action, req, ctx);
+            }
+        };
+    }
+
+    /**
+     * 委譲先メソッドを呼び出す。
+     * <p/>
+     * 委譲先メソッドにインターセプタが付与されている場合は、インターセプタを経由して呼び出す。
+     * @param action 委譲先オブジェクト
+     * @param req HTTPリクエスト
+     * @param ctx 実行コンテキスト
+     * @return HTTPレスポンス
+     */
+    HttpResponse handle(Object action, HttpRequest req, ExecutionContext ctx) {
+        if (interceptors == null) {
+            return invoke(invoker, action, req, ctx);
+        }
+        // インターセプタから内部フォワードなどで再帰的に呼ばれる場合に備え、呼び出し前の値を復元する
+        Object prev = CURRENT_ACTION.get();
+        CURRENT_ACTION.set(action);
+        try {
+            return interceptors.handle(req, ctx);
+        } finally {
+            if (prev == null) {
+                CURRENT_ACTION.remove();
+            } else {
+                CURRENT_ACTION.set(prev);
+            }
+        }
+    }
+
+    /**
+     * {@link Invoker}で委譲先メソッドを呼び出す。
+     * <p/>
+     * 委譲先メソッドで発生した実行時例外とエラーはそのまま送出し、
+     * それ以外の例外は{@link RuntimeException}でラップして送出する。
+     * @param invoker {@link Invoker}
+     * @param action 委譲先オブジェクト
+     * @param req HTTPリクエスト
+     * @param ctx 実行コンテキスト
+     * @return HTTPレスポンス
+     */
+    private static HttpResponse invoke(Invoker invoker, Object action, HttpRequest req, ExecutionContext ctx) {
+        try {
+            return invoker.invoke(action, req, ctx);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
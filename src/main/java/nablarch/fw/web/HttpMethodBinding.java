@@ -1,6 +1,9 @@
 package nablarch.fw.web;
 
 import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -40,18 +43,80 @@ extends MethodBinding<HttpRequest, HttpResponse> implements HttpRequestHandler {
      * HttpMethodBindingのファクトリクラス
      */
     public static class Binder implements MethodBinder<HttpRequest, HttpResponse> {
+
+        /** 委譲先メソッドを直接呼び出すか否か */
+        private boolean directInvocation = false;
+
         /** {@inheritDoc} */
         public HandlerWrapper<HttpRequest, HttpResponse> bind(Object delegate) {
-            return new HttpMethodBinding(delegate);
+            return new HttpMethodBinding(delegate, directInvocation);
+        }
+
+        /**
+         * 委譲先メソッドをリフレクションを使用せずに直接呼び出すか否かを設定する。
+         * <p/>
+         * デフォルトは{@code false}(リフレクションで呼び出す)。
+         * 詳細は{@link HttpMethodBinding#HttpMethodBinding(Object, boolean)}を参照。
+         * @param directInvocation 直接呼び出す場合は{@code true}
+         */
+        public void setDirectInvocation(boolean directInvocation) {
+            this.directInvocation = directInvocation;
         }
     }
 
+    /** 委譲先クラス毎の{@link DispatchIndex} */
+    private static final ClassValue<AtomicReference<DispatchIndex>> DISPATCH_INDEXES =
+            new ClassValue<AtomicReference<DispatchIndex>>() {
+                @Override
+                protected AtomicReference<DispatchIndex> computeValue(Class<?> type) {
+                    return new AtomicReference<DispatchIndex>();
+                }
+            };
+
+    /**
+     * {@link #invokeDirectly(HttpRequest, ExecutionContext)}で解決済みの委譲先メソッド。
+     * <p/>
+     * リフレクションでの呼び出しに処理を委譲する際に、委譲先メソッドを再度検索しないために使用する。
+     */
+    private static final ThreadLocal<Object> RESOLVED_METHOD = new ThreadLocal<Object>();
+
+    /** {@link #RESOLVED_METHOD}に設定する、委譲先メソッドが存在しなかったことを表すオブジェクト */
+    private static final Object METHOD_NOT_FOUND = new Object();
+
+    /** 委譲先オブジェクト */
+    private final Object delegate;
+
+    /** 委譲先クラス */
+    private final Class<?> delegateClass;
+
+    /** 委譲先メソッドを直接呼び出すか否か */
+    private final boolean directInvocation;
+
     /**
      * 指定されたオブジェクトに処理を委譲するディスパッチャを作成する。
      * @param delegate ディスパッチの対象となるオブジェクト
      */
     public HttpMethodBinding(Object delegate) {
+        this(delegate, false);
+    }
+
+    /**
+     * 指定されたオブジェクトに処理を委譲するディスパッチャを作成する。
+     * <pre>
+     * directInvocationに{@code true}を指定した場合、委譲先メソッドをリフレクションを使用せずに呼び出す。
+     * 委譲先メソッド毎に、メソッドを直接呼び出すクラスと、メソッドに付与されたインターセプタを
+     * 組み立てたハンドラを初回に作成し、以降のリクエストで使い回す。
+     * このため、インターセプタの実装はリクエスト毎の状態をフィールドに保持してはならない。
+     * 直接呼び出すことができない委譲先メソッドの場合は、リフレクションで呼び出す。
+     * </pre>
+     * @param delegate ディスパッチの対象となるオブジェクト
+     * @param directInvocation 委譲先メソッドを直接呼び出す場合は{@code true}
+     */
+    public HttpMethodBinding(Object delegate, boolean directInvocation) {
         super(delegate);
+        this.delegate = delegate;
+        this.delegateClass = delegate.getClass();
+        this.directInvocation = directInvocation;
     }
     
     /**
@@ -87,39 +152,369 @@ extends MethodBinding<HttpRequest, HttpResponse> implements HttpRequestHandler {
      *    HTTP/1.1 404 Not Found
      *    Content-Type: text/plain
      *    Not Found: /foo/bar/dynamic_page.jsp
+     *
+     * 委譲先メソッドは、委譲先クラス毎に初回に作成する索引から、
+     * リクエストURIのリソース名を文字列に切り出さずに検索する。
+     * ただし、本クラスのサブクラスの場合や、HTTPメソッド名もしくはリソース名に
+     * ASCII以外の文字が含まれる場合は、索引を使用せずに都度メソッド名を組み立てて検索する。
      * </pre>
      * @param req HTTPリクエスト
      * @param ctx 実行コンテキスト
      * @return 委譲先メソッド
      */
     protected Method getMethodBoundTo(HttpRequest req, ExecutionContext ctx) {
+        final Object resolved = RESOLVED_METHOD.get();
+        if (resolved != null) {
+            // 解決済みの委譲先メソッドは一度だけ使用する
+            RESOLVED_METHOD.remove();
+            return resolved == METHOD_NOT_FOUND ? null : (Method) resolved;
+        }
+        final String httpMethod = req.getMethod();
+        final String path = req.getRequestPath();
         Method result;
-        Matcher m = RESOURCE_NAME_IN_URI.matcher(req.getRequestPath());
+        final DispatchIndex index = getDispatchIndex();
+        final int end = resourceNameEnd(path);
+        final int start = resourceNameStart(path, end);
+        if (index != null && DispatchIndex.isAscii(httpMethod, 0, httpMethod.length())
+                && DispatchIndex.isAscii(path, start, end)) {
+            result = index.find(httpMethod, path, start, end);
+            if (result == null && DEV_LOGGER.isDebugEnabled()) {
+                logDispatching(req, ctx, null, buildMethodName(httpMethod, path).replaceFirst("^get|^post", "do"));
+            }
+        } else {
+            String methodName = buildMethodName(httpMethod, path);
+            result = getHandleMethod(methodName);
+            if (result == null) {
+                methodName = methodName.replaceFirst("^get|^post", "do");
+                result = getHandleMethod(methodName);
+            }
+            if (result == null && DEV_LOGGER.isDebugEnabled()) {
+                logDispatching(req, ctx, null, methodName);
+            }
+        }
+        if (result != null && DEV_LOGGER.isDebugEnabled()) {
+            logDispatching(req, ctx, result, null);
+        }
+        return result;
+    }
+
+    /**
+     * HTTPメソッド名とリクエストURIのリソース名から、委譲先メソッド名を組み立てる。
+     * <p/>
+     * 委譲先メソッドが見つからなかった場合は、先頭の"get"もしくは"post"を"do"に置き換えて再検索する。
+     * @param httpMethod HTTPメソッド名
+     * @param path リクエストURI
+     * @return 委譲先メソッド名
+     */
+    private static String buildMethodName(String httpMethod, String path) {
+        Matcher m = RESOURCE_NAME_IN_URI.matcher(path);
         String resourceName = m.find() ? m.group(1)
                             : "";
-        String methodName = (req.getMethod() + resourceName)
-                            .toLowerCase()
-                            .replaceAll("[^0-9a-zA-Z]", "")
-                            .trim();
-        result = getHandleMethod(methodName);
-        if (result == null) {
-            methodName = methodName.replaceFirst("^get|^post", "do");
-            result = getHandleMethod(methodName);
+        return (httpMethod + resourceName)
+                .toLowerCase()
+                .replaceAll("[^0-9a-zA-Z]", "")
+                .trim();
+    }
+
+    /**
+     * 委譲先メソッドの決定結果を開発ログに出力する。
+     * @param req HTTPリクエスト
+     * @param ctx 実行コンテキスト
+     * @param result 委譲先メソッド(見つからなかった場合は{@code null})
+     * @param methodName 委譲先メソッド名(見つかった場合は{@code null})
+     */
+    private void logDispatching(HttpRequest req, ExecutionContext ctx, Method result, String methodName) {
+        String msg;
+        String delegateClassName = getDelegates(req, ctx).get(0).getClass().getName();
+        if (result != null) {
+            msg = Builder.concat("**** DISPATCHING METHOD **** method = [", delegateClassName, "#", result.getName(), "]");
+        } else {
+            msg = Builder.concat("**** DISPATCHING METHOD **** method not found. class = [", delegateClassName, "],",
+                                 " method signature = [HttpResponse ", methodName, "(HttpRequest, ExecutionContext)]");
         }
-        
-        if (DEV_LOGGER.isDebugEnabled()) {
-            String msg;
-            String delegateClassName = getDelegates(req, ctx).get(0).getClass().getName();
-            if (result != null) {
-                msg = Builder.concat("**** DISPATCHING METHOD **** method = [", delegateClassName, "#", result.getName(), "]");
-            } else {
-                msg = Builder.concat("**** DISPATCHING METHOD **** method not found. class = [", delegateClassName, "],",
-                                     " method signature = [HttpResponse ", methodName, "(HttpRequest, ExecutionContext)]");
+        DEV_LOGGER.logDebug(msg);
+    }
+
+    /**
+     * リクエストURIのリソース名の終了位置を取得する。
+     * <p/>
+     * 末尾の"/"は1つだけ無視する。
+     * @param path リクエストURI
+     * @return リソース名の終了位置
+     */
+    private static int resourceNameEnd(String path) {
+        int end = path.length();
+        return (end > 0 && path.charAt(end - 1) == '/') ? end - 1 : end;
+    }
+
+    /**
+     * リクエストURIのリソース名の開始位置を取得する。
+     * <p/>
+     * リソース名の直前に"/"が存在しない場合は、リソース名は空となる。
+     * @param path リクエストURI
+     * @param end リソース名の終了位置
+     * @return リソース名の開始位置
+     */
+    private static int resourceNameStart(String path, int end) {
+        int slash = path.lastIndexOf('/', end - 1);
+        return slash < 0 ? end : slash + 1;
+    }
+
+    /**
+     * 委譲先クラスの{@link DispatchIndex}を取得する。
+     * <p/>
+     * サブクラスでは{@link #getHandleMethod(String)}の動作が変更されている可能性があるため、索引を使用しない。
+     * @return {@link DispatchIndex}(使用しない場合は{@code null})
+     */
+    private DispatchIndex getDispatchIndex() {
+        if (getClass() != HttpMethodBinding.class) {
+            return null;
+        }
+        AtomicReference<DispatchIndex> ref = DISPATCH_INDEXES.get(delegateClass);
+        DispatchIndex index = ref.get();
+        if (index == null) {
+            index = createDispatchIndex();
+            ref.compareAndSet(null, index);
+        }
+        return index;
+    }
+
+    /**
+     * 委譲先クラスのメソッドから{@link DispatchIndex}を作成する。
+     * @return {@link DispatchIndex}
+     */
+    private DispatchIndex createDispatchIndex() {
+        Map<String, Method> methods = new LinkedHashMap<String, Method>();
+        for (Class<?> type = delegateClass; type != null; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                addHandleMethod(methods, method.getName());
             }
-            DEV_LOGGER.logDebug(msg);
         }
-        
-        return result;
+        for (Method method : delegateClass.getMethods()) {
+            addHandleMethod(methods, method.getName());
+        }
+        Map<String, Method> aliases = new LinkedHashMap<String, Method>();
+        for (Map.Entry<String, Method> entry : methods.entrySet()) {
+            String name = entry.getKey();
+            if (name.startsWith("do")) {
+                // "get"もしくは"post"で始まるメソッドが見つからなかった場合の代替
+                aliases.put("get" + name.substring(2), entry.getValue());
+                aliases.put("post" + name.substring(2), entry.getValue());
+            }
+        }
+        return new DispatchIndex(methods, aliases);
+    }
+
+    /**
+     * メソッド名に対応する委譲先メソッドが存在する場合、索引に追加する。
+     * @param methods 索引
+     * @param name メソッド名
+     */
+    private void addHandleMethod(Map<String, Method> methods, String name) {
+        String key = name.toLowerCase().replaceAll("[^0-9a-zA-Z]", "");
+        if (!methods.containsKey(key)) {
+            Method method = getHandleMethod(key);
+            if (method != null) {
+                methods.put(key, method);
+            }
+        }
+    }
+
+    /**
+     * 正規化したメソッド名から委譲先メソッドを検索する索引。
+     * <pre>
+     * 正規化したメソッド名とは、メソッド名を小文字に変換し、英数字以外を除いたものである。
+     * HTTPメソッド名とリクエストURIのリソース名を連結、正規化した文字列を組み立てずに、
+     * 元の文字列を走査しながらハッシュ値の計算と比較を行う。
+     * </pre>
+     */
+    private static final class DispatchIndex {
+
+        /** 正規化したメソッド名 */
+        private final String[] keys;
+
+        /** 委譲先メソッド */
+        private final Method[] methods;
+
+        /** 代替となる正規化したメソッド名("do"で始まるメソッドを"get"もしくは"post"で始まる名前で登録したもの) */
+        private final String[] aliasKeys;
+
+        /** 代替となる委譲先メソッド */
+        private final Method[] aliasMethods;
+
+        /**
+         * コンストラクタ。
+         * @param methods 正規化したメソッド名と委譲先メソッド
+         * @param aliases 代替となる正規化したメソッド名と委譲先メソッド
+         */
+        DispatchIndex(Map<String, Method> methods, Map<String, Method> aliases) {
+            this.keys = new String[tableSize(methods.size())];
+            this.methods = new Method[keys.length];
+            for (Map.Entry<String, Method> entry : methods.entrySet()) {
+                put(keys, this.methods, entry.getKey(), entry.getValue());
+            }
+            this.aliasKeys = new String[tableSize(aliases.size())];
+            this.aliasMethods = new Method[aliasKeys.length];
+            for (Map.Entry<String, Method> entry : aliases.entrySet()) {
+                put(aliasKeys, aliasMethods, entry.getKey(), entry.getValue());
+            }
+        }
+
+        /**
+         * 要素数に対するハッシュテーブルのサイズを取得する。
+         * @param size 要素数
+         * @return ハッシュテーブルのサイズ(2のべき乗)
+         */
+        private static int tableSize(int size) {
+            return Integer.highestOneBit(Math.max(size, 1) * 2) * 2;
+        }
+
+        /**
+         * ハッシュテーブルに登録する。
+         * @param keys 正規化したメソッド名のテーブル
+         * @param values 委譲先メソッドのテーブル
+         * @param key 正規化したメソッド名
+         * @param value 委譲先メソッド
+         */
+        private static void put(String[] keys, Method[] values, String key, Method value) {
+            int mask = keys.length - 1;
+            int i = key.hashCode() & mask;
+            while (keys[i] != null) {
+                if (keys[i].equals(key)) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        /**
+         * HTTPメソッド名とリクエストURIのリソース名に対応する委譲先メソッドを検索する。
+         * @param httpMethod HTTPメソッド名
+         * @param path リクエストURI
+         * @param start リソース名の開始位置
+         * @param end リソース名の終了位置
+         * @return 委譲先メソッド(存在しない場合は{@code null})
+         */
+        Method find(String httpMethod, String path, int start, int end) {
+            int hash = hash(path, start, end, hash(httpMethod, 0, httpMethod.length(), 0));
+            Method result = find(keys, methods, hash, httpMethod, path, start, end);
+            return result != null ? result : find(aliasKeys, aliasMethods, hash, httpMethod, path, start, end);
+        }
+
+        /**
+         * ハッシュテーブルから委譲先メソッドを検索する。
+         * @param keys 正規化したメソッド名のテーブル
+         * @param values 委譲先メソッドのテーブル
+         * @param hash 正規化したメソッド名のハッシュ値
+         * @param httpMethod HTTPメソッド名
+         * @param path リクエストURI
+         * @param start リソース名の開始位置
+         * @param end リソース名の終了位置
+         * @return 委譲先メソッド(存在しない場合は{@code null})
+         */
+        private static Method find(String[] keys, Method[] values, int hash,
+                                   String httpMethod, String path, int start, int end) {
+            int mask = keys.length - 1;
+            for (int i = hash & mask; keys[i] != null; i = (i + 1) & mask) {
+                String key = keys[i];
+                if (key.hashCode() == hash && matches(key, httpMethod, path, start, end)) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 文字列の範囲内の英数字を小文字に変換して、ハッシュ値を計算する。
+         * <p/>
+         * 計算結果は、正規化した文字列の{@link String#hashCode()}と一致する。
+         * @param s 文字列
+         * @param start 開始位置
+         * @param end 終了位置
+         * @param hash 直前までのハッシュ値
+         * @return ハッシュ値
+         */
+        private static int hash(String s, int start, int end, int hash) {
+            for (int i = start; i < end; i++) {
+                char c = s.charAt(i);
+                if (isAlphanumeric(c)) {
+                    hash = 31 * hash + toLowerCase(c);
+                }
+            }
+            return hash;
+        }
+
+        /**
+         * 正規化したメソッド名が、HTTPメソッド名とリソース名を正規化した文字列と一致するか否か。
+         * @param key 正規化したメソッド名
+         * @param httpMethod HTTPメソッド名
+         * @param path リクエストURI
+         * @param start リソース名の開始位置
+         * @param end リソース名の終了位置
+         * @return 一致する場合は{@code true}
+         */
+        private static boolean matches(String key, String httpMethod, String path, int start, int end) {
+            int pos = matches(key, 0, httpMethod, 0, httpMethod.length());
+            return pos >= 0 && matches(key, pos, path, start, end) == key.length();
+        }
+
+        /**
+         * 正規化したメソッド名の指定位置以降が、文字列の範囲内を正規化した文字列で始まるか否か。
+         * @param key 正規化したメソッド名
+         * @param pos 正規化したメソッド名の比較開始位置
+         * @param s 文字列
+         * @param start 開始位置
+         * @param end 終了位置
+         * @return 一致した場合は正規化したメソッド名の比較終了位置、一致しない場合は-1
+         */
+        private static int matches(String key, int pos, String s, int start, int end) {
+            for (int i = start; i < end; i++) {
+                char c = s.charAt(i);
+                if (isAlphanumeric(c)) {
+                    if (pos >= key.length() || key.charAt(pos) != toLowerCase(c)) {
+                        return -1;
+                    }
+                    pos++;
+                }
+            }
+            return pos;
+        }
+
+        /**
+         * 文字列の範囲内がASCII文字のみで構成されるか否か。
+         * @param s 文字列
+         * @param start 開始位置
+         * @param end 終了位置
+         * @return ASCII文字のみの場合は{@code true}
+         */
+        static boolean isAscii(String s, int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (s.charAt(i) >= 0x80) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 英数字か否か。
+         * @param c 文字
+         * @return 英数字の場合は{@code true}
+         */
+        private static boolean isAlphanumeric(char c) {
+            return ('0' <= c && c <= '9') || ('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z');
+        }
+
+        /**
+         * 英大文字を小文字に変換する。
+         * @param c 英数字
+         * @return 変換後の文字
+         */
+        private static char toLowerCase(char c) {
+            return ('A' <= c && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+        }
     }
 
     /** URI内のリソース名に対応する正規表現 */
@@ -138,7 +533,8 @@ extends MethodBinding<HttpRequest, HttpResponse> implements HttpRequestHandler {
                     Logger.LS, "\t", "session_scope = [", LogUtil.dumpMap(ctx.getSessionScopeMap(), separator, DEV_LOG_EXCLUDES), "]"));
         }
         try {
-            return super.handle(req, ctx);
+            return directInvocation ? invokeDirectly(req, ctx)
+                                    : super.handle(req, ctx);
             
         } finally {
             if (DEV_LOGGER.isDebugEnabled()) {
@@ -151,4 +547,28 @@ extends MethodBinding<HttpRequest, HttpResponse> implements HttpRequestHandler {
             }
         }
     }
+
+    /**
+     * 委譲先メソッドをリフレクションを使用せずに呼び出す。
+     * <p/>
+     * 委譲先メソッドが存在しない場合や、直接呼び出すことができない場合は、
+     * {@link MethodBinding#handle(Object, ExecutionContext)}に処理を委譲する。
+     * その際は解決済みの委譲先メソッドを引き継ぎ、再度検索しない。
+     * @param req HTTPリクエスト
+     * @param ctx 実行コンテキスト
+     * @return HTTPレスポンス
+     */
+    private HttpResponse invokeDirectly(HttpRequest req, ExecutionContext ctx) {
+        Method method = getMethodBoundTo(req, ctx);
+        ActionInvoker invoker = (method != null) ? ActionInvoker.of(method) : null;
+        if (invoker == null) {
+            RESOLVED_METHOD.set(method != null ? method : METHOD_NOT_FOUND);
+            try {
+                return super.handle(req, ctx);
+            } finally {
+                RESOLVED_METHOD.remove();
+            }
+        }
+        return invoker.handle(delegate, req, ctx);
+    }
 }
@@ -6,6 +6,7 @@ import nablarch.core.validation.Validatable;
 import nablarch.fw.Request;
 import nablarch.fw.web.upload.PartInfo;
 import nablarch.fw.web.useragent.UserAgent;
+import nablarch.fw.web.useragent.UserAgentCache;
 import nablarch.fw.web.useragent.UserAgentParser;
 
 import java.util.Collections;
@@ -28,6 +29,21 @@ public abstract class HttpRequest implements Request<String[]>, Validatable<Stri
         }
     };
 
+    /** 解析済みの{@link UserAgent} */
+    private static final UserAgentCache<UserAgent> USER_AGENT_CACHE = new UserAgentCache<UserAgent>();
+
+    /** {@link #USER_AGENT_CACHE}の解析に使用した{@link UserAgentParser} */
+    private static volatile UserAgentParser cachedParser = null;
+
+    /** キャッシュに存在しないUser-Agent文字列を{@link #cachedParser}で解析する{@link UserAgentCache.Loader} */
+    private static final UserAgentCache.Loader<UserAgent> USER_AGENT_LOADER = new UserAgentCache.Loader<UserAgent>() {
+        @Override
+        public UserAgent load(final String userAgent) {
+            final UserAgentParser parser = cachedParser;
+            return (parser != null ? parser : getUserAgentParser()).parse(userAgent);
+        }
+    };
+
     /** HTTPリクエストURI */
     private String requestUri;
 
@@ -231,6 +247,10 @@ public abstract class HttpRequest implements Request<String[]>, Validatable<Stri
      * <br/>
      * パーサーが取得できない場合は、
      * 全ての項目にデフォルト値が設定された{@link UserAgent}オブジェクトが返却される。
+     * <p/>
+     * 解析結果はUser-Agent文字列毎にキャッシュされ、呼び出し毎に{@link UserAgent#copy()}で複製したオブジェクトが返却される。
+     * パーサーは呼び出し毎に{@link SystemRepository}から取得し、キャッシュの解析に使用したパーサーと異なる場合は
+     * キャッシュを破棄してから解析する。
      *
      * @param <UA> userAgentの型
      * @return UserAgentオブジェクト
@@ -239,7 +259,29 @@ public abstract class HttpRequest implements Request<String[]>, Validatable<Stri
     public <UA extends UserAgent> UA getUserAgent() {
         final String userAgentText = getHeader("User-Agent");
         final UserAgentParser parser = getUserAgentParser();
-        return (UA) parser.parse(userAgentText);
+        if (parser != cachedParser) {
+            // パーサーが変更された場合は、変更前のパーサーによる解析結果を破棄する
+            synchronized (USER_AGENT_CACHE) {
+                if (parser != cachedParser) {
+                    USER_AGENT_CACHE.clear();
+                    cachedParser = parser;
+                }
+            }
+        }
+        final UserAgent parsed = USER_AGENT_CACHE.get(userAgentText, USER_AGENT_LOADER);
+        return parsed != null ? (UA) parsed.copy() : null;
+    }
+
+    /**
+     * 解析済みの{@link UserAgent}を保持するキャッシュを取得する。
+     * <p/>
+     * キャッシュヒット率などの監視に使用する。
+     *
+     * @return 解析済みの{@link UserAgent}を保持するキャッシュ
+     */
+    @Published(tag = "architect")
+    public static UserAgentCache<UserAgent> getUserAgentCache() {
+        return USER_AGENT_CACHE;
     }
 
     /**
@@ -247,7 +289,7 @@ public abstract class HttpRequest implements Request<String[]>, Validatable<Stri
      *
      * @return {@link UserAgentParser}実装クラスのインスタンス
      */
-    private UserAgentParser getUserAgentParser() {
+    private static UserAgentParser getUserAgentParser() {
         final UserAgentParser registered = SystemRepository.get("userAgentParser");
         return registered != null ? registered : DEFAULT_USER_AGENT_PARSER;
     }
@@ -166,6 +166,9 @@ public class HttpResponse implements Result {
         /** Expectヘッダによる拡張が失敗。 */
         EXPECTATION_FAILED(417),
 
+        /** リクエスト過多:一定時間内のリクエスト数が上限を超えた。 */
+        TOO_MANY_REQUESTS(429),
+
         /** システムエラー:システム上の問題が発生したため処理を継続できない。 */
         INTERNAL_SERVER_ERROR(500),
 
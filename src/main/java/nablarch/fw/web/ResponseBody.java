@@ -39,6 +39,10 @@ import nablarch.core.util.FileUtil;
  * {@link nablarch.fw.web.handler.HttpResponseHandler} が {@link ResponseBody#cleanup()} を呼ぶことで
  * 自動的に削除される。
  *
+ * 一時ファイルに書き込むサイズは{@link TempStorageManager}で管理される。
+ * 一時ファイルの上限を超える場合に、{@link TempStorageManager#setOverflowPolicy(String)}にMEMORYが
+ * 設定されていれば、一時ファイルを使用せずにヒープ上のバッファを拡張する。
+ *
  * @see    HttpResponse
  * @see    nablarch.fw.web.handler.HttpResponseHandler
  * @author Iwauo Tajima <iwauo@tis.co.jp>
@@ -83,6 +87,9 @@ public class ResponseBody {
     /** 一時ファイルへの出力チャネル */
     private FileChannel tempFileWriteChannel = null;
 
+    /** 一時ファイルのサイズを管理する{@link TempStorageManager.Lease} */
+    private TempStorageManager.Lease tempFileLease = null;
+
     /** 削除しなければならない一時ファイル */
     private static final ThreadLocal<Collection<File>>
     TEMP_FILE_HOLDER = new ThreadLocal<Collection<File>>() {
@@ -91,6 +98,14 @@ public class ResponseBody {
         }
     };
 
+    /** 解放しなければならない一時ファイルの{@link TempStorageManager.Lease} */
+    private static final ThreadLocal<Collection<TempStorageManager.Lease>>
+    LEASE_HOLDER = new ThreadLocal<Collection<TempStorageManager.Lease>>() {
+        @Override protected Collection<TempStorageManager.Lease> initialValue() {
+            return new ArrayList<TempStorageManager.Lease>();
+        }
+    };
+
     /** 閉じなければならない入力ストリーム */
     private static final ThreadLocal<Collection<Closeable>>
     STREAM_HOLDER = new ThreadLocal<Collection<Closeable>>() {
@@ -189,7 +204,8 @@ public class ResponseBody {
 
         int newLimit = buffer.limit() + bytes.remaining();
 
-        if (newLimit > CONF.getBufferLimitSizeKb() * 1024) {
+        if (newLimit > CONF.getBufferLimitSizeKb() * 1024
+                && acquireTempStorage(bufferPosition + bytes.remaining())) {
             writeToFile(bytes);
         } else {
             writeToHeapBuffer(bytes);
@@ -197,6 +213,24 @@ public class ResponseBody {
         return this;
     }
 
+    /**
+     * 一時ファイルに書き込むサイズを確保する。
+     * <pre>
+     * 一時ファイルを作成する前に確保することで、上限を超える場合に一時ファイルを作成しないようにする。
+     * {@link TempStorageManager.Lease}はボディ毎に1つを使い回すため、上限を超えてヒープ上に保持した回数は
+     * ボディ毎に1回だけ数えられる。
+     * </pre>
+     * @param size 一時ファイルに書き込むサイズ
+     * @return 確保できた場合はtrue。一時ファイルを使用せずにヒープ上に保持すべき場合はfalse
+     */
+    private boolean acquireTempStorage(int size) {
+        if (tempFileLease == null) {
+            tempFileLease = TempStorageManager.get().newLease();
+            LEASE_HOLDER.get().add(tempFileLease);
+        }
+        return tempFileLease.acquire(size);
+    }
+
     /**
      * ヒープ上のバッファにデータを書き込む
      * @param bytes データ
@@ -216,6 +250,14 @@ public class ResponseBody {
     private void writeToFile(ByteBuffer bytes) {
         if (tempFile == null) {
             useTempFile();
+        } else {
+            try {
+                tempFileLease.acquire(bytes.remaining());
+            } catch (RuntimeException e) {
+                // 上限を超えて拒否された場合は、書き込み途中の一時ファイルを削除する
+                discardTempFile();
+                throw e;
+            }
         }
         try {
             tempFileWriteChannel.write(bytes);
@@ -239,6 +281,8 @@ public class ResponseBody {
                     ? (int) requestedSize
                     : currentCapacity * 2;
         newSize = (maxBufferSize > newSize) ? newSize : maxBufferSize;
+        // 一時ファイルを使用できない場合は上限値を超えて拡張する
+        newSize = (int) Math.max(newSize, requestedSize);
         buffer = ByteBuffer.allocate(newSize).put((ByteBuffer) buffer.flip());
     }
 
@@ -389,8 +433,12 @@ public class ResponseBody {
                 );
             }
         }
+        for (TempStorageManager.Lease lease : LEASE_HOLDER.get()) {
+            lease.release();
+        }
         STREAM_HOLDER.remove();
         TEMP_FILE_HOLDER.remove();
+        LEASE_HOLDER.remove();
     }
 
     /**
@@ -452,6 +500,7 @@ public class ResponseBody {
         File dir = getDownloadDir();
         try {
             tempFile = File.createTempFile("nablarch_temp_", null, dir);
+            tempFileLease.markFileCreated();
             tempFileWriteChannel = new FileOutputStream(tempFile).getChannel();
 
             TEMP_FILE_HOLDER.get().add(tempFile);
@@ -465,6 +514,26 @@ public class ResponseBody {
         }
     }
 
+    /**
+     * 書き込み途中の一時ファイルを削除し、確保したサイズを解放する。
+     */
+    private void discardTempFile() {
+        FileUtil.closeQuietly(tempFileWriteChannel);
+        STREAM_HOLDER.get().remove(tempFileWriteChannel);
+        if (tempFile.delete()) {
+            TEMP_FILE_HOLDER.get().remove(tempFile);
+        } else {
+            LOGGER.logWarn(
+                "could not delete a temporary file: "
+               + tempFile.getAbsolutePath()
+            );
+        }
+        tempFileLease.release();
+        tempFileLease = null;
+        tempFile = null;
+        tempFileWriteChannel = null;
+    }
+
     /**
      * 一時ファイルを格納するディレクトリを取得する。
      * <pre>
@@ -0,0 +1,624 @@
+package nablarch.fw.web;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.repository.initialization.Initializable;
+import nablarch.core.util.FilePathSetting;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.results.RequestEntityTooLarge;
+import nablarch.fw.results.ServiceUnavailable;
+
+/**
+ * 一時ファイルに書き込むサイズを管理するクラス。<br/>
+ * <p>
+ * レスポンスボディの一時ファイル({@link ResponseBody})およびアップロードファイルの一時ファイル
+ * ({@link nablarch.fw.web.upload.PartInfo})に書き込むサイズを集計し、以下の上限を超えないように制御する。
+ * </p>
+ * <ul>
+ *     <li>全リクエストで使用する一時ファイルの合計サイズの上限({@link #setMaxTotalBytes(long)})</li>
+ *     <li>1リクエストで使用する一時ファイルの合計サイズの上限({@link #setMaxRequestBytes(long)})</li>
+ * </ul>
+ * <p>
+ * 上限を超える場合の動作は{@link #setOverflowPolicy(String)}で指定する。
+ * </p>
+ * <p>
+ * 使用サイズは、{@link #beginRequest()}から{@link #endRequest()}までを1リクエストとして集計する。
+ * リクエストの処理終了時には、一時ファイルを削除したか否か(自動クリーニングを行わない場合や、
+ * 業務アクションがファイルを移動した場合など)に関わらず、リクエストで確保した全てのサイズを解放する。
+ * このため、上限はリクエストの処理中に使用する一時ファイルのサイズに対して適用される。
+ * </p>
+ * <p>
+ * 本クラスを使用する場合は、コンポーネント名"tempStorageManager"でコンポーネント設定ファイルに定義すること。
+ * 定義されていない場合は、上限なしで一時ファイルのサイズのみを集計するインスタンスが使用される。
+ * また、初期化対象のリストに設定した場合、初期化時に前回の起動時に削除されずに残った一時ファイル
+ * (レスポンスボディおよびアップロードファイルの一時ファイル)を削除する。
+ * </p>
+ */
+@Published(tag = "architect")
+public class TempStorageManager implements Initializable {
+
+    /** コンポーネント設定ファイルに定義する際のコンポーネント名 */
+    static final String COMPONENT_NAME = "tempStorageManager";
+
+    /** レスポンスボディの一時ファイル名の接頭辞 */
+    static final String TEMP_FILE_PREFIX = "nablarch_temp_";
+
+    /** 分割アップロードの一時ファイル名の接頭辞 */
+    private static final String RESUMABLE_FILE_PREFIX = "nablarch_resumable_";
+
+    /** アップロードファイルの一時ファイル名(作成時刻、シーケンス番号、ランダム文字列、拡張子)の形式 */
+    private static final Pattern UPLOAD_FILE_NAME = Pattern.compile("[0-9]{14,}[0-9a-f]{10}(\\.[^.]*)?");
+
+    /** アップロードファイルの保存ディレクトリのベースパス名 */
+    private static final String UPLOAD_FILE_TMP_DIR = "uploadFileTmpDir";
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(TempStorageManager.class);
+
+    /** コンポーネント設定ファイルに定義されていない場合に使用するインスタンス */
+    private static final TempStorageManager DEFAULT = new TempStorageManager();
+
+    /** 処理中のリクエストの使用状況 */
+    private static final ThreadLocal<RequestUsage> REQUEST_USAGE = new ThreadLocal<RequestUsage>();
+
+    /** 上限を超える場合の動作 */
+    private enum OverflowPolicy {
+        /** 空きができるまで待機する */
+        WAIT,
+        /** リクエストを拒否する */
+        REJECT,
+        /** 一時ファイルを使用せずにメモリ上に保持する */
+        MEMORY
+    }
+
+    /** 全リクエストで使用する一時ファイルの合計サイズの上限 */
+    private long maxTotalBytes = Long.MAX_VALUE;
+
+    /** 1リクエストで使用する一時ファイルの合計サイズの上限 */
+    private long maxRequestBytes = Long.MAX_VALUE;
+
+    /** 上限を超える場合の動作 */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.REJECT;
+
+    /** 空きができるまで待機する時間の上限(ミリ秒) */
+    private long waitTimeoutMillis = 10000;
+
+    /** 起動時に削除する一時ファイルの経過時間(秒) */
+    private long orphanAgeSeconds = 60 * 60;
+
+    /** 起動時に一時ファイルを削除するディレクトリ */
+    private List<String> reclaimDirs;
+
+    /** 使用中のサイズ */
+    private long liveBytes = 0;
+
+    /** 使用中のサイズの最大値 */
+    private long peakBytes = 0;
+
+    /** 使用中の一時ファイル数 */
+    private final AtomicLong liveFiles = new AtomicLong();
+
+    /** 上限を超えたため拒否した回数 */
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /** 上限を超えたため待機した回数 */
+    private final AtomicLong waitedCount = new AtomicLong();
+
+    /** 上限を超えたためメモリ上に保持した回数 */
+    private final AtomicLong memoryFallbackCount = new AtomicLong();
+
+    /** 起動時に削除した一時ファイル数 */
+    private final AtomicLong reclaimedFiles = new AtomicLong();
+
+    /**
+     * 使用するインスタンスを取得する。<br/>
+     * コンポーネント設定ファイルに定義されていない場合は、上限なしのインスタンスを返す。
+     *
+     * @return インスタンス
+     */
+    public static TempStorageManager get() {
+        TempStorageManager manager = SystemRepository.get(COMPONENT_NAME);
+        return manager == null ? DEFAULT : manager;
+    }
+
+    /**
+     * 現在のスレッドで、リクエストの使用サイズの集計を開始する。<br/>
+     * 既に集計を開始している場合は何もしない。
+     * 集計を開始した場合は、リクエストの処理終了時にfinallyブロックで{@link #endRequest()}を呼び出すこと。
+     *
+     * @return 集計を開始した場合は{@code true}
+     */
+    public static boolean beginRequest() {
+        if (REQUEST_USAGE.get() != null) {
+            return false;
+        }
+        REQUEST_USAGE.set(new RequestUsage());
+        return true;
+    }
+
+    /**
+     * 現在のスレッドのリクエストの使用サイズの集計を終了する。<br/>
+     * リクエストの処理中に生成した全ての{@link Lease}を解放する。
+     */
+    public static void endRequest() {
+        RequestUsage usage = REQUEST_USAGE.get();
+        REQUEST_USAGE.remove();
+        if (usage == null) {
+            return;
+        }
+        for (Lease lease : usage.leases) {
+            lease.release();
+        }
+    }
+
+    /**
+     * 全リクエストで使用する一時ファイルの合計サイズの上限(バイト)を設定する。<br/>
+     * デフォルトは上限なし。
+     *
+     * @param maxTotalBytes 合計サイズの上限
+     */
+    public void setMaxTotalBytes(long maxTotalBytes) {
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    /**
+     * 1リクエストで使用する一時ファイルの合計サイズの上限(バイト)を設定する。<br/>
+     * デフォルトは上限なし。
+     *
+     * @param maxRequestBytes 合計サイズの上限
+     */
+    public void setMaxRequestBytes(long maxRequestBytes) {
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    /**
+     * 上限を超える場合の動作を設定する。
+     * <p>
+     * 以下のいずれかを設定する。デフォルトは"REJECT"。
+     * </p>
+     * <dl>
+     *     <dt>WAIT</dt>
+     *     <dd>他のリクエストが一時ファイルを削除して空きができるまで待機する。
+     *     {@link #setWaitTimeoutMillis(long)}の時間が経過しても空きができない場合は、REJECTと同様に拒否する。
+     *     1リクエストの上限を超える場合は待機せずに拒否する。</dd>
+     *     <dt>REJECT</dt>
+     *     <dd>全リクエストの上限を超える場合は{@link ServiceUnavailable}(503)、
+     *     1リクエストの上限を超える場合は{@link RequestEntityTooLarge}(413)を送出する。</dd>
+     *     <dt>MEMORY</dt>
+     *     <dd>一時ファイルを使用せずにメモリ上に保持する。
+     *     メモリ上に保持できない場合(既に一時ファイルに書き込み中の場合)は、上限を超えて書き込む。</dd>
+     * </dl>
+     *
+     * @param overflowPolicy 上限を超える場合の動作
+     */
+    public void setOverflowPolicy(String overflowPolicy) {
+        try {
+            this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid overflowPolicy. [" + overflowPolicy + "]", e);
+        }
+    }
+
+    /**
+     * 上限を超える場合の動作がMEMORYか否か。
+     *
+     * @return MEMORYの場合は{@code true}
+     */
+    public boolean isMemoryFallback() {
+        return overflowPolicy == OverflowPolicy.MEMORY;
+    }
+
+    /**
+     * 空きができるまで待機する時間の上限(ミリ秒)を設定する。<br/>
+     * デフォルトは10000ミリ秒。
+     *
+     * @param waitTimeoutMillis 待機する時間の上限
+     */
+    public void setWaitTimeoutMillis(long waitTimeoutMillis) {
+        this.waitTimeoutMillis = waitTimeoutMillis;
+    }
+
+    /**
+     * 初期化時に一時ファイルを削除するディレクトリを設定する。<br/>
+     * 設定しない場合は、{@link HttpResponseSetting#getTempDirPath()}のディレクトリと、
+     * アップロードファイルの保存ディレクトリ(ベースパス名"uploadFileTmpDir")を対象とする。
+     * いずれも設定されていない場合はシステム既定の一時ファイルフォルダを対象とする。
+     *
+     * @param reclaimDirs ディレクトリのパスのリスト
+     */
+    public void setReclaimDirs(List<String> reclaimDirs) {
+        this.reclaimDirs = reclaimDirs;
+    }
+
+    /**
+     * 初期化時に削除する一時ファイルの経過時間(秒)を設定する。<br/>
+     * 同じディレクトリを使用する他のプロセスの一時ファイルを削除しないように、
+     * 最終更新日時からこの時間が経過した一時ファイルのみを削除する。
+     * デフォルトは3600秒。
+     *
+     * @param orphanAgeSeconds 経過時間(秒)
+     */
+    public void setOrphanAgeSeconds(long orphanAgeSeconds) {
+        this.orphanAgeSeconds = orphanAgeSeconds;
+    }
+
+    /**
+     * 前回の起動時に削除されずに残った一時ファイルを削除する。<br/>
+     * 以下のファイルを削除対象とする。
+     * <ul>
+     *     <li>レスポンスボディの一時ファイル(ファイル名が"nablarch_temp_"で始まるファイル)</li>
+     *     <li>分割アップロードの一時ファイル(ファイル名が"nablarch_resumable_"で始まるファイル)</li>
+     *     <li>アップロードファイルの一時ファイル(ファイル名が{@link nablarch.fw.web.upload.PartInfo}の命名規則に一致するファイル)</li>
+     * </ul>
+     */
+    @Override
+    public void initialize() {
+        Set<File> dirs = new LinkedHashSet<File>();
+        if (reclaimDirs == null) {
+            String tempDir = new HttpResponseSetting().getTempDirPath();
+            dirs.add(new File(tempDir == null ? System.getProperty("java.io.tmpdir") : tempDir));
+            URL uploadDir = FilePathSetting.getInstance().getBasePathSettings().get(UPLOAD_FILE_TMP_DIR);
+            dirs.add(new File(uploadDir == null ? System.getProperty("java.io.tmpdir") : uploadDir.getFile()));
+        } else {
+            for (String dir : reclaimDirs) {
+                dirs.add(new File(dir));
+            }
+        }
+        long threshold = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(orphanAgeSeconds);
+        for (File dir : dirs) {
+            reclaim(dir, threshold);
+        }
+    }
+
+    /**
+     * ディレクトリ内の一時ファイルを削除する。
+     *
+     * @param dir       ディレクトリ
+     * @param threshold この日時より前に更新された一時ファイルを削除する
+     */
+    private void reclaim(File dir, long threshold) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        int deleted = 0;
+        for (File file : files) {
+            if (file.isFile() && isTempFile(file.getName()) && file.lastModified() < threshold) {
+                if (file.delete()) {
+                    deleted++;
+                } else {
+                    LOGGER.logWarn("could not delete an orphaned temporary file: " + file.getAbsolutePath());
+                }
+            }
+        }
+        if (deleted > 0) {
+            reclaimedFiles.addAndGet(deleted);
+            LOGGER.logInfo(deleted + " orphaned temporary file(s) deleted. dir=[" + dir.getAbsolutePath() + "]");
+        }
+    }
+
+    /**
+     * 初期化時に削除する一時ファイルか否かを判定する。
+     *
+     * @param name ファイル名
+     * @return 削除する一時ファイルの場合は{@code true}
+     */
+    private static boolean isTempFile(String name) {
+        return name.startsWith(TEMP_FILE_PREFIX)
+                || name.startsWith(RESUMABLE_FILE_PREFIX)
+                || UPLOAD_FILE_NAME.matcher(name).matches();
+    }
+
+    /**
+     * 一時ファイル1つ分の使用サイズを管理する{@link Lease}を生成する。<br/>
+     * 一時ファイルを作成した際は{@link Lease#markFileCreated()}を、
+     * 一時ファイルを削除した際は{@link Lease#release()}を呼び出すこと。
+     * リクエストの処理中({@link #beginRequest()}から{@link #endRequest()}まで)に生成した場合は、
+     * リクエストの処理終了時に解放される。
+     * リクエストの処理中でない場合は、1リクエストの上限を{@link Lease}毎に適用する。
+     *
+     * @return {@link Lease}
+     */
+    public Lease newLease() {
+        RequestUsage usage = REQUEST_USAGE.get();
+        Lease lease = new Lease(usage == null ? new AtomicLong() : usage.bytes);
+        if (usage != null) {
+            usage.leases.add(lease);
+        }
+        return lease;
+    }
+
+    /**
+     * 一時ファイルに書き込むサイズを確保する。
+     *
+     * @param lease 一時ファイルの{@link Lease}
+     * @param bytes 確保するサイズ
+     * @return 確保できた場合は{@code true}。MEMORYの場合に上限を超えていれば{@code false}
+     */
+    private boolean acquire(Lease lease, long bytes) {
+        if (lease.requestBytes.get() + bytes > maxRequestBytes) {
+            return overflow(lease, false);
+        }
+        synchronized (this) {
+            if (liveBytes + bytes > maxTotalBytes) {
+                if (overflowPolicy != OverflowPolicy.WAIT) {
+                    return overflow(lease, true);
+                }
+                waitedCount.incrementAndGet();
+                long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+                while (liveBytes + bytes > maxTotalBytes) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return overflow(lease, true);
+                    }
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return overflow(lease, true);
+                    }
+                }
+            }
+            liveBytes += bytes;
+            peakBytes = Math.max(peakBytes, liveBytes);
+        }
+        lease.requestBytes.addAndGet(bytes);
+        lease.bytes += bytes;
+        return true;
+    }
+
+    /**
+     * 上限に関わらず、一時ファイルに書き込むサイズを確保する。
+     *
+     * @param lease 一時ファイルの{@link Lease}
+     * @param bytes 確保するサイズ
+     */
+    private void reserve(Lease lease, long bytes) {
+        synchronized (this) {
+            liveBytes += bytes;
+            peakBytes = Math.max(peakBytes, liveBytes);
+        }
+        lease.requestBytes.addAndGet(bytes);
+        lease.bytes += bytes;
+    }
+
+    /**
+     * 上限を超えた場合の処理を行う。<br/>
+     * MEMORYの場合、メモリ上に保持した回数は{@link Lease}毎に1回だけ数える。
+     *
+     * @param lease 一時ファイルの{@link Lease}
+     * @param total 全リクエストの上限を超えた場合は{@code true}
+     * @return MEMORYの場合は{@code false}
+     */
+    private boolean overflow(Lease lease, boolean total) {
+        if (overflowPolicy == OverflowPolicy.MEMORY) {
+            if (!lease.fellBack) {
+                lease.fellBack = true;
+                memoryFallbackCount.incrementAndGet();
+            }
+            return false;
+        }
+        rejectedCount.incrementAndGet();
+        if (total) {
+            throw new ServiceUnavailable("temporary storage exhausted.");
+        }
+        throw new RequestEntityTooLarge("temporary storage quota per request exceeded.");
+    }
+
+    /**
+     * 確保したサイズを解放する。
+     *
+     * @param lease 一時ファイルの{@link Lease}
+     */
+    private void release(Lease lease) {
+        synchronized (this) {
+            liveBytes -= lease.bytes;
+            notifyAll();
+        }
+        lease.requestBytes.addAndGet(-lease.bytes);
+        lease.bytes = 0;
+        if (lease.fileCreated) {
+            liveFiles.decrementAndGet();
+        }
+    }
+
+    /**
+     * 使用中のサイズを取得する。
+     *
+     * @return 使用中のサイズ(バイト)
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * 使用中のサイズの最大値を取得する。
+     *
+     * @return 使用中のサイズの最大値(バイト)
+     */
+    public synchronized long getPeakBytes() {
+        return peakBytes;
+    }
+
+    /**
+     * 使用中の一時ファイル数を取得する。
+     *
+     * @return 使用中の一時ファイル数
+     */
+    public long getLiveFiles() {
+        return liveFiles.get();
+    }
+
+    /**
+     * 上限を超えたため拒否した回数を取得する。
+     *
+     * @return 拒否した回数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * 上限を超えたため待機した回数を取得する。
+     *
+     * @return 待機した回数
+     */
+    public long getWaitedCount() {
+        return waitedCount.get();
+    }
+
+    /**
+     * 上限を超えたためメモリ上に保持した回数を取得する。
+     *
+     * @return メモリ上に保持した回数
+     */
+    public long getMemoryFallbackCount() {
+        return memoryFallbackCount.get();
+    }
+
+    /**
+     * 初期化時に削除した一時ファイル数を取得する。
+     *
+     * @return 削除した一時ファイル数
+     */
+    public long getReclaimedFiles() {
+        return reclaimedFiles.get();
+    }
+
+    /**
+     * 一時ファイル1つ分の使用サイズを管理するクラス。<br/>
+     * 本クラスはスレッドセーフではない。1つの一時ファイルに対して1つのスレッドから使用すること。
+     */
+    @Published(tag = "architect")
+    public final class Lease {
+
+        /** 一時ファイルを作成したリクエストの使用サイズ */
+        private final AtomicLong requestBytes;
+
+        /** 確保したサイズ */
+        private long bytes = 0;
+
+        /** 解放済みか否か */
+        private boolean released = false;
+
+        /** 一時ファイルを作成したか否か */
+        private boolean fileCreated = false;
+
+        /** 上限を超えたためメモリ上に保持したか否か */
+        private boolean fellBack = false;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param requestBytes 一時ファイルを作成したリクエストの使用サイズ
+         */
+        private Lease(AtomicLong requestBytes) {
+            this.requestBytes = requestBytes;
+        }
+
+        /**
+         * 一時ファイルに書き込むサイズを確保する。<br/>
+         * 上限を超える場合は、{@link TempStorageManager#setOverflowPolicy(String)}の設定に従い、
+         * 待機するか、例外を送出するか、{@code false}を返す。
+         *
+         * @param bytes 確保するサイズ
+         * @return 確保できた場合は{@code true}。メモリ上に保持すべき場合は{@code false}
+         * @throws ServiceUnavailable 全リクエストの上限を超えた場合
+         * @throws RequestEntityTooLarge 1リクエストの上限を超えた場合
+         */
+        public boolean acquire(long bytes) {
+            return TempStorageManager.this.acquire(this, bytes);
+        }
+
+        /**
+         * 上限に関わらず、一時ファイルに書き込むサイズを確保する。<br/>
+         * 業務アクションから一時ファイルの作成を要求された場合など、拒否できない書き込みに使用する。
+         *
+         * @param bytes 確保するサイズ
+         */
+        public void reserve(long bytes) {
+            TempStorageManager.this.reserve(this, bytes);
+        }
+
+        /**
+         * 一時ファイルを作成したことを記録する。<br/>
+         * 使用中の一時ファイル数は、本メソッドを呼び出した{@link Lease}のみを数える。
+         * 2回目以降の呼び出しや、解放後の呼び出しでは何もしない。
+         */
+        public void markFileCreated() {
+            if (!fileCreated && !released) {
+                fileCreated = true;
+                liveFiles.incrementAndGet();
+            }
+        }
+
+        /**
+         * 確保したサイズを解放する。<br/>
+         * 一時ファイルを削除した際に呼び出す。2回目以降の呼び出しでは何もしない。
+         */
+        public void release() {
+            if (!released) {
+                released = true;
+                TempStorageManager.this.release(this);
+            }
+        }
+
+        /**
+         * 確保したサイズを取得する。
+         *
+         * @return 確保したサイズ(バイト)
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * 書き込んだサイズを確保する出力ストリームを生成する。<br/>
+         * 確保できなかった場合(MEMORYの場合)でも書き込みは行う。
+         *
+         * @param out 一時ファイルへの出力ストリーム
+         * @return 出力ストリーム
+         */
+        public OutputStream wrap(OutputStream out) {
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    acquire(1);
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    acquire(len);
+                    out.write(b, off, len);
+                }
+            };
+        }
+    }
+
+    /**
+     * 処理中のリクエストの使用状況。
+     */
+    private static final class RequestUsage {
+
+        /** リクエストの使用サイズ */
+        private final AtomicLong bytes = new AtomicLong();
+
+        /** リクエストの処理中に生成した{@link Lease} */
+        private final List<Lease> leases = new ArrayList<Lease>();
+    }
+}
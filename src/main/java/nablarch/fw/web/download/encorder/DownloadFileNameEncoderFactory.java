@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import nablarch.core.util.annotation.Published;
+import nablarch.fw.web.useragent.UserAgentCache;
 
 
 /**
@@ -23,6 +24,21 @@ public class DownloadFileNameEncoderFactory {
      * User-Agentヘッダのパターンとエンコーダの関連を保持するエントリのList。
      */
     private List<DownloadFileNameEncoderEntry> downloadFileNameEncoderEntries = new ArrayList<DownloadFileNameEncoderEntry>();
+
+    /**
+     * User-Agentヘッダの内容毎に選択したエンコーダ。
+     */
+    private UserAgentCache<DownloadFileNameEncoder> encoderCache = new UserAgentCache<DownloadFileNameEncoder>();
+
+    /**
+     * User-Agentヘッダの内容に対応するエンコーダを選択する{@link UserAgentCache.Loader}。
+     */
+    private final UserAgentCache.Loader<DownloadFileNameEncoder> encoderLoader = new UserAgentCache.Loader<DownloadFileNameEncoder>() {
+        @Override
+        public DownloadFileNameEncoder load(String userAgent) {
+            return findEncoder(userAgent);
+        }
+    };
     
     /**
      * コンストラクタ。
@@ -64,6 +80,7 @@ public class DownloadFileNameEncoderFactory {
      */
     public void setDefaultEncoder(DownloadFileNameEncoder defaultEncoder) {
         this.defaultEncoder = defaultEncoder;
+        encoderCache.clear();
     }
     
     /**
@@ -78,12 +95,34 @@ public class DownloadFileNameEncoderFactory {
             }
         }
         this.downloadFileNameEncoderEntries = downloadFileNameEncoderEntries;
+        encoderCache.clear();
+    }
+
+    /**
+     * User-Agentヘッダの内容毎に選択したエンコーダを保持する件数の上限を設定する。
+     * <br>
+     * デフォルトは{@link UserAgentCache#DEFAULT_MAX_SIZE}。0を設定した場合は保持しない。
+     * @param encoderCacheSize 保持する件数の上限
+     */
+    public void setEncoderCacheSize(int encoderCacheSize) {
+        this.encoderCache = new UserAgentCache<DownloadFileNameEncoder>(encoderCacheSize);
+    }
+
+    /**
+     * User-Agentヘッダの内容毎に選択したエンコーダを保持するキャッシュを取得する。
+     * <br>
+     * キャッシュヒット率などの監視に使用する。
+     * @return エンコーダを保持するキャッシュ
+     */
+    public UserAgentCache<DownloadFileNameEncoder> getEncoderCache() {
+        return encoderCache;
     }
     
     /**
      * User-Agentに対応するエンコーダを取得する。
      * <br>
      * User-Agentヘッダのパターンとエンコーダの関連は、downloadFileNameEncoderEntriesプロパティより取得する。
+     * 選択したエンコーダはUser-Agentヘッダの内容毎に保持し、同じUser-Agentに対しては再利用する。
      * @param userAgent User-Agentヘッダの内容
      * @return エンコードされたファイル名
      */
@@ -92,7 +131,15 @@ public class DownloadFileNameEncoderFactory {
         if (userAgent == null) {
             return defaultEncoder;
         }
-        
+        return encoderCache.get(userAgent, encoderLoader);
+    }
+
+    /**
+     * User-Agentに対応するエンコーダを、downloadFileNameEncoderEntriesプロパティから探す。
+     * @param userAgent User-Agentヘッダの内容
+     * @return エンコーダ
+     */
+    private DownloadFileNameEncoder findEncoder(String userAgent) {
         for (DownloadFileNameEncoderEntry entry : downloadFileNameEncoderEntries) {
             if (entry.getUserAgentPattern().matcher(userAgent).matches()) {
                 return entry.getEncoder();
@@ -0,0 +1,235 @@
+package nablarch.fw.web.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nablarch.fw.web.HttpRequest;
+import nablarch.fw.web.handler.HttpAccessLogFormatter.HttpAccessLogContext;
+
+/**
+ * HTTPアクセスログのリクエストパラメータとセッションスコープ情報を出力するか否かを判定するクラス。
+ * <p/>
+ * リクエストパスの前方一致で選択したルールの割合でリクエストを抽出する。
+ * 1秒あたりの抽出件数に上限を指定した場合は、トークンバケットで上限を超えた分を抽出対象外とする。
+ * 抽出対象外となったリクエストでも、ステータスコードがエラーと判定する閾値以上の場合は、
+ * リクエスト処理終了時に抽出対象に変更する。
+ * <p/>
+ * ルール毎に判定した件数と抽出した件数を集計し、実際の抽出率として取得できる。
+ */
+final class AccessLogSampler {
+
+    /** どのルールにも一致しないリクエストに適用するルールの名前 */
+    static final String DEFAULT_RULE_NAME = "*";
+
+    /** リクエストパスの前方一致で選択するルール */
+    private final List<Rule> rules;
+
+    /** どのルールにも一致しないリクエストに適用するルール */
+    private final Rule defaultRule;
+
+    /** 1秒あたりの抽出件数の上限。0以下の場合は上限なし */
+    private final int maxPerSecond;
+
+    /** エラーと判定するステータスコードの閾値。0以下の場合はエラーによる抽出を行わない */
+    private final int errorStatusCode;
+
+    /** トークンバケットに残っているトークン数 */
+    private double tokens;
+
+    /** トークンを最後に補充した時刻(ナノ秒) */
+    private long lastRefillNanos;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param rates リクエストパスの前方一致とその抽出率(カンマ区切りの{@code パス=抽出率})。{@code null}の場合はルールなし
+     * @param defaultRate どのルールにも一致しないリクエストの抽出率
+     * @param maxPerSecond 1秒あたりの抽出件数の上限。0以下の場合は上限なし
+     * @param errorStatusCode エラーと判定するステータスコードの閾値。0以下の場合はエラーによる抽出を行わない
+     */
+    AccessLogSampler(String rates, double defaultRate, int maxPerSecond, int errorStatusCode) {
+        this.rules = parseRules(rates);
+        this.defaultRule = new Rule(DEFAULT_RULE_NAME, defaultRate);
+        this.maxPerSecond = maxPerSecond;
+        this.errorStatusCode = errorStatusCode;
+        this.tokens = maxPerSecond;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * リクエスト処理開始時に、リクエストパラメータとセッションスコープ情報を出力するか否かを判定する。
+     * <p/>
+     * 判定結果と適用したルールを{@link HttpAccessLogContext}に設定する。
+     *
+     * @param context {@link HttpAccessLogContext}
+     */
+    void sample(HttpAccessLogContext context) {
+        HttpRequest request = context.getRequest();
+        Rule rule = findRule(request != null ? request.getRequestPath() : null);
+        boolean sampled = rule.rate >= 1.0d || (rule.rate > 0.0d && ThreadLocalRandom.current().nextDouble() < rule.rate);
+        if (sampled && maxPerSecond > 0) {
+            sampled = tryAcquire();
+        }
+        rule.requestCount.incrementAndGet();
+        if (sampled) {
+            rule.sampledCount.incrementAndGet();
+        }
+        context.setSamplingRule(rule);
+        context.setSampled(sampled);
+    }
+
+    /**
+     * リクエスト処理終了時に、ステータスコードがエラーの場合は抽出対象に変更する。
+     *
+     * @param context {@link HttpAccessLogContext}
+     * @return 抽出対象に変更した場合は{@code true}
+     */
+    boolean promoteOnError(HttpAccessLogContext context) {
+        if (context.isSampled() || errorStatusCode <= 0 || context.getStatusCode() < errorStatusCode) {
+            return false;
+        }
+        context.setSampled(true);
+        Rule rule = context.getSamplingRule();
+        if (rule != null) {
+            rule.sampledCount.incrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * ルール毎の実際の抽出率を取得する。
+     * <p/>
+     * 判定した件数に対する、エラーによる抽出を含む抽出した件数の割合を返す。
+     * 判定した件数が0のルールは含まない。
+     *
+     * @return ルール名(リクエストパスの前方一致または{@link #DEFAULT_RULE_NAME})と抽出率
+     */
+    Map<String, Double> getEffectiveRates() {
+        Map<String, Double> result = new LinkedHashMap<String, Double>();
+        for (Rule rule : rules) {
+            putEffectiveRate(result, rule);
+        }
+        putEffectiveRate(result, defaultRule);
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * ルールの実際の抽出率を設定する。
+     *
+     * @param result 設定先
+     * @param rule ルール
+     */
+    private static void putEffectiveRate(Map<String, Double> result, Rule rule) {
+        long requestCount = rule.requestCount.get();
+        if (requestCount > 0) {
+            result.put(rule.name, (double) rule.sampledCount.get() / requestCount);
+        }
+    }
+
+    /**
+     * リクエストパスに適用するルールを取得する。
+     *
+     * @param path リクエストパス
+     * @return 最初に前方一致したルール。一致しない場合はどのルールにも一致しないリクエストに適用するルール
+     */
+    private Rule findRule(String path) {
+        if (path != null) {
+            for (Rule rule : rules) {
+                if (path.startsWith(rule.name)) {
+                    return rule;
+                }
+            }
+        }
+        return defaultRule;
+    }
+
+    /**
+     * トークンバケットからトークンを1つ取得する。
+     * <p/>
+     * 経過時間に応じて1秒あたりの上限の割合でトークンを補充する。
+     * バケットの容量は1秒あたりの上限とする。
+     *
+     * @return 取得できた場合は{@code true}
+     */
+    private synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        double refill = (double) (now - lastRefillNanos) * maxPerSecond / TimeUnit.SECONDS.toNanos(1);
+        tokens = Math.min(maxPerSecond, tokens + refill);
+        lastRefillNanos = now;
+        if (tokens < 1.0d) {
+            return false;
+        }
+        tokens -= 1.0d;
+        return true;
+    }
+
+    /**
+     * リクエストパスの前方一致とその抽出率を解析する。
+     *
+     * @param rates カンマ区切りの{@code パス=抽出率}
+     * @return ルール
+     */
+    private static List<Rule> parseRules(String rates) {
+        List<Rule> result = new ArrayList<Rule>();
+        if (rates == null) {
+            return result;
+        }
+        for (String entry : rates.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.length() == 0) {
+                continue;
+            }
+            int index = trimmed.lastIndexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException(
+                        "sampling rate must be specified as 'path=rate'. entry = [" + trimmed + "]");
+            }
+            String path = trimmed.substring(0, index).trim();
+            if (!path.startsWith("/")) {
+                throw new IllegalArgumentException(
+                        "sampling path must start with '/'. path = [" + path + "]");
+            }
+            result.add(new Rule(path, Double.parseDouble(trimmed.substring(index + 1).trim())));
+        }
+        return result;
+    }
+
+    /**
+     * 抽出率のルール。
+     */
+    static final class Rule {
+
+        /** ルール名(リクエストパスの前方一致) */
+        private final String name;
+
+        /** 抽出率 */
+        private final double rate;
+
+        /** 判定した件数 */
+        private final AtomicLong requestCount = new AtomicLong();
+
+        /** 抽出した件数 */
+        private final AtomicLong sampledCount = new AtomicLong();
+
+        /**
+         * コンストラクタ。
+         *
+         * @param name ルール名
+         * @param rate 抽出率(0.0以上1.0以下)
+         */
+        Rule(String name, double rate) {
+            if (!(rate >= 0.0d && rate <= 1.0d)) {
+                throw new IllegalArgumentException(
+                        "sampling rate must be between 0.0 and 1.0. name = [" + name + "], rate = " + rate);
+            }
+            this.name = name;
+            this.rate = rate;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package nablarch.fw.web.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nablarch.core.ThreadContext;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+
+/**
+ * HTTPアクセスログをバックグラウンドのスレッドで書き込むクラス。
+ * <p/>
+ * リクエストスレッドはフォーマット済みのメッセージとスレッドコンテキストの値を固定長のバッファに格納し、
+ * 書き込みスレッドがバッファからまとめて取り出してロガーに書き込む。
+ * これにより、ログの書き込み先の遅延がレスポンスタイムに直接影響しなくなる。
+ * <p/>
+ * バッファが満杯の場合は、{@link FullPolicy}に従って空きを待つか、エントリを破棄する。
+ * 空きを待つ場合も、書き込みスレッドが停止している場合は呼び出し元のスレッドで直接書き込む。
+ * 終了後に格納されたエントリは、呼び出し元のスレッドで直接書き込む。
+ * <p/>
+ * 書き込みスレッドでの書き込みに失敗した場合は、失敗した件数を数えて次のエントリの書き込みを継続する。
+ */
+final class AsyncHttpAccessLogWriter {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(AsyncHttpAccessLogWriter.class);
+
+    /** 書き込みスレッドが終了要求を確認する間隔(ミリ秒) */
+    private static final long POLL_INTERVAL_MILLIS = 100L;
+
+    /**
+     * バッファが満杯の場合の振る舞い。
+     */
+    enum FullPolicy {
+        /** 空きができるまで待つ。 */
+        BLOCK,
+        /** エントリを破棄する。 */
+        DROP
+    }
+
+    /** 書き込み先のロガー */
+    private final Logger logger;
+
+    /** バッファ */
+    private final BlockingQueue<Entry> buffer;
+
+    /** 1回に取り出す最大件数 */
+    private final int batchSize;
+
+    /** バッファが満杯の場合の振る舞い */
+    private final FullPolicy fullPolicy;
+
+    /** 書き込みスレッド */
+    private final Thread thread;
+
+    /** バッファに格納した件数 */
+    private final AtomicLong enqueuedCount = new AtomicLong();
+
+    /** 破棄した件数 */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /** 書き込みに失敗した件数 */
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /** 終了要求を受けたか否か */
+    private volatile boolean closed;
+
+    /**
+     * コンストラクタ。
+     * <p/>
+     * 書き込みスレッドをデーモンスレッドとして開始する。
+     *
+     * @param logger 書き込み先のロガー
+     * @param bufferSize バッファの容量
+     * @param batchSize 1回に取り出す最大件数
+     * @param fullPolicy バッファが満杯の場合の振る舞い
+     */
+    AsyncHttpAccessLogWriter(Logger logger, int bufferSize, int batchSize, FullPolicy fullPolicy) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be greater than 0. bufferSize = " + bufferSize);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be greater than 0. batchSize = " + batchSize);
+        }
+        this.logger = logger;
+        this.buffer = new ArrayBlockingQueue<Entry>(bufferSize);
+        this.batchSize = batchSize;
+        this.fullPolicy = fullPolicy;
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "http-access-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * ログをバッファに格納する。
+     *
+     * @param message フォーマット済みのメッセージ
+     * @param logOptions ログ出力のオプション情報
+     */
+    void submit(String message, Object[] logOptions) {
+        Entry entry = new Entry(message, logOptions);
+        if (closed) {
+            write(entry);
+            return;
+        }
+        if (fullPolicy == FullPolicy.DROP) {
+            if (!buffer.offer(entry)) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+        } else if (!offer(entry)) {
+            write(entry);
+            return;
+        }
+        enqueuedCount.incrementAndGet();
+        if (closed) {
+            // 終了処理でバッファを書き込んだ後に格納した可能性があるため、呼び出し元のスレッドで書き込む
+            drain();
+        }
+    }
+
+    /**
+     * バッファに空きができるまで待って、エントリを格納する。
+     * <p/>
+     * 書き込みスレッドが停止している場合や終了要求を受けた場合は、空きを待たずに諦める。
+     *
+     * @param entry エントリ
+     * @return 格納した場合は{@code true}
+     */
+    private boolean offer(Entry entry) {
+        try {
+            while (!buffer.offer(entry, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (closed || !thread.isAlive()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 書き込みスレッドを終了する。
+     * <p/>
+     * バッファに残っているエントリを全て書き込んでから終了する。
+     * 指定時間内に書き込みスレッドが終了しない場合は、残りのエントリを呼び出し元のスレッドで書き込む。
+     *
+     * @param timeoutMillis 書き込みスレッドの終了を待つ時間(ミリ秒)
+     */
+    void terminate(long timeoutMillis) {
+        closed = true;
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        long dropped = droppedCount.get();
+        if (dropped > 0) {
+            LOGGER.logWarn("[" + AsyncHttpAccessLogWriter.class.getName()
+                    + "#terminate] http access log entries were dropped because the buffer was full. dropped = " + dropped);
+        }
+        long failed = failedCount.get();
+        if (failed > 0) {
+            LOGGER.logWarn("[" + AsyncHttpAccessLogWriter.class.getName()
+                    + "#terminate] http access log entries could not be written. failed = " + failed);
+        }
+    }
+
+    /**
+     * バッファに格納されている件数を取得する。
+     *
+     * @return 件数
+     */
+    int getQueuedCount() {
+        return buffer.size();
+    }
+
+    /**
+     * バッファに格納した件数の累計を取得する。
+     *
+     * @return 件数
+     */
+    long getEnqueuedCount() {
+        return enqueuedCount.get();
+    }
+
+    /**
+     * バッファが満杯のため破棄した件数の累計を取得する。
+     *
+     * @return 件数
+     */
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * 書き込みに失敗した件数の累計を取得する。
+     *
+     * @return 件数
+     */
+    long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * 終了要求を受けるまで、バッファからエントリを取り出して書き込む。
+     */
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<Entry>(batchSize);
+        while (true) {
+            Entry first;
+            try {
+                first = buffer.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (first == null) {
+                if (closed) {
+                    break;
+                }
+                continue;
+            }
+            batch.add(first);
+            buffer.drainTo(batch, batchSize - 1);
+            write(batch);
+        }
+        drain();
+    }
+
+    /**
+     * バッファに残っているエントリを全て書き込む。
+     */
+    private void drain() {
+        List<Entry> batch = new ArrayList<Entry>(batchSize);
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            write(batch);
+        }
+    }
+
+    /**
+     * エントリをまとめて書き込む。
+     * <p/>
+     * 書き込みに失敗したエントリは件数を数え、残りのエントリの書き込みを継続する。
+     * 最初に失敗した際には、原因の例外を警告ログに出力する。
+     *
+     * @param batch エントリ(書き込み後にクリアする)
+     */
+    private void write(List<Entry> batch) {
+        for (Entry entry : batch) {
+            try {
+                write(entry);
+            } catch (RuntimeException e) {
+                if (failedCount.incrementAndGet() == 1) {
+                    LOGGER.logWarn("[" + AsyncHttpAccessLogWriter.class.getName()
+                            + "#write] could not write http access log entry.", e);
+                }
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * エントリを書き込む。
+     * <p/>
+     * ログのフォーマットでスレッドコンテキストの値を参照できるよう、
+     * リクエストスレッドで取得した値をスレッドコンテキストに設定してから書き込む。
+     *
+     * @param entry エントリ
+     */
+    private void write(Entry entry) {
+        String requestId = ThreadContext.getRequestId();
+        String internalRequestId = ThreadContext.getInternalRequestId();
+        String userId = ThreadContext.getUserId();
+        String executionId = ThreadContext.getExecutionId();
+        try {
+            ThreadContext.setRequestId(entry.requestId);
+            ThreadContext.setInternalRequestId(entry.internalRequestId);
+            ThreadContext.setUserId(entry.userId);
+            ThreadContext.setExecutionId(entry.executionId);
+            logger.logInfo(entry.message, entry.logOptions);
+        } finally {
+            ThreadContext.setRequestId(requestId);
+            ThreadContext.setInternalRequestId(internalRequestId);
+            ThreadContext.setUserId(userId);
+            ThreadContext.setExecutionId(executionId);
+        }
+    }
+
+    /**
+     * バッファに格納するエントリ。
+     * <p/>
+     * リクエスト処理の終了後にサーブレットAPIのオブジェクトを参照しないよう、
+     * フォーマット済みのメッセージとスレッドコンテキストの値のみを保持する。
+     */
+    private static final class Entry {
+
+        /** フォーマット済みのメッセージ */
+        private final String message;
+
+        /** ログ出力のオプション情報 */
+        private final Object[] logOptions;
+
+        /** リクエストID */
+        private final String requestId;
+
+        /** 内部リクエストID */
+        private final String internalRequestId;
+
+        /** ユーザID */
+        private final String userId;
+
+        /** 実行時ID */
+        private final String executionId;
+
+        /**
+         * コンストラクタ。
+         * <p/>
+         * 呼び出し元スレッドのスレッドコンテキストから値を取得する。
+         *
+         * @param message フォーマット済みのメッセージ
+         * @param logOptions ログ出力のオプション情報
+         */
+        Entry(String message, Object[] logOptions) {
+            this.message = message;
+            this.logOptions = logOptions;
+            this.requestId = ThreadContext.getRequestId();
+            this.internalRequestId = ThreadContext.getInternalRequestId();
+            this.userId = ThreadContext.getUserId();
+            this.executionId = ThreadContext.getExecutionId();
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package nablarch.fw.web.handler;
+
+import java.lang.reflect.Array;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import nablarch.core.log.LogItem;
+import nablarch.core.log.LogUtil.MapValueEditor;
+import nablarch.core.log.LogUtil.MaskingMapValueEditor;
+import nablarch.core.util.StringUtil;
+import nablarch.fw.web.handler.HttpAccessLogFormatter.HttpAccessLogContext;
+
+/**
+ * {@link HttpAccessLogFormatter}のフォーマットを、出力先の{@link StringBuilder}に直接書き込む処理の列に変換したテンプレート。
+ * <p/>
+ * フォーマット済みのログ出力項目のうち、{@link HttpAccessLogFormatter}が提供する以下の項目は、
+ * 文字列を生成せずに値を書き込む。それ以外の項目(固定文字列やサブクラスで追加した項目)は{@link LogItem#get(Object)}の結果を書き込む。
+ * <ul>
+ *     <li>数値の項目(ポート番号、ステータスコード、実行時間、メモリ量)は、数値のまま書き込む。</li>
+ *     <li>開始日時と終了日時は{@link DateTimeFormatter}でフォーマットし、同じミリ秒の結果を再利用する。
+ *     日時パターンが{@link DateTimeFormatter}で同じ結果にならない文字を含む場合は、元の項目を使用する。</li>
+ *     <li>リクエストパラメータとセッションスコープ情報は、パラメータ名ごとにマスク対象か否かの判定結果をキャッシュする。
+ *     {@code {区切り文字名前 = [値],区切り文字名前 = [値]}}の形式で出力し、複数の値は{@code ", "}で連結する。</li>
+ * </ul>
+ * フォーマットに使用する{@link StringBuilder}はスレッド毎に再利用する({@link LogMessageBuffer})。
+ */
+final class CompiledLogTemplate implements LogMessageBuffer.Appender {
+
+    /** 書き込み処理の列 */
+    private final Op[] ops;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param ops 書き込み処理の列
+     */
+    private CompiledLogTemplate(Op[] ops) {
+        this.ops = ops;
+    }
+
+    /**
+     * フォーマット済みのログ出力項目からテンプレートを生成する。
+     *
+     * @param logItems フォーマット済みのログ出力項目
+     * @param formatter マスク文字などの設定の取得に使用するフォーマッタ
+     * @param props 各種ログ出力の設定情報
+     * @return テンプレート
+     */
+    static CompiledLogTemplate compile(LogItem<HttpAccessLogContext>[] logItems,
+                                       HttpAccessLogFormatter formatter, Map<String, String> props) {
+        Op[] ops = new Op[logItems.length];
+        for (int i = 0; i < logItems.length; i++) {
+            ops[i] = compile(logItems[i], formatter, props);
+        }
+        return new CompiledLogTemplate(ops);
+    }
+
+    /**
+     * ログ出力項目を書き込み処理に変換する。
+     * <p/>
+     * サブクラスで振る舞いを変更した項目を誤って置き換えないよう、クラスが完全に一致する項目のみ変換する。
+     *
+     * @param item ログ出力項目
+     * @param formatter フォーマッタ
+     * @param props 各種ログ出力の設定情報
+     * @return 書き込み処理
+     */
+    private static Op compile(LogItem<HttpAccessLogContext> item, HttpAccessLogFormatter formatter,
+                              Map<String, String> props) {
+        Class<?> type = item.getClass();
+        if (type == HttpAccessLogFormatter.PortItem.class) {
+            return new Op() {
+                @Override
+                public void appendTo(StringBuilder sb, HttpAccessLogContext context) {
+                    sb.append(context.getPort());
+                }
+            };
+        }
+        if (type == HttpAccessLogFormatter.StatusCodeItem.class) {
+            return new Op() {
+                @Override
+                public void appendTo(StringBuilder sb, HttpAccessLogContext context) {
+                    int statusCode = context.getStatusCode();
+                    if (statusCode != -1) {
+                        sb.append(statusCode);
+                    }
+                }
+            };
+        }
+        if (type == HttpAccessLogFormatter.ExecutionTimeItem.class) {
+            return new Op() {
+                @Override
+                public void appendTo(StringBuilder sb, HttpAccessLogContext context) {
+                    sb.append(context.getExecutionTime());
+                }
+            };
+        }
+        if (type == HttpAccessLogFormatter.MaxMemoryItem.class) {
+            return new Op() {
+                @Override
+                public void appendTo(StringBuilder sb, HttpAccessLogContext context) {
+                    sb.append(context.getMaxMemory());
+                }
+            };
+        }
+        if (type == HttpAccessLogFormatter.FreeMemoryItem.class) {
+            return new Op() {
+                @Override
+                public void appendTo(StringBuilder sb, HttpAccessLogContext context) {
+                    sb.append(context.getFreeMemory());
+                }
+            };
+        }
+        if (type == HttpAccessLogFormatter.CpuTimeItem.class) {
+            return new Op() {
+                @Override
+                public void appendTo(StringBuilder sb, HttpAccessLogContext context) {
+                    long cpuTime = context.getCpuTime();
+                    if (cpuTime != -1) {
+                        sb.append(cpuTime);
+                    }
+                }
+            };
+        }
+        if (type == HttpAccessLogFormatter.AllocatedBytesItem.class) {
+            return new Op() {
+                @Override
+                public void appendTo(StringBuilder sb, HttpAccessLogContext context) {
+                    long allocatedBytes = context.getAllocatedBytes();
+                    if (allocatedBytes != -1) {
+                        sb.append(allocatedBytes);
+                    }
+                }
+            };
+        }
+        if (type == HttpAccessLogFormatter.UrlItem.class) {
+            return new Op() {
+                @Override
+                public void appendTo(StringBuilder sb, HttpAccessLogContext context) {
+                    sb.append(context.getServletRequest().getRequestURL());
+                }
+            };
+        }
+        if (type == HttpAccessLogFormatter.StartTimeItem.class || type == HttpAccessLogFormatter.EndTimeItem.class) {
+            DateTimeFormatter dateTimeFormatter = toDateTimeFormatter(formatter.getDateFormat(props));
+            if (dateTimeFormatter != null) {
+                return new TimeOp(dateTimeFormatter, type == HttpAccessLogFormatter.StartTimeItem.class);
+            }
+        }
+        if (type == HttpAccessLogFormatter.ParametersItem.class || type == HttpAccessLogFormatter.SessionScopeItem.class) {
+            boolean parameters = type == HttpAccessLogFormatter.ParametersItem.class;
+            return new MapOp(
+                    new MaskingMapValueEditor(formatter.getMaskingChar(props), formatter.getMaskingPatterns(props)),
+                    parameters ? formatter.getParametersSeparator(props) : formatter.getSessionScopeSeparator(props),
+                    parameters);
+        }
+        return new ItemOp(item);
+    }
+
+    /** {@link DateTimeFormatter}で{@link SimpleDateFormat}と同じ結果になるパターン文字 */
+    private static final String COMPATIBLE_PATTERN_LETTERS = "yMdHhmsaEkK";
+
+    /**
+     * {@link SimpleDateFormat}と同じ結果となる{@link DateTimeFormatter}を生成する。
+     * <p/>
+     * パターンの意味が異なる文字を含む場合や、{@link SimpleDateFormat}でない場合は{@code null}を返す。
+     * ミリ秒({@code S})は3桁の場合のみ同じ結果となる。
+     *
+     * @param dateFormat 日時フォーマット
+     * @return {@link DateTimeFormatter}
+     */
+    static DateTimeFormatter toDateTimeFormatter(DateFormat dateFormat) {
+        if (dateFormat.getClass() != SimpleDateFormat.class) {
+            return null;
+        }
+        String pattern = ((SimpleDateFormat) dateFormat).toPattern();
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (quoted) {
+                continue;
+            } else if (c == 'S') {
+                int end = i;
+                while (end < pattern.length() && pattern.charAt(end) == 'S') {
+                    end++;
+                }
+                if (end - i != 3) {
+                    return null;
+                }
+                i = end - 1;
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                if (COMPATIBLE_PATTERN_LETTERS.indexOf(c) < 0) {
+                    return null;
+                }
+            } else if ("[]{}#".indexOf(c) >= 0) {
+                return null;
+            }
+        }
+        try {
+            return DateTimeFormatter.ofPattern(pattern).withZone(ZoneId.systemDefault());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * メッセージをフォーマットする。
+     *
+     * @param context HttpAccessLogContext
+     * @return フォーマット済みのメッセージ
+     */
+    String format(HttpAccessLogContext context) {
+        return LogMessageBuffer.format(this, context);
+    }
+
+    /**
+     * メッセージを書き込む。
+     *
+     * @param sb 書き込み先
+     * @param context HttpAccessLogContext
+     */
+    @Override
+    public void appendTo(StringBuilder sb, HttpAccessLogContext context) {
+        for (Op op : ops) {
+            op.appendTo(sb, context);
+        }
+    }
+
+    /**
+     * 書き込み処理。
+     */
+    interface Op {
+
+        /**
+         * 値を書き込む。
+         *
+         * @param sb 書き込み先
+         * @param context HttpAccessLogContext
+         */
+        void appendTo(StringBuilder sb, HttpAccessLogContext context);
+    }
+
+    /**
+     * {@link LogItem#get(Object)}の結果を書き込む処理。
+     */
+    private static final class ItemOp implements Op {
+
+        /** ログ出力項目 */
+        private final LogItem<HttpAccessLogContext> item;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param item ログ出力項目
+         */
+        ItemOp(LogItem<HttpAccessLogContext> item) {
+            this.item = item;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb, HttpAccessLogContext context) {
+            sb.append(item.get(context));
+        }
+    }
+
+    /**
+     * 開始日時または終了日時を書き込む処理。
+     * <p/>
+     * 直前にフォーマットしたミリ秒と結果を保持し、同じミリ秒であれば結果を再利用する。
+     */
+    private static final class TimeOp implements Op {
+
+        /** 日時フォーマット */
+        private final DateTimeFormatter dateTimeFormatter;
+
+        /** 開始日時を書き込む場合は{@code true} */
+        private final boolean startTime;
+
+        /** 直前のフォーマット結果 */
+        private volatile FormattedTime last = new FormattedTime(Long.MIN_VALUE, null);
+
+        /**
+         * コンストラクタ。
+         *
+         * @param dateTimeFormatter 日時フォーマット
+         * @param startTime 開始日時を書き込む場合は{@code true}
+         */
+        TimeOp(DateTimeFormatter dateTimeFormatter, boolean startTime) {
+            this.dateTimeFormatter = dateTimeFormatter;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb, HttpAccessLogContext context) {
+            long millis = startTime ? context.getStartTime() : context.getEndTime();
+            FormattedTime current = last;
+            if (current.millis != millis) {
+                current = new FormattedTime(millis, dateTimeFormatter.format(Instant.ofEpochMilli(millis)));
+                last = current;
+            }
+            sb.append(current.text);
+        }
+    }
+
+    /**
+     * フォーマット済みの日時。
+     */
+    private static final class FormattedTime {
+
+        /** ミリ秒 */
+        private final long millis;
+
+        /** フォーマット結果 */
+        private final String text;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param millis ミリ秒
+         * @param text フォーマット結果
+         */
+        FormattedTime(long millis, String text) {
+            this.millis = millis;
+            this.text = text;
+        }
+    }
+
+    /**
+     * リクエストパラメータまたはセッションスコープ情報を書き込む処理。
+     * <p/>
+     * マスク対象か否かの判定結果を名前毎にキャッシュする。
+     * 名前はクライアントが任意に指定できるため、キャッシュの件数には上限を設ける。
+     */
+    private static final class MapOp implements Op {
+
+        /** キャッシュする名前の上限 */
+        private static final int MAX_CACHED_NAMES = 1024;
+
+        /** マスク対象か否かの判定に使用する値 */
+        private static final String PROBE = "\u0000probe";
+
+        /** マスク処理 */
+        private final MapValueEditor editor;
+
+        /** 区切り文字 */
+        private final String separator;
+
+        /** リクエストパラメータを書き込む場合は{@code true} */
+        private final boolean parameters;
+
+        /** 名前毎のマスク対象か否かの判定結果 */
+        private final ConcurrentMap<String, Boolean> masked = new ConcurrentHashMap<String, Boolean>();
+
+        /**
+         * コンストラクタ。
+         *
+         * @param editor マスク処理
+         * @param separator 区切り文字
+         * @param parameters リクエストパラメータを書き込む場合は{@code true}
+         */
+        MapOp(MapValueEditor editor, String separator, boolean parameters) {
+            this.editor = editor;
+            this.separator = separator;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb, HttpAccessLogContext context) {
+            if (!context.isSampled()) {
+                sb.append(HttpAccessLogFormatter.NOT_SAMPLED);
+                return;
+            }
+            Map<String, ?> map = parameters ? context.getParameters() : context.getSessionScopeMap();
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<String, ?> entry : map.entrySet()) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                String name = entry.getKey();
+                sb.append(separator).append(name).append(" = [");
+                appendValue(sb, name, entry.getValue());
+                sb.append(']');
+            }
+            sb.append('}');
+        }
+
+        /**
+         * 値を書き込む。
+         * <p/>
+         * マスク対象の値と、配列以外の文字列でない値は、マスク処理で文字列に変換する。
+         * マスク対象外の配列は{@link nablarch.core.log.LogUtil.BasicMapValueEditor}と同様に、
+         * プリミティブ型の配列を含めて要素毎に書き込む。
+         *
+         * @param sb 書き込み先
+         * @param name 名前
+         * @param value 値
+         */
+        private void appendValue(StringBuilder sb, String name, Object value) {
+            if (value instanceof String && !isMasked(name)) {
+                sb.append((String) value);
+                return;
+            }
+            if (value == null || !value.getClass().isArray() || isMasked(name)) {
+                sb.append(editor.edit(name, value));
+                return;
+            }
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                if (i != 0) {
+                    sb.append(", ");
+                }
+                Object element = Array.get(value, i);
+                sb.append(element instanceof String ? (String) element : StringUtil.toString(element));
+            }
+        }
+
+        /**
+         * マスク対象の名前か否かを判定する。
+         *
+         * @param name 名前
+         * @return マスク対象の場合は{@code true}
+         */
+        private boolean isMasked(String name) {
+            Boolean cached = masked.get(name);
+            if (cached != null) {
+                return cached;
+            }
+            boolean result = !PROBE.equals(editor.edit(name, PROBE));
+            if (masked.size() < MAX_CACHED_NAMES) {
+                masked.putIfAbsent(name, result);
+            }
+            return result;
+        }
+    }
+}
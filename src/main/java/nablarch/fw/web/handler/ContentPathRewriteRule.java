@@ -15,6 +15,24 @@ import nablarch.fw.web.HttpResponse;
 public class ContentPathRewriteRule
 extends RewriteRule<HttpResponse, ContentPathRewriteRule> {
 
+    /** パターンのリテラル接頭辞 */
+    private String literalPrefix = "";
+
+    @Override
+    public ContentPathRewriteRule setPattern(String pattern) {
+        literalPrefix = RewriteRuleIndex.literalPrefixOf(pattern);
+        return super.setPattern(pattern);
+    }
+
+    /**
+     * パターンのリテラル接頭辞を取得する。
+     * @return リテラル接頭辞(持たない場合は空文字)
+     * @see RewriteRuleIndex#literalPrefixOf(String)
+     */
+    String getLiteralPrefix() {
+        return literalPrefix;
+    }
+
     @Override
     public String getPathToRewrite(HttpResponse response) {
         return response.getContentPath().toString();
@@ -24,6 +24,22 @@ import java.util.regex.Pattern;
 
 /**
  * HTTPアクセスログのメッセージをフォーマットするクラス。
+ * <p>
+ * プロパティ{@code httpAccessLogFormatter.streamingEnabled}に{@code true}を指定すると、
+ * 出力項目のマップを生成せずに、JSONを直接書き込んでフォーマットする。
+ * この場合、以下のプロパティでリクエストパラメータとセッションスコープ情報の出力量に上限を設定できる。
+ * </p>
+ * <ul>
+ *     <li>{@code httpAccessLogFormatter.maxMapEntries}: 出力する要素数の上限。
+ *     超えた分は出力せず、出力しなかった要素数を{@code parametersOmittedCount}または{@code sessionScopeOmittedCount}に出力する。</li>
+ *     <li>{@code httpAccessLogFormatter.maxMapValueLength}: 値の文字数の上限。
+ *     超えた値は切り詰めて{@code ...(truncated)}を付加する。</li>
+ * </ul>
+ * <p>
+ * 出力項目に独自の{@link JsonLogObjectBuilder}が含まれる場合や、
+ * {@link #createSerializationManager(JsonSerializationSettings)}をオーバーライドしている場合は、
+ * {@code streamingEnabled}の指定に関わらず{@link JsonSerializationManager}でフォーマットする。
+ * </p>
  * @author Shuji Kitamura
  */
 @Published(tag = "architect")
@@ -75,6 +91,10 @@ public class HttpAccessJsonLogFormatter extends HttpAccessLogFormatter {
     private static final String TARGET_NAME_MAX_MEMORY = "maxMemory";
     /** 空きメモリ量(開始時)の項目名 */
     private static final String TARGET_NAME_FREE_MEMORY = "freeMemory";
+    /** CPU時間の項目名 */
+    private static final String TARGET_NAME_CPU_TIME = "cpuTime";
+    /** 割り当てたメモリ量の項目名 */
+    private static final String TARGET_NAME_ALLOCATED_BYTES = "allocatedBytes";
 
     /** リクエスト処理開始時の出力項目を取得する際に使用するプロパティ名 */
     private static final String PROPS_BEGIN_TARGETS = PROPS_PREFIX + "beginTargets";
@@ -105,6 +125,23 @@ public class HttpAccessJsonLogFormatter extends HttpAccessLogFormatter {
     private static final String DEFAULT_END_TARGETS = "label,requestId,userId,sessionId,url,"
             + "statusCode,contentPath,startTime,endTime,executionTime,maxMemory,freeMemory";
 
+    /** JSONを直接書き込むか否かを取得する際に使用するプロパティ名 */
+    private static final String PROPS_STREAMING_ENABLED = PROPS_PREFIX + "streamingEnabled";
+    /** マップの要素数の上限を取得する際に使用するプロパティ名 */
+    private static final String PROPS_MAX_MAP_ENTRIES = PROPS_PREFIX + "maxMapEntries";
+    /** マップの値の文字数の上限を取得する際に使用するプロパティ名 */
+    private static final String PROPS_MAX_MAP_VALUE_LENGTH = PROPS_PREFIX + "maxMapValueLength";
+
+    /** メッセージの接頭辞のプロパティ名(プレフィックスを除く) */
+    private static final String SETTINGS_STRUCTURED_MESSAGE_PREFIX = "structuredMessagePrefix";
+    /** 日時パターンのプロパティ名(プレフィックスを除く) */
+    private static final String SETTINGS_DATE_PATTERN = "datePattern";
+
+    /** デフォルトのメッセージの接頭辞 */
+    private static final String DEFAULT_STRUCTURED_MESSAGE_PREFIX = "$JSON$";
+    /** デフォルトの日時パターン */
+    private static final String DEFAULT_DATE_PATTERN = "yyyy-MM-dd HH:mm:ss.SSS";
+
     /** デフォルトのリクエスト処理開始時のラベル */
     private static final String DEFAULT_BEGIN_LABEL = "HTTP ACCESS BEGIN";
     /** デフォルトのhiddenパラメータ復号後のラベル */
@@ -123,9 +160,24 @@ public class HttpAccessJsonLogFormatter extends HttpAccessLogFormatter {
     /** リクエスト処理終了時のフォーマット済みのログ出力項目 */
     private List<JsonLogObjectBuilder<HttpAccessLogContext>> endStructuredTargets;
 
+    /** リクエスト処理開始時のJSONを直接書き込むテンプレート。使用しない場合は{@code null} */
+    private StreamingJsonLogTemplate beginTemplate;
+    /** hiddenパラメータ復号後のJSONを直接書き込むテンプレート。使用しない場合は{@code null} */
+    private StreamingJsonLogTemplate parametersTemplate;
+    /** ディスパッチ先クラス決定後のJSONを直接書き込むテンプレート。使用しない場合は{@code null} */
+    private StreamingJsonLogTemplate dispatchingClassTemplate;
+    /** リクエスト処理終了時のJSONを直接書き込むテンプレート。使用しない場合は{@code null} */
+    private StreamingJsonLogTemplate endTemplate;
+
     /** 出力対象にメモリ項目が含まれているか否か。 */
     private boolean containsMemoryItem;
 
+    /** 出力対象にCPU時間の項目が含まれているか否か。 */
+    private boolean containsCpuTimeItem;
+
+    /** 出力対象に割り当てたメモリ量の項目が含まれているか否か。 */
+    private boolean containsAllocatedBytesItem;
+
     /** 各種ログのJSONフォーマット支援オブジェクト */
     private JsonLogFormatterSupport support;
 
@@ -168,7 +220,54 @@ public class HttpAccessJsonLogFormatter extends HttpAccessLogFormatter {
             endStructuredTargets = getStructuredTargets(objectBuilders, props, PROPS_END_TARGETS, DEFAULT_END_TARGETS);
 
             initContainsMemoryItem();
+            initContainsThreadItem();
+        }
+
+        if (Boolean.parseBoolean(getProp(props, PROPS_STREAMING_ENABLED, Boolean.FALSE.toString()))
+                && serializationManager.getClass() == BasicJsonSerializationManager.class) {
+            initializeTemplates(props, settings);
+        }
+    }
+
+    /**
+     * JSONを直接書き込むテンプレートを初期化する。
+     * @param props 各種ログ出力の設定情報
+     * @param settings 各種ログ出力の設定情報
+     */
+    private void initializeTemplates(Map<String, String> props, JsonSerializationSettings settings) {
+        String prefix = getSetting(settings, SETTINGS_STRUCTURED_MESSAGE_PREFIX, DEFAULT_STRUCTURED_MESSAGE_PREFIX);
+        String datePattern = getSetting(settings, SETTINGS_DATE_PATTERN, DEFAULT_DATE_PATTERN);
+        int maxMapEntries = Integer.parseInt(getProp(props, PROPS_MAX_MAP_ENTRIES, "0"));
+        int maxMapValueLength = Integer.parseInt(getProp(props, PROPS_MAX_MAP_VALUE_LENGTH, "0"));
+        if (beginStructuredTargets != null) {
+            beginTemplate = StreamingJsonLogTemplate.compile(
+                    beginStructuredTargets, prefix, datePattern, maxMapEntries, maxMapValueLength);
+        }
+        if (parametersStructuredTargets != null) {
+            parametersTemplate = StreamingJsonLogTemplate.compile(
+                    parametersStructuredTargets, prefix, datePattern, maxMapEntries, maxMapValueLength);
+        }
+        if (dispatchingClassStructuredTargets != null) {
+            dispatchingClassTemplate = StreamingJsonLogTemplate.compile(
+                    dispatchingClassStructuredTargets, prefix, datePattern, maxMapEntries, maxMapValueLength);
         }
+        if (endStructuredTargets != null) {
+            endTemplate = StreamingJsonLogTemplate.compile(
+                    endStructuredTargets, prefix, datePattern, maxMapEntries, maxMapValueLength);
+        }
+    }
+
+    /**
+     * 設定値を取得する。<br>
+     * 設定値の指定がない場合はデフォルト値を返す。
+     * @param settings 各種ログ出力の設定情報
+     * @param name プロパティ名(プレフィックスを除く)
+     * @param defaultValue デフォルト値
+     * @return 設定値
+     */
+    private static String getSetting(JsonSerializationSettings settings, String name, String defaultValue) {
+        String value = settings.getProp(name);
+        return !StringUtil.isNullOrEmpty(value) ? value : defaultValue;
     }
 
     /**
@@ -196,6 +295,24 @@ public class HttpAccessJsonLogFormatter extends HttpAccessLogFormatter {
         }
     }
 
+    /**
+     * {@link #containsCpuTimeItem}と{@link #containsAllocatedBytesItem}の値を初期化する。
+     * <p>
+     * {@link #endStructuredTargets}に{@link CpuTimeBuilder}、{@link AllocatedBytesBuilder}が
+     * 設定されている場合に、それぞれ true を設定する。
+     * </p>
+     */
+    private void initContainsThreadItem() {
+        for (JsonLogObjectBuilder<HttpAccessLogContext> target : endStructuredTargets) {
+            if (target instanceof CpuTimeBuilder) {
+                containsCpuTimeItem = true;
+            }
+            if (target instanceof AllocatedBytesBuilder) {
+                containsAllocatedBytesItem = true;
+            }
+        }
+    }
+
     /**
      * フォーマット対象のログ出力項目を取得する。
      * @param props 各種ログ出力の設定情報
@@ -233,6 +350,8 @@ public class HttpAccessJsonLogFormatter extends HttpAccessLogFormatter {
         objectBuilders.put(TARGET_NAME_EXECUTION_TIME, new ExecutionTimeBuilder());
         objectBuilders.put(TARGET_NAME_MAX_MEMORY, new MaxMemoryBuilder());
         objectBuilders.put(TARGET_NAME_FREE_MEMORY, new FreeMemoryBuilder());
+        objectBuilders.put(TARGET_NAME_CPU_TIME, new CpuTimeBuilder());
+        objectBuilders.put(TARGET_NAME_ALLOCATED_BYTES, new AllocatedBytesBuilder());
 
         return objectBuilders;
     }
@@ -283,6 +402,24 @@ public class HttpAccessJsonLogFormatter extends HttpAccessLogFormatter {
         return containsMemoryItem;
     }
 
+    /**
+     * 出力対象にCPU時間の項目が含まれているか否かを判定する。
+     * @return 出力対象にCPU時間の項目が含まれている場合はtrue
+     */
+    @Override
+    public boolean containsCpuTimeItem() {
+        return containsCpuTimeItem;
+    }
+
+    /**
+     * 出力対象に割り当てたメモリ量の項目が含まれているか否かを判定する。
+     * @return 出力対象に割り当てたメモリ量の項目が含まれている場合はtrue
+     */
+    @Override
+    public boolean containsAllocatedBytesItem() {
+        return containsAllocatedBytesItem;
+    }
+
     /**
      * リクエスト処理開始時のメッセージをフォーマットする。
      * @param context HttpAccessLogContext
@@ -290,6 +427,9 @@ public class HttpAccessJsonLogFormatter extends HttpAccessLogFormatter {
      */
     @Override
     public String formatBegin(HttpAccessLogContext context) {
+        if (beginTemplate != null) {
+            return beginTemplate.format(context);
+        }
         return support.getStructuredMessage(beginStructuredTargets, context);
     }
 
@@ -300,6 +440,9 @@ public class HttpAccessJsonLogFormatter extends HttpAccessLogFormatter {
      */
     @Override
     public String formatParameters(HttpAccessLogContext context) {
+        if (parametersTemplate != null) {
+            return parametersTemplate.format(context);
+        }
         return support.getStructuredMessage(parametersStructuredTargets, context);
     }
 
@@ -310,6 +453,9 @@ public class HttpAccessJsonLogFormatter extends HttpAccessLogFormatter {
      */
     @Override
     public String formatDispatchingClass(HttpAccessLogContext context) {
+        if (dispatchingClassTemplate != null) {
+            return dispatchingClassTemplate.format(context);
+        }
         return support.getStructuredMessage(dispatchingClassStructuredTargets, context);
     }
 
@@ -320,6 +466,9 @@ public class HttpAccessJsonLogFormatter extends HttpAccessLogFormatter {
      */
     @Override
     public String formatEnd(HttpAccessLogContext context) {
+        if (endTemplate != null) {
+            return endTemplate.format(context);
+        }
         return support.getStructuredMessage(endStructuredTargets, context);
     }
 
@@ -339,6 +488,14 @@ public class HttpAccessJsonLogFormatter extends HttpAccessLogFormatter {
             this.label = label;
         }
 
+        /**
+         * ラベルを取得する。
+         * @return ラベル
+         */
+        String getLabel() {
+            return label;
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -455,11 +612,23 @@ public class HttpAccessJsonLogFormatter extends HttpAccessLogFormatter {
             this.mapValueEditor = mapValueEditor;
         }
 
+        /**
+         * マップの値のマスキングを取得する。
+         * @return マップの値のマスキング
+         */
+        MapValueEditor getMapValueEditor() {
+            return mapValueEditor;
+        }
+
         /**
          * {@inheritDoc}
          */
         @Override
         public void build(Map<String, Object> structuredObject, HttpAccessLogContext context) {
+            if (!context.isSampled()) {
+                // サンプリングによって出力対象外となった場合は項目を出力しない。
+                return;
+            }
             Map<String, String[]> map = new HashMap<String, String[]>();
             for (Map.Entry<String, String[]> entry : context.getParameters().entrySet()) {
                 String [] values = new String[entry.getValue().length];
@@ -489,11 +658,23 @@ public class HttpAccessJsonLogFormatter extends HttpAccessLogFormatter {
             this.mapValueEditor = mapValueEditor;
         }
 
+        /**
+         * マップの値のマスキングを取得する。
+         * @return マップの値のマスキング
+         */
+        MapValueEditor getMapValueEditor() {
+            return mapValueEditor;
+        }
+
         /**
          * {@inheritDoc}
          */
         @Override
         public void build(Map<String, Object> structuredObject, HttpAccessLogContext context) {
+            if (!context.isSampled()) {
+                // サンプリングによって出力対象外となった場合は項目を出力しない。
+                return;
+            }
             Map<String, String> map = new HashMap<String, String>();
             for (Map.Entry<String, Object> entry : context.getSessionScopeMap().entrySet()) {
                 String values = mapValueEditor.edit(entry.getKey(), entry.getValue());
@@ -713,4 +894,40 @@ public class HttpAccessJsonLogFormatter extends HttpAccessLogFormatter {
             structuredObject.put(TARGET_NAME_FREE_MEMORY, context.getFreeMemory());
         }
     }
+
+    /**
+     * リクエスト処理で使用したCPU時間を処理するクラス。<br>
+     * 計測できなかった場合は出力しない。
+     */
+    public static class CpuTimeBuilder implements JsonLogObjectBuilder<HttpAccessLogContext> {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void build(Map<String, Object> structuredObject, HttpAccessLogContext context) {
+            long cpuTime = context.getCpuTime();
+            if (cpuTime != -1) {
+                structuredObject.put(TARGET_NAME_CPU_TIME, cpuTime);
+            }
+        }
+    }
+
+    /**
+     * リクエスト処理で割り当てたメモリ量を処理するクラス。<br>
+     * 計測できなかった場合は出力しない。
+     */
+    public static class AllocatedBytesBuilder implements JsonLogObjectBuilder<HttpAccessLogContext> {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void build(Map<String, Object> structuredObject, HttpAccessLogContext context) {
+            long allocatedBytes = context.getAllocatedBytes();
+            if (allocatedBytes != -1) {
+                structuredObject.put(TARGET_NAME_ALLOCATED_BYTES, allocatedBytes);
+            }
+        }
+    }
 }
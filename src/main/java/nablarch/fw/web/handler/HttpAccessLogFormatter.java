@@ -86,6 +86,9 @@ public class HttpAccessLogFormatter {
     /** デフォルトのリクエスト処理終了時の出力が有効か否か。 */
     private static final String DEFAULT_END_OUTPUT_ENABLED = Boolean.TRUE.toString();
 
+    /** デフォルトのテンプレートのコンパイルが有効か否か */
+    private static final String DEFAULT_COMPILED_TEMPLATE_ENABLED = Boolean.FALSE.toString();
+
     /** プロパティ名のプレフィックス */
     public static final String PROPS_PREFIX = "httpAccessLogFormatter.";
 
@@ -128,6 +131,9 @@ public class HttpAccessLogFormatter {
     /** リクエスト処理終了時の出力が有効か否かを取得する際に使用するプロパティ名 */
     private static final String PROPS_END_OUTPUT_ENABLED = PROPS_PREFIX + "endOutputEnabled";
 
+    /** テンプレートのコンパイルが有効か否かを取得する際に使用するプロパティ名 */
+    private static final String PROPS_COMPILED_TEMPLATE_ENABLED = PROPS_PREFIX + "compiledTemplateEnabled";
+
     /** リクエスト処理開始時の出力が有効か否か。 */
     private boolean beginOutputEnabled;
 
@@ -143,6 +149,12 @@ public class HttpAccessLogFormatter {
     /** 出力対象にメモリ項目が含まれているか否か。 */
     private boolean containsMemoryItem = false;
 
+    /** 出力対象にCPU時間の項目が含まれているか否か。 */
+    private boolean containsCpuTimeItem = false;
+
+    /** 出力対象に割り当てたメモリ量の項目が含まれているか否か。 */
+    private boolean containsAllocatedBytesItem = false;
+
     /** リクエスト処理開始時のフォーマット済みのログ出力項目 */
     private LogItem<HttpAccessLogContext>[] beginLogItems;
 
@@ -155,6 +167,18 @@ public class HttpAccessLogFormatter {
     /** リクエスト処理終了時のフォーマット済みのログ出力項目 */
     private LogItem<HttpAccessLogContext>[] endLogItems;
 
+    /** リクエスト処理開始時のコンパイル済みのテンプレート。コンパイルが無効な場合は{@code null} */
+    private CompiledLogTemplate beginTemplate;
+
+    /** hiddenパラメータ復号後のコンパイル済みのテンプレート。コンパイルが無効な場合は{@code null} */
+    private CompiledLogTemplate parametersTemplate;
+
+    /** ディスパッチ先クラス決定後のコンパイル済みのテンプレート。コンパイルが無効な場合は{@code null} */
+    private CompiledLogTemplate dispatchingClassTemplate;
+
+    /** リクエスト処理終了時のコンパイル済みのテンプレート。コンパイルが無効な場合は{@code null} */
+    private CompiledLogTemplate endTemplate;
+
     /**
      * フォーマット済みのログ出力項目を初期化する。
      */
@@ -202,6 +226,34 @@ public class HttpAccessLogFormatter {
         if (isEndOutputEnabled()) {
             endLogItems = LogUtil.createFormattedLogItems(logItems, getProp(props, PROPS_END_FORMAT, DEFAULT_END_FORMAT));
             containsMemoryItem = LogUtil.contains(endLogItems, MaxMemoryItem.class, FreeMemoryItem.class);
+            containsCpuTimeItem = LogUtil.contains(endLogItems, CpuTimeItem.class);
+            containsAllocatedBytesItem = LogUtil.contains(endLogItems, AllocatedBytesItem.class);
+        }
+        if (Boolean.parseBoolean(getProp(props, PROPS_COMPILED_TEMPLATE_ENABLED, DEFAULT_COMPILED_TEMPLATE_ENABLED))) {
+            initializeCompiledTemplates(props);
+        }
+    }
+
+    /**
+     * フォーマット済みのログ出力項目をコンパイルしたテンプレートを初期化する。
+     * <p/>
+     * テンプレートは値を{@link StringBuilder}に直接書き込むため、
+     * 数値や日時の項目で中間の文字列を生成せずにメッセージをフォーマットできる。
+     * 詳細は{@link CompiledLogTemplate}を参照。
+     * @param props 各種ログ出力の設定情報
+     */
+    private void initializeCompiledTemplates(Map<String, String> props) {
+        if (beginLogItems != null) {
+            beginTemplate = CompiledLogTemplate.compile(beginLogItems, this, props);
+        }
+        if (parametersLogItems != null) {
+            parametersTemplate = CompiledLogTemplate.compile(parametersLogItems, this, props);
+        }
+        if (dispatchingClassLogItems != null) {
+            dispatchingClassTemplate = CompiledLogTemplate.compile(dispatchingClassLogItems, this, props);
+        }
+        if (endLogItems != null) {
+            endTemplate = CompiledLogTemplate.compile(endLogItems, this, props);
         }
     }
 
@@ -221,6 +273,22 @@ public class HttpAccessLogFormatter {
         return containsMemoryItem;
     }
 
+    /**
+     * 出力対象にCPU時間の項目が含まれているか否かを判定する。
+     * @return 出力対象にCPU時間の項目が含まれている場合はtrue
+     */
+    public boolean containsCpuTimeItem() {
+        return containsCpuTimeItem;
+    }
+
+    /**
+     * 出力対象に割り当てたメモリ量の項目が含まれているか否かを判定する。
+     * @return 出力対象に割り当てたメモリ量の項目が含まれている場合はtrue
+     */
+    public boolean containsAllocatedBytesItem() {
+        return containsAllocatedBytesItem;
+    }
+
     /**
      * フォーマット対象のログ出力項目を取得する。
      * @param props 各種ログの設定情報
@@ -256,6 +324,8 @@ public class HttpAccessLogFormatter {
         logItems.put("$executionTime$", new ExecutionTimeItem());
         logItems.put("$maxMemory$", new MaxMemoryItem());
         logItems.put("$freeMemory$", new FreeMemoryItem());
+        logItems.put("$cpuTime$", new CpuTimeItem());
+        logItems.put("$allocatedBytes$", new AllocatedBytesItem());
 
         return logItems;
     }
@@ -296,6 +366,24 @@ public class HttpAccessLogFormatter {
         return parametersSeparator.replace("\\n", Logger.LS).replace("\\t", "\t");
     }
 
+    /**
+     * リクエストパラメータ間の区切り文字を取得する。
+     * @param props 各種ログの設定情報
+     * @return リクエストパラメータ間の区切り文字
+     */
+    String getParametersSeparator(Map<String, String> props) {
+        return getSeparator(props, PROPS_PARAMETERS_SEPARATOR, DEFAULT_PARAMETERS_SEPARATOR);
+    }
+
+    /**
+     * セッションスコープ情報の変数間の区切り文字を取得する。
+     * @param props 各種ログの設定情報
+     * @return 変数間の区切り文字
+     */
+    String getSessionScopeSeparator(Map<String, String> props) {
+        return getSeparator(props, PROPS_SESSION_SCOPE_SEPARATOR, DEFAULT_SESSION_SCOPE_SEPARATOR);
+    }
+
     /**
      * マスク文字を取得する。
      * @param props 各種ログの設定情報
@@ -333,6 +421,9 @@ public class HttpAccessLogFormatter {
         return maskingPatterns.toArray(new Pattern[maskingPatterns.size()]);
     }
 
+    /** サンプリングによって出力対象外となったリクエストパラメータとセッションスコープ情報の代わりに出力する文字列 */
+    public static final String NOT_SAMPLED = "(not sampled)";
+
     /** 多値指定(カンマ区切り)のプロパティを分割する際に使用するパターン */
     private static final Pattern MULTIVALUE_SEPARATOR_PATTERN = Pattern.compile(",");
 
@@ -342,6 +433,9 @@ public class HttpAccessLogFormatter {
      * @return フォーマット済みのメッセージ
      */
     public String formatBegin(HttpAccessLogContext context) {
+        if (beginTemplate != null) {
+            return beginTemplate.format(context);
+        }
         return LogUtil.formatMessage(beginLogItems, context);
     }
 
@@ -351,6 +445,9 @@ public class HttpAccessLogFormatter {
      * @return フォーマット済みのメッセージ
      */
     public String formatParameters(HttpAccessLogContext context) {
+        if (parametersTemplate != null) {
+            return parametersTemplate.format(context);
+        }
         return LogUtil.formatMessage(parametersLogItems, context);
     }
 
@@ -360,6 +457,9 @@ public class HttpAccessLogFormatter {
      * @return フォーマット済みのメッセージ
      */
     public String formatDispatchingClass(HttpAccessLogContext context) {
+        if (dispatchingClassTemplate != null) {
+            return dispatchingClassTemplate.format(context);
+        }
         return LogUtil.formatMessage(dispatchingClassLogItems, context);
     }
 
@@ -369,6 +469,9 @@ public class HttpAccessLogFormatter {
      * @return フォーマット済みのメッセージ
      */
     public String formatEnd(HttpAccessLogContext context) {
+        if (endTemplate != null) {
+            return endTemplate.format(context);
+        }
         return LogUtil.formatMessage(endLogItems, context);
     }
 
@@ -425,6 +528,20 @@ public class HttpAccessLogFormatter {
         private long maxMemory;
         /** 空きメモリ量(開始時) */
         private long freeMemory;
+        /** スレッドのCPU時間(開始時、ナノ秒) */
+        private long startCpuTime = -1;
+        /** スレッドのCPU時間(終了時、ナノ秒) */
+        private long endCpuTime = -1;
+        /** スレッドが割り当てたメモリ量の累計(開始時) */
+        private long startAllocatedBytes = -1;
+        /** スレッドが割り当てたメモリ量の累計(終了時) */
+        private long endAllocatedBytes = -1;
+        /** リクエストパラメータとセッションスコープ情報を出力するか否か */
+        private boolean sampled = true;
+        /** サンプリング対象外のため出力を保留したhiddenパラメータ復号後のログがあるか否か */
+        private boolean parametersDeferred;
+        /** サンプリングの判定に使用したルール */
+        private AccessLogSampler.Rule samplingRule;
 
         @SuppressWarnings("unchecked")
         private static final Map<String, Object> EMPTY_MAP = Collections.EMPTY_MAP;
@@ -458,6 +575,13 @@ public class HttpAccessLogFormatter {
         public HttpServletRequest getServletRequest() throws ClassCastException {
             return context.getServletRequest();
         }
+        /**
+         * HTTPリクエストを取得する。
+         * @return HTTPリクエスト
+         */
+        public HttpRequest getRequest() {
+            return request;
+        }
         /**
          * HTTPリクエストを設定する。
          * @param request HTTPリクエスト
@@ -646,6 +770,99 @@ public class HttpAccessLogFormatter {
         public void setFreeMemory(long freeMemory) {
             this.freeMemory = freeMemory;
         }
+        /**
+         * スレッドのCPU時間(開始時)を設定する。
+         * @param startCpuTime スレッドのCPU時間(ナノ秒)。計測できない場合は-1
+         */
+        public void setStartCpuTime(long startCpuTime) {
+            this.startCpuTime = startCpuTime;
+        }
+        /**
+         * スレッドのCPU時間(終了時)を設定する。
+         * @param endCpuTime スレッドのCPU時間(ナノ秒)。計測できない場合は-1
+         */
+        public void setEndCpuTime(long endCpuTime) {
+            this.endCpuTime = endCpuTime;
+        }
+        /**
+         * リクエスト処理で使用したCPU時間を取得する。
+         * @return CPU時間(ミリ秒)。計測できなかった場合は-1
+         */
+        public long getCpuTime() {
+            if (startCpuTime < 0 || endCpuTime < 0) {
+                return -1;
+            }
+            return (endCpuTime - startCpuTime) / 1000000L;
+        }
+        /**
+         * スレッドが割り当てたメモリ量の累計(開始時)を設定する。
+         * @param startAllocatedBytes スレッドが割り当てたメモリ量の累計(バイト)。計測できない場合は-1
+         */
+        public void setStartAllocatedBytes(long startAllocatedBytes) {
+            this.startAllocatedBytes = startAllocatedBytes;
+        }
+        /**
+         * スレッドが割り当てたメモリ量の累計(終了時)を設定する。
+         * @param endAllocatedBytes スレッドが割り当てたメモリ量の累計(バイト)。計測できない場合は-1
+         */
+        public void setEndAllocatedBytes(long endAllocatedBytes) {
+            this.endAllocatedBytes = endAllocatedBytes;
+        }
+        /**
+         * リクエスト処理で割り当てたメモリ量を取得する。
+         * @return 割り当てたメモリ量(バイト)。計測できなかった場合は-1
+         */
+        public long getAllocatedBytes() {
+            if (startAllocatedBytes < 0 || endAllocatedBytes < 0) {
+                return -1;
+            }
+            return endAllocatedBytes - startAllocatedBytes;
+        }
+        /**
+         * リクエストパラメータとセッションスコープ情報を出力するか否かを判定する。
+         * <p/>
+         * サンプリングによって出力対象外となった場合は{@code false}を返す。
+         * サンプリングを使用しない場合は常に{@code true}を返す。
+         * @return リクエストパラメータとセッションスコープ情報を出力する場合は{@code true}
+         */
+        public boolean isSampled() {
+            return sampled;
+        }
+        /**
+         * リクエストパラメータとセッションスコープ情報を出力するか否かを設定する。
+         * @param sampled リクエストパラメータとセッションスコープ情報を出力する場合は{@code true}
+         */
+        public void setSampled(boolean sampled) {
+            this.sampled = sampled;
+        }
+        /**
+         * サンプリング対象外のため出力を保留したhiddenパラメータ復号後のログがあるか否かを取得する。
+         * @return 出力を保留したログがある場合は{@code true}
+         */
+        boolean isParametersDeferred() {
+            return parametersDeferred;
+        }
+        /**
+         * サンプリング対象外のため出力を保留したhiddenパラメータ復号後のログがあるか否かを設定する。
+         * @param parametersDeferred 出力を保留したログがある場合は{@code true}
+         */
+        void setParametersDeferred(boolean parametersDeferred) {
+            this.parametersDeferred = parametersDeferred;
+        }
+        /**
+         * サンプリングの判定に使用したルールを取得する。
+         * @return サンプリングの判定に使用したルール(判定していない場合は{@code null})
+         */
+        AccessLogSampler.Rule getSamplingRule() {
+            return samplingRule;
+        }
+        /**
+         * サンプリングの判定に使用したルールを設定する。
+         * @param samplingRule サンプリングの判定に使用したルール
+         */
+        void setSamplingRule(AccessLogSampler.Rule samplingRule) {
+            this.samplingRule = samplingRule;
+        }
     }
 
     /**
@@ -757,6 +974,16 @@ public class HttpAccessLogFormatter {
         protected Map<String, ?> getMap(HttpAccessLogContext context) {
             return context.getParameters();
         }
+        /**
+         * リクエストパラメータを取得する。<br>
+         * サンプリングによって出力対象外となった場合は{@link HttpAccessLogFormatter#NOT_SAMPLED}を返す。
+         * @param context HttpAccessLogContext
+         * @return リクエストパラメータ
+         */
+        @Override
+        public String get(HttpAccessLogContext context) {
+            return context.isSampled() ? super.get(context) : NOT_SAMPLED;
+        }
     }
 
     /**
@@ -779,6 +1006,16 @@ public class HttpAccessLogFormatter {
         protected Map<String, ?> getMap(HttpAccessLogContext context) {
             return context.getSessionScopeMap();
         }
+        /**
+         * セッションスコープ情報を取得する。<br>
+         * サンプリングによって出力対象外となった場合は{@link HttpAccessLogFormatter#NOT_SAMPLED}を返す。
+         * @param context HttpAccessLogContext
+         * @return セッションスコープ情報
+         */
+        @Override
+        public String get(HttpAccessLogContext context) {
+            return context.isSampled() ? super.get(context) : NOT_SAMPLED;
+        }
     }
 
     /**
@@ -971,6 +1208,34 @@ public class HttpAccessLogFormatter {
             return String.valueOf(context.getFreeMemory());
         }
     }
+    /**
+     * リクエスト処理で使用したCPU時間を取得するクラス。
+     */
+    public static class CpuTimeItem implements LogItem<HttpAccessLogContext> {
+        /**
+         * リクエスト処理で使用したCPU時間(ミリ秒)を取得する。
+         * @param context HttpAccessLogContext
+         * @return CPU時間。計測できなかった場合は空文字
+         */
+        public String get(HttpAccessLogContext context) {
+            long cpuTime = context.getCpuTime();
+            return cpuTime != -1 ? String.valueOf(cpuTime) : "";
+        }
+    }
+    /**
+     * リクエスト処理で割り当てたメモリ量を取得するクラス。
+     */
+    public static class AllocatedBytesItem implements LogItem<HttpAccessLogContext> {
+        /**
+         * リクエスト処理で割り当てたメモリ量(バイト)を取得する。
+         * @param context HttpAccessLogContext
+         * @return 割り当てたメモリ量。計測できなかった場合は空文字
+         */
+        public String get(HttpAccessLogContext context) {
+            long allocatedBytes = context.getAllocatedBytes();
+            return allocatedBytes != -1 ? String.valueOf(allocatedBytes) : "";
+        }
+    }
     /**
      * HTTPヘッダの User-Agent を取得する。
      *
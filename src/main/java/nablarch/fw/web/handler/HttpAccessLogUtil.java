@@ -2,6 +2,7 @@ package nablarch.fw.web.handler;
 
 import static nablarch.fw.ExecutionContext.FW_PREFIX;
 
+import java.util.Collections;
 import java.util.Map;
 
 import nablarch.core.log.LogUtil;
@@ -14,10 +15,42 @@ import nablarch.fw.Request;
 import nablarch.fw.web.HttpRequest;
 import nablarch.fw.web.handler.HttpAccessLogFormatter.HttpAccessLogContext;
 import nablarch.fw.web.servlet.ServletExecutionContext;
+import nablarch.fw.web.servlet.WebFrontControllerWarmup;
 
 /**
  * HTTPアクセスログを出力するクラス。<br>
  * ロガー名は"HTTP_ACCESS"を使用し、INFOレベルで出力する。
+ * <p/>
+ * プロパティ{@code httpAccessLogFormatter.asyncEnabled}に{@code true}を指定すると、
+ * メッセージのフォーマットのみをリクエストスレッドで行い、ロガーへの書き込みはバックグラウンドのスレッドでまとめて行う。
+ * 非同期出力では以下のプロパティを指定できる。
+ * <ul>
+ *     <li>{@code httpAccessLogFormatter.asyncBufferSize}: バッファに格納できる件数。デフォルトは8192。</li>
+ *     <li>{@code httpAccessLogFormatter.asyncBatchSize}: 1回にまとめて書き込む最大件数。デフォルトは256。</li>
+ *     <li>{@code httpAccessLogFormatter.asyncFullPolicy}: バッファが満杯の場合の振る舞い。
+ *     空きを待つ{@code BLOCK}か、ログを破棄する{@code DROP}を指定する。デフォルトは{@code BLOCK}。</li>
+ * </ul>
+ * 非同期出力では、ログの出力日時とスレッド名は書き込みスレッドのものとなる。
+ * リクエストIDやユーザIDなどのスレッドコンテキストの値は、リクエストスレッドの値が出力される。
+ * <p/>
+ * 以下のプロパティを指定すると、リクエストパラメータとセッションスコープ情報を一部のリクエストのみ出力する。
+ * 抽出対象外のリクエストでは、hiddenパラメータ復号後のログを出力せず、
+ * リクエスト処理開始時と終了時のログのリクエストパラメータとセッションスコープ情報を
+ * {@link HttpAccessLogFormatter#NOT_SAMPLED}とする(JSON形式の場合は項目を出力しない)。
+ * リクエスト処理開始時と終了時のログは、抽出対象か否かに関わらず出力する。
+ * <ul>
+ *     <li>{@code httpAccessLogFormatter.samplingRates}: リクエストパスの前方一致毎の抽出率。
+ *     {@code /action/search=0.1,/api/=0.5}のようにカンマ区切りで指定し、最初に一致したものを適用する。</li>
+ *     <li>{@code httpAccessLogFormatter.samplingDefaultRate}: どのパスにも一致しないリクエストの抽出率。デフォルトは1.0。</li>
+ *     <li>{@code httpAccessLogFormatter.samplingMaxPerSecond}: 1秒あたりの抽出件数の上限。デフォルトは0(上限なし)。</li>
+ *     <li>{@code httpAccessLogFormatter.samplingErrorStatusCode}: ステータスコードがこの値以上の場合は、
+ *     抽出対象外のリクエストでもリクエスト処理終了時にhiddenパラメータ復号後のログと終了時のログを全て出力する。
+ *     デフォルトは500。0以下を指定した場合はステータスコードによる出力を行わない。</li>
+ * </ul>
+ * 実際の抽出率は{@link #getSamplingRates()}で取得できる。
+ * <p/>
+ * {@link WebFrontControllerWarmup}の疑似リクエストは、抽出の判定を行わずにメッセージのフォーマットまで行い、
+ * フォーマット済みのメッセージを出力せずに破棄する。
  * @author Kiyohito Itoh
  */
 public final class HttpAccessLogUtil {
@@ -32,6 +65,48 @@ public final class HttpAccessLogUtil {
     /** {@link HttpAccessLogFormatter}のクラス名 */
     private static final String PROPS_CLASS_NAME = HttpAccessLogFormatter.PROPS_PREFIX + "className";
     
+    /** 非同期出力が有効か否かを取得する際に使用するプロパティ名 */
+    private static final String PROPS_ASYNC_ENABLED = HttpAccessLogFormatter.PROPS_PREFIX + "asyncEnabled";
+
+    /** 非同期出力のバッファの容量を取得する際に使用するプロパティ名 */
+    private static final String PROPS_ASYNC_BUFFER_SIZE = HttpAccessLogFormatter.PROPS_PREFIX + "asyncBufferSize";
+
+    /** 非同期出力で1回に書き込む最大件数を取得する際に使用するプロパティ名 */
+    private static final String PROPS_ASYNC_BATCH_SIZE = HttpAccessLogFormatter.PROPS_PREFIX + "asyncBatchSize";
+
+    /** 非同期出力のバッファが満杯の場合の振る舞いを取得する際に使用するプロパティ名 */
+    private static final String PROPS_ASYNC_FULL_POLICY = HttpAccessLogFormatter.PROPS_PREFIX + "asyncFullPolicy";
+
+    /** リクエストパス毎の抽出率を取得する際に使用するプロパティ名 */
+    private static final String PROPS_SAMPLING_RATES = HttpAccessLogFormatter.PROPS_PREFIX + "samplingRates";
+
+    /** どのパスにも一致しないリクエストの抽出率を取得する際に使用するプロパティ名 */
+    private static final String PROPS_SAMPLING_DEFAULT_RATE = HttpAccessLogFormatter.PROPS_PREFIX + "samplingDefaultRate";
+
+    /** 1秒あたりの抽出件数の上限を取得する際に使用するプロパティ名 */
+    private static final String PROPS_SAMPLING_MAX_PER_SECOND = HttpAccessLogFormatter.PROPS_PREFIX + "samplingMaxPerSecond";
+
+    /** エラーとして全て出力するステータスコードの閾値を取得する際に使用するプロパティ名 */
+    private static final String PROPS_SAMPLING_ERROR_STATUS_CODE = HttpAccessLogFormatter.PROPS_PREFIX + "samplingErrorStatusCode";
+
+    /** デフォルトの非同期出力のバッファの容量 */
+    private static final String DEFAULT_ASYNC_BUFFER_SIZE = "8192";
+
+    /** デフォルトの非同期出力で1回に書き込む最大件数 */
+    private static final String DEFAULT_ASYNC_BATCH_SIZE = "256";
+
+    /** デフォルトのどのパスにも一致しないリクエストの抽出率 */
+    private static final String DEFAULT_SAMPLING_DEFAULT_RATE = "1.0";
+
+    /** デフォルトの1秒あたりの抽出件数の上限 */
+    private static final String DEFAULT_SAMPLING_MAX_PER_SECOND = "0";
+
+    /** デフォルトのエラーとして全て出力するステータスコードの閾値 */
+    private static final String DEFAULT_SAMPLING_ERROR_STATUS_CODE = "500";
+
+    /** 終了時に書き込みスレッドの終了を待つ時間(ミリ秒) */
+    private static final long ASYNC_TERMINATE_TIMEOUT_MILLIS = 10000L;
+
     /** {@link HttpAccessLogFormatter}を生成する{@link ObjectCreator} */
     private static final ObjectCreator<HttpAccessLogFormatter> HTTP_ACCESS_LOG_FORMATTER_CREATOR = new ObjectCreator<HttpAccessLogFormatter>() {
         public HttpAccessLogFormatter create() {
@@ -47,13 +122,119 @@ public final class HttpAccessLogUtil {
         }
     };
     
+    /** {@link AsyncWriterHolder}を生成する{@link ObjectCreator} */
+    private static final ObjectCreator<AsyncWriterHolder> ASYNC_WRITER_CREATOR = new ObjectCreator<AsyncWriterHolder>() {
+        public AsyncWriterHolder create() {
+            Map<String, String> props = AppLogUtil.getProps();
+            if (!Boolean.parseBoolean(props.get(PROPS_ASYNC_ENABLED))) {
+                return new AsyncWriterHolder(null);
+            }
+            String policy = props.get(PROPS_ASYNC_FULL_POLICY);
+            return new AsyncWriterHolder(new AsyncHttpAccessLogWriter(
+                    HTTP_ACCESS_LOGGER,
+                    Integer.parseInt(getProp(props, PROPS_ASYNC_BUFFER_SIZE, DEFAULT_ASYNC_BUFFER_SIZE)),
+                    Integer.parseInt(getProp(props, PROPS_ASYNC_BATCH_SIZE, DEFAULT_ASYNC_BATCH_SIZE)),
+                    policy != null
+                            ? AsyncHttpAccessLogWriter.FullPolicy.valueOf(policy.trim())
+                            : AsyncHttpAccessLogWriter.FullPolicy.BLOCK));
+        }
+    };
+
+    /** {@link SamplerHolder}を生成する{@link ObjectCreator} */
+    private static final ObjectCreator<SamplerHolder> SAMPLER_CREATOR = new ObjectCreator<SamplerHolder>() {
+        public SamplerHolder create() {
+            Map<String, String> props = AppLogUtil.getProps();
+            if (!props.containsKey(PROPS_SAMPLING_RATES)
+                    && !props.containsKey(PROPS_SAMPLING_DEFAULT_RATE)
+                    && !props.containsKey(PROPS_SAMPLING_MAX_PER_SECOND)) {
+                return new SamplerHolder(null);
+            }
+            return new SamplerHolder(new AccessLogSampler(
+                    props.get(PROPS_SAMPLING_RATES),
+                    Double.parseDouble(getProp(props, PROPS_SAMPLING_DEFAULT_RATE, DEFAULT_SAMPLING_DEFAULT_RATE)),
+                    Integer.parseInt(getProp(props, PROPS_SAMPLING_MAX_PER_SECOND, DEFAULT_SAMPLING_MAX_PER_SECOND)),
+                    Integer.parseInt(getProp(props, PROPS_SAMPLING_ERROR_STATUS_CODE, DEFAULT_SAMPLING_ERROR_STATUS_CODE))));
+        }
+    };
+
     /**
      * クラスローダに紐付く{@link HttpAccessLogFormatter}を生成する。
      */
     public static void initialize() {
         getAccessLogFormatter();
+        getAsyncWriter();
+        getSampler();
+    }
+
+    /**
+     * 非同期出力の書き込みスレッドを終了する。
+     * <p/>
+     * バッファに残っているログを全て書き込んでから終了する。
+     * 終了後のログは呼び出し元のスレッドで書き込む。
+     * 非同期出力が無効な場合は何もしない。
+     */
+    public static void terminate() {
+        AsyncHttpAccessLogWriter writer = getAsyncWriter();
+        if (writer != null) {
+            writer.terminate(ASYNC_TERMINATE_TIMEOUT_MILLIS);
+        }
+    }
+
+    /**
+     * 非同期出力のバッファに格納されているログの件数を取得する。
+     * @return 件数。非同期出力が無効な場合は0
+     */
+    public static int getAsyncQueuedCount() {
+        AsyncHttpAccessLogWriter writer = getAsyncWriter();
+        return writer != null ? writer.getQueuedCount() : 0;
+    }
+
+    /**
+     * 非同期出力のバッファに格納したログの件数の累計を取得する。
+     * @return 件数。非同期出力が無効な場合は0
+     */
+    public static long getAsyncEnqueuedCount() {
+        AsyncHttpAccessLogWriter writer = getAsyncWriter();
+        return writer != null ? writer.getEnqueuedCount() : 0L;
+    }
+
+    /**
+     * 非同期出力のバッファが満杯のため破棄したログの件数の累計を取得する。
+     * @return 件数。非同期出力が無効な場合は0
+     */
+    public static long getAsyncDroppedCount() {
+        AsyncHttpAccessLogWriter writer = getAsyncWriter();
+        return writer != null ? writer.getDroppedCount() : 0L;
+    }
+
+    /**
+     * 非同期出力の書き込みに失敗したログの件数の累計を取得する。
+     * <p/>
+     * 件数は書き込みスレッドの終了時にも警告ログに出力する。
+     * @return 件数。非同期出力が無効な場合は0
+     */
+    public static long getAsyncFailedCount() {
+        AsyncHttpAccessLogWriter writer = getAsyncWriter();
+        return writer != null ? writer.getFailedCount() : 0L;
     }
     
+    /**
+     * リクエストパラメータとセッションスコープ情報の実際の抽出率を取得する。
+     * <p/>
+     * キーはプロパティ{@code httpAccessLogFormatter.samplingRates}に指定したパス、
+     * またはどのパスにも一致しないリクエストを表す{@code *}。
+     * 値は判定したリクエスト数に対する、ステータスコードによる出力を含む抽出したリクエスト数の割合。
+     * 判定したリクエストがないパスは含まない。
+     * @return パス毎の抽出率。抽出を行わない場合は空のマップ
+     */
+    public static Map<String, Double> getSamplingRates() {
+        AccessLogSampler sampler = getSampler();
+        if (sampler == null) {
+            return Collections.emptyMap();
+        }
+        return sampler.getEffectiveRates();
+    }
+
     /** {@link HttpAccessLogContext}をリクエストスコープに格納する際に使用するキー */
     private static final String KEY_HTTP_ACCESS_LOG_CONTEXT = FW_PREFIX + "httpAccessLogContext";
     
@@ -86,6 +267,64 @@ public final class HttpAccessLogUtil {
         return LogUtil.getObjectBoundToClassLoader(HTTP_ACCESS_LOG_FORMATTER_CREATOR);
     }
     
+    /**
+     * クラスローダに紐付く{@link AsyncHttpAccessLogWriter}を取得する。
+     * @return {@link AsyncHttpAccessLogWriter}。非同期出力が無効な場合は{@code null}
+     */
+    private static AsyncHttpAccessLogWriter getAsyncWriter() {
+        return LogUtil.getObjectBoundToClassLoader(ASYNC_WRITER_CREATOR).writer;
+    }
+
+    /**
+     * クラスローダに紐付く{@link AccessLogSampler}を取得する。
+     * @return {@link AccessLogSampler}。抽出を行わない場合は{@code null}
+     */
+    private static AccessLogSampler getSampler() {
+        return LogUtil.getObjectBoundToClassLoader(SAMPLER_CREATOR).sampler;
+    }
+
+    /**
+     * プロパティを取得する。<br>
+     * プロパティの指定がない場合はデフォルト値を返す。
+     * @param props 各種ログの設定情報
+     * @param propName プロパティ名
+     * @param defaultValue プロパティのデフォルト値
+     * @return プロパティ
+     */
+    private static String getProp(Map<String, String> props, String propName, String defaultValue) {
+        String value = props.get(propName);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * フォーマット済みのメッセージを出力する。<br>
+     * 非同期出力が有効な場合はバッファに格納する。<br>
+     * {@link WebFrontControllerWarmup}の疑似リクエストの場合は、フォーマット済みのメッセージを破棄する。
+     * @param context {@link HttpAccessLogContext}
+     * @param message フォーマット済みのメッセージ
+     * @param logOptions ログ出力のオプション情報
+     */
+    private static void log(HttpAccessLogContext context, String message, Object... logOptions) {
+        if (isWarmupRequest(context)) {
+            return;
+        }
+        AsyncHttpAccessLogWriter writer = getAsyncWriter();
+        if (writer != null) {
+            writer.submit(message, logOptions);
+        } else {
+            HTTP_ACCESS_LOGGER.logInfo(message, logOptions);
+        }
+    }
+
+    /**
+     * {@link WebFrontControllerWarmup}の疑似リクエストか否かを判定する。
+     * @param context {@link HttpAccessLogContext}
+     * @return 疑似リクエストの場合はtrue
+     */
+    private static boolean isWarmupRequest(HttpAccessLogContext context) {
+        return context.getContext() != null && WebFrontControllerWarmup.isWarmupRequest(context.getContext());
+    }
+
     /**
      * 出力対象にメモリ項目が含まれているか否かを判定する。
      * @return 出力対象にメモリ項目が含まれている場合はtrue
@@ -93,6 +332,22 @@ public final class HttpAccessLogUtil {
     public static boolean containsMemoryItem() {
         return getAccessLogFormatter().containsMemoryItem();
     }
+
+    /**
+     * 出力対象にCPU時間の項目が含まれているか否かを判定する。
+     * @return 出力対象にCPU時間の項目が含まれている場合はtrue
+     */
+    public static boolean containsCpuTimeItem() {
+        return getAccessLogFormatter().containsCpuTimeItem();
+    }
+
+    /**
+     * 出力対象に割り当てたメモリ量の項目が含まれているか否かを判定する。
+     * @return 出力対象に割り当てたメモリ量の項目が含まれている場合はtrue
+     */
+    public static boolean containsAllocatedBytesItem() {
+        return getAccessLogFormatter().containsAllocatedBytesItem();
+    }
     
     /**
      * リクエスト処理開始時のログを出力する。
@@ -100,20 +355,29 @@ public final class HttpAccessLogUtil {
      * @param logOptions ログ出力のオプション情報
      */
     public static void begin(HttpAccessLogContext context, Object[] logOptions) {
+        AccessLogSampler sampler = getSampler();
+        if (sampler != null && !isWarmupRequest(context)) {
+            sampler.sample(context);
+        }
         HttpAccessLogFormatter formatter = getAccessLogFormatter();
         if (formatter.isBeginOutputEnabled()) {
-            HTTP_ACCESS_LOGGER.logInfo(getAccessLogFormatter().formatBegin(context), logOptions);
+            log(context, getAccessLogFormatter().formatBegin(context), logOptions);
         }
     }
     
     /**
-     * hiddenパラメータ復号後のログを出力する。
+     * hiddenパラメータ復号後のログを出力する。<br>
+     * 抽出対象外のリクエストの場合は出力を保留し、ステータスコードがエラーの場合のみリクエスト処理終了時に出力する。
      * @param context {@link HttpAccessLogContext}
      */
     public static void logParameters(HttpAccessLogContext context) {
         HttpAccessLogFormatter formatter = getAccessLogFormatter();
         if (formatter.isParametersOutputEnabled()) {
-            HTTP_ACCESS_LOGGER.logInfo(formatter.formatParameters(context));
+            if (!context.isSampled()) {
+                context.setParametersDeferred(true);
+                return;
+            }
+            log(context, formatter.formatParameters(context));
         }
     }
     
@@ -124,7 +388,7 @@ public final class HttpAccessLogUtil {
     public static void logDispatchingClass(HttpAccessLogContext context) {
         HttpAccessLogFormatter formatter = getAccessLogFormatter();
         if (formatter.isDispatchingClassOutputEnabled()) {
-            HTTP_ACCESS_LOGGER.logInfo(getAccessLogFormatter().formatDispatchingClass(context));
+            log(context, getAccessLogFormatter().formatDispatchingClass(context));
         }
     }
     
@@ -135,8 +399,45 @@ public final class HttpAccessLogUtil {
      */
     public static void end(HttpAccessLogContext context, Object[] logOptions) {
         HttpAccessLogFormatter formatter = getAccessLogFormatter();
+        AccessLogSampler sampler = getSampler();
+        if (sampler != null && sampler.promoteOnError(context) && context.isParametersDeferred()) {
+            context.setParametersDeferred(false);
+            log(context, formatter.formatParameters(context));
+        }
         if (formatter.isEndOutputEnabled()) {
-            HTTP_ACCESS_LOGGER.logInfo(getAccessLogFormatter().formatEnd(context), logOptions);
+            log(context, getAccessLogFormatter().formatEnd(context), logOptions);
+        }
+    }
+
+    /**
+     * {@link AsyncHttpAccessLogWriter}を保持するクラス。<br>
+     * 非同期出力が無効な場合も、クラスローダ毎に設定を一度だけ読み込むために使用する。
+     */
+    private static final class AsyncWriterHolder {
+        /** {@link AsyncHttpAccessLogWriter}。非同期出力が無効な場合は{@code null} */
+        private final AsyncHttpAccessLogWriter writer;
+        /**
+         * コンストラクタ。
+         * @param writer {@link AsyncHttpAccessLogWriter}
+         */
+        AsyncWriterHolder(AsyncHttpAccessLogWriter writer) {
+            this.writer = writer;
+        }
+    }
+
+    /**
+     * {@link AccessLogSampler}を保持するクラス。<br>
+     * 抽出を行わない場合も、クラスローダ毎に設定を一度だけ読み込むために使用する。
+     */
+    private static final class SamplerHolder {
+        /** {@link AccessLogSampler}。抽出を行わない場合は{@code null} */
+        private final AccessLogSampler sampler;
+        /**
+         * コンストラクタ。
+         * @param sampler {@link AccessLogSampler}
+         */
+        SamplerHolder(AccessLogSampler sampler) {
+            this.sampler = sampler;
         }
     }
 }
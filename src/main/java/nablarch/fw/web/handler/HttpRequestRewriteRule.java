@@ -1,6 +1,5 @@
 package nablarch.fw.web.handler;
 
-import nablarch.core.util.Builder;
 import nablarch.core.util.annotation.Published;
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.handler.RewriteRule;
@@ -14,8 +13,24 @@ import nablarch.fw.web.HttpRequest;
 @Published(tag = "architect")
 public class HttpRequestRewriteRule extends
 RewriteRule<HttpRequest, HttpRequestRewriteRule> {
-    
-    
+
+    /** パターンのリテラル接頭辞 */
+    private String literalPrefix = "";
+
+    @Override
+    public HttpRequestRewriteRule setPattern(String pattern) {
+        literalPrefix = RewriteRuleIndex.literalPrefixOf(pattern);
+        return super.setPattern(pattern);
+    }
+
+    /**
+     * パターンのリテラル接頭辞を取得する。
+     * @return リテラル接頭辞(持たない場合は空文字)
+     * @see RewriteRuleIndex#literalPrefixOf(String)
+     */
+    String getLiteralPrefix() {
+        return literalPrefix;
+    }
 
     @Override
     public String getPathToRewrite(HttpRequest request) {
@@ -45,12 +60,28 @@ RewriteRule<HttpRequest, HttpRequestRewriteRule> {
      * @return プロパティの値
      */
     private String getProperty(String name, HttpRequest request) {
-        return "paramNames".equals(name)  ? Builder.join(request.getParamMap().keySet().toArray(), ",")
+        return "paramNames".equals(name)  ? joinParamNames(request)
              : "httpVersion".equals(name) ? request.getHttpVersion()
              : "httpMethod".equals(name)  ? request.getMethod()
              : null;
     }
 
+    /**
+     * リクエストパラメータ名を","区切りで連結する。
+     * @param request HTTPリクエストオブジェクト
+     * @return 連結したリクエストパラメータ名
+     */
+    private static String joinParamNames(HttpRequest request) {
+        StringBuilder names = new StringBuilder();
+        for (String name : request.getParamMap().keySet()) {
+            if (names.length() > 0) {
+                names.append(',');
+            }
+            names.append(name);
+        }
+        return names.toString();
+    }
+
     @Override
     protected void
     exportParam(String scope, String name, String value, HttpRequest req, ExecutionContext context) {
@@ -26,6 +26,7 @@ import nablarch.fw.web.HttpResponse.Status;
 import nablarch.fw.web.ResourceLocator;
 import nablarch.fw.web.ResourceLocatorInternalHelper;
 import nablarch.fw.web.ResponseBody;
+import nablarch.fw.web.TempStorageManager;
 import nablarch.fw.web.download.encorder.DownloadFileNameEncoder;
 import nablarch.fw.web.download.encorder.DownloadFileNameEncoderFactory;
 import nablarch.fw.web.handler.responsewriter.CustomResponseWriter;
@@ -135,6 +136,7 @@ public class HttpResponseHandler implements Handler<HttpRequest, HttpResponse> {
         ServletExecutionContext context = (ServletExecutionContext) ctx;
 
         HttpResponseUtil.setStatusConvertMode(context, convertMode);
+        boolean tempStorageStarted = TempStorageManager.beginRequest();
         try {
             HttpResponse res = ctx.handleNext(req);
             // HttpResponseのschemeが"servlet"の場合)
@@ -192,6 +194,9 @@ public class HttpResponseHandler implements Handler<HttpRequest, HttpResponse> {
 
         } finally {
             ResponseBody.cleanup();
+            if (tempStorageStarted) {
+                TempStorageManager.endRequest();
+            }
         }
     }
 
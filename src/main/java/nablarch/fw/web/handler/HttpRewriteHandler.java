@@ -2,6 +2,7 @@ package nablarch.fw.web.handler;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.Handler;
@@ -16,6 +17,10 @@ import nablarch.fw.web.HttpResponse;
  * もし、リクエストパスの置換が行われた場合は、
  * 復路処理で{@link HttpResponse}中のコンテンツパスの置換を行う。
  * 
+ * 書き換えルールは、パターンの先頭の固定文字列から作成した索引を使用して、
+ * 書き換え対象のパスに適用し得るものだけを定義順に評価する。
+ * 評価したルールの数、索引により評価を省略したルールの数、評価に要した時間を取得できる。
+ * 
  * @author Iwauo Tajima
  */
 public class HttpRewriteHandler implements Handler<HttpRequest, HttpResponse> {
@@ -29,6 +34,21 @@ public class HttpRewriteHandler implements Handler<HttpRequest, HttpResponse> {
     private final List<ContentPathRewriteRule>
         contentPathRewriteRules = new ArrayList<ContentPathRewriteRule>();
     
+    /** リクエストパスリライト定義の索引(未作成の場合はnull) */
+    private volatile RewriteRuleIndex requestPathRuleIndex;
+    
+    /** コンテンツパスリライト定義の索引(未作成の場合はnull) */
+    private volatile RewriteRuleIndex contentPathRuleIndex;
+    
+    /** 評価したルールの数 */
+    private final AtomicLong evaluatedRuleCount = new AtomicLong();
+    
+    /** 索引により評価を省略したルールの数 */
+    private final AtomicLong skippedRuleCount = new AtomicLong();
+    
+    /** ルールの評価に要した時間(ナノ秒) */
+    private final AtomicLong evaluationNanos = new AtomicLong();
+    
     
     // --------------------------------------- implementation of Handler I/F
     /** {@inheritDoc}
@@ -59,14 +79,27 @@ public class HttpRewriteHandler implements Handler<HttpRequest, HttpResponse> {
      * @return リライト処理が行われた場合はtrue
      */
     private String rewriteRequestPath(HttpRequest request, ExecutionContext context) {
-        for (HttpRequestRewriteRule rule : requestPathRewriteRules) {
-            String rewrittenPath = rule.rewrite(request, context);
-            // ルールが適用された時点でループを抜ける。
-            if (rewrittenPath != null) {
-                return rewrittenPath;
+        RewriteRuleIndex index = requestPathRuleIndex;
+        if (index == null) {
+            index = createIndex(requestPathRewriteRules);
+            requestPathRuleIndex = index;
+        }
+        long start = System.nanoTime();
+        int[] candidates = index.candidates(request.getRequestPath());
+        int evaluated = 0;
+        try {
+            for (int i : candidates) {
+                evaluated++;
+                String rewrittenPath = requestPathRewriteRules.get(i).rewrite(request, context);
+                // ルールが適用された時点でループを抜ける。
+                if (rewrittenPath != null) {
+                    return rewrittenPath;
+                }
             }
+            return request.getRequestPath();
+        } finally {
+            record(index, candidates, evaluated, start);
         }
-        return request.getRequestPath();
     }
     
     /**
@@ -77,14 +110,87 @@ public class HttpRewriteHandler implements Handler<HttpRequest, HttpResponse> {
      * @return リライト後コンテンツパス
      */
     private String rewriteContentPath(HttpResponse response, ExecutionContext context) {
-        for (ContentPathRewriteRule rule : contentPathRewriteRules) {
-            String path = rule.rewrite(response, context);
-            // ルールが適用された時点でループを抜ける。 
-            if (path != null) {
-                return path;
+        RewriteRuleIndex index = contentPathRuleIndex;
+        if (index == null) {
+            index = createIndex(contentPathRewriteRules);
+            contentPathRuleIndex = index;
+        }
+        long start = System.nanoTime();
+        int[] candidates = index.candidates(response.getContentPath().toString());
+        int evaluated = 0;
+        try {
+            for (int i : candidates) {
+                evaluated++;
+                String path = contentPathRewriteRules.get(i).rewrite(response, context);
+                // ルールが適用された時点でループを抜ける。 
+                if (path != null) {
+                    return path;
+                }
+            }
+            return response.getContentPath().toString();
+        } finally {
+            record(index, candidates, evaluated, start);
+        }
+    }
+    
+    /**
+     * 書き換えルールの索引を作成する。
+     * 
+     * 書き換え対象のパスの取得方法が変更されている可能性があるため、
+     * サブクラスのルールは全てのパスに適用し得るものとして扱う。
+     * 
+     * @param rules 書き換えルール
+     * @return 書き換えルールの索引
+     */
+    private static RewriteRuleIndex createIndex(List<?> rules) {
+        List<String> prefixes = new ArrayList<String>(rules.size());
+        for (Object rule : rules) {
+            if (rule.getClass() == HttpRequestRewriteRule.class) {
+                prefixes.add(((HttpRequestRewriteRule) rule).getLiteralPrefix());
+            } else if (rule.getClass() == ContentPathRewriteRule.class) {
+                prefixes.add(((ContentPathRewriteRule) rule).getLiteralPrefix());
+            } else {
+                prefixes.add(null);
             }
         }
-        return response.getContentPath().toString();
+        return new RewriteRuleIndex(prefixes);
+    }
+    
+    /**
+     * ルールの評価結果を集計する。
+     * @param index 書き換えルールの索引
+     * @param candidates 適用し得るルールの番号
+     * @param evaluated 評価したルールの数
+     * @param start 評価の開始時刻(ナノ秒)
+     */
+    private void record(RewriteRuleIndex index, int[] candidates, int evaluated, long start) {
+        evaluationNanos.addAndGet(System.nanoTime() - start);
+        evaluatedRuleCount.addAndGet(evaluated);
+        skippedRuleCount.addAndGet(index.size() - candidates.length);
+    }
+    
+    /**
+     * 評価したルールの数を取得する。
+     * @return 評価したルールの数
+     */
+    public long getEvaluatedRuleCount() {
+        return evaluatedRuleCount.get();
+    }
+    
+    /**
+     * 索引により評価を省略したルールの数を取得する。
+     * @return 評価を省略したルールの数
+     */
+    public long getSkippedRuleCount() {
+        return skippedRuleCount.get();
+    }
+    
+    /**
+     * ルールの評価に要した時間の合計を取得する。
+     * @return ルールの評価に要した時間(ナノ秒)
+     */
+    public long getEvaluationNanos() {
+        return evaluationNanos.get();
     }
     
     // --------------------------------------------------------- accessors
@@ -105,6 +211,7 @@ public class HttpRewriteHandler implements Handler<HttpRequest, HttpResponse> {
         }
         requestPathRewriteRules.clear();
         requestPathRewriteRules.addAll(rules);
+        requestPathRuleIndex = null;
         return this;
     }
     
@@ -121,6 +228,7 @@ public class HttpRewriteHandler implements Handler<HttpRequest, HttpResponse> {
             );
         }
         requestPathRewriteRules.add(rule);
+        requestPathRuleIndex = null;
         return this;
     }
 
@@ -141,6 +249,7 @@ public class HttpRewriteHandler implements Handler<HttpRequest, HttpResponse> {
         }
         contentPathRewriteRules.clear();
         contentPathRewriteRules.addAll(rules);
+        contentPathRuleIndex = null;
         return this;
     }
     
@@ -157,6 +266,7 @@ public class HttpRewriteHandler implements Handler<HttpRequest, HttpResponse> {
             );
         }
         contentPathRewriteRules.add(rule);
+        contentPathRuleIndex = null;
         return this;
     }
 }
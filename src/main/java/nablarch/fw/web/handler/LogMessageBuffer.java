@@ -0,0 +1,80 @@
+package nablarch.fw.web.handler;
+
+import nablarch.fw.web.handler.HttpAccessLogFormatter.HttpAccessLogContext;
+
+/**
+ * HTTPアクセスログのメッセージのフォーマットに使用する{@link StringBuilder}を、スレッド毎に再利用するクラス。
+ * <p/>
+ * メッセージが大きく、容量が上限を超えた{@link StringBuilder}は再利用せずに破棄する。
+ */
+final class LogMessageBuffer {
+
+    /** 再利用する{@link StringBuilder}の初期容量 */
+    private static final int INITIAL_CAPACITY = 512;
+
+    /** 再利用する{@link StringBuilder}の最大容量。これを超えた場合は破棄する。 */
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    /** スレッド毎に再利用する{@link StringBuilder} */
+    private static final ThreadLocal<LogMessageBuffer> BUFFER = new ThreadLocal<LogMessageBuffer>() {
+        @Override
+        protected LogMessageBuffer initialValue() {
+            return new LogMessageBuffer();
+        }
+    };
+
+    /** バッファ */
+    private StringBuilder buffer = new StringBuilder(INITIAL_CAPACITY);
+
+    /** 使用中か否か */
+    private boolean inUse;
+
+    /**
+     * 隠蔽コンストラクタ。
+     */
+    private LogMessageBuffer() {
+    }
+
+    /**
+     * 呼び出し元スレッドのバッファを使用してメッセージをフォーマットする。
+     *
+     * @param appender メッセージを書き込む処理
+     * @param context HttpAccessLogContext
+     * @return フォーマット済みのメッセージ
+     */
+    static String format(Appender appender, HttpAccessLogContext context) {
+        LogMessageBuffer holder = BUFFER.get();
+        if (holder.inUse) {
+            // 項目の取得中に別のメッセージがフォーマットされた場合は、使用中のバッファを壊さない。
+            StringBuilder sb = new StringBuilder(INITIAL_CAPACITY);
+            appender.appendTo(sb, context);
+            return sb.toString();
+        }
+        holder.inUse = true;
+        StringBuilder sb = holder.buffer;
+        try {
+            sb.setLength(0);
+            appender.appendTo(sb, context);
+            return sb.toString();
+        } finally {
+            if (sb.capacity() > MAX_RETAINED_CAPACITY) {
+                holder.buffer = new StringBuilder(INITIAL_CAPACITY);
+            }
+            holder.inUse = false;
+        }
+    }
+
+    /**
+     * メッセージを書き込む処理。
+     */
+    interface Appender {
+
+        /**
+         * メッセージを書き込む。
+         *
+         * @param sb 書き込み先
+         * @param context HttpAccessLogContext
+         */
+        void appendTo(StringBuilder sb, HttpAccessLogContext context);
+    }
+}
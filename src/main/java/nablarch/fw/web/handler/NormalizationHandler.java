@@ -1,8 +1,11 @@
 package nablarch.fw.web.handler;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.Handler;
@@ -17,14 +20,27 @@ import nablarch.fw.web.handler.normalizer.TrimNormalizer;
  * <p>
  * もし、デフォルト実装以外のノーマライズ処理を行う必要がある場合は、{@link #setNormalizers(List)}を使用して、{@link Normalizer}を設定すること。
  * {@link #setNormalizers(List)}では、デフォルトの動作が上書きされるため、デフォルトで適用されている{@link TrimNormalizer}の設定も行う必要がある。
+ * <p>
+ * パラメータ名毎に適用する{@link Normalizer}は、初回に{@link Normalizer#canNormalize(String)}で判定した結果を保持して再利用する。
+ * 保持するパラメータ名の数の上限は{@link #setMaxCachedKeys(int)}で設定する。
+ * また、ノーマライズにより値が変更されたパラメータのみ、リクエストパラメータを更新する。
  *
  * @author Hisaaki Shioiri
  */
 public class NormalizationHandler implements Handler<HttpRequest, Object> {
 
+    /** 適用するノーマライザがないことを表す定数 */
+    private static final Normalizer[] NO_NORMALIZER = new Normalizer[0];
+
     /** このハンドラで行うノーマライザのリスト */
     private List<Normalizer> normalizers = null;
 
+    /** パラメータ名毎に適用するノーマライザ */
+    private final ConcurrentMap<String, Normalizer[]> plans = new ConcurrentHashMap<String, Normalizer[]>();
+
+    /** 適用するノーマライザを保持するパラメータ名の数の上限 */
+    private int maxCachedKeys = 1000;
+
     /**
      * デフォルトの構成でハンドラオブジェクトを生成する。
      * <p>
@@ -39,18 +55,44 @@ public class NormalizationHandler implements Handler<HttpRequest, Object> {
         final Map<String, String[]> parameters = request.getParamMap();
         for (final Map.Entry<String, String[]> entry : parameters.entrySet()) {
             final String key = entry.getKey();
-            String[] value = entry.getValue();
-            for (final Normalizer normalizer : normalizers) {
-                if (normalizer.canNormalize(key)) {
-                    value = normalizer.normalize(value);
-                }
+            final String[] original = entry.getValue();
+            String[] value = original;
+            for (final Normalizer normalizer : getPlan(key)) {
+                value = normalizer.normalize(value);
+            }
+            if (value != original) {
+                parameters.put(key, value);
             }
-            parameters.put(key, value);
-
         }
         return context.handleNext(request);
     }
 
+    /**
+     * パラメータ名に適用するノーマライザを取得する。
+     * <p>
+     * 保持しているパラメータ名の数が上限に達している場合は、保持せずに都度判定する。
+     *
+     * @param key パラメータ名
+     * @return 適用するノーマライザ
+     */
+    private Normalizer[] getPlan(final String key) {
+        Normalizer[] plan = plans.get(key);
+        if (plan != null) {
+            return plan;
+        }
+        final List<Normalizer> applicable = new ArrayList<Normalizer>(normalizers.size());
+        for (final Normalizer normalizer : normalizers) {
+            if (normalizer.canNormalize(key)) {
+                applicable.add(normalizer);
+            }
+        }
+        plan = applicable.isEmpty() ? NO_NORMALIZER : applicable.toArray(new Normalizer[applicable.size()]);
+        if (plans.size() < maxCachedKeys) {
+            plans.put(key, plan);
+        }
+        return plan;
+    }
+
     /**
      * {@link Normalizer}を設定する。
      *
@@ -58,6 +100,19 @@ public class NormalizationHandler implements Handler<HttpRequest, Object> {
      */
     public void setNormalizers(final List<Normalizer> normalizers) {
         this.normalizers = Collections.unmodifiableList(normalizers);
+        plans.clear();
+    }
+
+    /**
+     * 適用するノーマライザを保持するパラメータ名の数の上限を設定する。
+     * <p>
+     * 任意のパラメータ名を送信されてもメモリを使い切らないよう、上限を超えたパラメータ名は保持しない。
+     * デフォルトは1000。
+     *
+     * @param maxCachedKeys パラメータ名の数の上限
+     */
+    public void setMaxCachedKeys(final int maxCachedKeys) {
+        this.maxCachedKeys = maxCachedKeys;
     }
 }
 
@@ -0,0 +1,197 @@
+package nablarch.fw.web.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 書き換えルールのパターンが必ず含む先頭の固定文字列(リテラル接頭辞)から、
+ * 書き換え対象のパスに適用し得るルールを絞り込む索引。
+ * <pre>
+ * リテラル接頭辞は、パターンが"^"で始まる場合に、正規表現の特殊文字が現れるまでの文字列とする。
+ * 接頭辞を持たないルールは、全てのパスに対して適用し得るルールとして扱う。
+ * 大文字小文字を区別せずに照合するため、絞り込んだ結果には実際には適用されないルールが含まれ得るが、
+ * 適用されるルールが除外されることはない。
+ *
+ * 索引は接頭辞の木構造であり、各節点には、その節点までの文字列を接頭辞とするルールと、
+ * 祖先の節点のルールとをあわせた番号を、定義順に並べて保持する。
+ * パスの先頭から木をたどり、最も深い節点が保持する番号が絞り込んだ結果となる。
+ * </pre>
+ */
+final class RewriteRuleIndex {
+
+    /** 空の番号 */
+    private static final int[] EMPTY = new int[0];
+
+    /** 根の節点 */
+    private final Node root = new Node();
+
+    /** ルールの件数 */
+    private final int size;
+
+    /**
+     * ルール毎のリテラル接頭辞から索引を作成する。
+     * @param prefixes ルール毎のリテラル接頭辞(定義順。接頭辞を持たない場合は空文字もしくは{@code null})
+     */
+    RewriteRuleIndex(List<String> prefixes) {
+        size = prefixes.size();
+        for (int i = 0; i < size; i++) {
+            String prefix = prefixes.get(i);
+            Node node = root;
+            if (prefix != null) {
+                for (int j = 0; j < prefix.length(); j++) {
+                    node = node.childOrCreate(toLowerCase(prefix.charAt(j)));
+                }
+            }
+            node.own.add(i);
+        }
+        root.complete(EMPTY);
+    }
+
+    /**
+     * ルールの件数を取得する。
+     * @return ルールの件数
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * パスに適用し得るルールの番号を取得する。
+     * @param path 書き換え対象のパス
+     * @return ルールの番号(定義順)。呼び出し元で変更してはならない。
+     */
+    int[] candidates(String path) {
+        Node node = root;
+        for (int i = 0; i < path.length(); i++) {
+            Node child = node.child(toLowerCase(path.charAt(i)));
+            if (child == null) {
+                break;
+            }
+            node = child;
+        }
+        return node.candidates;
+    }
+
+    /**
+     * 正規表現のパターンからリテラル接頭辞を取得する。
+     * <p/>
+     * パターンが"^"で始まらない場合や、選択("|")を含む場合は空文字を返す。
+     * 直後に"?"、"*"、"{"が続く文字は省略され得るため、接頭辞に含めない。
+     * @param pattern 正規表現のパターン
+     * @return リテラル接頭辞
+     */
+    static String literalPrefixOf(String pattern) {
+        if (pattern == null || !pattern.startsWith("^") || pattern.indexOf('|') >= 0) {
+            return "";
+        }
+        int end = 1;
+        while (end < pattern.length() && isLiteral(pattern.charAt(end))) {
+            end++;
+        }
+        if (end < pattern.length() && end > 1) {
+            char next = pattern.charAt(end);
+            if (next == '?' || next == '*' || next == '{') {
+                end--;
+            }
+        }
+        return pattern.substring(1, end);
+    }
+
+    /**
+     * 正規表現中でそのまま照合される文字か否かを判定する。
+     * @param c 文字
+     * @return 特殊文字でないASCII文字の場合は{@code true}
+     */
+    private static boolean isLiteral(char c) {
+        return c < 0x80 && c > ' ' && "\\.[]{}()*+?^$|".indexOf(c) < 0;
+    }
+
+    /**
+     * ASCIIの英大文字を小文字に変換する。
+     * @param c 文字
+     * @return 変換後の文字
+     */
+    private static char toLowerCase(char c) {
+        return ('A' <= c && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * 索引の節点。
+     */
+    private static final class Node {
+
+        /** 子の節点の文字 */
+        private char[] keys = new char[0];
+
+        /** 子の節点 */
+        private Node[] children = new Node[0];
+
+        /** この節点までの文字列を接頭辞とするルールの番号 */
+        private final List<Integer> own = new ArrayList<Integer>();
+
+        /** この節点と祖先の節点のルールの番号(定義順) */
+        private int[] candidates = EMPTY;
+
+        /**
+         * 子の節点を取得する。
+         * @param c 文字
+         * @return 子の節点(存在しない場合は{@code null})
+         */
+        Node child(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 子の節点を取得する。存在しない場合は作成する。
+         * @param c 文字
+         * @return 子の節点
+         */
+        Node childOrCreate(char c) {
+            Node child = child(c);
+            if (child == null) {
+                int n = keys.length;
+                char[] newKeys = new char[n + 1];
+                Node[] newChildren = new Node[n + 1];
+                System.arraycopy(keys, 0, newKeys, 0, n);
+                System.arraycopy(children, 0, newChildren, 0, n);
+                child = new Node();
+                newKeys[n] = c;
+                newChildren[n] = child;
+                keys = newKeys;
+                children = newChildren;
+            }
+            return child;
+        }
+
+        /**
+         * 祖先の節点のルールの番号とあわせて、この節点以下の番号を確定する。
+         * @param inherited 祖先の節点のルールの番号(定義順)
+         */
+        void complete(int[] inherited) {
+            if (own.isEmpty()) {
+                candidates = inherited;
+            } else {
+                int[] merged = new int[inherited.length + own.size()];
+                int i = 0;
+                int j = 0;
+                int k = 0;
+                while (i < inherited.length || j < own.size()) {
+                    if (j >= own.size() || (i < inherited.length && inherited[i] < own.get(j))) {
+                        merged[k++] = inherited[i++];
+                    } else {
+                        merged[k++] = own.get(j++);
+                    }
+                }
+                candidates = merged;
+            }
+            for (Node child : children) {
+                child.complete(candidates);
+            }
+        }
+    }
+}
@@ -0,0 +1,608 @@
+package nablarch.fw.web.handler;
+
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.common.web.session.InternalSessionUtil;
+import nablarch.core.ThreadContext;
+import nablarch.core.log.LogUtil.MapValueEditor;
+import nablarch.core.log.basic.JsonLogObjectBuilder;
+import nablarch.fw.web.handler.HttpAccessLogFormatter.HttpAccessLogContext;
+
+/**
+ * {@link HttpAccessJsonLogFormatter}の出力項目を、中間のマップを生成せずにJSONとして直接書き込むテンプレート。
+ * <p/>
+ * 項目名はエスケープ済みの{@code "項目名":}として事前に生成し、値のみをフォーマット時に書き込む。
+ * 値が{@code null}の項目は、{@link nablarch.core.text.json.BasicJsonSerializationManager}と同様に出力しない。
+ * <p/>
+ * リクエストパラメータとセッションスコープ情報は、出力する要素数と値の文字数に上限を設定できる。
+ * 要素数が上限を超えた場合は、出力しなかった要素数を{@code 項目名 + "OmittedCount"}の項目に出力する。
+ * 値の文字数が上限を超えた場合は、上限までの文字列に{@value #TRUNCATION_MARKER}を付加して出力する。
+ */
+final class StreamingJsonLogTemplate implements LogMessageBuffer.Appender {
+
+    /** 文字数の上限を超えた値に付加する文字列 */
+    static final String TRUNCATION_MARKER = "...(truncated)";
+
+    /** 出力しなかった要素数の項目名の接尾辞 */
+    private static final String OMITTED_COUNT_SUFFIX = "OmittedCount";
+
+    /** 16進数の文字 */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** メッセージの接頭辞 */
+    private final String prefix;
+
+    /** 出力項目 */
+    private final Member[] members;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param prefix メッセージの接頭辞
+     * @param members 出力項目
+     */
+    private StreamingJsonLogTemplate(String prefix, Member[] members) {
+        this.prefix = prefix;
+        this.members = members;
+    }
+
+    /**
+     * 出力項目からテンプレートを生成する。
+     * <p/>
+     * {@link HttpAccessJsonLogFormatter}が提供するクラス以外の出力項目が含まれる場合は、
+     * 直接書き込めないため{@code null}を返す。
+     *
+     * @param targets 出力項目
+     * @param prefix メッセージの接頭辞
+     * @param datePattern 日時パターン
+     * @param maxMapEntries マップの要素数の上限。0以下の場合は上限なし
+     * @param maxValueLength マップの値の文字数の上限。0以下の場合は上限なし
+     * @return テンプレート。生成できない場合は{@code null}
+     */
+    static StreamingJsonLogTemplate compile(List<JsonLogObjectBuilder<HttpAccessLogContext>> targets, String prefix,
+                                            String datePattern, int maxMapEntries, int maxValueLength) {
+        Member[] members = new Member[targets.size()];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = toMember(targets.get(i), datePattern, maxMapEntries, maxValueLength);
+            if (members[i] == null) {
+                return null;
+            }
+        }
+        return new StreamingJsonLogTemplate(prefix, members);
+    }
+
+    /**
+     * 出力項目を書き込み処理に変換する。
+     * <p/>
+     * サブクラスで振る舞いを変更した出力項目を誤って置き換えないよう、クラスが完全に一致する項目のみ変換する。
+     *
+     * @param target 出力項目
+     * @param datePattern 日時パターン
+     * @param maxMapEntries マップの要素数の上限
+     * @param maxValueLength マップの値の文字数の上限
+     * @return 書き込み処理。変換できない場合は{@code null}
+     */
+    private static Member toMember(JsonLogObjectBuilder<HttpAccessLogContext> target, String datePattern,
+                                   int maxMapEntries, int maxValueLength) {
+        Class<?> type = target.getClass();
+        if (type == HttpAccessJsonLogFormatter.LabelBuilder.class) {
+            final String label = ((HttpAccessJsonLogFormatter.LabelBuilder) target).getLabel();
+            return new Member("label") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    return appendString(sb, label);
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.RequestIdBuilder.class) {
+            return new Member("requestId") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    return appendString(sb, ThreadContext.getRequestId());
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.UserIdBuilder.class) {
+            return new Member("userId") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    return appendString(sb, ThreadContext.getUserId());
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.UrlBuilder.class) {
+            return new Member("url") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    return appendString(sb, context.getUrl());
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.QueryStringBuilder.class) {
+            return new Member("queryString") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    return appendString(sb, context.getQueryString());
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.PortBuilder.class) {
+            return new Member("port") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    sb.append(context.getPort());
+                    return true;
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.MethodBuilder.class) {
+            return new Member("method") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    return appendString(sb, context.getMethod());
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.ParametersBuilder.class) {
+            return new MapMember("parameters",
+                    ((HttpAccessJsonLogFormatter.ParametersBuilder) target).getMapValueEditor(),
+                    maxMapEntries, maxValueLength) {
+                @Override
+                Map<String, ?> getMap(HttpAccessLogContext context) {
+                    return context.getParameters();
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.SessionScopeBuilder.class) {
+            return new MapMember("sessionScope",
+                    ((HttpAccessJsonLogFormatter.SessionScopeBuilder) target).getMapValueEditor(),
+                    maxMapEntries, maxValueLength) {
+                @Override
+                Map<String, ?> getMap(HttpAccessLogContext context) {
+                    return context.getSessionScopeMap();
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.DispatchingClassBuilder.class) {
+            return new Member("dispatchingClass") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    return appendString(sb, context.getDispatchingClass());
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.SessionIdBuilder.class) {
+            return new Member("sessionId") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    return appendString(sb, context.getSessionId());
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.SessionStoreIdBuilder.class) {
+            return new Member("sessionStoreId") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    return appendString(sb, InternalSessionUtil.getId(context.getContext()));
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.StatusCodeBuilder.class) {
+            return new Member("statusCode") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    return appendStatusCode(sb, context.getStatusCode());
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.ResponseStatusCodeBuilder.class) {
+            return new Member("responseStatusCode") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    return appendStatusCode(sb,
+                            HttpResponseUtil.chooseResponseStatusCode(context.getResponse(), context.getContext()));
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.ContentPathBuilder.class) {
+            return new Member("contentPath") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    return appendString(sb, context.getContentPath());
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.ClientIpAddressBuilder.class) {
+            return new Member("clientIpAddress") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    return appendString(sb, context.getClientIpAddress());
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.ClientHostBuilder.class) {
+            return new Member("clientHost") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    return appendString(sb, context.getClientHost());
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.ClientUserAgentBuilder.class) {
+            return new Member("clientUserAgent") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    return appendString(sb, context.getServletRequest().getHeader("User-Agent"));
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.StartTimeBuilder.class) {
+            return new DateMember("startTime", datePattern) {
+                @Override
+                long getTime(HttpAccessLogContext context) {
+                    return context.getStartTime();
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.EndTimeBuilder.class) {
+            return new DateMember("endTime", datePattern) {
+                @Override
+                long getTime(HttpAccessLogContext context) {
+                    return context.getEndTime();
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.ExecutionTimeBuilder.class) {
+            return new Member("executionTime") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    sb.append(context.getExecutionTime());
+                    return true;
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.MaxMemoryBuilder.class) {
+            return new Member("maxMemory") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    sb.append(context.getMaxMemory());
+                    return true;
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.FreeMemoryBuilder.class) {
+            return new Member("freeMemory") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    sb.append(context.getFreeMemory());
+                    return true;
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.CpuTimeBuilder.class) {
+            return new Member("cpuTime") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    long cpuTime = context.getCpuTime();
+                    if (cpuTime == -1) {
+                        return false;
+                    }
+                    sb.append(cpuTime);
+                    return true;
+                }
+            };
+        }
+        if (type == HttpAccessJsonLogFormatter.AllocatedBytesBuilder.class) {
+            return new Member("allocatedBytes") {
+                @Override
+                boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+                    long allocatedBytes = context.getAllocatedBytes();
+                    if (allocatedBytes == -1) {
+                        return false;
+                    }
+                    sb.append(allocatedBytes);
+                    return true;
+                }
+            };
+        }
+        return null;
+    }
+
+    /**
+     * メッセージをフォーマットする。
+     *
+     * @param context HttpAccessLogContext
+     * @return フォーマット済みのメッセージ
+     */
+    String format(HttpAccessLogContext context) {
+        return LogMessageBuffer.format(this, context);
+    }
+
+    /**
+     * メッセージを書き込む。
+     *
+     * @param sb 書き込み先
+     * @param context HttpAccessLogContext
+     */
+    @Override
+    public void appendTo(StringBuilder sb, HttpAccessLogContext context) {
+        sb.append(prefix).append('{');
+        boolean first = true;
+        for (Member member : members) {
+            int mark = sb.length();
+            if (!first) {
+                sb.append(',');
+            }
+            sb.append(member.key);
+            if (member.appendValue(sb, context)) {
+                first = false;
+            } else {
+                sb.setLength(mark);
+            }
+        }
+        sb.append('}');
+    }
+
+    /**
+     * ステータスコードを書き込む。
+     *
+     * @param sb 書き込み先
+     * @param statusCode ステータスコード
+     * @return 書き込んだ場合は{@code true}。ステータスコードが{@code -1}の場合は{@code false}
+     */
+    private static boolean appendStatusCode(StringBuilder sb, int statusCode) {
+        if (statusCode == -1) {
+            return false;
+        }
+        sb.append(statusCode);
+        return true;
+    }
+
+    /**
+     * 文字列をJSONの文字列として書き込む。
+     *
+     * @param sb 書き込み先
+     * @param value 文字列
+     * @return 書き込んだ場合は{@code true}。文字列が{@code null}の場合は{@code false}
+     */
+    static boolean appendString(StringBuilder sb, String value) {
+        if (value == null) {
+            return false;
+        }
+        sb.append('"');
+        appendEscaped(sb, value, value.length());
+        sb.append('"');
+        return true;
+    }
+
+    /**
+     * 文字列をエスケープして書き込む。
+     *
+     * @param sb 書き込み先
+     * @param value 文字列
+     * @param length 書き込む文字数
+     */
+    private static void appendEscaped(StringBuilder sb, String value, int length) {
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\b':
+                    sb.append("\\b");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+    }
+
+    /**
+     * 出力項目の書き込み処理。
+     */
+    abstract static class Member {
+
+        /** エスケープ済みの{@code "項目名":} */
+        private final String key;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param name 項目名
+         */
+        Member(String name) {
+            StringBuilder sb = new StringBuilder(name.length() + 3);
+            appendString(sb, name);
+            this.key = sb.append(':').toString();
+        }
+
+        /**
+         * 値を書き込む。
+         *
+         * @param sb 書き込み先
+         * @param context HttpAccessLogContext
+         * @return 書き込んだ場合は{@code true}。値が{@code null}のため出力しない場合は{@code false}
+         */
+        abstract boolean appendValue(StringBuilder sb, HttpAccessLogContext context);
+    }
+
+    /**
+     * 日時を書き込む処理。
+     * <p/>
+     * 日時パターンが{@link DateTimeFormatter}で同じ結果になる場合は{@link DateTimeFormatter}を使用する。
+     */
+    private abstract static class DateMember extends Member {
+
+        /** 日時パターン */
+        private final String datePattern;
+
+        /** 日時フォーマット。{@link DateTimeFormatter}で扱えないパターンの場合は{@code null} */
+        private final DateTimeFormatter dateTimeFormatter;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param name 項目名
+         * @param datePattern 日時パターン
+         */
+        DateMember(String name, String datePattern) {
+            super(name);
+            this.datePattern = datePattern;
+            this.dateTimeFormatter = CompiledLogTemplate.toDateTimeFormatter(new SimpleDateFormat(datePattern));
+        }
+
+        @Override
+        boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+            long time = getTime(context);
+            return appendString(sb, dateTimeFormatter != null
+                    ? dateTimeFormatter.format(Instant.ofEpochMilli(time))
+                    : new SimpleDateFormat(datePattern).format(new Date(time)));
+        }
+
+        /**
+         * 日時を取得する。
+         *
+         * @param context HttpAccessLogContext
+         * @return 日時
+         */
+        abstract long getTime(HttpAccessLogContext context);
+    }
+
+    /**
+     * マップをJSONのオブジェクトとして書き込む処理。
+     * <p/>
+     * 値が配列の場合はJSONの配列として書き込み、それ以外の場合はマスク処理の結果を文字列として書き込む。
+     */
+    private abstract static class MapMember extends Member {
+
+        /** エスケープ済みの{@code ,"項目名OmittedCount":} */
+        private final String omittedCountKey;
+
+        /** マスク処理 */
+        private final MapValueEditor editor;
+
+        /** 要素数の上限 */
+        private final int maxEntries;
+
+        /** 値の文字数の上限 */
+        private final int maxValueLength;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param name 項目名
+         * @param editor マスク処理
+         * @param maxEntries 要素数の上限。0以下の場合は上限なし
+         * @param maxValueLength 値の文字数の上限。0以下の場合は上限なし
+         */
+        MapMember(String name, MapValueEditor editor, int maxEntries, int maxValueLength) {
+            super(name);
+            StringBuilder sb = new StringBuilder().append(',');
+            appendString(sb, name + OMITTED_COUNT_SUFFIX);
+            this.omittedCountKey = sb.append(':').toString();
+            this.editor = editor;
+            this.maxEntries = maxEntries > 0 ? maxEntries : Integer.MAX_VALUE;
+            this.maxValueLength = maxValueLength > 0 ? maxValueLength : Integer.MAX_VALUE;
+        }
+
+        @Override
+        boolean appendValue(StringBuilder sb, HttpAccessLogContext context) {
+            if (!context.isSampled()) {
+                return false;
+            }
+            Map<String, ?> map = getMap(context);
+            sb.append('{');
+            int written = 0;
+            for (Map.Entry<String, ?> entry : map.entrySet()) {
+                if (written == maxEntries) {
+                    break;
+                }
+                if (written != 0) {
+                    sb.append(',');
+                }
+                String name = entry.getKey();
+                appendString(sb, name);
+                sb.append(':');
+                Object value = entry.getValue();
+                if (value instanceof Object[]) {
+                    Object[] values = (Object[]) value;
+                    sb.append('[');
+                    for (int i = 0; i < values.length; i++) {
+                        if (i != 0) {
+                            sb.append(',');
+                        }
+                        appendValue(sb, editor.edit(name, values[i]));
+                    }
+                    sb.append(']');
+                } else {
+                    appendValue(sb, editor.edit(name, value));
+                }
+                written++;
+            }
+            sb.append('}');
+            if (written < map.size()) {
+                sb.append(omittedCountKey).append(map.size() - written);
+            }
+            return true;
+        }
+
+        /**
+         * 値を書き込む。文字数が上限を超える場合は切り詰める。
+         *
+         * @param sb 書き込み先
+         * @param value 値
+         */
+        private void appendValue(StringBuilder sb, String value) {
+            if (value == null) {
+                sb.append("null");
+                return;
+            }
+            sb.append('"');
+            if (value.length() > maxValueLength) {
+                int length = maxValueLength;
+                if (Character.isHighSurrogate(value.charAt(length - 1))) {
+                    // サロゲートペアを分断しない。
+                    length--;
+                }
+                appendEscaped(sb, value, length);
+                sb.append(TRUNCATION_MARKER);
+            } else {
+                appendEscaped(sb, value, value.length());
+            }
+            sb.append('"');
+        }
+
+        /**
+         * 書き込むマップを取得する。
+         *
+         * @param context HttpAccessLogContext
+         * @return マップ
+         */
+        abstract Map<String, ?> getMap(HttpAccessLogContext context);
+    }
+}
@@ -0,0 +1,73 @@
+package nablarch.fw.web.handler.latency;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * ハンドラのクラスとリクエストパスのグループの組み合わせ毎に集計した処理時間。
+ * <p/>
+ * 処理時間は、後続のハンドラの処理時間を除いた、そのハンドラ自身の処理時間とする。
+ */
+@Published(tag = "architect")
+public class HandlerLatency {
+
+    /** ハンドラのクラス名 */
+    private final String handlerName;
+
+    /** リクエストパスのグループ */
+    private final String pathGroup;
+
+    /** 経過時間 */
+    private final LatencyHistogram wallTime = new LatencyHistogram();
+
+    /** CPU時間 */
+    private final LatencyHistogram cpuTime = new LatencyHistogram();
+
+    /**
+     * コンストラクタ。
+     *
+     * @param handlerName ハンドラのクラス名
+     * @param pathGroup リクエストパスのグループ
+     */
+    public HandlerLatency(String handlerName, String pathGroup) {
+        this.handlerName = handlerName;
+        this.pathGroup = pathGroup;
+    }
+
+    /**
+     * ハンドラのクラス名を取得する。
+     *
+     * @return ハンドラのクラス名
+     */
+    public String getHandlerName() {
+        return handlerName;
+    }
+
+    /**
+     * リクエストパスのグループを取得する。
+     *
+     * @return リクエストパスのグループ
+     */
+    public String getPathGroup() {
+        return pathGroup;
+    }
+
+    /**
+     * 経過時間のヒストグラムを取得する。
+     *
+     * @return 経過時間のヒストグラム
+     */
+    public LatencyHistogram getWallTime() {
+        return wallTime;
+    }
+
+    /**
+     * CPU時間のヒストグラムを取得する。
+     * <p/>
+     * CPU時間の計測が有効でない場合は、何も記録されない。
+     *
+     * @return CPU時間のヒストグラム
+     */
+    public LatencyHistogram getCpuTime() {
+        return cpuTime;
+    }
+}
@@ -0,0 +1,59 @@
+package nablarch.fw.web.handler.latency;
+
+import nablarch.core.repository.SystemRepository;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.web.HttpRequest;
+import nablarch.fw.web.HttpRequestHandler;
+import nablarch.fw.web.HttpResponse;
+
+/**
+ * {@link HandlerLatencyRecorder}の集計結果をテキスト形式で返すエンドポイントとなるハンドラ。
+ * <p/>
+ * 出力形式は{@link HandlerLatencyRecorder#getReport()}を参照。
+ * {@link HandlerLatencyRecorder}を設定しない場合は、
+ * リポジトリ上のコンポーネント"handlerLatencyRecorder"を使用する。
+ * 集計結果には内部構成が含まれるため、外部に公開しないパスに配置すること。
+ */
+public class HandlerLatencyEndpointHandler implements HttpRequestHandler {
+
+    /** リポジトリ上の{@link HandlerLatencyRecorder}のコンポーネント名 */
+    private static final String RECORDER_COMPONENT_NAME = "handlerLatencyRecorder";
+
+    /** 集計結果を保持する{@link HandlerLatencyRecorder} */
+    private HandlerLatencyRecorder recorder;
+
+    /** レスポンスのContent-Type */
+    private String contentType = "text/plain;charset=UTF-8";
+
+    @Override
+    public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+        HandlerLatencyRecorder target = recorder;
+        if (target == null) {
+            target = SystemRepository.get(RECORDER_COMPONENT_NAME);
+        }
+        if (target == null) {
+            return new HttpResponse(404);
+        }
+        return new HttpResponse(200)
+                .setContentType(contentType)
+                .write(target.getReport());
+    }
+
+    /**
+     * 集計結果を保持する{@link HandlerLatencyRecorder}を設定する。
+     * @param recorder 集計結果を保持する{@link HandlerLatencyRecorder}
+     */
+    public void setRecorder(HandlerLatencyRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * レスポンスのContent-Typeを設定する。
+     * <p/>
+     * デフォルトは"text/plain;charset=UTF-8"。
+     * @param contentType レスポンスのContent-Type
+     */
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+}
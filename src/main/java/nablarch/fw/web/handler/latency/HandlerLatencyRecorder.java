@@ -0,0 +1,285 @@
+package nablarch.fw.web.handler.latency;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import nablarch.core.repository.disposal.Disposable;
+import nablarch.core.repository.initialization.Initializable;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.Handler;
+import nablarch.fw.web.HttpRequest;
+
+/**
+ * ハンドラキューの各ハンドラの処理時間を、ハンドラのクラスとリクエストパスのグループ毎に集計するクラス。
+ * <pre>
+ * {@link nablarch.fw.web.servlet.WebFrontController#setHandlerLatencyRecorder(HandlerLatencyRecorder)}に設定すると、
+ * ハンドラキューの各ハンドラを包み、後続のハンドラの処理時間を除いた各ハンドラ自身の処理時間を
+ * {@link LatencyHistogram}に記録する。
+ * 同じクラスのハンドラがハンドラキューに複数含まれる場合は、まとめて集計する。
+ *
+ * リクエストパスのグループは、{@link #setPathGroups(List)}に設定したリクエストパスの前方一致で判定する。
+ * 複数のグループに一致する場合は、先に設定されたものを使用する。
+ * いずれにも一致しないリクエストは{@link #DEFAULT_PATH_GROUP}として集計する。
+ *
+ * 経過時間の計測には{@link System#nanoTime()}を使用する。
+ * CPU時間の計測は{@link java.lang.management.ThreadMXBean#getCurrentThreadCpuTime()}を使用するため、
+ * 経過時間のみの計測に比べて、ハンドラ毎に数百ナノ秒程度のコストが加わる。
+ * このため、CPU時間の計測はデフォルトでは無効とし、{@link #setCpuTimeEnabled(boolean)}で有効にする。
+ *
+ * 集計結果は、{@link #initialize()}でプラットフォームのMBeanサーバに登録され、JMXで参照できる。
+ * また、{@link HandlerLatencyEndpointHandler}を使用すると、テキスト形式で参照できる。
+ *
+ * ハンドラキューの各ハンドラは包まれるため、ハンドラキューからハンドラをクラスで検索する処理では、
+ * 包まれたハンドラは見つからないことに注意すること。
+ *
+ * 設定例:
+ * &lt;component name="handlerLatencyRecorder" class="nablarch.fw.web.handler.latency.HandlerLatencyRecorder">
+ *   &lt;property name="pathGroups">
+ *     &lt;list>
+ *       &lt;value>/api/&lt;/value>
+ *       &lt;value>/admin/&lt;/value>
+ *     &lt;/list>
+ *   &lt;/property>
+ * &lt;/component>
+ *
+ * &lt;component name="webFrontController" class="nablarch.fw.web.servlet.WebFrontController">
+ *   &lt;property name="handlerLatencyRecorder" ref="handlerLatencyRecorder"/>
+ *   &lt;!-- 省略 -->
+ * &lt;/component>
+ *
+ * &lt;component name="initializer" class="nablarch.core.repository.initialization.BasicApplicationInitializer">
+ *   &lt;property name="initializeList">
+ *     &lt;list>
+ *       &lt;component-ref name="handlerLatencyRecorder"/>
+ *     &lt;/list>
+ *   &lt;/property>
+ * &lt;/component>
+ * </pre>
+ */
+@Published(tag = "architect")
+public class HandlerLatencyRecorder implements HandlerLatencyRecorderMBean, Initializable, Disposable {
+
+    /** いずれのグループにも一致しないリクエストパスのグループ */
+    public static final String DEFAULT_PATH_GROUP = "other";
+
+    /** デフォルトのMBeanのオブジェクト名 */
+    public static final String DEFAULT_OBJECT_NAME = "nablarch:type=HandlerLatencyRecorder";
+
+    /** 1件分の集計結果のテキスト形式の書式 */
+    private static final String REPORT_FORMAT = "%s\t%s\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d%n";
+
+    /** リクエストパスのグループ(前方一致するリクエストパス) */
+    private List<String> pathGroups = Collections.emptyList();
+
+    /** CPU時間を計測するか否か */
+    private boolean cpuTimeEnabled = false;
+
+    /** MBeanサーバへの登録 */
+    private final MBeanRegistration registration = new MBeanRegistration(DEFAULT_OBJECT_NAME);
+
+    /** ハンドラのクラス名毎の、リクエストパスのグループ毎の集計結果 */
+    private final ConcurrentMap<String, HandlerLatency[]> latencies = new ConcurrentHashMap<String, HandlerLatency[]>();
+
+    /** 全ての集計結果(作成順) */
+    private final List<HandlerLatency> entries = new CopyOnWriteArrayList<HandlerLatency>();
+
+    /**
+     * ハンドラキューの各ハンドラを、処理時間を記録するハンドラで包む。
+     * <p/>
+     * 引数のハンドラキューは変更しない。
+     *
+     * @param handlerQueue ハンドラキュー
+     * @return 各ハンドラを包んだハンドラキュー
+     */
+    @SuppressWarnings("rawtypes")
+    public List<Handler> instrument(List<Handler> handlerQueue) {
+        List<Handler> instrumented = new ArrayList<Handler>(handlerQueue.size());
+        for (Handler handler : handlerQueue) {
+            if (handler instanceof InstrumentedHandler) {
+                instrumented.add(handler);
+            } else {
+                instrumented.add(new InstrumentedHandler(
+                        handler, this, latenciesOf(handler.getClass().getName()), cpuTimeEnabled));
+            }
+        }
+        return instrumented;
+    }
+
+    /**
+     * ハンドラのクラス名に対応する、リクエストパスのグループ毎の集計結果を取得する。
+     * 存在しない場合は作成する。
+     *
+     * @param handlerName ハンドラのクラス名
+     * @return リクエストパスのグループ毎の集計結果({@link #groupOf(Object)}の番号順)
+     */
+    private synchronized HandlerLatency[] latenciesOf(String handlerName) {
+        HandlerLatency[] found = latencies.get(handlerName);
+        if (found == null) {
+            found = new HandlerLatency[pathGroups.size() + 1];
+            for (int i = 0; i < pathGroups.size(); i++) {
+                found[i] = new HandlerLatency(handlerName, pathGroups.get(i));
+            }
+            found[pathGroups.size()] = new HandlerLatency(handlerName, DEFAULT_PATH_GROUP);
+            latencies.put(handlerName, found);
+            Collections.addAll(entries, found);
+        }
+        return found;
+    }
+
+    /**
+     * 処理対象のデータが属するリクエストパスのグループを判定する。
+     *
+     * @param data 処理対象のデータ
+     * @return リクエストパスのグループの番号({@link #DEFAULT_PATH_GROUP}の場合はグループの数)
+     */
+    int groupOf(Object data) {
+        if (data instanceof HttpRequest) {
+            String path = ((HttpRequest) data).getRequestPath();
+            if (path != null) {
+                for (int i = 0; i < pathGroups.size(); i++) {
+                    if (path.startsWith(pathGroups.get(i))) {
+                        return i;
+                    }
+                }
+            }
+        }
+        return pathGroups.size();
+    }
+
+    /**
+     * 全ての集計結果を取得する。
+     * <p/>
+     * ハンドラキューの順に、ハンドラのクラス毎にリクエストパスのグループ順で返す。
+     *
+     * @return 集計結果
+     */
+    public List<HandlerLatency> getLatencies() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <pre>
+     * 1行に1件の集計結果を、以下の項目のタブ区切りで出力する。1行目は見出しとする。
+     * 記録がない集計結果は出力しない。時間の単位はナノ秒とする。
+     *   ハンドラのクラス名、リクエストパスのグループ、件数、
+     *   経過時間の平均値、50パーセンタイル、90パーセンタイル、99パーセンタイル、最大値、
+     *   CPU時間の平均値、99パーセンタイル
+     * </pre>
+     */
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("handler\tpathGroup\tcount\twallMean\twallP50\twallP90\twallP99\twallMax"
+                                            + "\tcpuMean\tcpuP99%n"));
+        for (HandlerLatency latency : entries) {
+            LatencyHistogram wall = latency.getWallTime();
+            if (wall.getCount() == 0) {
+                continue;
+            }
+            LatencyHistogram cpu = latency.getCpuTime();
+            report.append(String.format(REPORT_FORMAT,
+                    latency.getHandlerName(), latency.getPathGroup(), wall.getCount(),
+                    wall.getMean(), wall.getPercentile(0.5), wall.getPercentile(0.9),
+                    wall.getPercentile(0.99), wall.getMax(),
+                    cpu.getMean(), cpu.getPercentile(0.99)));
+        }
+        return report.toString();
+    }
+
+    @Override
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    @Override
+    public boolean isCpuTimeEnabled() {
+        return cpuTimeEnabled;
+    }
+
+    @Override
+    public void reset() {
+        for (HandlerLatency latency : entries) {
+            latency.getWallTime().reset();
+            latency.getCpuTime().reset();
+        }
+    }
+
+    /**
+     * MBeanサーバに登録する。
+     * <p/>
+     * {@link #setJmxEnabled(boolean)}で無効にした場合は何もしない。
+     *
+     * @throws IllegalStateException 登録に失敗した場合
+     */
+    @Override
+    public synchronized void initialize() {
+        registration.register(this);
+    }
+
+    /**
+     * MBeanサーバへの登録を解除する。
+     */
+    @Override
+    public synchronized void dispose() {
+        registration.unregister();
+    }
+
+    /**
+     * リクエストパスのグループを設定する。
+     * <p/>
+     * 各要素は、グループに属するリクエストパスの接頭辞とする。
+     * {@link #instrument(List)}を呼び出す前に設定すること。
+     *
+     * @param pathGroups リクエストパスのグループ
+     */
+    public void setPathGroups(List<String> pathGroups) {
+        for (String pathGroup : pathGroups) {
+            if (pathGroup == null || !pathGroup.startsWith("/")) {
+                throw new IllegalArgumentException(
+                        "path group must start with '/'. pathGroup = [" + pathGroup + "]");
+            }
+        }
+        this.pathGroups = new ArrayList<String>(pathGroups);
+    }
+
+    /**
+     * CPU時間を計測するか否かを設定する。
+     * <p/>
+     * デフォルトは{@code false}。{@link #instrument(List)}を呼び出す前に設定すること。
+     *
+     * @param cpuTimeEnabled 計測する場合は{@code true}
+     */
+    public void setCpuTimeEnabled(boolean cpuTimeEnabled) {
+        this.cpuTimeEnabled = cpuTimeEnabled
+                && ManagementFactory.getThreadMXBean().isCurrentThreadCpuTimeSupported();
+    }
+
+    /**
+     * MBeanサーバに登録するか否かを設定する。
+     * <p/>
+     * デフォルトは{@code true}。
+     *
+     * @param jmxEnabled 登録する場合は{@code true}
+     */
+    public void setJmxEnabled(boolean jmxEnabled) {
+        registration.setEnabled(jmxEnabled);
+    }
+
+    /**
+     * MBeanのオブジェクト名を設定する。
+     * <p/>
+     * デフォルトは{@link #DEFAULT_OBJECT_NAME}。
+     * 1つのJVMで複数のアプリケーションを動作させる場合は、アプリケーション毎に異なる名前を設定すること。
+     *
+     * @param objectName MBeanのオブジェクト名
+     */
+    public void setObjectName(String objectName) {
+        registration.setObjectName(objectName);
+    }
+}
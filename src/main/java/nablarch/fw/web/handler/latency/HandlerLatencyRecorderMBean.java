@@ -0,0 +1,36 @@
+package nablarch.fw.web.handler.latency;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * {@link HandlerLatencyRecorder}をJMXで公開するためのインタフェース。
+ */
+@Published(tag = "architect")
+public interface HandlerLatencyRecorderMBean {
+
+    /**
+     * 集計結果をテキスト形式で取得する。
+     *
+     * @return 集計結果
+     */
+    String getReport();
+
+    /**
+     * 集計しているハンドラとリクエストパスのグループの組み合わせの数を取得する。
+     *
+     * @return 組み合わせの数
+     */
+    int getEntryCount();
+
+    /**
+     * CPU時間を計測しているか否かを取得する。
+     *
+     * @return 計測している場合は{@code true}
+     */
+    boolean isCpuTimeEnabled();
+
+    /**
+     * 集計結果を破棄する。
+     */
+    void reset();
+}
@@ -0,0 +1,125 @@
+package nablarch.fw.web.handler.latency;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.web.servlet.WebFrontControllerWarmup;
+
+/**
+ * ハンドラの処理時間を{@link HandlerLatencyRecorder}に記録するためにハンドラを包むハンドラ。
+ * <pre>
+ * 記録する処理時間は、包んだハンドラの処理時間から、その間に処理された後続のハンドラの処理時間を除いた時間とする。
+ * 後続のハンドラの処理時間はスレッド毎の{@link Frame}に積算し、呼び出し元のハンドラに引き継ぐ。
+ * リクエストパスのグループは、最も外側のハンドラの処理開始時に1度だけ判定する。
+ * {@link WebFrontControllerWarmup}の疑似リクエストは記録しない。
+ * </pre>
+ */
+final class InstrumentedHandler implements Handler<Object, Object> {
+
+    /** スレッド毎の計測状態 */
+    private static final ThreadLocal<Frame> FRAME = new ThreadLocal<Frame>() {
+        @Override
+        protected Frame initialValue() {
+            return new Frame();
+        }
+    };
+
+    /** CPU時間の取得に使用する{@link ThreadMXBean} */
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    /** 包んだハンドラ */
+    @SuppressWarnings("rawtypes")
+    private final Handler handler;
+
+    /** 記録先 */
+    private final HandlerLatencyRecorder recorder;
+
+    /** リクエストパスのグループ毎の記録先 */
+    private final HandlerLatency[] latencies;
+
+    /** CPU時間を計測するか否か */
+    private final boolean cpuTimeEnabled;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param handler 包むハンドラ
+     * @param recorder 記録先
+     * @param latencies リクエストパスのグループ毎の記録先
+     * @param cpuTimeEnabled CPU時間を計測する場合は{@code true}
+     */
+    @SuppressWarnings("rawtypes")
+    InstrumentedHandler(Handler handler, HandlerLatencyRecorder recorder,
+                        HandlerLatency[] latencies, boolean cpuTimeEnabled) {
+        this.handler = handler;
+        this.recorder = recorder;
+        this.latencies = latencies;
+        this.cpuTimeEnabled = cpuTimeEnabled;
+    }
+
+    /**
+     * 包んだハンドラを取得する。
+     *
+     * @return 包んだハンドラ
+     */
+    @SuppressWarnings("rawtypes")
+    Handler getHandler() {
+        return handler;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object handle(Object data, ExecutionContext context) {
+        Frame frame = FRAME.get();
+        if (frame.depth == 0 && WebFrontControllerWarmup.isWarmupRequest(context)) {
+            // 疑似リクエストでは計測状態を変更しないため、後続のハンドラも同様に記録しない
+            return handler.handle(data, context);
+        }
+        if (frame.depth++ == 0) {
+            frame.group = recorder.groupOf(data);
+        }
+        long parentChildWall = frame.childWall;
+        long parentChildCpu = frame.childCpu;
+        frame.childWall = 0;
+        frame.childCpu = 0;
+        long cpuStart = cpuTimeEnabled ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+        long wallStart = System.nanoTime();
+        try {
+            return handler.handle(data, context);
+        } finally {
+            long wall = System.nanoTime() - wallStart;
+            long cpu = cpuTimeEnabled ? THREAD_MX_BEAN.getCurrentThreadCpuTime() - cpuStart : 0;
+            HandlerLatency latency = latencies[Math.min(frame.group, latencies.length - 1)];
+            latency.getWallTime().record(wall - frame.childWall);
+            if (cpuTimeEnabled) {
+                latency.getCpuTime().record(cpu - frame.childCpu);
+            }
+            frame.childWall = parentChildWall + wall;
+            frame.childCpu = parentChildCpu + cpu;
+            if (--frame.depth == 0) {
+                frame.childWall = 0;
+                frame.childCpu = 0;
+            }
+        }
+    }
+
+    /**
+     * スレッド毎の計測状態。
+     */
+    private static final class Frame {
+
+        /** 処理中のハンドラの入れ子の深さ */
+        private int depth;
+
+        /** 処理中のリクエストのリクエストパスのグループ */
+        private int group;
+
+        /** 処理中のハンドラから呼び出された後続のハンドラの経過時間の合計 */
+        private long childWall;
+
+        /** 処理中のハンドラから呼び出された後続のハンドラのCPU時間の合計 */
+        private long childCpu;
+    }
+}
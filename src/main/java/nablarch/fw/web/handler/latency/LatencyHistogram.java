@@ -0,0 +1,214 @@
+package nablarch.fw.web.handler.latency;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 処理時間(ナノ秒)の分布を集計するヒストグラム。
+ * <pre>
+ * 値を2のべき乗毎の区間に分け、各区間をさらに32の区間に等分して件数を数える。
+ * 区間の幅は値の1/32以下となるため、パーセンタイルには区間の上限値を返すが、その誤差は約3%以内となる。
+ * 64未満の値は値毎に数えるため、誤差はない。
+ * 2の40乗(約18分)以上の値は最後の区間に数える。
+ * 区間の数は約1,150となり、1つあたり約9KBのメモリを使用する。
+ *
+ * 記録は件数の配列と合計値の加算のみで行い、ロックを取得しない。
+ * 各値は個別に更新されるため、記録中に取得した件数、合計値、最大値は互いに一致しないことがある。
+ * </pre>
+ */
+@Published(tag = "architect")
+public class LatencyHistogram {
+
+    /** 2のべき乗毎の区間を分割する数のビット数 */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /** 2のべき乗毎の区間を分割する数 */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** 値をそのまま区間の番号とする値の上限(この値を含まない) */
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT * 2;
+
+    /** 区間を分ける値の最大の指数 */
+    private static final int MAX_EXPONENT = 40;
+
+    /** 区間の数(最後の区間は、区間を分ける値の上限を超える値を数える) */
+    private static final int BUCKET_COUNT =
+            LINEAR_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT + 1;
+
+    /** 区間毎の件数 */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /** 件数 */
+    private final AtomicLong count = new AtomicLong();
+
+    /** 合計値 */
+    private final AtomicLong sum = new AtomicLong();
+
+    /** 最大値 */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 値を記録する。
+     * <p/>
+     * 負の値は0として記録する。
+     *
+     * @param nanos 処理時間(ナノ秒)
+     */
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : nanos;
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * 記録した件数を取得する。
+     *
+     * @return 件数
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * 記録した値の合計を取得する。
+     *
+     * @return 合計値(ナノ秒)
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * 記録した値の最大値を取得する。
+     *
+     * @return 最大値(ナノ秒)。記録していない場合は0
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * 記録した値の平均値を取得する。
+     *
+     * @return 平均値(ナノ秒)。記録していない場合は0
+     */
+    public long getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+
+    /**
+     * パーセンタイルを取得する。
+     * <p/>
+     * 指定した割合の件数が含まれる区間の上限値を返す。ただし最大値を超えることはない。
+     *
+     * @param ratio 割合(0以上1以下。例えば99パーセンタイルの場合は0.99)
+     * @return パーセンタイル(ナノ秒)。記録していない場合は0
+     */
+    public long getPercentile(double ratio) {
+        if (ratio < 0 || ratio > 1) {
+            throw new IllegalArgumentException("ratio must be between 0 and 1. ratio = [" + ratio + "]");
+        }
+        long[] snapshot = getBucketCounts();
+        long total = 0;
+        for (long n : snapshot) {
+            total += n;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * ratio));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(getBucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * 区間毎の件数を取得する。
+     * <p/>
+     * 返却する配列の各要素は、{@link #getBucketUpperBound(int)}の区間に対応する。
+     *
+     * @return 区間毎の件数
+     */
+    public long[] getBucketCounts() {
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 記録した値を全て破棄する。
+     * <p/>
+     * 記録中に呼び出した場合、その記録の一部が破棄されずに残ることがある。
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * 区間の数を取得する。
+     *
+     * @return 区間の数
+     */
+    public static int getBucketCount() {
+        return BUCKET_COUNT;
+    }
+
+    /**
+     * 区間に含まれる値の上限を取得する。
+     * <p/>
+     * 最後の区間は上限を持たないため、{@link Long#MAX_VALUE}を返す。
+     *
+     * @param bucket 区間の番号
+     * @return 区間に含まれる値の上限(この値を含む)
+     */
+    public static long getBucketUpperBound(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        if (bucket >= BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKET_COUNT + SUB_BUCKET_BITS + 1;
+        int sub = (bucket - LINEAR_LIMIT) % SUB_BUCKET_COUNT;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKET_COUNT + sub + 1) << shift) - 1;
+    }
+
+    /**
+     * 値を含む区間の番号を取得する。
+     *
+     * @param value 値(0以上)
+     * @return 区間の番号
+     */
+    static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT + sub;
+    }
+}
@@ -0,0 +1,96 @@
+package nablarch.fw.web.handler.latency;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * 集計結果のMBeanを、プラットフォームのMBeanサーバに登録・登録解除するクラス。
+ * <p/>
+ * {@link HandlerLatencyRecorder}と{@link RequestLatencyRecorder}の初期化処理と廃棄処理で使用する。
+ * 同期は呼び出し元で行うこと。
+ */
+final class MBeanRegistration {
+
+    /** MBeanサーバに登録するか否か */
+    private boolean enabled = true;
+
+    /** MBeanのオブジェクト名 */
+    private String objectName;
+
+    /** MBeanサーバに登録したオブジェクト名(登録していない場合は{@code null}) */
+    private ObjectName registeredName;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param objectName デフォルトのMBeanのオブジェクト名
+     */
+    MBeanRegistration(String objectName) {
+        this.objectName = objectName;
+    }
+
+    /**
+     * MBeanサーバに登録する。
+     * <p/>
+     * 無効にした場合と、既に登録している場合は何もしない。
+     *
+     * @param mbean 登録するMBean
+     * @throws IllegalStateException 登録に失敗した場合
+     */
+    void register(Object mbean) {
+        if (!enabled || registeredName != null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(objectName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, name);
+            registeredName = name;
+        } catch (JMException e) {
+            throw new IllegalStateException("failed to register MBean. objectName = [" + objectName + "]", e);
+        }
+    }
+
+    /**
+     * MBeanサーバへの登録を解除する。
+     * <p/>
+     * 登録していない場合は何もしない。
+     *
+     * @throws IllegalStateException 登録の解除に失敗した場合
+     */
+    void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(registeredName)) {
+                server.unregisterMBean(registeredName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("failed to unregister MBean. objectName = [" + registeredName + "]", e);
+        } finally {
+            registeredName = null;
+        }
+    }
+
+    /**
+     * MBeanサーバに登録するか否かを設定する。
+     *
+     * @param enabled 登録する場合は{@code true}
+     */
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * MBeanのオブジェクト名を設定する。
+     *
+     * @param objectName MBeanのオブジェクト名
+     */
+    void setObjectName(String objectName) {
+        this.objectName = objectName;
+    }
+}
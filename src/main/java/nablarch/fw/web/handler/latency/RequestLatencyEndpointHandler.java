@@ -0,0 +1,56 @@
+package nablarch.fw.web.handler.latency;
+
+import nablarch.core.repository.SystemRepository;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.web.HttpRequest;
+import nablarch.fw.web.HttpRequestHandler;
+import nablarch.fw.web.HttpResponse;
+
+/**
+ * {@link RequestLatencyRecorder}の集計結果をPrometheusのテキスト形式で返すエンドポイントとなるハンドラ。
+ * <p/>
+ * 出力形式は{@link RequestLatencyRecorder#getPrometheusReport()}を参照。
+ * {@link RequestLatencyRecorder}を設定しない場合は、
+ * リポジトリ上のコンポーネント"requestLatencyRecorder"を使用する。
+ * 集計結果にはリクエストIDが含まれるため、外部に公開しないパスに配置すること。
+ */
+public class RequestLatencyEndpointHandler implements HttpRequestHandler {
+
+    /** 集計結果を保持する{@link RequestLatencyRecorder} */
+    private RequestLatencyRecorder recorder;
+
+    /** レスポンスのContent-Type */
+    private String contentType = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Override
+    public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+        RequestLatencyRecorder target = recorder;
+        if (target == null) {
+            target = SystemRepository.get(RequestLatencyHandler.RECORDER_COMPONENT_NAME);
+        }
+        if (target == null) {
+            return new HttpResponse(404);
+        }
+        return new HttpResponse(200)
+                .setContentType(contentType)
+                .write(target.getPrometheusReport());
+    }
+
+    /**
+     * 集計結果を保持する{@link RequestLatencyRecorder}を設定する。
+     * @param recorder 集計結果を保持する{@link RequestLatencyRecorder}
+     */
+    public void setRecorder(RequestLatencyRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * レスポンスのContent-Typeを設定する。
+     * <p/>
+     * デフォルトは"text/plain; version=0.0.4; charset=utf-8"。
+     * @param contentType レスポンスのContent-Type
+     */
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+}
@@ -0,0 +1,75 @@
+package nablarch.fw.web.handler.latency;
+
+import nablarch.common.util.WebRequestUtil;
+import nablarch.core.repository.SystemRepository;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.web.HttpErrorResponse;
+import nablarch.fw.web.HttpRequest;
+import nablarch.fw.web.HttpResponse;
+import nablarch.fw.web.servlet.WebFrontControllerWarmup;
+
+/**
+ * 後続のハンドラの処理時間を、リクエストID毎に{@link RequestLatencyRecorder}に記録するハンドラ。
+ * <p/>
+ * リクエストIDは{@link WebRequestUtil#getRequestId(String)}でリクエストパスから取得する。
+ * 例外が送出された場合も処理時間を記録する。
+ * ステータスコードが404のレスポンスは、存在しないリクエストパスによって集計するリクエストIDが増えないよう、
+ * {@link RequestLatencyRecorder#OTHER_ROUTE}として記録する。
+ * {@link WebFrontControllerWarmup}の疑似リクエストは記録しない。
+ * {@link RequestLatencyRecorder}を設定しない場合は、リポジトリ上のコンポーネント"requestLatencyRecorder"を使用する。
+ * いずれも存在しない場合は記録せずに後続のハンドラを呼び出す。
+ */
+public class RequestLatencyHandler implements Handler<HttpRequest, HttpResponse> {
+
+    /** リポジトリ上の{@link RequestLatencyRecorder}のコンポーネント名 */
+    static final String RECORDER_COMPONENT_NAME = "requestLatencyRecorder";
+
+    /** リクエストIDを集計しないステータスコード */
+    private static final int NOT_FOUND = 404;
+
+    /** 処理時間を記録する{@link RequestLatencyRecorder} */
+    private RequestLatencyRecorder recorder;
+
+    @Override
+    public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+        RequestLatencyRecorder target = recorder;
+        if (target == null) {
+            target = SystemRepository.get(RECORDER_COMPONENT_NAME);
+        }
+        if (target == null || WebFrontControllerWarmup.isWarmupRequest(context)) {
+            return context.handleNext(request);
+        }
+        long start = System.nanoTime();
+        int statusCode = 0;
+        try {
+            HttpResponse response = context.handleNext(request);
+            statusCode = response != null ? response.getStatusCode() : 0;
+            return response;
+        } catch (HttpErrorResponse e) {
+            statusCode = e.getResponse() != null ? e.getResponse().getStatusCode() : 0;
+            throw e;
+        } finally {
+            target.record(statusCode == NOT_FOUND ? null : getRequestId(request), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * リクエストIDを取得する。
+     *
+     * @param request {@link HttpRequest}
+     * @return リクエストID。特定できない場合は{@code null}
+     */
+    private static String getRequestId(HttpRequest request) {
+        String path = request.getRequestPath();
+        return path != null ? WebRequestUtil.getRequestId(path) : null;
+    }
+
+    /**
+     * 処理時間を記録する{@link RequestLatencyRecorder}を設定する。
+     * @param recorder 処理時間を記録する{@link RequestLatencyRecorder}
+     */
+    public void setRecorder(RequestLatencyRecorder recorder) {
+        this.recorder = recorder;
+    }
+}
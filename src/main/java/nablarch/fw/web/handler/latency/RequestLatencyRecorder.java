@@ -0,0 +1,396 @@
+package nablarch.fw.web.handler.latency;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nablarch.core.repository.disposal.Disposable;
+import nablarch.core.repository.initialization.Initializable;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * リクエストの処理時間を、リクエストID毎に集計するクラス。
+ * <pre>
+ * {@link RequestLatencyHandler}が計測した処理時間を、リクエストID毎のヒストグラムに記録する。
+ * パーセンタイルと最大値は直近の{@link #setWindowSeconds(int)}秒間の記録から算出する。
+ * 件数と合計値は記録を開始してからの累計とする。
+ *
+ * リクエストIDはクライアントが指定したリクエストパスから決まるため、集計するリクエストIDの数には上限を設ける。
+ * 上限({@link #setMaxRoutes(int)})に達した場合は、集計する時間内に記録がないリクエストIDを破棄する。
+ * 破棄できるリクエストIDがない場合の新しいリクエストIDと、リクエストIDを特定できないリクエストは、
+ * {@link #OTHER_ROUTE}としてまとめて集計する。
+ * 破棄したリクエストIDの累計の件数と合計値は失われる。
+ * リクエストID毎のヒストグラムは約55KB({@link LatencyHistogram}を6つ)のメモリを使用するため、上限はリクエストIDの数に合わせて設定すること。
+ *
+ * 集計結果は、{@link #initialize()}でプラットフォームのMBeanサーバに登録され、JMXで参照できる。
+ * また、{@link RequestLatencyEndpointHandler}を使用すると、Prometheusのテキスト形式で参照できる。
+ *
+ * 設定例:
+ * &lt;component name="requestLatencyRecorder" class="nablarch.fw.web.handler.latency.RequestLatencyRecorder">
+ *   &lt;property name="maxRoutes" value="200"/>
+ *   &lt;property name="windowSeconds" value="300"/>
+ * &lt;/component>
+ *
+ * &lt;component name="initializer" class="nablarch.core.repository.initialization.BasicApplicationInitializer">
+ *   &lt;property name="initializeList">
+ *     &lt;list>
+ *       &lt;component-ref name="requestLatencyRecorder"/>
+ *     &lt;/list>
+ *   &lt;/property>
+ * &lt;/component>
+ * </pre>
+ */
+@Published(tag = "architect")
+public class RequestLatencyRecorder implements RequestLatencyRecorderMBean, Initializable, Disposable {
+
+    /** 上限を超えたリクエストIDと、リクエストIDを特定できないリクエストを集計する名前 */
+    public static final String OTHER_ROUTE = "other";
+
+    /** デフォルトのMBeanのオブジェクト名 */
+    public static final String DEFAULT_OBJECT_NAME = "nablarch:type=RequestLatencyRecorder";
+
+    /** Prometheusのテキスト形式で出力する処理時間のメトリクス名 */
+    public static final String METRIC_NAME = "nablarch_request_latency_seconds";
+
+    /** Prometheusのテキスト形式で出力する最大値のメトリクス名 */
+    public static final String MAX_METRIC_NAME = "nablarch_request_latency_max_seconds";
+
+    /** 集計する時間を分ける区間の数 */
+    private static final int SLICE_COUNT = 6;
+
+    /** 出力するパーセンタイルの割合 */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    /** 1件分の集計結果のテキスト形式の書式 */
+    private static final String REPORT_FORMAT = "%s\t%d\t%d\t%d\t%d\t%d\t%d%n";
+
+    /** 1秒あたりのナノ秒 */
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /** 集計するリクエストIDの数の上限 */
+    private int maxRoutes = 100;
+
+    /** パーセンタイルを集計する時間(秒) */
+    private int windowSeconds = 60;
+
+    /** MBeanサーバへの登録 */
+    private final MBeanRegistration registration = new MBeanRegistration(DEFAULT_OBJECT_NAME);
+
+    /** リクエストID毎の集計結果 */
+    private final ConcurrentMap<String, SlidingLatencyHistogram> routes =
+            new ConcurrentHashMap<String, SlidingLatencyHistogram>();
+
+    /** 上限に達したため{@link #OTHER_ROUTE}として記録した件数 */
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    /** 次に記録がないリクエストIDを破棄できる時刻(ミリ秒) */
+    private long nextEvictionMillis;
+
+    /**
+     * 処理時間を記録する。
+     *
+     * @param requestId リクエストID。特定できない場合は{@code null}
+     * @param nanos 処理時間(ナノ秒)
+     */
+    public void record(String requestId, long nanos) {
+        record(requestId, nanos, System.currentTimeMillis());
+    }
+
+    /**
+     * 処理時間を記録する。
+     *
+     * @param requestId リクエストID。特定できない場合は{@code null}
+     * @param nanos 処理時間(ナノ秒)
+     * @param nowMillis 現在時刻(ミリ秒)
+     */
+    void record(String requestId, long nanos, long nowMillis) {
+        histogramOf(requestId, nowMillis).record(nanos, nowMillis);
+    }
+
+    /**
+     * リクエストIDに対応するヒストグラムを取得する。存在しない場合は作成する。
+     *
+     * @param requestId リクエストID
+     * @param nowMillis 現在時刻(ミリ秒)
+     * @return ヒストグラム。上限に達している場合は{@link #OTHER_ROUTE}のヒストグラム
+     */
+    private SlidingLatencyHistogram histogramOf(String requestId, long nowMillis) {
+        String route = requestId != null ? requestId : OTHER_ROUTE;
+        SlidingLatencyHistogram found = routes.get(route);
+        if (found != null) {
+            return found;
+        }
+        synchronized (this) {
+            found = routes.get(route);
+            if (found != null) {
+                return found;
+            }
+            if (!OTHER_ROUTE.equals(route) && routeCountExcludingOther() >= maxRoutes
+                    && (!evictIdleRoutes(nowMillis) || routeCountExcludingOther() >= maxRoutes)) {
+                overflowCount.incrementAndGet();
+                return histogramOf(OTHER_ROUTE, nowMillis);
+            }
+            found = new SlidingLatencyHistogram(TimeUnit.SECONDS.toMillis(windowSeconds), SLICE_COUNT);
+            routes.put(route, found);
+            return found;
+        }
+    }
+
+    /**
+     * 集計する時間内に記録がないリクエストIDを破棄する。
+     * <p/>
+     * 上限に達した後の全てのリクエストで走査しないよう、破棄は集計する時間の区間毎に1回までとする。
+     *
+     * @param nowMillis 現在時刻(ミリ秒)
+     * @return 破棄を試みた場合は{@code true}
+     */
+    private boolean evictIdleRoutes(long nowMillis) {
+        if (nowMillis < nextEvictionMillis) {
+            return false;
+        }
+        nextEvictionMillis = nowMillis + TimeUnit.SECONDS.toMillis(windowSeconds) / SLICE_COUNT;
+        for (Iterator<Map.Entry<String, SlidingLatencyHistogram>> it = routes.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, SlidingLatencyHistogram> entry = it.next();
+            if (!OTHER_ROUTE.equals(entry.getKey()) && entry.getValue().isIdle(nowMillis)) {
+                it.remove();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@link #OTHER_ROUTE}を除く、集計しているリクエストIDの数を取得する。
+     *
+     * @return リクエストIDの数
+     */
+    private int routeCountExcludingOther() {
+        return routes.size() - (routes.containsKey(OTHER_ROUTE) ? 1 : 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <pre>
+     * 1行に1件のリクエストIDの集計結果を、以下の項目のタブ区切りで出力する。1行目は見出しとする。
+     * 集計する時間内に記録がないリクエストIDは出力しない。時間の単位はナノ秒とする。
+     *   リクエストID、集計する時間内の件数、累計の件数、
+     *   50パーセンタイル、90パーセンタイル、99パーセンタイル、最大値
+     * </pre>
+     */
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("requestId\tcount\ttotalCount\tp50\tp90\tp99\tmax%n"));
+        for (Map.Entry<String, SlidingLatencyHistogram.Snapshot> entry : snapshot().entrySet()) {
+            SlidingLatencyHistogram.Snapshot snapshot = entry.getValue();
+            if (snapshot.getCount() == 0) {
+                continue;
+            }
+            report.append(String.format(REPORT_FORMAT,
+                    entry.getKey(), snapshot.getCount(), snapshot.getTotalCount(),
+                    snapshot.getPercentile(0.5), snapshot.getPercentile(0.9), snapshot.getPercentile(0.99),
+                    snapshot.getMax()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * 集計結果をPrometheusのテキスト形式で取得する。
+     * <pre>
+     * 処理時間を{@link #METRIC_NAME}のsummaryとして、リクエストIDをラベル"request_id"に出力する。
+     * パーセンタイル(0.5、0.9、0.99)は集計する時間内の記録から算出し、記録がない場合はNaNとする。
+     * _sumと_countは記録を開始してからの累計とする。
+     * また、集計する時間内の最大値を{@link #MAX_METRIC_NAME}のgaugeとして出力する。
+     * 時間の単位は秒とする。
+     * </pre>
+     *
+     * @return 集計結果
+     */
+    public String getPrometheusReport() {
+        Map<String, SlidingLatencyHistogram.Snapshot> snapshots = snapshot();
+        StringBuilder report = new StringBuilder();
+        report.append("# HELP ").append(METRIC_NAME).append(" Request latency by request ID. Quantiles cover the last ")
+              .append(windowSeconds).append(" seconds.\n");
+        report.append("# TYPE ").append(METRIC_NAME).append(" summary\n");
+        for (Map.Entry<String, SlidingLatencyHistogram.Snapshot> entry : snapshots.entrySet()) {
+            String label = "request_id=\"" + escapeLabelValue(entry.getKey()) + '"';
+            SlidingLatencyHistogram.Snapshot snapshot = entry.getValue();
+            for (double quantile : QUANTILES) {
+                report.append(METRIC_NAME).append('{').append(label).append(",quantile=\"").append(quantile).append("\"} ")
+                      .append(snapshot.getCount() == 0 ? "NaN" : String.valueOf(toSeconds(snapshot.getPercentile(quantile))))
+                      .append('\n');
+            }
+            report.append(METRIC_NAME).append("_sum{").append(label).append("} ")
+                  .append(toSeconds(snapshot.getTotalSum())).append('\n');
+            report.append(METRIC_NAME).append("_count{").append(label).append("} ")
+                  .append(snapshot.getTotalCount()).append('\n');
+        }
+        report.append("# HELP ").append(MAX_METRIC_NAME).append(" Maximum request latency by request ID over the last ")
+              .append(windowSeconds).append(" seconds.\n");
+        report.append("# TYPE ").append(MAX_METRIC_NAME).append(" gauge\n");
+        for (Map.Entry<String, SlidingLatencyHistogram.Snapshot> entry : snapshots.entrySet()) {
+            report.append(MAX_METRIC_NAME).append("{request_id=\"").append(escapeLabelValue(entry.getKey())).append("\"} ")
+                  .append(toSeconds(entry.getValue().getMax())).append('\n');
+        }
+        return report.toString();
+    }
+
+    /**
+     * 全てのリクエストIDの集計結果を、リクエストIDの昇順で取得する。
+     *
+     * @return リクエストID毎の集計結果
+     */
+    private Map<String, SlidingLatencyHistogram.Snapshot> snapshot() {
+        long now = System.currentTimeMillis();
+        Map<String, SlidingLatencyHistogram.Snapshot> snapshots = new TreeMap<String, SlidingLatencyHistogram.Snapshot>();
+        for (Map.Entry<String, SlidingLatencyHistogram> entry : routes.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot(now));
+        }
+        return snapshots;
+    }
+
+    /**
+     * ナノ秒を秒に変換する。
+     *
+     * @param nanos ナノ秒
+     * @return 秒
+     */
+    private static double toSeconds(long nanos) {
+        return nanos / NANOS_PER_SECOND;
+    }
+
+    /**
+     * Prometheusのテキスト形式のラベルの値をエスケープする。
+     *
+     * @param value ラベルの値
+     * @return エスケープした値
+     */
+    static String escapeLabelValue(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public int getRouteCount() {
+        return routes.size();
+    }
+
+    @Override
+    public int getMaxRoutes() {
+        return maxRoutes;
+    }
+
+    @Override
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    @Override
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 集計しているリクエストIDも破棄する。
+     */
+    @Override
+    public synchronized void reset() {
+        routes.clear();
+        overflowCount.set(0);
+        nextEvictionMillis = 0;
+    }
+
+    /**
+     * MBeanサーバに登録する。
+     * <p/>
+     * {@link #setJmxEnabled(boolean)}で無効にした場合は何もしない。
+     *
+     * @throws IllegalStateException 登録に失敗した場合
+     */
+    @Override
+    public synchronized void initialize() {
+        registration.register(this);
+    }
+
+    /**
+     * MBeanサーバへの登録を解除する。
+     */
+    @Override
+    public synchronized void dispose() {
+        registration.unregister();
+    }
+
+    /**
+     * 集計するリクエストIDの数の上限を設定する。
+     * <p/>
+     * {@link #OTHER_ROUTE}は上限に含まない。デフォルトは100。
+     * 上限に達した場合は、集計する時間内に記録がないリクエストIDを破棄して新しいリクエストIDを集計する。
+     *
+     * @param maxRoutes 集計するリクエストIDの数の上限
+     */
+    public void setMaxRoutes(int maxRoutes) {
+        if (maxRoutes < 0) {
+            throw new IllegalArgumentException("maxRoutes must not be negative. maxRoutes = " + maxRoutes);
+        }
+        this.maxRoutes = maxRoutes;
+    }
+
+    /**
+     * パーセンタイルと最大値を集計する時間を設定する。
+     * <p/>
+     * 集計する時間を6等分した区間毎に古い記録を破棄する。
+     * デフォルトは60秒。記録を開始する前に設定すること。
+     *
+     * @param windowSeconds 集計する時間(秒)
+     */
+    public void setWindowSeconds(int windowSeconds) {
+        if (windowSeconds <= 0) {
+            throw new IllegalArgumentException("windowSeconds must be greater than 0. windowSeconds = " + windowSeconds);
+        }
+        this.windowSeconds = windowSeconds;
+    }
+
+    /**
+     * MBeanサーバに登録するか否かを設定する。
+     * <p/>
+     * デフォルトは{@code true}。
+     *
+     * @param jmxEnabled 登録する場合は{@code true}
+     */
+    public void setJmxEnabled(boolean jmxEnabled) {
+        registration.setEnabled(jmxEnabled);
+    }
+
+    /**
+     * MBeanのオブジェクト名を設定する。
+     * <p/>
+     * デフォルトは{@link #DEFAULT_OBJECT_NAME}。
+     * 1つのJVMで複数のアプリケーションを動作させる場合は、アプリケーション毎に異なる名前を設定すること。
+     *
+     * @param objectName MBeanのオブジェクト名
+     */
+    public void setObjectName(String objectName) {
+        registration.setObjectName(objectName);
+    }
+}
@@ -0,0 +1,50 @@
+package nablarch.fw.web.handler.latency;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * {@link RequestLatencyRecorder}をJMXで公開するためのインタフェース。
+ */
+@Published(tag = "architect")
+public interface RequestLatencyRecorderMBean {
+
+    /**
+     * 集計結果をテキスト形式で取得する。
+     *
+     * @return 集計結果
+     */
+    String getReport();
+
+    /**
+     * 集計しているリクエストIDの数を取得する。
+     *
+     * @return リクエストIDの数
+     */
+    int getRouteCount();
+
+    /**
+     * 集計するリクエストIDの数の上限を取得する。
+     *
+     * @return リクエストIDの数の上限
+     */
+    int getMaxRoutes();
+
+    /**
+     * パーセンタイルを集計する時間を取得する。
+     *
+     * @return 集計する時間(秒)
+     */
+    int getWindowSeconds();
+
+    /**
+     * リクエストIDの数が上限に達したため、{@link RequestLatencyRecorder#OTHER_ROUTE}として記録した件数を取得する。
+     *
+     * @return 件数
+     */
+    long getOverflowCount();
+
+    /**
+     * 集計結果を破棄する。
+     */
+    void reset();
+}
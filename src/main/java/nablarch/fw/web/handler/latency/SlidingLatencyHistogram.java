@@ -0,0 +1,234 @@
+package nablarch.fw.web.handler.latency;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 直近の一定時間に記録した処理時間(ナノ秒)の分布を集計するヒストグラム。
+ * <pre>
+ * 集計する時間を一定数の区間に分け、区間毎に{@link LatencyHistogram}に記録する。
+ * 区間を使い回す際に、古い区間の記録を破棄する。
+ * このため、集計結果に含まれる記録の範囲は、区間の幅の分だけ前後する。
+ *
+ * 件数と合計値は、集計する時間に関わらず記録を開始してからの累計も保持する。
+ * </pre>
+ */
+class SlidingLatencyHistogram {
+
+    /** 区間毎のヒストグラム */
+    private final LatencyHistogram[] slices;
+
+    /** 区間毎の、記録している時間の番号(現在時刻を区間の幅で割った値) */
+    private final AtomicLongArray sliceEpochs;
+
+    /** 区間の幅(ミリ秒) */
+    private final long sliceMillis;
+
+    /** 記録を開始してからの件数 */
+    private final AtomicLong totalCount = new AtomicLong();
+
+    /** 記録を開始してからの合計値 */
+    private final AtomicLong totalSum = new AtomicLong();
+
+    /**
+     * コンストラクタ。
+     *
+     * @param windowMillis 集計する時間(ミリ秒)
+     * @param sliceCount 集計する時間を分ける区間の数
+     */
+    SlidingLatencyHistogram(long windowMillis, int sliceCount) {
+        if (sliceCount <= 0 || windowMillis < sliceCount) {
+            throw new IllegalArgumentException("window must be greater than or equal to slice count."
+                    + " windowMillis = " + windowMillis + ", sliceCount = " + sliceCount);
+        }
+        this.slices = new LatencyHistogram[sliceCount];
+        this.sliceEpochs = new AtomicLongArray(sliceCount);
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new LatencyHistogram();
+            sliceEpochs.set(i, -1);
+        }
+        this.sliceMillis = windowMillis / sliceCount;
+    }
+
+    /**
+     * 値を記録する。
+     *
+     * @param nanos 処理時間(ナノ秒)
+     * @param nowMillis 現在時刻(ミリ秒)
+     */
+    void record(long nanos, long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        int index = (int) (epoch % slices.length);
+        if (sliceEpochs.get(index) != epoch) {
+            rotate(index, epoch);
+        }
+        slices[index].record(nanos);
+        totalCount.incrementAndGet();
+        totalSum.addAndGet(nanos < 0 ? 0 : nanos);
+    }
+
+    /**
+     * 区間の記録を破棄し、新しい時間の記録に使用する。
+     *
+     * @param index 区間の番号
+     * @param epoch 記録する時間の番号
+     */
+    private synchronized void rotate(int index, long epoch) {
+        if (sliceEpochs.get(index) < epoch) {
+            slices[index].reset();
+            sliceEpochs.set(index, epoch);
+        }
+    }
+
+    /**
+     * 集計する時間内の記録を取得する。
+     *
+     * @param nowMillis 現在時刻(ミリ秒)
+     * @return 集計結果
+     */
+    Snapshot snapshot(long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        long[] counts = new long[LatencyHistogram.getBucketCount()];
+        long count = 0;
+        long max = 0;
+        for (int i = 0; i < slices.length; i++) {
+            long sliceEpoch = sliceEpochs.get(i);
+            if (sliceEpoch <= epoch - slices.length || sliceEpoch > epoch) {
+                continue;
+            }
+            long[] sliceCounts = slices[i].getBucketCounts();
+            for (int j = 0; j < counts.length; j++) {
+                counts[j] += sliceCounts[j];
+                count += sliceCounts[j];
+            }
+            max = Math.max(max, slices[i].getMax());
+        }
+        return new Snapshot(counts, count, max, totalCount.get(), totalSum.get());
+    }
+
+    /**
+     * 集計する時間内に記録がないか否かを判定する。
+     *
+     * @param nowMillis 現在時刻(ミリ秒)
+     * @return 記録がない場合は{@code true}
+     */
+    boolean isIdle(long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        for (int i = 0; i < slices.length; i++) {
+            long sliceEpoch = sliceEpochs.get(i);
+            if (sliceEpoch > epoch - slices.length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 記録した値を全て破棄する。
+     */
+    synchronized void reset() {
+        for (int i = 0; i < slices.length; i++) {
+            slices[i].reset();
+            sliceEpochs.set(i, -1);
+        }
+        totalCount.set(0);
+        totalSum.set(0);
+    }
+
+    /**
+     * 集計結果。
+     */
+    static final class Snapshot {
+
+        /** 集計する時間内の区間毎の件数 */
+        private final long[] counts;
+
+        /** 集計する時間内の件数 */
+        private final long count;
+
+        /** 集計する時間内の最大値 */
+        private final long max;
+
+        /** 記録を開始してからの件数 */
+        private final long totalCount;
+
+        /** 記録を開始してからの合計値 */
+        private final long totalSum;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param counts 集計する時間内の区間毎の件数
+         * @param count 集計する時間内の件数
+         * @param max 集計する時間内の最大値
+         * @param totalCount 記録を開始してからの件数
+         * @param totalSum 記録を開始してからの合計値
+         */
+        Snapshot(long[] counts, long count, long max, long totalCount, long totalSum) {
+            this.counts = counts;
+            this.count = count;
+            this.max = max;
+            this.totalCount = totalCount;
+            this.totalSum = totalSum;
+        }
+
+        /**
+         * 集計する時間内の件数を取得する。
+         *
+         * @return 件数
+         */
+        long getCount() {
+            return count;
+        }
+
+        /**
+         * 集計する時間内の最大値を取得する。
+         *
+         * @return 最大値(ナノ秒)。記録していない場合は0
+         */
+        long getMax() {
+            return max;
+        }
+
+        /**
+         * 記録を開始してからの件数を取得する。
+         *
+         * @return 件数
+         */
+        long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * 記録を開始してからの合計値を取得する。
+         *
+         * @return 合計値(ナノ秒)
+         */
+        long getTotalSum() {
+            return totalSum;
+        }
+
+        /**
+         * 集計する時間内のパーセンタイルを取得する。
+         * <p/>
+         * 算出方法は{@link LatencyHistogram#getPercentile(double)}と同じ。
+         *
+         * @param ratio 割合(0以上1以下)
+         * @return パーセンタイル(ナノ秒)。記録していない場合は0
+         */
+        long getPercentile(double ratio) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * ratio));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(LatencyHistogram.getBucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
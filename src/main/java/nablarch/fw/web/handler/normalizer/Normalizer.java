@@ -12,6 +12,8 @@ public interface Normalizer {
 
     /**
      * このパラメータをノーマライズするか否か。
+     * <p>
+     * 判定結果はパラメータのキー毎に保持して再利用されるため、同じキーに対しては常に同じ結果を返すこと。
      *
      * @param key パラメータのキー
      * @return ノーマライズ対象の場合は {@code true}
@@ -20,6 +22,8 @@ public interface Normalizer {
 
     /**
      * ノーマライズを行う。
+     * <p>
+     * 値を変更しない場合は、引数の配列をそのまま返すことで、リクエストパラメータの更新を省略できる。
      *
      * @param value ノーマライズ対象の値
      * @return ノーマライズ後の値
@@ -21,35 +21,52 @@ public class TrimNormalizer implements Normalizer {
 
     /**
      * 前後のホワイトスペースを除去した値を返す。
+     * <p>
+     * 除去するホワイトスペースがない場合は、引数の配列をそのまま返す。
      *
      * @return 前後のホワイトスペースを除去した値
      */
     @Override
     public String[] normalize(final String[] value) {
-        final String[] result = new String[value.length];
+        String[] result = null;
         for (int i = 0; i < value.length; i++) {
-            result[i] = trimWhiteSpace(value[i]);
+            final String trimmed = trimWhiteSpace(value[i]);
+            if (result == null) {
+                if (trimmed == value[i]) {
+                    continue;
+                }
+                result = value.clone();
+            }
+            result[i] = trimmed;
         }
-        return result;
+        return result == null ? value : result;
     }
 
     /**
      * ホワイトスペースをトリムする。
+     * <p>
+     * トリムの必要がない場合は、引数の文字列をそのまま返す。
      *
      * @param value トリム対象の値
      * @return トリム後の値
      */
     private static String trimWhiteSpace(final String value) {
-        int start = value.length();
-        int end = value.length();
-        for (int i = 0; i < value.length(); i++) {
+        final int length = value.length();
+        if (length > 0
+                && !Character.isWhitespace(value.codePointAt(0))
+                && !Character.isWhitespace(value.charAt(length - 1))) {
+            return value;
+        }
+        int start = length;
+        int end = length;
+        for (int i = 0; i < length; i++) {
             if (!Character.isWhitespace(value.codePointAt(i))) {
                 start = i;
                 break;
             }
         }
 
-        for (int i = value.length(); i > 0; i--) {
+        for (int i = length; i > 0; i--) {
             if (!Character.isWhitespace(value.charAt(i - 1))) {
                 end = i;
                 break;
@@ -0,0 +1,220 @@
+package nablarch.fw.web.servlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import nablarch.core.util.FileUtil;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * コンポーネント設定ファイルのチェックサムを算出するクラス。
+ * <p/>
+ * 対象の設定ファイルは、ルートの設定ファイルと、そこから{@code import}要素で読み込まれる設定ファイル、
+ * {@code config-file}要素で読み込まれる環境設定ファイルとする。
+ * 対象の設定ファイルは{@link #collectFiles(String)}で設定ファイルを解析して列挙し、
+ * チェックサムは{@link #of(List, Map)}で設定ファイルの内容と初期化パラメータから算出する。
+ * 列挙した設定ファイルをスナップショットに保存しておくことで、次回の起動時は設定ファイルを解析せずにチェックサムを算出できる。
+ * いずれかの設定ファイルが変更された場合は異なるチェックサムとなる。
+ *
+ * @see StartupSnapshot
+ */
+final class ConfigurationChecksum {
+
+    /** 文字コード */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** クラスパス上のリソースを表すプレフィックス */
+    private static final String CLASSPATH_PREFIX = "classpath:";
+
+    /** 隠蔽コンストラクタ。 */
+    private ConfigurationChecksum() {
+    }
+
+    /**
+     * チェックサムの対象となる設定ファイルを列挙する。
+     * <p/>
+     * {@code dir}属性でディレクトリを指定した{@code import}要素または{@code config-file}要素がある場合は、
+     * ディレクトリに追加されたファイルを検知できないため、{@code null}を返す。
+     *
+     * @param configFile ルートのコンポーネント設定ファイル
+     * @return 設定ファイルのパス(対象を列挙できない場合は{@code null})
+     */
+    static List<String> collectFiles(String configFile) {
+        Set<String> files = new LinkedHashSet<String>();
+        return collect(configFile, files) ? new ArrayList<String>(files) : null;
+    }
+
+    /**
+     * チェックサムを算出する。
+     *
+     * @param files 設定ファイルのパス
+     * @param parameters リポジトリの初期化に使用する初期化パラメータ
+     * @return チェックサム(SHA-256の16進表現)
+     */
+    static String of(List<String> files, Map<String, String> parameters) {
+        MessageDigest digest = createDigest();
+        for (Map.Entry<String, String> parameter : new TreeMap<String, String>(parameters).entrySet()) {
+            update(digest, parameter.getKey() + '=' + parameter.getValue());
+        }
+        for (String file : files) {
+            update(digest, file);
+            byte[] content = read(file);
+            if (content == null) {
+                update(digest, "<missing>");
+            } else {
+                digest.update(content);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * 設定ファイルと、そこから読み込まれる設定ファイルを列挙する。
+     *
+     * @param path 設定ファイルのパス
+     * @param files 列挙済みの設定ファイルのパス
+     * @return 列挙できた場合は{@code true}
+     */
+    private static boolean collect(String path, Set<String> files) {
+        if (!files.add(path) || !path.endsWith(".xml")) {
+            return true;
+        }
+        byte[] content = read(path);
+        Document document = content == null ? null : parse(content);
+        if (document == null) {
+            // 読み込めない設定ファイルはリポジトリの初期化で例外となるため、ここでは内容のみを対象とする。
+            return true;
+        }
+        return collectReferences(document.getElementsByTagNameNS("*", "import"), files)
+                && collectReferences(document.getElementsByTagNameNS("*", "config-file"), files);
+    }
+
+    /**
+     * 要素の{@code file}属性で指定された設定ファイルを列挙する。
+     *
+     * @param elements 要素
+     * @param files 列挙済みの設定ファイルのパス
+     * @return 列挙できた場合は{@code true}
+     */
+    private static boolean collectReferences(NodeList elements, Set<String> files) {
+        for (int i = 0; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            if (element.getAttribute("dir").length() != 0) {
+                return false;
+            }
+            String file = element.getAttribute("file");
+            if (file.length() != 0 && !collect(file, files)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 設定ファイルを読み込む。
+     * <p/>
+     * スキームを持たないパスはクラスパス上のリソースとして扱う。
+     *
+     * @param path 設定ファイルのパス
+     * @return 設定ファイルの内容(存在しない場合は{@code null})
+     */
+    private static byte[] read(String path) {
+        InputStream in = null;
+        try {
+            if (path.startsWith(CLASSPATH_PREFIX) || path.indexOf(':') < 0) {
+                String name = path.startsWith(CLASSPATH_PREFIX) ? path.substring(CLASSPATH_PREFIX.length()) : path;
+                in = Thread.currentThread().getContextClassLoader().getResourceAsStream(name);
+            } else {
+                in = new URL(path).openStream();
+            }
+            if (in == null) {
+                return null;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            return null;
+        } finally {
+            FileUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * XMLを解析する。
+     *
+     * @param content XML
+     * @return ドキュメント(解析できない場合は{@code null})
+     */
+    private static Document parse(byte[] content) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            return builder.parse(new ByteArrayInputStream(content));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 文字列をダイジェストに反映する。
+     *
+     * @param digest ダイジェスト
+     * @param value 文字列
+     */
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * ダイジェストを生成する。
+     *
+     * @return ダイジェスト
+     */
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * バイト配列を16進表現に変換する。
+     *
+     * @param bytes バイト配列
+     * @return 16進表現
+     */
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
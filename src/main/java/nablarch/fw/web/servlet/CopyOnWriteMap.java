@@ -0,0 +1,262 @@
+package nablarch.fw.web.servlet;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import nablarch.core.util.map.MapWrapper;
+
+/**
+ * 書き込みが行われるまでコピーを作成しないMapのラッパークラス。
+ * <pre>
+ * 読み取り操作はベースとなるMapにそのまま委譲する。
+ * 最初の書き込み操作({@link #put}、{@link #putAll}、{@link #remove}、{@link #clear})の時点で
+ * ベースマップの内容を{@link HashMap}にコピーし、以降の操作は全てこのコピーに対して行う。
+ * ベースマップ自体が変更されることはない。
+ *
+ * {@link #keySet()}、{@link #values()}、{@link #entrySet()}は、その時点のMapを参照するビューを返す。
+ * ビューの読み取りではコピーを作成せず、ビューを介した変更を行った時点でコピーを作成する。
+ * コピーの作成前に取得したイテレータは、コピーの作成後もベースマップの内容を返す。
+ * </pre>
+ * @param <K> キーの型
+ * @param <V> 値の型
+ */
+class CopyOnWriteMap<K, V> extends MapWrapper<K, V> {
+
+    /** ベースマップ */
+    private final Map<K, V> baseMap;
+
+    /** 書き込み時に作成したコピー(未作成の場合はnull) */
+    private Map<K, V> copiedMap;
+
+    /**
+     * 指定されたMapに対するラッパーを作成する。
+     * @param baseMap ラップ対象のMap
+     */
+    CopyOnWriteMap(Map<K, V> baseMap) {
+        this.baseMap = baseMap;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<K, V> getDelegateMap() {
+        return copiedMap == null ? baseMap : copiedMap;
+    }
+
+    /**
+     * ベースマップのコピーが作成済みか否か。
+     * @return コピーが作成済みであればtrue
+     */
+    boolean isCopied() {
+        return copiedMap != null;
+    }
+
+    /**
+     * ベースマップのコピーを作成する。
+     * <p/>
+     * 既にコピーが作成されている場合は何もしない。
+     * @return このオブジェクト自体
+     */
+    CopyOnWriteMap<K, V> copy() {
+        if (copiedMap == null) {
+            copiedMap = new HashMap<K, V>(baseMap);
+        }
+        return this;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V put(K key, V value) {
+        return copy().copiedMap.put(key, value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        copy().copiedMap.putAll(m);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V remove(Object key) {
+        if (copiedMap == null && !baseMap.containsKey(key)) {
+            return null;
+        }
+        return copy().copiedMap.remove(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clear() {
+        copiedMap = new HashMap<K, V>();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                final Iterator<Entry<K, V>> entries = entryIterator();
+                return new Iterator<K>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public K next() {
+                        return entries.next().getKey();
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return CopyOnWriteMap.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (!containsKey(o)) {
+                    return false;
+                }
+                CopyOnWriteMap.this.remove(o);
+                return true;
+            }
+
+            @Override
+            public void clear() {
+                CopyOnWriteMap.this.clear();
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                final Iterator<Entry<K, V>> entries = entryIterator();
+                return new Iterator<V>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return entries.next().getValue();
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return CopyOnWriteMap.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsValue(o);
+            }
+
+            @Override
+            public void clear() {
+                CopyOnWriteMap.this.clear();
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return entryIterator();
+            }
+
+            @Override
+            public int size() {
+                return CopyOnWriteMap.this.size();
+            }
+
+            @Override
+            public void clear() {
+                CopyOnWriteMap.this.clear();
+            }
+        };
+    }
+
+    /**
+     * エントリのイテレータを取得する。
+     * <p/>
+     * コピーが作成済みの場合はコピーのイテレータを返す。
+     * コピーが未作成の場合はベースマップを走査し、エントリの変更や削除を行った時点でコピーを作成する。
+     * @return エントリのイテレータ
+     */
+    private Iterator<Entry<K, V>> entryIterator() {
+        if (copiedMap != null) {
+            return copiedMap.entrySet().iterator();
+        }
+        final Iterator<Entry<K, V>> base = baseMap.entrySet().iterator();
+        return new Iterator<Entry<K, V>>() {
+
+            /** 最後に返したエントリのキー */
+            private K lastKey;
+
+            /** 削除可能か否か */
+            private boolean removable;
+
+            @Override
+            public boolean hasNext() {
+                return base.hasNext();
+            }
+
+            @Override
+            public Entry<K, V> next() {
+                final Entry<K, V> entry = base.next();
+                lastKey = entry.getKey();
+                removable = true;
+                return new AbstractMap.SimpleEntry<K, V>(entry) {
+                    @Override
+                    public V setValue(V value) {
+                        super.setValue(value);
+                        return copy().copiedMap.put(getKey(), value);
+                    }
+                };
+            }
+
+            @Override
+            public void remove() {
+                if (!removable) {
+                    throw new IllegalStateException();
+                }
+                removable = false;
+                copy().copiedMap.remove(lastKey);
+            }
+        };
+    }
+}
@@ -7,7 +7,6 @@ import jakarta.servlet.ServletInputStream;
 import jakarta.servlet.http.Cookie;
 import java.io.IOException;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 /**
  * サーブレットのHTTPリクエスト処理に関連するオブジェクト
@@ -21,8 +20,8 @@ public class HttpRequestWrapper extends HttpRequest {
     /** サーブレットリクエスト */
     private final NablarchHttpServletRequestWrapper servletRequest;
 
-    /** HttpCookie */
-    private final HttpCookie httpCookie;
+    /** HttpCookie(未作成の場合はnull) */
+    private HttpCookie httpCookie;
 
     /**
      * コンストラクタ
@@ -32,17 +31,25 @@ public class HttpRequestWrapper extends HttpRequest {
 
         servletRequest  = req;
         
-        final String contextPath = req.getContextPath();
-        final String requestUri = req.getRequestURI().replaceFirst(Pattern.quote(contextPath), "");
-        setRequestUri(requestUri);
+        setRequestUri(removeContextPath(req.getRequestURI(), req.getContextPath()));
+    }
 
-        httpCookie = new HttpCookie();
-        Cookie[] cookies = servletRequest.getCookies();
-        if (cookies != null) {
-            for (Cookie cookie : cookies) {
-                httpCookie.put(cookie.getName(), cookie.getValue());
-            }
+    /**
+     * リクエストURIからコンテキストパスを取り除く。
+     * <p/>
+     * リクエストURI中で最初に出現するコンテキストパスを除去する。
+     * 正規表現を使用しないことを除き、{@link String#replaceFirst(String, String)}と等価である。
+     *
+     * @param requestUri リクエストURI
+     * @param contextPath コンテキストパス
+     * @return コンテキストパスを取り除いたリクエストURI
+     */
+    private static String removeContextPath(final String requestUri, final String contextPath) {
+        final int index = requestUri.indexOf(contextPath);
+        if (index < 0 || contextPath.isEmpty()) {
+            return requestUri;
         }
+        return requestUri.substring(0, index) + requestUri.substring(index + contextPath.length());
     }
 
     @Override
@@ -87,11 +94,35 @@ public class HttpRequestWrapper extends HttpRequest {
         return servletRequest.getHeader(headerName);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * {@link HttpCookie}は最初に呼び出された時点で作成する。
+     */
     @Override
     public HttpCookie getCookie() {
+        if (httpCookie == null) {
+            httpCookie = createHttpCookie();
+        }
         return httpCookie;
     }
 
+    /**
+     * サーブレットリクエストのクッキーから{@link HttpCookie}を作成する。
+     *
+     * @return {@link HttpCookie}
+     */
+    private HttpCookie createHttpCookie() {
+        final HttpCookie cookie = new HttpCookie();
+        final Cookie[] cookies = servletRequest.getCookies();
+        if (cookies != null) {
+            for (Cookie each : cookies) {
+                cookie.put(each.getName(), each.getValue());
+            }
+        }
+        return cookie;
+    }
+
     /**
      * 入力ストリームを取得する。<br/>
      *
@@ -1,7 +1,6 @@
 package nablarch.fw.web.servlet;
 
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Map;
 
 import jakarta.servlet.ServletContext;
@@ -19,6 +18,10 @@ import nablarch.fw.results.BadRequest;
 
 /**
  * Nablarchのスコープオブジェクトを使用できるサーブレットリクエストのラッパー。
+ * <p/>
+ * HTTPヘッダー及びリクエストパラメータのMapは、最初にアクセスされた時点で作成する。
+ * リクエストパラメータのMapは、書き込みが行われるまでサーブレットコンテナが保持する
+ * Mapをコピーせずにそのまま参照する。
  * 
  * @author Iwauo Tajima
  */
@@ -31,7 +34,6 @@ public class NablarchHttpServletRequestWrapper extends HttpServletRequestWrapper
         super(delegate);
         origReq = delegate;
         scope = new RequestAttributeMap(delegate);
-        createHeaderMap();
     }
     
     /**
@@ -44,6 +46,9 @@ public class NablarchHttpServletRequestWrapper extends HttpServletRequestWrapper
      * @return HTTPヘッダーのMap
      */
     public Map<String, String> getHeaderMap() {
+        if (headerMap == null) {
+            createHeaderMap();
+        }
         return headerMap;
     }
     
@@ -116,12 +121,12 @@ public class NablarchHttpServletRequestWrapper extends HttpServletRequestWrapper
     /** {@inheritDoc} */
     @Published(tag = "architect")
     public String getHeader(String name) {
-        return headerMap.get(name);
+        return getHeaderMap().get(name);
     }
     
     /** {@inheritDoc} */
     public Enumeration<String> getHeaderNames() {
-        return new EnumerableIterator<String>(headerMap.keySet().iterator());
+        return new EnumerableIterator<String>(getHeaderMap().keySet().iterator());
     }
 
     /**
@@ -137,7 +142,7 @@ public class NablarchHttpServletRequestWrapper extends HttpServletRequestWrapper
             headerMap.put(headerName, headerValue);
         }
     }
-    /** HttpServletRequestのHTTPヘッダを格納したMap */
+    /** HttpServletRequestのHTTPヘッダを格納したMap(未作成の場合はnull) */
     private Map<String, String> headerMap;
     
     /** {@inheritDoc} */
@@ -157,7 +162,12 @@ public class NablarchHttpServletRequestWrapper extends HttpServletRequestWrapper
     
     /** {@inheritDoc} */
     public Enumeration<String> getParameterNames() {
-        return new EnumerableIterator<String>(getParameterMap().keySet().iterator());
+        Map<String, String[]> params = getParameterMap();
+        if (params instanceof CopyOnWriteMap) {
+            // 名前の列挙のためにコピーを作成しないよう、参照先のMapから取得する。
+            params = ((CopyOnWriteMap<String, String[]>) params).getDelegateMap();
+        }
+        return new EnumerableIterator<String>(params.keySet().iterator());
     }
 
     /** {@inheritDoc} */
@@ -167,12 +177,12 @@ public class NablarchHttpServletRequestWrapper extends HttpServletRequestWrapper
 
     /**
      * リクエストパラメータを格納したMapを作成する。
+     * <p/>
+     * 作成するMapは、書き込みが行われるまでサーブレットコンテナのMapを参照する。
      * 特に、ポストパラメータの読み込み時に何らかのエラーが発生した場合は、
      * 内部ステータスコード400(BadRequest)の実行時例外を送出する。
      */
-    @SuppressWarnings("unchecked")
     private void createParamMap() {
-        paramMap = new HashMap<String, String[]>();
         Map<String, String[]> postParams = null;
         try {
             postParams = origReq.getParameterMap();
@@ -185,7 +195,7 @@ public class NablarchHttpServletRequestWrapper extends HttpServletRequestWrapper
             }
             throw new PostParameterReadError(POST_PARAM_READ_ERROR_MESSAGE, e);
         }
-        paramMap.putAll(postParams);
+        paramMap = new CopyOnWriteMap<String, String[]>(postParams);
     }
     
     /**
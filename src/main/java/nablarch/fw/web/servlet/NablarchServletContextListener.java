@@ -11,6 +11,7 @@ import nablarch.core.log.app.LogInitializationHelper;
 import nablarch.core.log.app.PerformanceLogUtil;
 import nablarch.core.repository.ObjectLoader;
 import nablarch.core.repository.SystemRepository;
+import nablarch.core.repository.di.ComponentDefinition;
 import nablarch.core.repository.di.ComponentDefinitionLoader;
 import nablarch.core.repository.di.DiContainer;
 import nablarch.core.repository.di.config.DuplicateDefinitionPolicy;
@@ -19,13 +20,30 @@ import nablarch.core.repository.disposal.ApplicationDisposer;
 import nablarch.core.util.annotation.Published;
 import nablarch.fw.web.handler.HttpAccessLogUtil;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * コンテキストの初期化を行う。<br/>
  * <br/>
  * 本クラスにおけるロガーの取得処理は、アプリケーションの起動時にログの初期処理を確実に行う意図があるため、削除しないこと。
+ * <p/>
+ * 初期化完了時に、初期化の各段階の所要時間をINFOレベルで出力する。
+ * <p/>
+ * リポジトリに{@link WebFrontControllerWarmup}が{@code webFrontControllerWarmup}という名前で登録されている場合は、
+ * 初期化完了とする前にウォームアップを行う。
+ * <p/>
+ * 初期化パラメータ{@code di.startup-snapshot}にファイルのパスを指定した場合は、
+ * 起動に成功した際にコンポーネント設定ファイルを解析した結果をスナップショットとして保存する。
+ * 次回の起動時に設定ファイルと初期化パラメータのチェックサムが一致した場合は、設定ファイルを解析せずにスナップショットから
+ * コンポーネント定義を復元する。
+ * チェックサムにはアプリケーションのクラスを含まないため、デプロイ時にはスナップショットを削除するか、
+ * バージョン毎に異なるパスを指定すること。
  *
  * @author Koichi Asano
  */
@@ -42,10 +60,19 @@ public class NablarchServletContextListener implements ServletContextListener {
 
     /** staticプロパティインジェクションの許可設定キー。 */
     private static final String DI_CONTAINER_ALLOW_STATIC_PROPERTY_KEY = "di.allow-static-property";
-    
+
+    /** 起動時のスナップショットのファイルパスの設定キー。 */
+    private static final String DI_CONTAINER_STARTUP_SNAPSHOT_KEY = "di.startup-snapshot";
+
+    /** ウォームアップを行うコンポーネントの名前。 */
+    private static final String WARMUP_COMPONENT_NAME = "webFrontControllerWarmup";
+
     /** 初期化成否を格納するためのキー */
     private static final String INITIALIZATION_COMPLETED_KEY = "initialization.completed";
 
+    /** 初期化の各段階の所要時間(ミリ秒) */
+    private final Map<String, Long> phaseTimings = new LinkedHashMap<String, Long>();
+
     /**
      * {@inheritDoc}<br/>
      * <br/>
@@ -54,13 +81,20 @@ public class NablarchServletContextListener implements ServletContextListener {
      * リクエスト単体テスト時にはリポジトリの初期化は行わない（自動テストフレームワークにて実施）。
      */
     public void contextInitialized(ServletContextEvent event) {
+        long start = System.nanoTime();
+        phaseTimings.clear();
         try {
             initializeLog();
+            recordPhase("log", start);
             if (!isRequestTest()) {
                 initializeRepository(event);
+                warmup(event);
             }
+            phaseTimings.put("total", toMillis(System.nanoTime() - start));
             LOGGER.logInfo("[" + NablarchServletContextListener.class.getName()
                     + "#contextInitialized] initialization completed.");
+            LOGGER.logInfo("[" + NablarchServletContextListener.class.getName()
+                    + "#contextInitialized] initialization phases: " + formatPhases(phaseTimings));
             setInitializationCompleted();
         } catch (RuntimeException e) {
             FailureLogUtil.logFatal(e, (Object) null, null);
@@ -113,10 +147,142 @@ public class NablarchServletContextListener implements ServletContextListener {
         String allowStaticProperty = servletContext.getInitParameter(DI_CONTAINER_ALLOW_STATIC_PROPERTY_KEY);
         boolean isStaticPropertyAllowed = Boolean.parseBoolean(allowStaticProperty);
 
+        // 起動時のスナップショット
+        String snapshotPath = servletContext.getInitParameter(DI_CONTAINER_STARTUP_SNAPSHOT_KEY);
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(DI_CONTAINER_CONFIG_FILE_KEY, configFile);
+        parameters.put(DI_CONTAINER_DUPLICATE_DEFINITION_CONFIG_KEY, policy.name());
+        parameters.put(DI_CONTAINER_ALLOW_STATIC_PROPERTY_KEY, String.valueOf(isStaticPropertyAllowed));
+        parameters.put("snapshot.version", String.valueOf(StartupSnapshot.FORMAT_VERSION));
+        CapturingComponentDefinitionLoader capturing = null;
+        ComponentDefinitionLoader definitionLoader = null;
+        if (snapshotPath != null) {
+            long start = System.nanoTime();
+            definitionLoader = restoreSnapshot(new File(snapshotPath), parameters);
+            recordPhase("checksum", start);
+        }
+        if (definitionLoader == null) {
+            definitionLoader = new XmlComponentDefinitionLoader(configFile, policy);
+            if (snapshotPath != null) {
+                capturing = new CapturingComponentDefinitionLoader(definitionLoader);
+                definitionLoader = capturing;
+            }
+        }
+
         // リポジトリ初期化
-        ComponentDefinitionLoader loader = new XmlComponentDefinitionLoader(configFile, policy);
+        TimedComponentDefinitionLoader loader = new TimedComponentDefinitionLoader(definitionLoader);
+        long start = System.nanoTime();
         DiContainer container = new DiContainer(loader, isStaticPropertyAllowed);
+        long containerNanos = System.nanoTime() - start;
+        phaseTimings.put("loadDefinitions", toMillis(loader.elapsedNanos));
+        phaseTimings.put("createContainer", toMillis(containerNanos - loader.elapsedNanos));
+        start = System.nanoTime();
         SystemRepository.load(container);
+        recordPhase("loadRepository", start);
+
+        if (capturing != null) {
+            start = System.nanoTime();
+            saveSnapshot(new File(snapshotPath), configFile, parameters, capturing.snapshot);
+            recordPhase("saveSnapshot", start);
+        }
+    }
+
+    /**
+     * チェックサムが一致するスナップショットから、コンポーネント定義を復元する{@link ComponentDefinitionLoader}を生成する。
+     *
+     * @param file スナップショットのファイル
+     * @param parameters チェックサムの算出に使用する初期化パラメータ
+     * @return {@link ComponentDefinitionLoader}(復元できない場合は{@code null})
+     */
+    private ComponentDefinitionLoader restoreSnapshot(File file, Map<String, String> parameters) {
+        StartupSnapshot snapshot = StartupSnapshot.read(file);
+        if (snapshot == null) {
+            LOGGER.logInfo("startup snapshot was not found. snapshot = " + file.getAbsolutePath());
+            return null;
+        }
+        if (!snapshot.getChecksum().equals(ConfigurationChecksum.of(snapshot.getFiles(), parameters))) {
+            LOGGER.logInfo("configuration was changed since startup snapshot was saved. snapshot = "
+                    + file.getAbsolutePath());
+            return null;
+        }
+        LOGGER.logInfo("startup snapshot matched. components = " + snapshot.getComponentCount());
+        return snapshot.createLoader();
+    }
+
+    /**
+     * 起動時のスナップショットを保存する。
+     * <p/>
+     * 保存に失敗しても起動は継続するため、WARNレベルでログを出力する。
+     *
+     * @param file スナップショットのファイル
+     * @param configFile コンポーネント設定ファイル
+     * @param parameters チェックサムの算出に使用する初期化パラメータ
+     * @param snapshot 設定ファイルを解析した結果のスナップショット
+     */
+    private void saveSnapshot(File file, String configFile, Map<String, String> parameters,
+                              StartupSnapshot snapshot) {
+        List<String> files = ConfigurationChecksum.collectFiles(configFile);
+        if (snapshot == null || files == null) {
+            LOGGER.logInfo("startup snapshot is not supported for this configuration. config = " + configFile);
+            return;
+        }
+        try {
+            snapshot.withChecksum(ConfigurationChecksum.of(files, parameters), files).write(file);
+        } catch (IOException e) {
+            LOGGER.logWarn("failed to save startup snapshot. snapshot = " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * リポジトリに{@link WebFrontControllerWarmup}が登録されている場合は、ウォームアップを行う。
+     *
+     * @param event ServletContextEvent
+     */
+    private void warmup(ServletContextEvent event) {
+        WebFrontControllerWarmup warmup = SystemRepository.get(WARMUP_COMPONENT_NAME);
+        if (warmup == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        warmup.warmup(event.getServletContext());
+        recordPhase("warmup", start);
+    }
+
+    /**
+     * 初期化の段階の所要時間を記録する。
+     *
+     * @param phase 段階の名前
+     * @param start 段階の開始時刻({@link System#nanoTime()})
+     */
+    private void recordPhase(String phase, long start) {
+        phaseTimings.put(phase, toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * ナノ秒をミリ秒に変換する。
+     *
+     * @param nanos ナノ秒
+     * @return ミリ秒
+     */
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * 各段階の所要時間を出力用に整形する。
+     *
+     * @param timings 各段階の所要時間(ミリ秒)
+     * @return 整形した文字列(例: {@code log=12ms, loadDefinitions=340ms})
+     */
+    private static String formatPhases(Map<String, Long> timings) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> timing : timings.entrySet()) {
+            if (sb.length() != 0) {
+                sb.append(", ");
+            }
+            sb.append(timing.getKey()).append('=').append(timing.getValue()).append("ms");
+        }
+        return sb.toString();
     }
 
     /**
@@ -174,6 +340,68 @@ public class NablarchServletContextListener implements ServletContextListener {
 
         LOGGER.logInfo("[" + NablarchServletContextListener.class.getName() + "#contextDestroyed]");
 
+        HttpAccessLogUtil.terminate();
         LoggerManager.terminate();
     }
+
+    /**
+     * コンポーネント定義の読み込みに要した時間を計測する{@link ComponentDefinitionLoader}。
+     * <p/>
+     * {@link DiContainer}の生成に要した時間から、設定ファイルの解析とコンポーネントの生成を分けて出力するために使用する。
+     */
+    private static final class TimedComponentDefinitionLoader implements ComponentDefinitionLoader {
+
+        /** 委譲先 */
+        private final ComponentDefinitionLoader delegate;
+
+        /** 読み込みに要した時間(ナノ秒) */
+        private long elapsedNanos;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param delegate 委譲先
+         */
+        TimedComponentDefinitionLoader(ComponentDefinitionLoader delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public List<ComponentDefinition> load(DiContainer container) {
+            long start = System.nanoTime();
+            List<ComponentDefinition> definitions = delegate.load(container);
+            elapsedNanos += System.nanoTime() - start;
+            return definitions;
+        }
+    }
+
+    /**
+     * 読み込んだコンポーネント定義からスナップショットを生成する{@link ComponentDefinitionLoader}。
+     * <p/>
+     * {@link DiContainer}がコンポーネント定義を変更する前の状態を保存するため、読み込んだ直後に生成する。
+     */
+    private static final class CapturingComponentDefinitionLoader implements ComponentDefinitionLoader {
+
+        /** 委譲先 */
+        private final ComponentDefinitionLoader delegate;
+
+        /** スナップショット(保存できない場合は{@code null}) */
+        private StartupSnapshot snapshot;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param delegate 委譲先
+         */
+        CapturingComponentDefinitionLoader(ComponentDefinitionLoader delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public List<ComponentDefinition> load(DiContainer container) {
+            List<ComponentDefinition> definitions = delegate.load(container);
+            snapshot = StartupSnapshot.capture(definitions, container);
+            return definitions;
+        }
+    }
 }
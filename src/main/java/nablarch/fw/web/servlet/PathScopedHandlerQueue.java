@@ -0,0 +1,165 @@
+package nablarch.fw.web.servlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.Handler;
+import nablarch.fw.HandlerQueueManager;
+import nablarch.fw.web.HttpMethodBinding;
+import nablarch.fw.web.HttpRequest;
+
+/**
+ * 特定のリクエストパスに対してのみ使用するハンドラキュー。
+ * <pre>
+ * {@link WebFrontController#setPathScopedHandlerQueues(List)}に設定すると、
+ * {@link #setPaths(List)}に一致するリクエストは、{@link WebFrontController}のハンドラキューではなく
+ * 本クラスのハンドラキューで処理される。
+ * 静的ファイルやヘルスチェックのように、セッションストアやCSRF対策などが不要なリクエストの処理を軽量化する際に使用する。
+ *
+ * パスは、サーブレットのurl-patternと同じ形式で指定する。
+ *   - "/"で始まり"/*"で終わる文字列: 前方一致 (例: "/static/*")
+ *   - "*."で始まる文字列: 拡張子の一致 (例: "*.css")
+ *   - 上記以外の"/"で始まる文字列: 完全一致 (例: "/health")
+ * 複数のハンドラキューに一致する場合は、完全一致、最長の前方一致、拡張子の一致の順に優先する。
+ *
+ * 設定例:
+ * &lt;component name="webFrontController" class="nablarch.fw.web.servlet.WebFrontController">
+ *   &lt;property name="handlerQueue">
+ *     &lt;!-- 通常のハンドラキュー(省略) -->
+ *   &lt;/property>
+ *   &lt;property name="pathScopedHandlerQueues">
+ *     &lt;list>
+ *       &lt;component class="nablarch.fw.web.servlet.PathScopedHandlerQueue">
+ *         &lt;property name="paths">
+ *           &lt;list>
+ *             &lt;value>/static/*&lt;/value>
+ *             &lt;value>/health&lt;/value>
+ *           &lt;/list>
+ *         &lt;/property>
+ *         &lt;property name="handlerQueue">
+ *           &lt;list>
+ *             &lt;component class="nablarch.fw.web.handler.HttpResponseHandler"/>
+ *             &lt;!-- 省略 -->
+ *           &lt;/list>
+ *         &lt;/property>
+ *       &lt;/component>
+ *     &lt;/list>
+ *   &lt;/property>
+ * &lt;/component>
+ * </pre>
+ * 本クラスは、処理したリクエストの件数と処理時間を集計する。
+ * ただし、{@link WebFrontControllerWarmup}の疑似リクエストは集計しない。
+ */
+@Published(tag = "architect")
+public class PathScopedHandlerQueue extends HandlerQueueManager<PathScopedHandlerQueue> {
+
+    /** ハンドラキュー */
+    @SuppressWarnings("rawtypes")
+    private final List<Handler> handlerQueue = new ArrayList<Handler>();
+
+    /** 対象のリクエストパス */
+    private List<String> paths = Collections.emptyList();
+
+    /** 処理したリクエストの件数 */
+    private final AtomicLong requestCount = new AtomicLong();
+
+    /** 処理時間の合計(ナノ秒) */
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    /** 処理時間の最大値(ナノ秒) */
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * デフォルトコンストラクタ
+     */
+    public PathScopedHandlerQueue() {
+        setMethodBinder(new HttpMethodBinding.Binder());
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public List<Handler> getHandlerQueue() {
+        return handlerQueue;
+    }
+
+    /**
+     * 対象のリクエストパスを設定する。
+     *
+     * @param paths 対象のリクエストパス(サーブレットのurl-patternと同じ形式)
+     */
+    public void setPaths(List<String> paths) {
+        for (String path : paths) {
+            if (path == null || !(path.startsWith("/") || path.startsWith("*."))) {
+                throw new IllegalArgumentException(
+                        "path must start with '/' or '*.'. path = [" + path + "]");
+            }
+        }
+        this.paths = new ArrayList<String>(paths);
+    }
+
+    /**
+     * 対象のリクエストパスを取得する。
+     *
+     * @return 対象のリクエストパス
+     */
+    public List<String> getPaths() {
+        return Collections.unmodifiableList(paths);
+    }
+
+    /**
+     * 本クラスのハンドラキューでリクエストを処理する。
+     *
+     * @param context 実行コンテキスト
+     * @param request HTTPリクエスト
+     */
+    void handle(ServletExecutionContext context, HttpRequest request) {
+        if (WebFrontControllerWarmup.isWarmupRequest(context)) {
+            context.setHandlerQueue(handlerQueue)
+                   .handleNext(request);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            context.setHandlerQueue(handlerQueue)
+                   .handleNext(request);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            requestCount.incrementAndGet();
+            totalNanos.addAndGet(elapsed);
+            long max;
+            do {
+                max = maxNanos.get();
+            } while (elapsed > max && !maxNanos.compareAndSet(max, elapsed));
+        }
+    }
+
+    /**
+     * 処理したリクエストの件数を取得する。
+     *
+     * @return 処理したリクエストの件数
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * 処理時間の合計を取得する。
+     *
+     * @return 処理時間の合計(ナノ秒)
+     */
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    /**
+     * 処理時間の最大値を取得する。
+     *
+     * @return 処理時間の最大値(ナノ秒)
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+}
@@ -0,0 +1,169 @@
+package nablarch.fw.web.servlet;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * リクエストパスから{@link PathScopedHandlerQueue}を選択する索引。
+ * <p/>
+ * 完全一致と前方一致のパスは、パスを"/"で区切ったセグメントの木構造として保持し、
+ * リクエストパスを部分文字列に切り出さずに先頭から1度だけたどって選択する。
+ * 拡張子の一致は、完全一致と前方一致のいずれにも一致しない場合のみ判定する。
+ */
+final class PathScopedHandlerQueueIndex {
+
+    /** 根の節点 */
+    private final Node root = new Node("");
+
+    /** 拡張子毎のハンドラキュー */
+    private final Map<String, PathScopedHandlerQueue> extensions = new HashMap<String, PathScopedHandlerQueue>();
+
+    /**
+     * 索引を作成する。
+     * <p/>
+     * 同じパスが複数のハンドラキューに指定された場合は、先に指定されたものを使用する。
+     * @param queues ハンドラキュー
+     */
+    PathScopedHandlerQueueIndex(List<PathScopedHandlerQueue> queues) {
+        for (PathScopedHandlerQueue queue : queues) {
+            for (String path : queue.getPaths()) {
+                add(path, queue);
+            }
+        }
+    }
+
+    /**
+     * パスを索引に追加する。
+     * @param path パス
+     * @param queue ハンドラキュー
+     */
+    private void add(String path, PathScopedHandlerQueue queue) {
+        if (path.startsWith("*.")) {
+            if (!extensions.containsKey(path.substring(2))) {
+                extensions.put(path.substring(2), queue);
+            }
+            return;
+        }
+        boolean prefix = path.endsWith("/*");
+        String segments = prefix ? path.substring(0, path.length() - 2) : path;
+        Node node = root;
+        int pos = 0;
+        while (pos < segments.length()) {
+            int start = pos + 1;
+            int end = segments.indexOf('/', start);
+            if (end < 0) {
+                end = segments.length();
+            }
+            node = node.childOrCreate(segments.substring(start, end));
+            pos = end;
+        }
+        if (prefix) {
+            if (node.prefixQueue == null) {
+                node.prefixQueue = queue;
+            }
+        } else if (node.exactQueue == null) {
+            node.exactQueue = queue;
+        }
+    }
+
+    /**
+     * リクエストパスに対応するハンドラキューを取得する。
+     * @param path リクエストパス
+     * @return ハンドラキュー(対応するものがない場合は{@code null})
+     */
+    PathScopedHandlerQueue find(String path) {
+        Node node = root;
+        PathScopedHandlerQueue found = root.prefixQueue;
+        int pos = 0;
+        int length = path.length();
+        if (length == 0 && root.exactQueue != null) {
+            return root.exactQueue;
+        }
+        while (pos < length) {
+            int start = pos + 1;
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            Node child = node.child(path, start, end);
+            if (child == null) {
+                break;
+            }
+            node = child;
+            if (end == length && node.exactQueue != null) {
+                return node.exactQueue;
+            }
+            if (node.prefixQueue != null) {
+                found = node.prefixQueue;
+            }
+            pos = end;
+        }
+        if (found != null || extensions.isEmpty()) {
+            return found;
+        }
+        int slash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        return dot > slash ? extensions.get(path.substring(dot + 1)) : null;
+    }
+
+    /**
+     * 索引の節点。
+     */
+    private static final class Node {
+
+        /** セグメント */
+        private final String segment;
+
+        /** 子の節点 */
+        private Node[] children = new Node[0];
+
+        /** このパスに完全一致するハンドラキュー */
+        private PathScopedHandlerQueue exactQueue;
+
+        /** このパスに前方一致するハンドラキュー */
+        private PathScopedHandlerQueue prefixQueue;
+
+        /**
+         * コンストラクタ。
+         * @param segment セグメント
+         */
+        Node(String segment) {
+            this.segment = segment;
+        }
+
+        /**
+         * リクエストパスの一部に一致する子の節点を取得する。
+         * @param path リクエストパス
+         * @param start セグメントの開始位置
+         * @param end セグメントの終了位置
+         * @return 子の節点(存在しない場合は{@code null})
+         */
+        Node child(String path, int start, int end) {
+            int length = end - start;
+            for (Node child : children) {
+                if (child.segment.length() == length && path.regionMatches(start, child.segment, 0, length)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 子の節点を取得する。存在しない場合は作成する。
+         * @param segment セグメント
+         * @return 子の節点
+         */
+        Node childOrCreate(String segment) {
+            Node child = child(segment, 0, segment.length());
+            if (child == null) {
+                child = new Node(segment);
+                Node[] newChildren = new Node[children.length + 1];
+                System.arraycopy(children, 0, newChildren, 0, children.length);
+                newChildren[children.length] = child;
+                children = newChildren;
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,763 @@
+package nablarch.fw.web.servlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.repository.ConfigFileLoader;
+import nablarch.core.repository.ObjectLoader;
+import nablarch.core.repository.PropertiesFileLoader;
+import nablarch.core.repository.di.ComponentCreator;
+import nablarch.core.repository.di.ComponentDefinition;
+import nablarch.core.repository.di.ComponentDefinitionLoader;
+import nablarch.core.repository.di.ComponentInjector;
+import nablarch.core.repository.di.ComponentReference;
+import nablarch.core.repository.di.DiContainer;
+import nablarch.core.repository.di.InjectionType;
+import nablarch.core.repository.di.StoredValueComponentCreator;
+import nablarch.core.repository.di.config.BeanComponentCreator;
+import nablarch.core.repository.di.config.ListComponentCreator;
+import nablarch.core.repository.di.config.ListElementDefinition;
+import nablarch.core.repository.di.config.LiteralComponentCreator;
+import nablarch.core.repository.di.config.MapComponentCreator;
+import nablarch.core.repository.di.config.MapEntryDefinition;
+import nablarch.core.util.FileUtil;
+
+/**
+ * コンポーネント設定ファイルを解析した結果のコンポーネント定義を保持するスナップショット。
+ * <p/>
+ * 起動に成功した際に、{@link nablarch.core.repository.di.config.xml.XmlComponentDefinitionLoader}が返したコンポーネント定義と、
+ * 環境設定ファイルから読み込んだ値、設定ファイルのチェックサムを保存する。
+ * 次回の起動時にチェックサムが一致した場合は、{@link #createLoader()}で設定ファイルを解析せずに
+ * コンポーネント定義を復元する。
+ * <p/>
+ * 保存できるコンポーネント定義は、コンポーネント設定ファイルの{@code component}要素、{@code list}要素、{@code map}要素、
+ * リテラル値、{@code config-file}要素のものとする。
+ * これ以外のコンポーネント定義が含まれる場合は、{@link #capture(List, DiContainer)}が{@code null}を返し、スナップショットを保存しない。
+ * <p/>
+ * チェックサムはコンポーネント設定ファイルと初期化パラメータから算出するため、
+ * コンポーネントのクラスが変更された場合は検知できない。
+ * アプリケーションをデプロイする際は、スナップショットを削除するか、バージョン毎に異なるパスを指定すること。
+ *
+ * @see NablarchServletContextListener
+ * @see ConfigurationChecksum
+ */
+final class StartupSnapshot {
+
+    /** ファイルの先頭に書き込む識別子 */
+    private static final int MAGIC = 0x4E425353;
+
+    /** ファイル形式のバージョン */
+    static final int FORMAT_VERSION = 1;
+
+    /** 文字コード */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** {@code component}要素のコンポーネント定義 */
+    private static final byte BEAN = 1;
+
+    /** リテラル値のコンポーネント定義 */
+    private static final byte LITERAL = 2;
+
+    /** {@code list}要素のコンポーネント定義 */
+    private static final byte LIST = 3;
+
+    /** {@code map}要素のコンポーネント定義 */
+    private static final byte MAP = 4;
+
+    /** {@code config-file}要素のコンポーネント定義 */
+    private static final byte STORED_VALUES = 5;
+
+    /** プリミティブ型 */
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<String, Class<?>>();
+
+    static {
+        for (Class<?> type : new Class<?>[] {boolean.class, byte.class, char.class, short.class,
+                int.class, long.class, float.class, double.class, void.class}) {
+            PRIMITIVES.put(type.getName(), type);
+        }
+    }
+
+    /** チェックサム */
+    private final String checksum;
+
+    /** チェックサムの対象となる設定ファイルのパス */
+    private final List<String> files;
+
+    /** コンポーネント定義 */
+    private final List<Definition> definitions;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param checksum チェックサム
+     * @param files チェックサムの対象となる設定ファイルのパス
+     * @param definitions コンポーネント定義
+     */
+    private StartupSnapshot(String checksum, List<String> files, List<Definition> definitions) {
+        this.checksum = checksum;
+        this.files = Collections.unmodifiableList(new ArrayList<String>(files));
+        this.definitions = definitions;
+    }
+
+    /**
+     * チェックサムを取得する。
+     *
+     * @return チェックサム
+     */
+    String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * チェックサムの対象となる設定ファイルのパスを取得する。
+     *
+     * @return 設定ファイルのパス
+     */
+    List<String> getFiles() {
+        return files;
+    }
+
+    /**
+     * コンポーネント定義数を取得する。
+     *
+     * @return コンポーネント定義数
+     */
+    int getComponentCount() {
+        return definitions.size();
+    }
+
+    /**
+     * チェックサムを設定したスナップショットを生成する。
+     *
+     * @param checksum チェックサム
+     * @param files チェックサムの対象となる設定ファイルのパス
+     * @return スナップショット
+     */
+    StartupSnapshot withChecksum(String checksum, List<String> files) {
+        return new StartupSnapshot(checksum, files, definitions);
+    }
+
+    /**
+     * コンポーネント定義を復元する{@link ComponentDefinitionLoader}を生成する。
+     * <p/>
+     * コンポーネント定義のIDは、復元先の{@link DiContainer}で採番し直す。
+     *
+     * @return {@link ComponentDefinitionLoader}
+     */
+    ComponentDefinitionLoader createLoader() {
+        return new ComponentDefinitionLoader() {
+            @Override
+            public List<ComponentDefinition> load(DiContainer container) {
+                Map<Integer, Integer> ids = new HashMap<Integer, Integer>();
+                for (Definition definition : definitions) {
+                    ids.put(definition.id, container.generateId());
+                }
+                List<ComponentDefinition> result = new ArrayList<ComponentDefinition>(definitions.size());
+                for (Definition definition : definitions) {
+                    result.add(definition.restore(ids));
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * コンポーネント定義からスナップショットを生成する。
+     * <p/>
+     * チェックサムは{@link #withChecksum(String, List)}で設定する。
+     * 保存できないコンポーネント定義が含まれる場合は{@code null}を返す。
+     *
+     * @param componentDefinitions コンポーネント定義
+     * @param container コンポーネント定義を読み込んだ{@link DiContainer}
+     * @return スナップショット(保存できない場合は{@code null})
+     */
+    static StartupSnapshot capture(List<ComponentDefinition> componentDefinitions, DiContainer container) {
+        List<Definition> definitions = new ArrayList<Definition>(componentDefinitions.size());
+        for (ComponentDefinition componentDefinition : componentDefinitions) {
+            Definition definition = Definition.capture(componentDefinition, container);
+            if (definition == null) {
+                return null;
+            }
+            definitions.add(definition);
+        }
+        return new StartupSnapshot("", Collections.<String>emptyList(), definitions);
+    }
+
+    /**
+     * スナップショットを読み込む。
+     * <p/>
+     * ファイルが存在しない場合や、読み込めない場合、形式が不正な場合、
+     * コンポーネントのクラスが存在しない場合は{@code null}を返す。
+     *
+     * @param file スナップショットのファイル
+     * @return スナップショット
+     */
+    static StartupSnapshot read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            String checksum = readString(in);
+            int fileCount = in.readInt();
+            List<String> files = new ArrayList<String>(fileCount);
+            for (int i = 0; i < fileCount; i++) {
+                files.add(readString(in));
+            }
+            int definitionCount = in.readInt();
+            List<Definition> definitions = new ArrayList<Definition>(definitionCount);
+            for (int i = 0; i < definitionCount; i++) {
+                definitions.add(Definition.read(in));
+            }
+            return new StartupSnapshot(checksum, files, definitions);
+        } catch (IOException e) {
+            return null;
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (RuntimeException e) {
+            return null;
+        } finally {
+            FileUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * スナップショットを保存する。
+     * <p/>
+     * 保存中のファイルを読み込まないよう、一時ファイルに書き込んでから置き換える。
+     *
+     * @param file スナップショットのファイル
+     * @throws IOException 保存に失敗した場合
+     */
+    void write(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("could not create directory. directory = " + dir.getAbsolutePath());
+        }
+        File temp = new File(dir, file.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, checksum);
+            out.writeInt(files.size());
+            for (String path : files) {
+                writeString(out, path);
+            }
+            out.writeInt(definitions.size());
+            for (Definition definition : definitions) {
+                definition.write(out);
+            }
+            out.flush();
+        } finally {
+            FileUtil.closeQuietly(out);
+        }
+        if ((file.exists() && !file.delete()) || !temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("could not replace startup snapshot. file = " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * {@code null}を許容する文字列を書き込む。
+     *
+     * @param out 出力先
+     * @param value 文字列
+     * @throws IOException 書き込みに失敗した場合
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * {@code null}を許容する文字列を読み込む。
+     *
+     * @param in 入力元
+     * @return 文字列
+     * @throws IOException 読み込みに失敗した場合
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * {@code null}を許容するクラスを書き込む。
+     *
+     * @param out 出力先
+     * @param type クラス
+     * @throws IOException 書き込みに失敗した場合
+     */
+    private static void writeClass(DataOutputStream out, Class<?> type) throws IOException {
+        writeString(out, type == null ? null : type.getName());
+    }
+
+    /**
+     * {@code null}を許容するクラスを読み込む。
+     *
+     * @param in 入力元
+     * @return クラス
+     * @throws IOException 読み込みに失敗した場合
+     * @throws ClassNotFoundException クラスが存在しない場合
+     */
+    private static Class<?> readClass(DataInputStream in) throws IOException, ClassNotFoundException {
+        String name = readString(in);
+        if (name == null) {
+            return null;
+        }
+        Class<?> primitive = PRIMITIVES.get(name);
+        if (primitive != null) {
+            return primitive;
+        }
+        return Class.forName(name);
+    }
+
+    /**
+     * スナップショットを作成する時に、コンポーネント定義の生成方法が保持する値を取得する。
+     * <p/>
+     * 値を取得するメソッドが公開されていないため、フィールドから取得する。
+     *
+     * @param target 対象
+     * @param name フィールド名
+     * @return 値(取得できない場合は{@code null})
+     */
+    private static Object getFieldValue(Object target, String name) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            return field.get(target);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 新しいIDを取得する。
+     *
+     * @param ids 元のIDと新しいIDの対応
+     * @param id 元のID
+     * @return 新しいID(対応するコンポーネント定義がない場合は元のID)
+     */
+    private static int remap(Map<Integer, Integer> ids, int id) {
+        Integer remapped = ids.get(id);
+        return remapped != null ? remapped : id;
+    }
+
+    /**
+     * コンポーネント定義。
+     */
+    private static final class Definition {
+
+        /** ID */
+        private int id;
+
+        /** コンポーネント名 */
+        private String name;
+
+        /** コンポーネントの型 */
+        private Class<?> type;
+
+        /** IDのみで参照するか否か */
+        private boolean useIdOnly;
+
+        /** 生成方法の種類 */
+        private byte kind;
+
+        /** 生成方法が{@link ComponentDefinition#getInjector()}を兼ねるか否か */
+        private boolean creatorInjects;
+
+        /** リテラル値の型 */
+        private Class<?> literalType;
+
+        /** リテラル値 */
+        private String literal;
+
+        /** {@code list}要素の要素(ID、コンポーネント名) */
+        private final List<Object[]> elements = new ArrayList<Object[]>();
+
+        /** {@code map}要素のエントリ */
+        private final List<MapEntryDefinition> entries = new ArrayList<MapEntryDefinition>();
+
+        /** 環境設定ファイルから読み込んだ値 */
+        private final Map<String, Object> values = new LinkedHashMap<String, Object>();
+
+        /** 参照 */
+        private final List<Reference> references = new ArrayList<Reference>();
+
+        /**
+         * コンポーネント定義から生成する。
+         *
+         * @param source コンポーネント定義
+         * @param container コンポーネント定義を読み込んだ{@link DiContainer}
+         * @return コンポーネント定義(保存できない場合は{@code null})
+         */
+        static Definition capture(ComponentDefinition source, DiContainer container) {
+            Definition definition = new Definition();
+            definition.id = source.getId();
+            definition.name = source.getName();
+            definition.type = source.getType();
+            definition.useIdOnly = source.isUseIdOnly();
+            ComponentCreator creator = source.getCreator();
+            if (source.getInjector() != null && source.getInjector() != creator) {
+                return null;
+            }
+            definition.creatorInjects = source.getInjector() != null;
+            if (!definition.captureCreator(source, creator, container)) {
+                return null;
+            }
+            for (ComponentReference reference : source.getReferences()) {
+                definition.references.add(new Reference(reference.getPropertyName(), reference.getReferenceName(),
+                        reference.getRequiredType(), reference.getInjectionType(), reference.getTargetId()));
+            }
+            return definition;
+        }
+
+        /**
+         * 生成方法が保持する値を取得する。
+         *
+         * @param source コンポーネント定義
+         * @param creator 生成方法
+         * @param container コンポーネント定義を読み込んだ{@link DiContainer}
+         * @return 保存できる生成方法の場合は{@code true}
+         */
+        @SuppressWarnings("unchecked")
+        private boolean captureCreator(ComponentDefinition source, ComponentCreator creator, DiContainer container) {
+            Class<?> creatorClass = creator == null ? null : creator.getClass();
+            if (creatorClass == BeanComponentCreator.class) {
+                kind = BEAN;
+                return true;
+            }
+            if (creatorClass == LiteralComponentCreator.class) {
+                kind = LITERAL;
+                literalType = (Class<?>) getFieldValue(creator, "type");
+                literal = (String) getFieldValue(creator, "literal");
+                return literalType != null;
+            }
+            if (creatorClass == ListComponentCreator.class) {
+                kind = LIST;
+                List<ListElementDefinition> list = (List<ListElementDefinition>) getFieldValue(
+                        creator, "elementDefinitions");
+                if (list == null) {
+                    return false;
+                }
+                for (ListElementDefinition element : list) {
+                    elements.add(new Object[] {element.getId(), element.getName()});
+                }
+                return true;
+            }
+            if (creatorClass == MapComponentCreator.class) {
+                kind = MAP;
+                List<MapEntryDefinition> list = (List<MapEntryDefinition>) getFieldValue(creator, "entries");
+                if (list == null) {
+                    return false;
+                }
+                entries.addAll(list);
+                return true;
+            }
+            if (creatorClass == StoredValueComponentCreator.class) {
+                kind = STORED_VALUES;
+                ObjectLoader loader = reopen(creator.createComponent(container, source));
+                if (loader == null) {
+                    return false;
+                }
+                for (Map.Entry<String, Object> entry : loader.load().entrySet()) {
+                    if (!(entry.getValue() instanceof String)) {
+                        return false;
+                    }
+                    values.put(entry.getKey(), entry.getValue());
+                }
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 環境設定ファイルを読み込む{@link ObjectLoader}を、同じファイルを読み込むように生成し直す。
+         * <p/>
+         * {@link ConfigFileLoader}は読み込み時にストリームを閉じるため、
+         * {@link DiContainer}が読み込む{@link ObjectLoader}とは別のインスタンスで読み込む。
+         *
+         * @param stored 環境設定ファイルを読み込む{@link ObjectLoader}
+         * @return 生成し直した{@link ObjectLoader}(生成できない場合は{@code null})
+         */
+        private static ObjectLoader reopen(Object stored) {
+            if (stored == null
+                    || (stored.getClass() != ConfigFileLoader.class && stored.getClass() != PropertiesFileLoader.class)) {
+                return null;
+            }
+            String url = (String) getFieldValue(stored, "url");
+            String encoding = (String) getFieldValue(stored, "encoding");
+            if (url == null) {
+                return null;
+            }
+            if (stored.getClass() == ConfigFileLoader.class) {
+                return encoding == null ? new ConfigFileLoader(url) : new ConfigFileLoader(url, encoding);
+            }
+            return encoding == null ? new PropertiesFileLoader(url) : new PropertiesFileLoader(url, encoding);
+        }
+
+        /**
+         * コンポーネント定義を復元する。
+         *
+         * @param ids 元のIDと新しいIDの対応
+         * @return コンポーネント定義
+         */
+        ComponentDefinition restore(Map<Integer, Integer> ids) {
+            ComponentCreator creator = restoreCreator(ids);
+            ComponentDefinition definition = new ComponentDefinition(remap(ids, id), name, creator, type);
+            definition.setUseIdOnly(useIdOnly);
+            if (creatorInjects) {
+                definition.setInjector((ComponentInjector) creator);
+            }
+            for (Reference reference : references) {
+                definition.addReference(new ComponentReference(reference.propertyName, reference.componentName,
+                        reference.requiredType, reference.injectionType, remap(ids, reference.targetId)));
+            }
+            return definition;
+        }
+
+        /**
+         * 生成方法を復元する。
+         *
+         * @param ids 元のIDと新しいIDの対応
+         * @return 生成方法
+         */
+        private ComponentCreator restoreCreator(Map<Integer, Integer> ids) {
+            switch (kind) {
+            case LITERAL:
+                return new LiteralComponentCreator(literalType, literal);
+            case LIST:
+                List<ListElementDefinition> list = new ArrayList<ListElementDefinition>(elements.size());
+                for (Object[] element : elements) {
+                    Integer elementId = (Integer) element[0];
+                    list.add(new ListElementDefinition(
+                            elementId == null ? null : remap(ids, elementId), (String) element[1]));
+                }
+                return new ListComponentCreator(list);
+            case MAP:
+                List<MapEntryDefinition> map = new ArrayList<MapEntryDefinition>(entries.size());
+                for (MapEntryDefinition entry : entries) {
+                    MapEntryDefinition restored = new MapEntryDefinition();
+                    restored.setKeyType(entry.getKeyType());
+                    restored.setKey(entry.getKey());
+                    restored.setKeyRef(entry.getKeyRef());
+                    restored.setKeyId(remap(ids, entry.getKeyId()));
+                    restored.setValueType(entry.getValueType());
+                    restored.setValue(entry.getValue());
+                    restored.setValueRef(entry.getValueRef());
+                    restored.setValueId(remap(ids, entry.getValueId()));
+                    map.add(restored);
+                }
+                return new MapComponentCreator(map);
+            case STORED_VALUES:
+                final Map<String, Object> stored = Collections.unmodifiableMap(values);
+                return new StoredValueComponentCreator(new ObjectLoader() {
+                    @Override
+                    public Map<String, Object> load() {
+                        return stored;
+                    }
+                });
+            default:
+                return new BeanComponentCreator();
+            }
+        }
+
+        /**
+         * 書き込む。
+         *
+         * @param out 出力先
+         * @throws IOException 書き込みに失敗した場合
+         */
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(id);
+            writeString(out, name);
+            writeClass(out, type);
+            out.writeBoolean(useIdOnly);
+            out.writeByte(kind);
+            out.writeBoolean(creatorInjects);
+            switch (kind) {
+            case LITERAL:
+                writeClass(out, literalType);
+                writeString(out, literal);
+                break;
+            case LIST:
+                out.writeInt(elements.size());
+                for (Object[] element : elements) {
+                    Integer elementId = (Integer) element[0];
+                    out.writeBoolean(elementId != null);
+                    out.writeInt(elementId == null ? 0 : elementId);
+                    writeString(out, (String) element[1]);
+                }
+                break;
+            case MAP:
+                out.writeInt(entries.size());
+                for (MapEntryDefinition entry : entries) {
+                    writeString(out, entry.getKeyType() == null ? null : entry.getKeyType().name());
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getKeyRef());
+                    out.writeInt(entry.getKeyId());
+                    writeString(out, entry.getValueType() == null ? null : entry.getValueType().name());
+                    writeString(out, entry.getValue());
+                    writeString(out, entry.getValueRef());
+                    out.writeInt(entry.getValueId());
+                }
+                break;
+            case STORED_VALUES:
+                out.writeInt(values.size());
+                for (Map.Entry<String, Object> entry : values.entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeString(out, (String) entry.getValue());
+                }
+                break;
+            default:
+                break;
+            }
+            out.writeInt(references.size());
+            for (Reference reference : references) {
+                writeString(out, reference.propertyName);
+                writeString(out, reference.componentName);
+                writeClass(out, reference.requiredType);
+                writeString(out, reference.injectionType == null ? null : reference.injectionType.name());
+                out.writeInt(reference.targetId);
+            }
+        }
+
+        /**
+         * 読み込む。
+         *
+         * @param in 入力元
+         * @return コンポーネント定義
+         * @throws IOException 読み込みに失敗した場合
+         * @throws ClassNotFoundException クラスが存在しない場合
+         */
+        static Definition read(DataInputStream in) throws IOException, ClassNotFoundException {
+            Definition definition = new Definition();
+            definition.id = in.readInt();
+            definition.name = readString(in);
+            definition.type = readClass(in);
+            definition.useIdOnly = in.readBoolean();
+            definition.kind = in.readByte();
+            definition.creatorInjects = in.readBoolean();
+            switch (definition.kind) {
+            case BEAN:
+                break;
+            case LITERAL:
+                definition.literalType = readClass(in);
+                definition.literal = readString(in);
+                break;
+            case LIST:
+                int elementCount = in.readInt();
+                for (int i = 0; i < elementCount; i++) {
+                    boolean hasId = in.readBoolean();
+                    int elementId = in.readInt();
+                    definition.elements.add(new Object[] {hasId ? elementId : null, readString(in)});
+                }
+                break;
+            case MAP:
+                int entryCount = in.readInt();
+                for (int i = 0; i < entryCount; i++) {
+                    MapEntryDefinition entry = new MapEntryDefinition();
+                    String keyType = readString(in);
+                    entry.setKeyType(keyType == null ? null : MapEntryDefinition.DataType.valueOf(keyType));
+                    entry.setKey(readString(in));
+                    entry.setKeyRef(readString(in));
+                    entry.setKeyId(in.readInt());
+                    String valueType = readString(in);
+                    entry.setValueType(valueType == null ? null : MapEntryDefinition.DataType.valueOf(valueType));
+                    entry.setValue(readString(in));
+                    entry.setValueRef(readString(in));
+                    entry.setValueId(in.readInt());
+                    definition.entries.add(entry);
+                }
+                break;
+            case STORED_VALUES:
+                int valueCount = in.readInt();
+                for (int i = 0; i < valueCount; i++) {
+                    definition.values.put(readString(in), readString(in));
+                }
+                break;
+            default:
+                throw new IOException("unknown component definition kind. kind = " + definition.kind);
+            }
+            int referenceCount = in.readInt();
+            for (int i = 0; i < referenceCount; i++) {
+                String propertyName = readString(in);
+                String componentName = readString(in);
+                Class<?> requiredType = readClass(in);
+                String injectionType = readString(in);
+                definition.references.add(new Reference(propertyName, componentName, requiredType,
+                        injectionType == null ? null : InjectionType.valueOf(injectionType), in.readInt()));
+            }
+            return definition;
+        }
+    }
+
+    /**
+     * コンポーネント定義の参照。
+     */
+    private static final class Reference {
+
+        /** プロパティ名 */
+        private final String propertyName;
+
+        /** 参照するコンポーネント名 */
+        private final String componentName;
+
+        /** プロパティの型 */
+        private final Class<?> requiredType;
+
+        /** インジェクションの種類 */
+        private final InjectionType injectionType;
+
+        /** 参照するコンポーネント定義のID */
+        private final int targetId;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param propertyName プロパティ名
+         * @param componentName 参照するコンポーネント名
+         * @param requiredType プロパティの型
+         * @param injectionType インジェクションの種類
+         * @param targetId 参照するコンポーネント定義のID
+         */
+        Reference(String propertyName, String componentName, Class<?> requiredType,
+                  InjectionType injectionType, int targetId) {
+            this.propertyName = propertyName;
+            this.componentName = componentName;
+            this.requiredType = requiredType;
+            this.injectionType = injectionType;
+            this.targetId = targetId;
+        }
+    }
+}
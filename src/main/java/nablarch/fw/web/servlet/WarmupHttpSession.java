@@ -0,0 +1,124 @@
+package nablarch.fw.web.servlet;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * ウォームアップのリクエストで使用する、メモリ上にのみ存在する{@link HttpSession}。
+ * <p/>
+ * 無効化した後は属性を保持せず、{@link WarmupServletRequest#getSession(boolean)}で新たなセッションが生成される。
+ */
+final class WarmupHttpSession implements HttpSession {
+
+    /** セッションID */
+    private final String id = UUID.randomUUID().toString();
+
+    /** 生成時刻 */
+    private final long creationTime = System.currentTimeMillis();
+
+    /** 属性 */
+    private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+    /** サーブレットコンテキスト */
+    private final ServletContext servletContext;
+
+    /** 有効期限(秒) */
+    private int maxInactiveInterval;
+
+    /** 無効化されたか否か */
+    private boolean invalidated;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param servletContext サーブレットコンテキスト
+     */
+    WarmupHttpSession(ServletContext servletContext) {
+        this.servletContext = servletContext;
+    }
+
+    /**
+     * 無効化されたか否かを取得する。
+     *
+     * @return 無効化された場合は{@code true}
+     */
+    boolean isInvalidated() {
+        return invalidated;
+    }
+
+    @Override
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        return creationTime;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return servletContext;
+    }
+
+    @Override
+    public void setMaxInactiveInterval(int interval) {
+        maxInactiveInterval = interval;
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public void invalidate() {
+        attributes.clear();
+        invalidated = true;
+    }
+
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "WarmupHttpSession[" + id + "]";
+    }
+}
@@ -0,0 +1,113 @@
+package nablarch.fw.web.servlet;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * {@link WebFrontControllerWarmup}で処理する疑似リクエストの定義。
+ * <p/>
+ * ウォームアップのリクエストは業務アクションまで実際に処理されるため、
+ * 状態を変更しないGETまたはHEADのリクエストのみ定義できる。
+ *
+ * @see WebFrontControllerWarmup
+ */
+@Published(tag = "architect")
+public class WarmupRequest {
+
+    /** HTTPメソッド */
+    private String method = "GET";
+
+    /** コンテキストパスを除いたリクエストパス */
+    private String path;
+
+    /** リクエストパラメータ */
+    private Map<String, String> params = Collections.emptyMap();
+
+    /** リクエストヘッダ */
+    private Map<String, String> headers = Collections.emptyMap();
+
+    /**
+     * HTTPメソッドを取得する。
+     *
+     * @return HTTPメソッド
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * HTTPメソッドを設定する。
+     * <p/>
+     * デフォルトは{@code GET}。
+     *
+     * @param method HTTPメソッド({@code GET}または{@code HEAD})
+     * @throws IllegalArgumentException {@code GET}、{@code HEAD}以外が指定された場合
+     */
+    public void setMethod(String method) {
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            throw new IllegalArgumentException("warmup request method must be GET or HEAD. method = " + method);
+        }
+        this.method = method;
+    }
+
+    /**
+     * リクエストパスを取得する。
+     *
+     * @return コンテキストパスを除いたリクエストパス
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * リクエストパスを設定する。
+     *
+     * @param path コンテキストパスを除いたリクエストパス(例: {@code /action/menu})
+     * @throws IllegalArgumentException パスが{@code /}で始まらない場合
+     */
+    public void setPath(String path) {
+        if (path == null || !path.startsWith("/")) {
+            throw new IllegalArgumentException("warmup request path must start with '/'. path = " + path);
+        }
+        this.path = path;
+    }
+
+    /**
+     * リクエストパラメータを取得する。
+     *
+     * @return リクエストパラメータ
+     */
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    /**
+     * リクエストパラメータを設定する。
+     *
+     * @param params リクエストパラメータ
+     */
+    public void setParams(Map<String, String> params) {
+        this.params = Collections.unmodifiableMap(new LinkedHashMap<String, String>(params));
+    }
+
+    /**
+     * リクエストヘッダを取得する。
+     *
+     * @return リクエストヘッダ
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * リクエストヘッダを設定する。
+     *
+     * @param headers リクエストヘッダ
+     */
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = Collections.unmodifiableMap(new LinkedHashMap<String, String>(headers));
+    }
+}
@@ -0,0 +1,522 @@
+package nablarch.fw.web.servlet;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.security.Principal;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.ServletConnection;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpUpgradeHandler;
+import jakarta.servlet.http.Part;
+
+/**
+ * {@link WarmupRequest}の定義から生成する、ウォームアップ用の{@link HttpServletRequest}。
+ * <p/>
+ * クッキーとリクエストボディを持たない、ローカルホストからのHTTPリクエストとして振る舞う。
+ * セッションは要求された場合にのみ{@link WarmupHttpSession}を生成する。
+ * 認証、非同期処理、プロトコルのアップグレードは行わず、サーブレットAPIの仕様で
+ * これらが利用できない場合と同じ値を返す。
+ * <p/>
+ * 生成時に、疑似リクエストであることを示すリクエスト属性
+ * {@link WebFrontControllerWarmup#WARMUP_REQUEST_ATTRIBUTE}を設定する。
+ */
+final class WarmupServletRequest implements HttpServletRequest {
+
+    /** サーバ名 */
+    private static final String SERVER_NAME = "localhost";
+
+    /** ループバックアドレス */
+    private static final String LOOPBACK_ADDRESS = "127.0.0.1";
+
+    /** リクエストIDの採番に使用するカウンタ */
+    private static final AtomicLong REQUEST_ID_SEQUENCE = new AtomicLong();
+
+    /** リクエストID */
+    private final String requestId = "warmup-" + REQUEST_ID_SEQUENCE.incrementAndGet();
+
+    /** リクエストの定義 */
+    private final WarmupRequest definition;
+
+    /** サーブレットコンテキスト */
+    private final ServletContext servletContext;
+
+    /** コンテキストパス */
+    private final String contextPath;
+
+    /** リクエストパラメータ */
+    private final Map<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+
+    /** リクエストヘッダ(名前の大文字小文字を区別しない) */
+    private final Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+
+    /** リクエスト属性 */
+    private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+    /** 文字エンコーディング */
+    private String characterEncoding;
+
+    /** セッション */
+    private WarmupHttpSession session;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param definition リクエストの定義
+     * @param servletContext サーブレットコンテキスト
+     */
+    WarmupServletRequest(WarmupRequest definition, ServletContext servletContext) {
+        this.definition = definition;
+        this.servletContext = servletContext;
+        this.contextPath = servletContext.getContextPath();
+        for (Map.Entry<String, String> param : definition.getParams().entrySet()) {
+            parameters.put(param.getKey(), new String[] {param.getValue()});
+        }
+        headers.putAll(definition.getHeaders());
+        attributes.put(WebFrontControllerWarmup.WARMUP_REQUEST_ATTRIBUTE, Boolean.TRUE);
+    }
+
+    @Override
+    public String getMethod() {
+        return definition.getMethod();
+    }
+
+    @Override
+    public String getRequestURI() {
+        return contextPath + definition.getPath();
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        return new StringBuffer("http://").append(SERVER_NAME).append(getRequestURI());
+    }
+
+    @Override
+    public String getContextPath() {
+        return contextPath;
+    }
+
+    @Override
+    public String getServletPath() {
+        return definition.getPath();
+    }
+
+    @Override
+    public String getPathInfo() {
+        return null;
+    }
+
+    @Override
+    public String getPathTranslated() {
+        return null;
+    }
+
+    @Override
+    public String getQueryString() {
+        return null;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters.get(name);
+        return values == null ? null : values[0];
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameters.keySet());
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        String[] values = parameters.get(name);
+        return values == null ? null : values.clone();
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        String value = headers.get(name);
+        return Collections.enumeration(value == null
+                ? Collections.<String>emptyList()
+                : Collections.singletonList(value));
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        return Collections.enumeration(headers.keySet());
+    }
+
+    @Override
+    public int getIntHeader(String name) {
+        String value = headers.get(name);
+        return value == null ? -1 : Integer.parseInt(value);
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        String value = headers.get(name);
+        return value == null
+                ? -1L
+                : ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+    }
+
+    @Override
+    public Cookie[] getCookies() {
+        return null;
+    }
+
+    @Override
+    public HttpSession getSession() {
+        return getSession(true);
+    }
+
+    @Override
+    public HttpSession getSession(boolean create) {
+        if (session != null && session.isInvalidated()) {
+            session = null;
+        }
+        if (session == null && create) {
+            session = new WarmupHttpSession(servletContext);
+        }
+        return session;
+    }
+
+    @Override
+    public String changeSessionId() {
+        HttpSession session = getSession(false);
+        if (session == null) {
+            throw new IllegalStateException("session does not exist.");
+        }
+        return session.getId();
+    }
+
+    @Override
+    public String getRequestedSessionId() {
+        return null;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdValid() {
+        return false;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromCookie() {
+        return false;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromURL() {
+        return false;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return characterEncoding;
+    }
+
+    @Override
+    public void setCharacterEncoding(String env) {
+        characterEncoding = env;
+    }
+
+    @Override
+    public String getContentType() {
+        return headers.get("Content-Type");
+    }
+
+    @Override
+    public int getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return -1L;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        return new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return true;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                // 非同期処理を開始できないため、サーブレットAPIの仕様に従いIllegalStateExceptionを送出する。
+                throw new IllegalStateException("async processing is not started in warmup request.");
+            }
+
+            @Override
+            public int read() {
+                return -1;
+            }
+        };
+    }
+
+    @Override
+    public BufferedReader getReader() {
+        return new BufferedReader(new StringReader(""));
+    }
+
+    @Override
+    public Locale getLocale() {
+        return Locale.getDefault();
+    }
+
+    @Override
+    public Enumeration<Locale> getLocales() {
+        return Collections.enumeration(Collections.singletonList(Locale.getDefault()));
+    }
+
+    @Override
+    public String getScheme() {
+        return "http";
+    }
+
+    @Override
+    public boolean isSecure() {
+        return false;
+    }
+
+    @Override
+    public String getProtocol() {
+        return "HTTP/1.1";
+    }
+
+    @Override
+    public String getServerName() {
+        return SERVER_NAME;
+    }
+
+    @Override
+    public int getServerPort() {
+        return 80;
+    }
+
+    @Override
+    public String getRemoteAddr() {
+        return LOOPBACK_ADDRESS;
+    }
+
+    @Override
+    public String getRemoteHost() {
+        return SERVER_NAME;
+    }
+
+    @Override
+    public int getRemotePort() {
+        return 0;
+    }
+
+    @Override
+    public String getLocalAddr() {
+        return LOOPBACK_ADDRESS;
+    }
+
+    @Override
+    public String getLocalName() {
+        return SERVER_NAME;
+    }
+
+    @Override
+    public int getLocalPort() {
+        return 80;
+    }
+
+    @Override
+    public String getRemoteUser() {
+        return null;
+    }
+
+    @Override
+    public Principal getUserPrincipal() {
+        return null;
+    }
+
+    @Override
+    public boolean isUserInRole(String role) {
+        return false;
+    }
+
+    @Override
+    public String getAuthType() {
+        return null;
+    }
+
+    @Override
+    public boolean authenticate(HttpServletResponse response) {
+        return false;
+    }
+
+    @Override
+    public void login(String username, String password) throws ServletException {
+        // ログインの仕組みを持たないため、サーブレットAPIの仕様に従いServletExceptionを送出する。
+        throw new ServletException("login is not available in warmup request.");
+    }
+
+    @Override
+    public void logout() {
+        // 認証情報を持たないため何もしない。
+    }
+
+    @Override
+    public Collection<Part> getParts() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Part getPart(String name) {
+        return null;
+    }
+
+    @Override
+    public <T extends HttpUpgradeHandler> T upgrade(Class<T> handlerClass) throws ServletException {
+        // ハンドラを生成するのみで、接続のアップグレードは行わない。
+        try {
+            return handlerClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new ServletException("could not instantiate upgrade handler. class = " + handlerClass.getName(), e);
+        }
+    }
+
+    @Override
+    public RequestDispatcher getRequestDispatcher(String path) {
+        return servletContext.getRequestDispatcher(path);
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return servletContext;
+    }
+
+    @Override
+    public DispatcherType getDispatcherType() {
+        return DispatcherType.REQUEST;
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+        return false;
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return false;
+    }
+
+    @Override
+    public AsyncContext startAsync() {
+        return startAsync(this, null);
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) {
+        // 非同期処理をサポートしないため、サーブレットAPIの仕様に従いIllegalStateExceptionを送出する。
+        throw new IllegalStateException("async processing is not supported in warmup request.");
+    }
+
+    @Override
+    public AsyncContext getAsyncContext() {
+        // 非同期処理を開始していないため、サーブレットAPIの仕様に従いIllegalStateExceptionを送出する。
+        throw new IllegalStateException("async processing is not started in warmup request.");
+    }
+
+    @Override
+    public String getRequestId() {
+        return requestId;
+    }
+
+    @Override
+    public String getProtocolRequestId() {
+        return "";
+    }
+
+    @Override
+    public ServletConnection getServletConnection() {
+        return new ServletConnection() {
+            @Override
+            public String getConnectionId() {
+                return requestId;
+            }
+
+            @Override
+            public String getProtocol() {
+                return "http/1.1";
+            }
+
+            @Override
+            public String getProtocolConnectionId() {
+                return "";
+            }
+
+            @Override
+            public boolean isSecure() {
+                return false;
+            }
+        };
+    }
+}
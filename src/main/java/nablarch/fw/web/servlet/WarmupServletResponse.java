@@ -0,0 +1,288 @@
+package nablarch.fw.web.servlet;
+
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * ウォームアップ用の{@link HttpServletResponse}。
+ * <p/>
+ * ステータスコードとヘッダを保持し、レスポンスボディは書き込まれたバイト数のみを数えて破棄する。
+ */
+final class WarmupServletResponse implements HttpServletResponse {
+
+    /** デフォルトの文字エンコーディング */
+    private static final String DEFAULT_CHARACTER_ENCODING = "ISO-8859-1";
+
+    /** レスポンスヘッダ(名前の大文字小文字を区別しない) */
+    private final Map<String, List<String>> headers =
+            new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+
+    /** ステータスコード */
+    private int status = SC_OK;
+
+    /** コンテンツタイプ */
+    private String contentType;
+
+    /** 文字エンコーディング */
+    private String characterEncoding;
+
+    /** ロケール */
+    private Locale locale = Locale.getDefault();
+
+    /** 書き込まれたバイト数 */
+    private long writtenBytes;
+
+    /** レスポンスがコミットされたか否か */
+    private boolean committed;
+
+    /** 出力ストリーム */
+    private ServletOutputStream outputStream;
+
+    /** ライター */
+    private PrintWriter writer;
+
+    /**
+     * 書き込まれたレスポンスボディのバイト数を取得する。
+     *
+     * @return バイト数
+     */
+    long getWrittenBytes() {
+        if (writer != null) {
+            writer.flush();
+        }
+        return writtenBytes;
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        status = sc;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void sendError(int sc) {
+        sendError(sc, null);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) {
+        status = sc;
+        committed = true;
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+        status = SC_FOUND;
+        setHeader("Location", location);
+        committed = true;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        List<String> values = new ArrayList<String>(1);
+        values.add(value);
+        headers.put(name, values);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        List<String> values = headers.get(name);
+        if (values == null) {
+            setHeader(name, value);
+        } else {
+            values.add(value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        addHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, String.valueOf(date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        addHeader(name, String.valueOf(date));
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return headers.containsKey(name);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values == null ? null : values.get(0);
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        return values == null ? Collections.<String>emptyList() : new ArrayList<String>(values);
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        return new ArrayList<String>(headers.keySet());
+    }
+
+    @Override
+    public void setContentType(String type) {
+        contentType = type;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        characterEncoding = charset;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return characterEncoding == null ? DEFAULT_CHARACTER_ENCODING : characterEncoding;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        setIntHeader("Content-Length", len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        setHeader("Content-Length", String.valueOf(len));
+    }
+
+    @Override
+    public void setLocale(Locale loc) {
+        locale = loc;
+    }
+
+    @Override
+    public Locale getLocale() {
+        return locale;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (outputStream == null) {
+            outputStream = new ServletOutputStream() {
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                    // 非同期処理を開始できないため、サーブレットAPIの仕様に従いIllegalStateExceptionを送出する。
+                    throw new IllegalStateException("async processing is not started in warmup response.");
+                }
+
+                @Override
+                public void write(int b) {
+                    writtenBytes++;
+                    committed = true;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    writtenBytes += len;
+                    committed = true;
+                }
+            };
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), Charset.forName(getCharacterEncoding())));
+        }
+        return writer;
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        addHeader("Set-Cookie", cookie.getName());
+    }
+
+    @Override
+    public String encodeURL(String url) {
+        return url;
+    }
+
+    @Override
+    public String encodeRedirectURL(String url) {
+        return url;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    @Override
+    public void flushBuffer() {
+        if (writer != null) {
+            writer.flush();
+        }
+        committed = true;
+    }
+
+    @Override
+    public void reset() {
+        if (committed) {
+            throw new IllegalStateException("response has already been committed.");
+        }
+        headers.clear();
+        status = SC_OK;
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (committed) {
+            throw new IllegalStateException("response has already been committed.");
+        }
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+        // バッファを持たないため何もしない。
+    }
+
+    @Override
+    public int getBufferSize() {
+        return 0;
+    }
+}
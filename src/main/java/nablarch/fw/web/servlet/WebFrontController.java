@@ -2,11 +2,13 @@ package nablarch.fw.web.servlet;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import jakarta.servlet.Filter;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.ServletRequest;
 import jakarta.servlet.ServletResponse;
@@ -18,6 +20,7 @@ import nablarch.fw.Handler;
 import nablarch.fw.HandlerQueueManager;
 import nablarch.fw.web.HttpMethodBinding;
 import nablarch.fw.web.HttpRequest;
+import nablarch.fw.web.handler.latency.HandlerLatencyRecorder;
 
 /**
  * アプリケーションサーバにデプロイして使用するリクエストコントローラ。
@@ -30,6 +33,9 @@ import nablarch.fw.web.HttpRequest;
  *   2. それらを引数としてリクエストプロセッサに処理を委譲する。
  *   3. その結果(HttpResponseオブジェクトの内容)に従って、
  *      HTTPクライアントに対するレスポンス処理を行う。
+ * リクエストパスが{@link PathScopedHandlerQueue}に一致する場合は、
+ * 本クラスのハンドラキューに代えて、そのハンドラキューに処理を委譲する。
+ * {@link HandlerLatencyRecorder}を設定した場合は、本クラスのハンドラキューの各ハンドラの処理時間を記録する。
  * リクエストプロセッサの初期化処理は、本クラスのサブクラスを作成し、
  * オーバライドしたinit()メソッドの中で行う。
  * 本サーブレットフィルタに処理が委譲された場合、必ずレスポンスかフォーワードを行う。
@@ -97,17 +103,63 @@ implements Filter {
                          ServletResponse servletResponse,
                          FilterChain     chain)
     throws ServletException, IOException {
+        handle((HttpServletRequest) servletRequest, (HttpServletResponse) servletResponse,
+               config.getServletContext());
+    }
+
+    /**
+     * リクエストをハンドラキューで処理する。
+     * <p/>
+     * サーブレットフィルタとして初期化される前に、{@link WebFrontControllerWarmup}から
+     * リクエストを処理するためにも使用する。
+     *
+     * @param servletRequest サーブレットリクエスト
+     * @param servletResponse サーブレットレスポンス
+     * @param servletContext サーブレットコンテキスト
+     */
+    void handle(HttpServletRequest servletRequest,
+                HttpServletResponse servletResponse,
+                ServletContext servletContext) {
 
         ServletExecutionContext context = new ServletExecutionContext(
-                applyPreventingSessionCreation((HttpServletRequest) servletRequest),
-                (HttpServletResponse) servletResponse,
-                config.getServletContext());
+                applyPreventingSessionCreation(servletRequest),
+                servletResponse,
+                servletContext);
         
         HttpRequest request = context.getHttpRequest();
-        context.setHandlerQueue(this.handlerQueue)
+        PathScopedHandlerQueue scopedQueue = (pathScopedHandlerQueueIndex == null)
+                ? null
+                : pathScopedHandlerQueueIndex.find(request.getRequestPath());
+        if (scopedQueue != null) {
+            scopedQueue.handle(context, request);
+            return;
+        }
+        context.setHandlerQueue(handlerQueueForRequest())
                .handleNext(request);
     }
 
+    /**
+     * リクエストの処理に使用するハンドラキューを取得する。
+     * <p/>
+     * {@link HandlerLatencyRecorder}が設定されている場合は、各ハンドラを包んだハンドラキューを返す。
+     * 包んだハンドラキューは、本クラスのハンドラキューが変更された場合にのみ作り直す。
+     *
+     * @return ハンドラキュー
+     */
+    @SuppressWarnings("rawtypes")
+    private List<Handler> handlerQueueForRequest() {
+        HandlerLatencyRecorder recorder = handlerLatencyRecorder;
+        if (recorder == null) {
+            return handlerQueue;
+        }
+        InstrumentedHandlerQueue current = instrumentedHandlerQueue;
+        if (current == null || current.recorder != recorder || !current.isInstrumentedFrom(handlerQueue)) {
+            current = new InstrumentedHandlerQueue(handlerQueue, recorder);
+            instrumentedHandlerQueue = current;
+        }
+        return current.handlers;
+    }
+
     /**
      * セッション生成防止機能が有効な場合は、指定したリクエストオブジェクトにセッション生成防止機能を適用する。
      * <p/>
@@ -173,6 +225,66 @@ implements Filter {
         config = null;
     }
 
+    /** 特定のリクエストパスに対してのみ使用するハンドラキュー */
+    private List<PathScopedHandlerQueue> pathScopedHandlerQueues = new ArrayList<>();
+
+    /** リクエストパスから{@link PathScopedHandlerQueue}を選択する索引(設定されていない場合はnull) */
+    private PathScopedHandlerQueueIndex pathScopedHandlerQueueIndex;
+
+    /**
+     * 特定のリクエストパスに対してのみ使用するハンドラキューを設定する。
+     * <p/>
+     * リクエストパスが一致するハンドラキューが存在する場合、
+     * 本クラスのハンドラキューに代えて、そのハンドラキューでリクエストを処理する。
+     * 詳細は{@link PathScopedHandlerQueue}を参照。
+     *
+     * @param pathScopedHandlerQueues 特定のリクエストパスに対してのみ使用するハンドラキュー
+     */
+    public void setPathScopedHandlerQueues(List<PathScopedHandlerQueue> pathScopedHandlerQueues) {
+        this.pathScopedHandlerQueues = new ArrayList<>(pathScopedHandlerQueues);
+        this.pathScopedHandlerQueueIndex = pathScopedHandlerQueues.isEmpty()
+                ? null
+                : new PathScopedHandlerQueueIndex(this.pathScopedHandlerQueues);
+    }
+
+    /**
+     * 特定のリクエストパスに対してのみ使用するハンドラキューを取得する。
+     *
+     * @return 特定のリクエストパスに対してのみ使用するハンドラキュー
+     */
+    public List<PathScopedHandlerQueue> getPathScopedHandlerQueues() {
+        return Collections.unmodifiableList(pathScopedHandlerQueues);
+    }
+
+    /** ハンドラの処理時間を記録する{@link HandlerLatencyRecorder}(設定されていない場合はnull) */
+    private volatile HandlerLatencyRecorder handlerLatencyRecorder;
+
+    /** 各ハンドラを{@link HandlerLatencyRecorder}で包んだハンドラキュー(作成していない場合はnull) */
+    private volatile InstrumentedHandlerQueue instrumentedHandlerQueue;
+
+    /**
+     * ハンドラの処理時間を記録する{@link HandlerLatencyRecorder}を設定する。
+     * <p/>
+     * 設定した場合、本クラスのハンドラキューの各ハンドラの処理時間を記録する。
+     * {@link #getHandlerQueue()}が返すハンドラキューの各ハンドラは包まれない。
+     * {@link PathScopedHandlerQueue}のハンドラキューは記録の対象外とする。
+     *
+     * @param handlerLatencyRecorder ハンドラの処理時間を記録する{@link HandlerLatencyRecorder}
+     */
+    public void setHandlerLatencyRecorder(HandlerLatencyRecorder handlerLatencyRecorder) {
+        this.handlerLatencyRecorder = handlerLatencyRecorder;
+        this.instrumentedHandlerQueue = null;
+    }
+
+    /**
+     * ハンドラの処理時間を記録する{@link HandlerLatencyRecorder}を取得する。
+     *
+     * @return ハンドラの処理時間を記録する{@link HandlerLatencyRecorder}(設定されていない場合はnull)
+     */
+    public HandlerLatencyRecorder getHandlerLatencyRecorder() {
+        return handlerLatencyRecorder;
+    }
+
     /**
      * セッション生成を防止する機能を有効にするかどうかを設定する。
      * @param preventSessionCreation 有効にする場合は {@code true}
@@ -180,4 +292,50 @@ implements Filter {
     public void setPreventSessionCreation(boolean preventSessionCreation) {
         this.preventSessionCreation = preventSessionCreation;
     }
+
+    /**
+     * 各ハンドラを{@link HandlerLatencyRecorder}で包んだハンドラキュー。
+     */
+    @SuppressWarnings("rawtypes")
+    private static final class InstrumentedHandlerQueue {
+
+        /** 包む前のハンドラ */
+        private final Handler[] source;
+
+        /** 包んだハンドラキュー */
+        private final List<Handler> handlers;
+
+        /** 記録先 */
+        private final HandlerLatencyRecorder recorder;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param handlerQueue 包む前のハンドラキュー
+         * @param recorder 記録先
+         */
+        InstrumentedHandlerQueue(List<Handler> handlerQueue, HandlerLatencyRecorder recorder) {
+            this.source = handlerQueue.toArray(new Handler[0]);
+            this.handlers = recorder.instrument(handlerQueue);
+            this.recorder = recorder;
+        }
+
+        /**
+         * ハンドラキューから作成したものか否かを判定する。
+         *
+         * @param handlerQueue ハンドラキュー
+         * @return 全てのハンドラが同じ順序で同一の場合は{@code true}
+         */
+        boolean isInstrumentedFrom(List<Handler> handlerQueue) {
+            if (handlerQueue.size() != source.length) {
+                return false;
+            }
+            for (int i = 0; i < source.length; i++) {
+                if (handlerQueue.get(i) != source[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
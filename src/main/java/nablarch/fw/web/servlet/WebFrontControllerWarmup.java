@@ -0,0 +1,246 @@
+package nablarch.fw.web.servlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.ServletContext;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.ExecutionContext;
+
+/**
+ * アプリケーションの起動時に、疑似リクエストを{@link WebFrontController}のハンドラキューで処理し、
+ * リクエスト処理の主要な経路をJITコンパイルさせるクラス。
+ * <p/>
+ * 本クラスのコンポーネントを{@code webFrontControllerWarmup}という名前でリポジトリに登録すると、
+ * {@link NablarchServletContextListener}がリポジトリの初期化後に{@link #warmup(ServletContext)}を呼び出す。
+ * ウォームアップが終わるまで{@link NablarchServletContextListener#isInitializationCompleted()}は
+ * {@code true}を返さないため、これをレディネスプローブに使用すると、ウォームアップ後にのみリクエストを受け付けられる。
+ * <p/>
+ * 疑似リクエストは{@link #setRequests(List)}で定義したリクエストを順に繰り返し、
+ * {@link #setIterations(int)}で指定した回数、または{@link #setMaxDurationMillis(long)}で指定した時間に達するまで処理する。
+ * リクエスト、レスポンス、セッションはメモリ上の疑似オブジェクトを使用し、クッキーやレスポンスボディはクライアントに送信されない。
+ * ただし、ハンドラと業務アクションは通常のリクエストと同様に実行されるため、
+ * 状態を変更しないGETまたはHEADのリクエストのみ定義できる。
+ * <p/>
+ * 疑似リクエストにはリクエスト属性{@link #WARMUP_REQUEST_ATTRIBUTE}が設定される。
+ * アクセスログの出力とセッションストアへの保存を行うハンドラは、{@link #isWarmupRequest(ExecutionContext)}で疑似リクエストを判定し、
+ * ログのフォーマットとセッションエントリのエンコードまで行い、結果を出力や保存せずに破棄する。
+ * 処理時間の集計を行うハンドラは、疑似リクエストを集計に含めない。
+ * <p/>
+ * 疑似リクエストの処理で例外が発生した場合やステータスコードが500以上の場合は失敗として数え、
+ * 起動は継続する。
+ * <pre>{@code
+ * <component name="webFrontControllerWarmup" class="nablarch.fw.web.servlet.WebFrontControllerWarmup">
+ *   <property name="iterations" value="5000" />
+ *   <property name="requests">
+ *     <list>
+ *       <component class="nablarch.fw.web.servlet.WarmupRequest">
+ *         <property name="path" value="/action/menu" />
+ *       </component>
+ *     </list>
+ *   </property>
+ * </component>
+ * }</pre>
+ *
+ * @see WarmupRequest
+ */
+@Published(tag = "architect")
+public class WebFrontControllerWarmup {
+
+    /** 疑似リクエストであることを示すリクエスト属性の名前 */
+    public static final String WARMUP_REQUEST_ATTRIBUTE = WebFrontControllerWarmup.class.getName() + ".WARMUP_REQUEST";
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(WebFrontControllerWarmup.class);
+
+    /** 疑似リクエストの定義 */
+    private List<WarmupRequest> requests = new ArrayList<WarmupRequest>();
+
+    /** 疑似リクエストを処理する回数 */
+    private int iterations = 1000;
+
+    /** ウォームアップの最大時間(ミリ秒) */
+    private long maxDurationMillis = 60000L;
+
+    /** 疑似リクエストを処理する{@link WebFrontController}のコンポーネント名 */
+    private String controllerName = "webFrontController";
+
+    /**
+     * 疑似リクエストを処理する。
+     *
+     * @param servletContext サーブレットコンテキスト
+     * @return ウォームアップの結果
+     * @throws IllegalStateException {@link WebFrontController}がリポジトリに登録されていない場合
+     */
+    public WarmupResult warmup(ServletContext servletContext) {
+        WebFrontController controller = SystemRepository.get(controllerName);
+        if (controller == null) {
+            throw new IllegalStateException(
+                    "webFrontController must be configured in SystemRepository. controllerName = " + controllerName);
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxDurationMillis);
+        int processed = 0;
+        int failures = 0;
+        if (!requests.isEmpty()) {
+            for (; processed < iterations && System.nanoTime() < deadline; processed++) {
+                WarmupRequest definition = requests.get(processed % requests.size());
+                if (!process(controller, definition, servletContext, failures == 0)) {
+                    failures++;
+                }
+            }
+        }
+        WarmupResult result = new WarmupResult(
+                processed, failures, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        LOGGER.logInfo("[" + WebFrontControllerWarmup.class.getName() + "#warmup] warmup completed. "
+                + "requests = " + result.getRequestCount() + ", failures = " + result.getFailureCount()
+                + ", elapsed = " + result.getElapsedMillis() + "ms");
+        return result;
+    }
+
+    /**
+     * 疑似リクエストを1件処理する。
+     *
+     * @param controller {@link WebFrontController}
+     * @param definition 疑似リクエストの定義
+     * @param servletContext サーブレットコンテキスト
+     * @param logFailure 失敗した場合にログを出力するか否か
+     * @return 成功した場合は{@code true}
+     */
+    private boolean process(WebFrontController controller, WarmupRequest definition,
+                            ServletContext servletContext, boolean logFailure) {
+        WarmupServletResponse response = new WarmupServletResponse();
+        try {
+            controller.handle(new WarmupServletRequest(definition, servletContext), response, servletContext);
+        } catch (RuntimeException e) {
+            if (logFailure) {
+                LOGGER.logWarn("[" + WebFrontControllerWarmup.class.getName()
+                        + "#warmup] warmup request failed. path = " + definition.getPath(), e);
+            }
+            return false;
+        }
+        if (response.getStatus() >= 500) {
+            if (logFailure) {
+                LOGGER.logWarn("[" + WebFrontControllerWarmup.class.getName()
+                        + "#warmup] warmup request failed. path = " + definition.getPath()
+                        + ", status = " + response.getStatus());
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 処理中のリクエストがウォームアップの疑似リクエストか判定する。
+     *
+     * @param context 実行コンテキスト
+     * @return 疑似リクエストの場合は{@code true}
+     */
+    public static boolean isWarmupRequest(ExecutionContext context) {
+        return context.getRequestScopedVar(WARMUP_REQUEST_ATTRIBUTE) != null;
+    }
+
+    /**
+     * 疑似リクエストの定義を設定する。
+     *
+     * @param requests 疑似リクエストの定義
+     */
+    public void setRequests(List<WarmupRequest> requests) {
+        this.requests = new ArrayList<WarmupRequest>(requests);
+    }
+
+    /**
+     * 疑似リクエストを処理する回数を設定する。
+     * <p/>
+     * 定義した疑似リクエストを順に繰り返し、合計でこの回数だけ処理する。デフォルトは1000。
+     *
+     * @param iterations 疑似リクエストを処理する回数
+     */
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * ウォームアップの最大時間を設定する。
+     * <p/>
+     * この時間を超えた場合は、{@link #setIterations(int)}で指定した回数に達していなくても終了する。
+     * デフォルトは60000(60秒)。
+     *
+     * @param maxDurationMillis ウォームアップの最大時間(ミリ秒)
+     */
+    public void setMaxDurationMillis(long maxDurationMillis) {
+        this.maxDurationMillis = maxDurationMillis;
+    }
+
+    /**
+     * 疑似リクエストを処理する{@link WebFrontController}のコンポーネント名を設定する。
+     * <p/>
+     * デフォルトは{@code webFrontController}。
+     *
+     * @param controllerName コンポーネント名
+     */
+    public void setControllerName(String controllerName) {
+        this.controllerName = controllerName;
+    }
+
+    /**
+     * ウォームアップの結果。
+     */
+    @Published(tag = "architect")
+    public static final class WarmupResult {
+
+        /** 処理した疑似リクエストの件数 */
+        private final int requestCount;
+
+        /** 失敗した疑似リクエストの件数 */
+        private final int failureCount;
+
+        /** 所要時間(ミリ秒) */
+        private final long elapsedMillis;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param requestCount 処理した疑似リクエストの件数
+         * @param failureCount 失敗した疑似リクエストの件数
+         * @param elapsedMillis 所要時間(ミリ秒)
+         */
+        WarmupResult(int requestCount, int failureCount, long elapsedMillis) {
+            this.requestCount = requestCount;
+            this.failureCount = failureCount;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * 処理した疑似リクエストの件数を取得する。
+         *
+         * @return 件数
+         */
+        public int getRequestCount() {
+            return requestCount;
+        }
+
+        /**
+         * 失敗した疑似リクエストの件数を取得する。
+         *
+         * @return 件数
+         */
+        public int getFailureCount() {
+            return failureCount;
+        }
+
+        /**
+         * 所要時間を取得する。
+         *
+         * @return 所要時間(ミリ秒)
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+}
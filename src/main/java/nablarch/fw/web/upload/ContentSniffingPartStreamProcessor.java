@@ -0,0 +1,150 @@
+package nablarch.fw.web.upload;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * アップロードファイルの先頭のバイト列(マジックナンバー)からContent-Typeを判定する{@link PartStreamProcessor}実装クラス。<br/>
+ * <p>
+ * 処理結果は、判定したContent-Typeを表す文字列となる。判定できなかった場合はnullとなる。
+ * 名前のデフォルトは"sniffedContentType"。
+ * </p>
+ * <p>
+ * クライアントが送信したContent-Type({@link PartInfo#getContentType()})は改ざん可能なため、
+ * 実際のファイル形式の確認に使用できる。判定できる形式は以下の通り。
+ * </p>
+ * <ul>
+ *     <li>image/png</li>
+ *     <li>image/jpeg</li>
+ *     <li>image/gif</li>
+ *     <li>image/bmp</li>
+ *     <li>image/tiff</li>
+ *     <li>image/webp</li>
+ *     <li>application/pdf</li>
+ *     <li>application/zip</li>
+ *     <li>application/gzip</li>
+ * </ul>
+ */
+@Published(tag = "architect")
+public class ContentSniffingPartStreamProcessor implements PartStreamProcessor {
+
+    /** 任意のバイトを表す値 */
+    private static final int ANY = -1;
+
+    /** マジックナンバーとContent-Typeの組み合わせ */
+    private static final Signature[] SIGNATURES = {
+        new Signature("image/png", 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A),
+        new Signature("image/jpeg", 0xFF, 0xD8, 0xFF),
+        new Signature("image/gif", 'G', 'I', 'F', '8', '7', 'a'),
+        new Signature("image/gif", 'G', 'I', 'F', '8', '9', 'a'),
+        new Signature("image/bmp", 'B', 'M'),
+        new Signature("image/tiff", 'I', 'I', 0x2A, 0x00),
+        new Signature("image/tiff", 'M', 'M', 0x00, 0x2A),
+        new Signature("image/webp", 'R', 'I', 'F', 'F', ANY, ANY, ANY, ANY, 'W', 'E', 'B', 'P'),
+        new Signature("application/pdf", '%', 'P', 'D', 'F', '-'),
+        new Signature("application/zip", 'P', 'K', 0x03, 0x04),
+        new Signature("application/gzip", 0x1F, 0x8B),
+    };
+
+    /** 判定に必要な先頭のバイト数 */
+    private static final int HEADER_LENGTH;
+
+    static {
+        int max = 0;
+        for (Signature signature : SIGNATURES) {
+            max = Math.max(max, signature.bytes.length);
+        }
+        HEADER_LENGTH = max;
+    }
+
+    /** 名前 */
+    private String name = "sniffedContentType";
+
+    /** {@inheritDoc} */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 名前を設定する。
+     *
+     * @param name 名前
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Accumulator start(PartInfo part) {
+        return new Accumulator() {
+
+            /** 先頭のバイト列 */
+            private final byte[] header = new byte[HEADER_LENGTH];
+
+            /** 読み込んだ先頭のバイト数 */
+            private int length = 0;
+
+            @Override
+            public void update(byte[] b, int off, int len) {
+                int copy = Math.min(len, header.length - length);
+                if (copy > 0) {
+                    System.arraycopy(b, off, header, length, copy);
+                    length += copy;
+                }
+            }
+
+            @Override
+            public Object getResult() {
+                for (Signature signature : SIGNATURES) {
+                    if (signature.matches(header, length)) {
+                        return signature.contentType;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * マジックナンバーとContent-Typeの組み合わせ。
+     */
+    private static final class Signature {
+
+        /** Content-Type */
+        private final String contentType;
+
+        /** マジックナンバー({@link #ANY}は任意のバイト) */
+        private final int[] bytes;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param contentType Content-Type
+         * @param bytes       マジックナンバー
+         */
+        Signature(String contentType, int... bytes) {
+            this.contentType = contentType;
+            this.bytes = bytes;
+        }
+
+        /**
+         * 先頭のバイト列がマジックナンバーに一致するか判定する。
+         *
+         * @param header 先頭のバイト列
+         * @param length 先頭のバイト列の長さ
+         * @return 一致する場合は{@code true}
+         */
+        boolean matches(byte[] header, int length) {
+            if (length < bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] != ANY && bytes[i] != (header[i] & 0xFF)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
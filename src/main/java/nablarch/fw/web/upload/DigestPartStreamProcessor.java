@@ -0,0 +1,90 @@
+package nablarch.fw.web.upload;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * アップロードファイルのハッシュ値を算出する{@link PartStreamProcessor}実装クラス。<br/>
+ * <p>
+ * 処理結果は、ハッシュ値を小文字の16進数で表した文字列となる。
+ * アルゴリズムのデフォルトはSHA-256、名前のデフォルトは"digest"。
+ * </p>
+ */
+@Published(tag = "architect")
+public class DigestPartStreamProcessor implements PartStreamProcessor {
+
+    /** 16進数表現で使用する文字 */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** 名前 */
+    private String name = "digest";
+
+    /** アルゴリズム */
+    private String algorithm = "SHA-256";
+
+    /** {@inheritDoc} */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 名前を設定する。
+     *
+     * @param name 名前
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * アルゴリズムを設定する。<br/>
+     * {@link MessageDigest#getInstance(String)}に指定可能なアルゴリズム名を設定すること。
+     *
+     * @param algorithm アルゴリズム
+     * @throws IllegalArgumentException 使用できないアルゴリズムが指定された場合
+     */
+    public void setAlgorithm(String algorithm) {
+        createDigest(algorithm);
+        this.algorithm = algorithm;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Accumulator start(PartInfo part) {
+        final MessageDigest digest = createDigest(algorithm);
+        return new Accumulator() {
+            @Override
+            public void update(byte[] b, int off, int len) {
+                digest.update(b, off, len);
+            }
+
+            @Override
+            public Object getResult() {
+                byte[] hash = digest.digest();
+                char[] hex = new char[hash.length * 2];
+                for (int i = 0; i < hash.length; i++) {
+                    hex[2 * i] = HEX[(hash[i] & 0xF0) >>> 4];
+                    hex[2 * i + 1] = HEX[hash[i] & 0x0F];
+                }
+                return new String(hex);
+            }
+        };
+    }
+
+    /**
+     * {@link MessageDigest}を生成する。
+     *
+     * @param algorithm アルゴリズム
+     * @return {@link MessageDigest}
+     */
+    private static MessageDigest createDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("unsupported digest algorithm. [" + algorithm + "]", e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package nablarch.fw.web.upload;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * メモリ上に保持するアップロードファイルの合計サイズを管理するクラス。<br/>
+ * <p>
+ * 複数のリクエストから同時に使用されるため、スレッドセーフに実装している。
+ * </p>
+ *
+ * @see UploadSettings#setInMemoryBudget(long)
+ */
+final class InMemoryBudget {
+
+    /** 合計サイズの上限(バイト) */
+    private final long limit;
+
+    /** 使用中のサイズ(バイト) */
+    private final AtomicLong used = new AtomicLong();
+
+    /**
+     * コンストラクタ。
+     *
+     * @param limit 合計サイズの上限(バイト)
+     */
+    InMemoryBudget(long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * 指定されたサイズを確保する。<br/>
+     * 確保すると上限を超える場合は、何もせずに{@code false}を返す。
+     *
+     * @param bytes 確保するサイズ(バイト)
+     * @return 確保できた場合は{@code true}
+     */
+    boolean reserve(long bytes) {
+        while (true) {
+            long current = used.get();
+            long next = current + bytes;
+            if (next > limit) {
+                return false;
+            }
+            if (used.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 上限に関わらず、指定されたサイズを確保する。<br/>
+     * 一時ファイルを使用できないため、上限を超えてもメモリ上に保持する必要がある場合に使用する。
+     *
+     * @param bytes 確保するサイズ(バイト)
+     */
+    void forceReserve(long bytes) {
+        used.addAndGet(bytes);
+    }
+
+    /**
+     * 確保したサイズを解放する。
+     *
+     * @param bytes 解放するサイズ(バイト)
+     */
+    void release(long bytes) {
+        used.addAndGet(-bytes);
+    }
+
+    /**
+     * 使用中のサイズを取得する。
+     *
+     * @return 使用中のサイズ(バイト)
+     */
+    long getUsed() {
+        return used.get();
+    }
+}
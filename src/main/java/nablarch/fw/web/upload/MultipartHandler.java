@@ -1,14 +1,21 @@
 package nablarch.fw.web.upload;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+
 import nablarch.core.log.Logger;
 import nablarch.core.log.LoggerManager;
 import nablarch.core.util.Builder;
+import nablarch.core.util.annotation.Published;
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.results.BadRequest;
 import nablarch.fw.results.RequestEntityTooLarge;
+import nablarch.fw.results.ServiceUnavailable;
 import nablarch.fw.web.HttpRequest;
 import nablarch.fw.web.HttpRequestHandler;
 import nablarch.fw.web.HttpResponse;
+import nablarch.fw.web.TempStorageManager;
 import nablarch.fw.web.servlet.HttpRequestWrapper;
 
 /**
@@ -42,6 +49,20 @@ import nablarch.fw.web.servlet.HttpRequestWrapper;
  * <p>
  * アップロードに関する各種設定は{@link UploadSettings}から取得する。
  * </p>
+ * <p>
+ * ストリーミングモード({@link #setStreaming(boolean)})を有効にした場合、アップロードファイルは一時保存されない。
+ * アップロードファイルのパートは、HTTPリクエストのメッセージボディから直接読み込まれ、
+ * 以下のいずれかの方法で処理される。
+ * <ul>
+ *     <li>{@link #setPartConsumer(StreamingPartConsumer)}で設定した{@link StreamingPartConsumer}が、
+ *     後続のハンドラを呼び出す前に処理する。</li>
+ *     <li>{@link StreamingPartConsumer}が設定されていない場合、後続のハンドラ(業務アクション)が
+ *     {@link #getStreamingParts(ExecutionContext)}で取得したイテレータから順に処理する。</li>
+ * </ul>
+ * アップロードファイル以外のパラメータは、イテレータが読み進めた時点でHTTPリクエストパラメータに格納される。
+ * このため、アップロードファイルより後ろに送信されたパラメータは、イテレータを読み終わるまで取得できない。
+ * Content-Lengthの上限およびアップロードファイル数の上限は、ストリーミングモードでも同様にチェックされる。
+ * </p>
  *
  * @author T.Kawasaki
  */
@@ -50,9 +71,18 @@ public class MultipartHandler implements HttpRequestHandler {
     /** 各種設定値 */
     private UploadSettings settings = new UploadSettings();
 
+    /** ストリーミングモードを使用するか否か */
+    private boolean streaming = false;
+
+    /** ストリーミングモードでアップロードファイルを処理するコンシューマ */
+    private StreamingPartConsumer partConsumer;
+
     /** マルチパート処理状態を格納するキー値 */
     private static final String COMPLETED_FLG_KEY = "nablarch_multipart_completed_flg";
 
+    /** ストリーミングモードのイテレータを格納するキー値 */
+    private static final String STREAMING_PARTS_KEY = "nablarch_multipart_streaming_parts";
+
     /** ロガー */
     private static final Logger LOGGER = LoggerManager.get(MultipartHandler.class);
 
@@ -65,6 +95,47 @@ public class MultipartHandler implements HttpRequestHandler {
         this.settings = settings;
     }
 
+    /**
+     * ストリーミングモードを使用するか否かを設定する。<br/>
+     * デフォルトは{@code false}(アップロードファイルを一時保存する)。
+     *
+     * @param streaming ストリーミングモードを使用する場合は{@code true}
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * ストリーミングモードでアップロードファイルを処理するコンシューマを設定する。<br/>
+     * 本プロパティを設定した場合、ストリーミングモードが有効になる。
+     *
+     * @param partConsumer アップロードファイルを処理するコンシューマ
+     */
+    public void setPartConsumer(StreamingPartConsumer partConsumer) {
+        this.partConsumer = partConsumer;
+        this.streaming = true;
+    }
+
+    /**
+     * ストリーミングモードで読み込むアップロードファイルのイテレータを取得する。<br/>
+     * <p>
+     * 本メソッドは、ストリーミングモードの{@link MultipartHandler}の後続ハンドラから呼び出す。
+     * イテレータが返すパートの内容は、次のパートに進んだ時点で読み捨てられる。
+     * </p>
+     * <p>
+     * ストリーミングモードでない場合や、{@link StreamingPartConsumer}が設定されている場合は、
+     * 空のイテレータを返す。
+     * </p>
+     *
+     * @param context 実行コンテキスト
+     * @return アップロードファイルのイテレータ
+     */
+    @Published
+    public static Iterator<StreamingPart> getStreamingParts(ExecutionContext context) {
+        Iterator<StreamingPart> parts = context.getRequestScopedVar(STREAMING_PARTS_KEY);
+        return parts == null ? Collections.<StreamingPart>emptyIterator() : parts;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -80,8 +151,28 @@ public class MultipartHandler implements HttpRequestHandler {
             return context.handleNext(request);
         }
 
+        // 一時ファイルの使用サイズは、後続のハンドラを含めたリクエストの処理終了時に解放する
+        boolean tempStorageStarted = TempStorageManager.beginRequest();
+        try {
+            return streaming ? handleStreaming(wrapper, context) : handleParts(wrapper, context);
+        } finally {
+            if (tempStorageStarted) {
+                TempStorageManager.endRequest();
+            }
+        }
+    }
+
+    /**
+     * マルチパートを解析し、アップロードファイルを一時保存してから後続のハンドラを呼び出す。
+     *
+     * @param request {@link HttpRequestWrapper}
+     * @param context 実行コンテキスト
+     * @return HTTPレスポンス
+     */
+    private HttpResponse handleParts(HttpRequestWrapper request, ExecutionContext context) {
+
         // マルチパートの解析
-        final MultipartParser parser = createParser(wrapper, settings);
+        final MultipartParser parser = createParser(request, settings);
         final PartInfoHolder parts;
         try {
             parts = parser.parse();
@@ -91,6 +182,9 @@ public class MultipartHandler implements HttpRequestHandler {
         } catch (RequestEntityTooLarge e) {
             context.setException(e);
             return new HttpResponse(e.getStatusCode());
+        } catch (ServiceUnavailable e) {
+            context.setException(e);
+            return new HttpResponse(e.getStatusCode());
         }
 
         // マルチパートの解析が終わったことをリクエストスコープに設定
@@ -110,6 +204,63 @@ public class MultipartHandler implements HttpRequestHandler {
         }
     }
 
+    /**
+     * ストリーミングモードでマルチパートを処理する。
+     *
+     * @param request {@link HttpRequestWrapper}
+     * @param context 実行コンテキスト
+     * @return HTTPレスポンス
+     */
+    private HttpResponse handleStreaming(HttpRequestWrapper request, ExecutionContext context) {
+
+        final MultipartParser parser = createParser(request, settings);
+        final Iterator<StreamingPart> parts = parser.streamingIterator();
+
+        // マルチパートの解析が始まったことをリクエストスコープに設定
+        context.setRequestScopedVar(COMPLETED_FLG_KEY, Boolean.TRUE);
+        try {
+            try {
+                if (partConsumer == null) {
+                    context.setRequestScopedVar(STREAMING_PARTS_KEY, parts);
+                } else {
+                    consumeParts(parts, request, context);
+                }
+            } catch (BadRequest e) {
+                context.setException(e);
+                return new HttpResponse(e.getStatusCode());
+            } catch (RequestEntityTooLarge e) {
+                context.setException(e);
+                return new HttpResponse(e.getStatusCode());
+            }
+            // 以降のハンドラを実行
+            return context.handleNext(request);
+        } finally {
+            // 読み込まれなかったパートを読み捨てる
+            parser.finish();
+        }
+    }
+
+    /**
+     * {@link StreamingPartConsumer}でアップロードファイルを処理する。
+     *
+     * @param parts   アップロードファイルのイテレータ
+     * @param request HTTPリクエスト
+     * @param context 実行コンテキスト
+     */
+    private void consumeParts(Iterator<StreamingPart> parts, HttpRequest request, ExecutionContext context) {
+        while (parts.hasNext()) {
+            final StreamingPart part = parts.next();
+            try {
+                partConsumer.consume(part, request, context);
+            } catch (IOException e) {
+                throw new nablarch.fw.results.InternalError(e);
+            }
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.logInfo("\t" + part);
+            }
+        }
+    }
+
     /**
      * {@link MultipartParser}インスタンスを生成する。
      *
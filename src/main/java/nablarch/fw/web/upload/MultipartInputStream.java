@@ -2,18 +2,25 @@ package nablarch.fw.web.upload;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 
 import jakarta.servlet.ServletInputStream;
 
 import nablarch.core.log.Logger;
 import nablarch.core.log.LoggerManager;
-import nablarch.core.util.StringUtil;
 import nablarch.fw.results.BadRequest;
 import nablarch.fw.results.RequestEntityTooLarge;
 
 /**
  * マルチパート用の入力ストリーム。<br/>
  * 境界文字列を認識してストリームを読み込む機能を提供する。
+ * また、読み込みバイト数およびアップロードファイル数の上限チェックを行う。
+ * <p/>
+ * サーブレットの入力ストリームは、1つの読み込みバッファを介してまとめて読み込む。
+ * パートの終端は、バッファ上で「改行 + 境界文字列」をBoyer-Moore-Horspool法で検索して判定し、
+ * 境界文字列の直前の2バイト(改行)を除いたデータをパートの内容とする。
  *
  * @author T.Kawasaki
  */
@@ -25,6 +32,18 @@ class MultipartInputStream {
     /** ストリーム終端に達したことを表す定数 */
     private static final int EOS = -1;
 
+    /** 読み込みバッファのサイズ */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** ヘッダ行の最大サイズ */
+    private static final int LINE_LIMIT_SIZE = 10 * 1024;
+
+    /** 改行(LF) */
+    private static final byte LF = '\n';
+
+    /** パートの内容の末尾から取り除くバイト数(境界文字列の直前の\r\n) */
+    private static final int TRAILING_CRLF_LENGTH = 2;
+
     /** 入力ストリーム */
     private final ServletInputStream in;
 
@@ -34,38 +53,60 @@ class MultipartInputStream {
     /** 読み込み許容最大値 */
     private final int limit;
 
+    /** アップロードファイル数の上限 */
+    private final int maxFileCount;
+
     /** 現在までに読みこまれたバイト数 */
     private int readCount = 0;
 
-    /** キャッシュしているバイト */
-    private byte[] cache;
+    /** 現在までに読み込みを開始したアップロードファイル数 */
+    private int fileCount = 0;
 
-    /** キャッシュへ転送が終わったバイト数(ストリーム→キャッシュ用)。fill()でカウントアップ。 */
-    private int count;
+    /** 読み込みバッファ(全パートで再利用する) */
+    private final byte[] buf = new byte[BUFFER_SIZE];
 
-    /** 現在のキャッシュ位置(キャッシュ→バッファ用)。read()でカウントアップ。 */
-    private int pos;
+    /** バッファ内の未読データの開始位置 */
+    private int start = 0;
 
-    /** 境界文字列が見つかった場合(該当Contentが終わりに達した時) true */
-    private boolean eof;
+    /** バッファ内の未読データの終了位置 */
+    private int end = 0;
+
+    /** サーブレットの入力ストリームが終端に達した場合 true */
+    private boolean streamEnded;
 
     /** 境界文字列 */
-    private String boundary;
+    private byte[] boundary;
+
+    /** 検索パターン(改行 + 境界文字列) */
+    private byte[] delimiter;
+
+    /** 検索パターンのずらし表(Boyer-Moore-Horspool法) */
+    private int[] shiftTable;
+
+    /** 境界文字列の検索を再開する位置(検索済みの範囲は再検索しない) */
+    private int searchFrom;
+
+    /** 現在のパートの先頭をまだ読み込んでいない場合 true */
+    private boolean partStart;
+
+    /** 境界文字列が見つかった場合(該当Contentが終わりに達した時) true */
+    private boolean eof;
 
     /**
      * コンストラクタ。
      *
-     * @param in    　入力ストリーム
-     * @param ctx   コンテキスト
-     * @param limit 読み込み許容最大値
+     * @param in           入力ストリーム
+     * @param ctx          コンテキスト
+     * @param limit        読み込み許容最大値
+     * @param maxFileCount アップロードファイル数の上限
      */
-    MultipartInputStream(ServletInputStream in, MultipartContext ctx, int limit) {
+    MultipartInputStream(ServletInputStream in, MultipartContext ctx, int limit, int maxFileCount) {
         this.in = in;
         this.ctx = ctx;
         this.limit = limit;
+        this.maxFileCount = maxFileCount;
     }
 
-
     /**
      * ストリームから1行の読み込みを行う。<br/>
      * ストリームから識別子を取り出すときにのみ使用される。
@@ -74,38 +115,39 @@ class MultipartInputStream {
      * @throws IOException 入出力例外
      */
     String readLine() throws IOException {
-        final int bufferSize = 4 * 1024;
-        final int limitSize = 10 * 1024;
-
-        ByteArrayOutputStream out = new ByteArrayOutputStream(bufferSize);
-        byte[] buf = new byte[bufferSize];
-        int readBytes;
-        do {
-            try {
-                readBytes = in.readLine(buf, 0, buf.length);
-            } catch (IOException e) {
-                // クライアントから切断された場合の処理。
-                LOG.logWarn("incomplete upload data.", e);
-                throw new BadRequest("incomplete uploading", e);
+        int scanned = 0;   // 改行を検索済みのバイト数(未読データの先頭からの相対位置)
+        int lineEnd;
+        while (true) {
+            lineEnd = indexOf(LF, start + scanned, end);
+            if (lineEnd != EOS) {
+                lineEnd++;   // 改行を含める
+                break;
             }
-            if (readBytes != EOS) {
-                addReadCount(readBytes);
-                out.write(buf, 0, readBytes);
+            scanned = end - start;
+            if (scanned > LINE_LIMIT_SIZE || !fillBuffer()) {
+                lineEnd = end;
+                break;
             }
-        } while (readBytes == buf.length && out.size() <= limitSize);
+        }
 
-        if (out.size() == 0) {
+        int size = lineEnd - start;
+        if (size == 0) {
             return null;
         }
-
-        if (out.size() > limitSize) {
+        if (size > LINE_LIMIT_SIZE) {
             // Boundary内のヘッダ行のサイズが10KBを超えた場合は、リクエストが改竄されていると判断する。
-            throw new BadRequest("header record size is too large. header record size = [" + out.size() + ']');
+            throw new BadRequest("header record size is too large. header record size = [" + size + ']');
         }
 
-        String line = new String(out.toByteArray(), ctx.getRequestCharacterEncoding());
-        line = StringUtil.chomp(line, "\n");
-        line = StringUtil.chomp(line, "\r");
+        int len = size;
+        if (buf[start + len - 1] == LF) {
+            len--;
+        }
+        if (len > 0 && buf[start + len - 1] == '\r') {
+            len--;
+        }
+        String line = decode(buf, start, len);
+        start = lineEnd;
         return line;
     }
 
@@ -123,155 +165,293 @@ class MultipartInputStream {
                 throw new BadRequest("no data found.");
             }
         } while (!line.startsWith(boundary));
-        this.boundary = boundary;
+        setBoundary(boundary);
     }
 
     /**
-     * pbuf.length読み込み終わった時もしくは、count - pos が2以下(
-     * つまりキャッシュの最後まで読込み完了)時に本メソッドが終了する。
+     * 境界文字列を設定し、検索パターンのずらし表を作成する。
+     *
+     * @param boundaryString 境界文字列
+     */
+    private void setBoundary(String boundaryString) {
+        boundary = boundaryString.getBytes(StandardCharsets.ISO_8859_1);
+        delimiter = new byte[boundary.length + 1];
+        delimiter[0] = LF;
+        System.arraycopy(boundary, 0, delimiter, 1, boundary.length);
+
+        final int m = delimiter.length;
+        shiftTable = new int[256];
+        for (int i = 0; i < shiftTable.length; i++) {
+            shiftTable[i] = m;
+        }
+        for (int i = 0; i < m - 1; i++) {
+            shiftTable[delimiter[i] & 0xFF] = m - 1 - i;
+        }
+    }
+
+    /**
+     * 現在のパートの内容を読み込む。<br/>
+     * パートの終端に達している場合は-1を返す。
      *
      * @param pbuf バッファ
      * @return 読み込みバイト数
      * @throws IOException 入出力例外
      */
     int read(byte[] pbuf) throws IOException {
-        // バッファの位置。
-        int readBytesNum;
-
-        int rest = countRestLength();
-        // 読み込みが最初の場合は、下記条件式が成立する。
-        // ※count == 0 & pos == 0だから。
-        if (rest <= 0) {
-            fill(); // ストリームからキャッシュにデータを溜め込む処理。
-            rest = countRestLength();
-            if (rest <= 0) {
-                // キャッシュには何も読込まれなかった。
-                return EOS;
-            }
-        }
+        return read(pbuf, 0, pbuf.length);
+    }
 
-        // restはキャッシュ内に残っている転送が済んでいない
-        // データのサイズを表している。
-        // restが一杯残っている場合は、pbuf.lengthが入る。
-        int transferredBytesNum = Math.min(pbuf.length, rest);
-        System.arraycopy(cache, pos, pbuf, 0, transferredBytesNum);
-        pos += transferredBytesNum; // バッファへの転送が終わったキャッシュの位置を更新。
-        readBytesNum = transferredBytesNum;
-
-        // バッファが溜まるまで、残りを読み込む。
-        // ※読み込みが途中の場合(キャッシュがバッファに入りきらなかった場合)、
-        // 　下記はスキップされる。
-        while (readBytesNum < pbuf.length) {
-            fill(); // ストリームからキャッシュにデータを溜め込む。
-            rest = countRestLength();
-            if (rest <= 0) {
-                return readBytesNum; // キャッシュには何も読込まれなかった。
-            }
-            transferredBytesNum = Math.min(pbuf.length - readBytesNum, rest);
-            System.arraycopy(cache, pos, pbuf, readBytesNum, transferredBytesNum);
-            pos += transferredBytesNum;
-            readBytesNum += transferredBytesNum;
+    /**
+     * 現在のパートの内容を読み込む。<br/>
+     * パートの終端に達している場合は-1を返す。
+     *
+     * @param pbuf バッファ
+     * @param off  バッファの書き込み開始位置
+     * @param len  読み込む最大バイト数
+     * @return 読み込みバイト数
+     * @throws IOException 入出力例外
+     */
+    int read(byte[] pbuf, int off, int len) throws IOException {
+        int available = available();
+        if (available == EOS) {
+            return EOS;
         }
-        return readBytesNum;
+        int n = Math.min(len, available);
+        System.arraycopy(buf, start, pbuf, off, n);
+        start += n;
+        return n;
     }
 
     /**
-     * パラメータを読みとる。<br/>
+     * 現在のパートの内容を出力ストリームに書き込む。<br/>
+     * 読み込みバッファから直接書き込むため、中間バッファへのコピーは発生しない。
      *
-     * @return パラメータ文字列
+     * @param out 出力ストリーム
+     * @return 書き込んだバイト数
      * @throws IOException 入出力例外
      */
-    String readParam() throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
-        byte[] buf256 = new byte[256];
-        int readBytes;
-        while ((readBytes = read(buf256)) != EOS) {
-            out.write(buf256, 0, readBytes);
+    long transferTo(OutputStream out) throws IOException {
+        long total = 0;
+        int available;
+        while ((available = available()) != EOS) {
+            out.write(buf, start, available);
+            start += available;
+            total += available;
         }
-        return out.toString(ctx.getRequestCharacterEncoding());
+        return total;
     }
 
     /**
-     * 読み込まれるべき残りのバイト数を計算する。
+     * パラメータを読みとる。<br/>
      *
-     * @return バイト数
+     * @return パラメータ文字列
+     * @throws IOException 入出力例外
      */
-    private int countRestLength() {
-        // 読み込まれるデータの最後に余分な2バイトのデータが存在する。
-        // ので差し引いたバイト数が、残りの読込まなければいけないバイト数。
-        return count - pos - 2;
+    String readParam() throws IOException {
+        int available = available();
+        if (available == EOS) {
+            return "";
+        }
+        if (delimiterFoundAt(start + available)) {
+            // パラメータ全体がバッファ上にある場合は、コピーせずに変換する。
+            String value = decode(buf, start, available);
+            start += available;
+            available();  // 境界文字列を読み進める
+            return value;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(512, available));
+        transferTo(out);
+        return out.toString(ctx.getRequestCharacterEncoding());
     }
 
     /**
-     * ストリームからboundary文字列までをキャッシュに格納する。<br/>
-     * もしくは、キャッシュサイズまでストリームのデータを読込む。
-     * 境界文字列に出会っている場合は、何も行わない。
+     * 現在のパートで、バッファから連続して読み込めるバイト数を返す。<br/>
+     * 必要に応じてストリームからバッファにデータを読み込む。
+     * パートの終端に達した場合は、境界文字列の行を読み進めて-1を返す。
      *
+     * @return 読み込めるバイト数(パートの終端に達した場合は-1)
      * @throws IOException 入出力例外
      */
-    private void fill() throws IOException {
-        // boundaryに出会っていたらeofがtrueになっている。
+    private int available() throws IOException {
         if (eof) {
-            return;
+            return EOS;
         }
-        // ストリームの続きの読み込みを行う場合は、下記条件式が成立する。
-        // ※各パートのリード前にcount = 0を行なっているため、最初の読込みでは
-        //   成立しない。
-        // この時(count - pos == 2)が成立しない時は、キャッシュへのアップロードが
-        // 終了していないことを示す。(ブラウザのストップボタン等)
-        if (count > 0) {
-            // 連結部分なので、最後の2バイトは切り捨てるのではなく、
-            // 次のキャッシュの先頭につけている。
-            if (count - pos == 2) {
-                System.arraycopy(cache, pos, cache, 0, 2);
-                count = 2;
-                pos = 0;
-            } else {
-                throw new BadRequest("incomplete uploading.");
+        if (partStart) {
+            // 内容が空のパート(ヘッダ行の直後が境界文字列)
+            while (end - start < boundary.length && fillBuffer()) {
+                // NOP
+            }
+            partStart = false;
+            searchFrom = start;
+            if (startsWith(boundary, start)) {
+                return finishPart(start);
             }
         }
-        int read = 0;
-        int boundaryLength = boundary.length();
-        int maxRead = cache.length - boundaryLength - 2; // 2は\r\n
-        // ストリームからキャッシュへの転送を行う。
-        while (count < maxRead) {
-            try {
-                read = in.readLine(cache, count, cache.length - count);
-            } catch (IOException e) {
-                // データ送信中にクライアントから切断(ブラウザの中止)された場合の処理
-                // 発生したエラーをワーニングレベルでログ出力し、不正なリクエストデータであることを示すBadRequestを送出する。
-                LOG.logWarn("incomplete upload data.", e);
-                throw new BadRequest("incomplete uploading", e);
+        while (true) {
+            int found = search(Math.max(searchFrom, start), end);
+            if (found != EOS) {
+                searchFrom = found;
+                // 境界文字列の直前の2バイト(\r\n)を除いた位置までがパートの内容
+                int contentEnd = Math.max(start, found + 1 - TRAILING_CRLF_LENGTH);
+                if (contentEnd > start) {
+                    return contentEnd - start;
+                }
+                return finishPart(found + 1);
+            }
+            // 境界文字列の一部である可能性がある末尾を残して、パートの内容とする。
+            searchFrom = Math.max(start, end - delimiter.length + 1);
+            int safeEnd = end - delimiter.length - 1;
+            if (safeEnd > start) {
+                return safeEnd - start;
             }
-            // boundary文字列が最後に来ないのに、ストリームが終わった場合は
-            // 意図しないエラーである。
-            if (read == EOS) {
+            if (!fillBuffer()) {
+                // boundary文字列が最後に来ないのに、ストリームが終わった場合は
+                // 意図しないエラーである。
                 throw new BadRequest("input stream unexpectedly ended before boundary appears.");
             }
-            addReadCount(read);
-            // 読み込んだバッファがboundary文字列だったらeofを立てる。
-            if (read >= boundaryLength) {
-                eof = true;
-                for (int i = 0; i < boundaryLength; i++) {
-                    if (boundary.charAt(i) != cache[count + i]) {
-                        eof = false;
-                        // 直前のfor文から抜ける。
-                        break;
-                    }
-                }
-                if (eof) {
-                    // while文から抜ける。
-                    // キャッシュの最後がboundary文字列である状態。
-                    // count +=が実行されないので、キャッシュ内に
-                    // boundary文字列があるが、キャッシュからバッファへは
-                    // 転送されない。
-                    break;
+        }
+    }
+
+    /**
+     * 指定位置の直前で境界文字列が見つかっているか否か。
+     *
+     * @param contentEnd パートの内容の終了位置
+     * @return 境界文字列が見つかっている場合は true
+     */
+    private boolean delimiterFoundAt(int contentEnd) {
+        int found = contentEnd - 1 + TRAILING_CRLF_LENGTH;
+        return found + delimiter.length <= end && startsWith(delimiter, found);
+    }
+
+    /**
+     * パートの終端処理を行う。<br/>
+     * 境界文字列の行を読み進め、以降のパートの読み込みに備える。
+     *
+     * @param boundaryStart 境界文字列の開始位置
+     * @return -1
+     * @throws IOException 入出力例外
+     */
+    private int finishPart(int boundaryStart) throws IOException {
+        start = boundaryStart;
+        eof = true;
+        readLine();
+        return EOS;
+    }
+
+    /**
+     * バッファの指定範囲から検索パターン(改行 + 境界文字列)を検索する。<br/>
+     * Boyer-Moore-Horspool法を使用する。
+     *
+     * @param from 検索開始位置
+     * @param to   検索終了位置(この位置は含まない)
+     * @return 検索パターンの開始位置(見つからない場合は-1)
+     */
+    private int search(int from, int to) {
+        final byte[] pattern = delimiter;
+        final int m = pattern.length;
+        final int last = m - 1;
+        int i = from;
+        while (i <= to - m) {
+            int j = last;
+            while (buf[i + j] == pattern[j]) {
+                if (j == 0) {
+                    return i;
                 }
+                j--;
+            }
+            i += shiftTable[buf[i + last] & 0xFF];
+        }
+        return EOS;
+    }
+
+    /**
+     * バッファの指定位置が、指定されたバイト列で始まっているか否か。
+     *
+     * @param bytes バイト列
+     * @param pos   位置
+     * @return 始まっている場合は true
+     */
+    private boolean startsWith(byte[] bytes, int pos) {
+        if (end - pos < bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (buf[pos + i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * バッファの指定範囲からバイトを検索する。
+     *
+     * @param b    検索するバイト
+     * @param from 検索開始位置
+     * @param to   検索終了位置(この位置は含まない)
+     * @return 見つかった位置(見つからない場合は-1)
+     */
+    private int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) {
+                return i;
             }
-            count += read;   // 読み込んだcountを増やす。
         }
+        return EOS;
     }
 
+    /**
+     * バイト列をリクエストのエンコーディングで文字列に変換する。
+     *
+     * @param bytes バイト列
+     * @param off   開始位置
+     * @param len   長さ
+     * @return 文字列
+     * @throws UnsupportedEncodingException エンコーディングがサポートされていない場合
+     */
+    private String decode(byte[] bytes, int off, int len) throws UnsupportedEncodingException {
+        return new String(bytes, off, len, ctx.getRequestCharacterEncoding());
+    }
+
+    /**
+     * ストリームからバッファにデータを読み込む。<br/>
+     * 未読データはバッファの先頭に詰めてから読み込む。
+     *
+     * @return データを読み込めた場合は true。ストリームの終端に達した場合は false
+     * @throws IOException 入出力例外
+     */
+    private boolean fillBuffer() throws IOException {
+        if (streamEnded) {
+            return false;
+        }
+        if (start > 0) {
+            int rest = end - start;
+            System.arraycopy(buf, start, buf, 0, rest);
+            searchFrom = Math.max(0, searchFrom - start);
+            start = 0;
+            end = rest;
+        }
+        if (end == buf.length) {
+            // 読み込み位置の調整で空きが作れない(通常、発生しない)
+            return false;
+        }
+        int read;
+        try {
+            read = in.read(buf, end, buf.length - end);
+        } catch (IOException e) {
+            // データ送信中にクライアントから切断(ブラウザの中止)された場合の処理
+            // 発生したエラーをワーニングレベルでログ出力し、不正なリクエストデータであることを示すBadRequestを送出する。
+            LOG.logWarn("incomplete upload data.", e);
+            throw new BadRequest("incomplete uploading", e);
+        }
+        if (read == EOS) {
+            streamEnded = true;
+            return false;
+        }
+        addReadCount(read);
+        end += read;
+        return true;
+    }
 
     /**
      * 読み込みバイト数を加算する。
@@ -287,8 +467,25 @@ class MultipartInputStream {
         }
     }
 
+    /**
+     * アップロードファイル数を加算する。<br/>
+     * ファイルのパートを読み込む前に呼び出す必要がある。
+     *
+     * @throws BadRequest アップロードファイル数の上限を超過した場合
+     */
+    void countFile() throws BadRequest {
+        fileCount++;
+        if (0 <= maxFileCount && maxFileCount < fileCount) {
+            String message = "The uploaded file count is over than max count.";
+            LOG.logError(message + " (maxFileCount=" + maxFileCount + ")");
+            throw new BadRequest(message);
+        }
+    }
+
     /** 何もせずにrequestを消化する。 */
     void consume() {
+        start = 0;
+        end = 0;
         try {
             while (in.skip(1024 * 1024) > 0) { // SUPPRESS CHECKSTYLE 読み飛ばしのため
                 // NOP
@@ -303,9 +500,8 @@ class MultipartInputStream {
      * パートひとつ読み取る毎に初期化する必要がある。
      */
     void reset() {
-        cache = new byte[64 * 1024];
-        count = 0;
-        pos = 0;
+        partStart = true;
         eof = false;
+        searchFrom = start;
     }
 }
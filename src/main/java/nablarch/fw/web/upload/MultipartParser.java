@@ -3,10 +3,17 @@ package nablarch.fw.web.upload;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import jakarta.servlet.ServletInputStream;
 
 import nablarch.core.log.Logger;
@@ -15,10 +22,13 @@ import nablarch.core.util.FileUtil;
 import nablarch.core.util.StringUtil;
 import nablarch.fw.results.BadRequest;
 import nablarch.fw.results.RequestEntityTooLarge;
+import nablarch.fw.results.ServiceUnavailable;
+import nablarch.fw.web.TempStorageManager;
 
 /**
  * multipart/form-dataの解析クラス。<br/>
  * マルチパートの解析、アップロードファイルの一時保存を行う。
+ * また、一時保存を行わずにアップロードファイルを順に読み込むイテレータを提供する。
  *
  * @author T.Kawasaki
  */
@@ -33,11 +43,26 @@ class MultipartParser {
     /** HTTPリクエストパラメータ */
     private final Map<String, String[]> paramMap;
 
+    /** 解析中に追加したパラメータの値(既存の値を含む) */
+    private final Map<String, List<String>> addedParams = new HashMap<String, List<String>>();
+
+    /** HTTPリクエストパラメータに未反映のパラメータ名 */
+    private final Set<String> unflushedParams = new LinkedHashSet<String>();
+
     /** 一時ファイル保存ディレクトリ */
     private final File saveDir;
-    
-    /** アップロードファイル数の上限 */
-    private final int maxFileCount;
+
+    /** メモリ上に保持するアップロードファイルのサイズの上限 */
+    private final int inMemoryThreshold;
+
+    /** メモリ上に保持するアップロードファイルの合計サイズ */
+    private final InMemoryBudget inMemoryBudget;
+
+    /** 一時ファイルの上限を超える場合にメモリ上に保持するか否か */
+    private final boolean memoryFallback;
+
+    /** アップロードファイルの内容を一時保存と同時に処理する{@link PartStreamProcessor} */
+    private final List<PartStreamProcessor> processors;
 
     /** ロガー */
     private static final Logger LOGGER = LoggerManager.get(MultipartParser.class);
@@ -52,11 +77,15 @@ class MultipartParser {
      */
     MultipartParser(ServletInputStream in, Map<String, String[]> paramMap,
                     UploadSettings settings, MultipartContext ctx) {
-        this.in = new MultipartInputStream(in, ctx, settings.getContentLengthLimit());
+        this.in = new MultipartInputStream(in, ctx, settings.getContentLengthLimit(), settings.getMaxFileCount());
         this.ctx = ctx;
         this.paramMap = paramMap;
         this.saveDir = settings.getSaveDir();
-        this.maxFileCount = settings.getMaxFileCount();
+        // 自動クリーニングを行わない場合は、メモリ上に保持した内容を解放できないため常に一時ファイルに保存する
+        this.inMemoryThreshold = settings.isAutoCleaning() ? settings.getInMemoryThreshold() : 0;
+        this.inMemoryBudget = settings.getInMemoryBudget();
+        this.memoryFallback = settings.isAutoCleaning() && TempStorageManager.get().isMemoryFallback();
+        this.processors = settings.getPartStreamProcessors();
     }
 
     /**
@@ -101,6 +130,14 @@ class MultipartParser {
                 LOGGER.logWarn("failed to delete temp file.", t);
             }
             throw e;
+        } catch (ServiceUnavailable e) {
+            // 一時ファイルの上限を超えた場合は、保存したファイルを削除する
+            try {
+                parts.cleanup();
+            } catch (Throwable t) {
+                LOGGER.logWarn("failed to delete temp file.", t);
+            }
+            throw e;
         } catch (Exception e) {   // IOException or RuntimeException
             // 例外発生時、ストリームを読み切って、それまで保存したファイルを全削除する。
             try {
@@ -128,6 +165,7 @@ class MultipartParser {
 
         // マルチパートを読み込み
         readPart(parts);
+        flushParams();
     }
 
     /**
@@ -161,25 +199,12 @@ class MultipartParser {
      * @throws IOException 入出力例外
      */
     private void readPart(PartInfoHolder result) throws IOException {
-        String line = in.readLine();
-        int fileCount = 0;
-        while (!StringUtil.isNullOrEmpty(line)) {
+        PartInfo part;
+        while ((part = nextPart()) != null) {
             // 1パートごとの処理
-            in.reset();
-            // パート内のヘッダ行を読みとる。
-            List<String> headers = getHeaderLinesInPart(line);
-            PartInfo part = PartInfo.newInstance(headers);
-            String name = part.getName();
             String value;
             if (part.isFile()) {
                 // ファイルアップロードのパート
-                fileCount++;
-                if (0 <= maxFileCount && maxFileCount < fileCount) {
-                    String message = "The uploaded file count is over than max count.";
-                    LOGGER.logError(message + " (maxFileCount=" + maxFileCount + ")");
-                    throw new BadRequest(message);
-                }
-                
                 try {
                     write(part);             // ファイルに出力
                 } finally {
@@ -192,8 +217,188 @@ class MultipartParser {
                 value = in.readParam();
             }
             // HTTPリクエストパラメータに追加
-            addParam(name, value);
-            line = in.readLine();
+            addParam(part.getName(), value);
+        }
+    }
+
+    /**
+     * 次のパートのヘッダ行を読み込む。<br/>
+     * ファイルアップロードのパートの場合は、アップロードファイル数の上限チェックを行う。
+     *
+     * @return パート情報(パートが存在しない場合はnull)
+     * @throws IOException 入出力例外
+     */
+    private PartInfo nextPart() throws IOException {
+        String line = in.readLine();
+        if (StringUtil.isNullOrEmpty(line)) {
+            return null;
+        }
+        in.reset();
+        // パート内のヘッダ行を読みとる。
+        List<String> headers = getHeaderLinesInPart(line);
+        PartInfo part = PartInfo.newInstance(headers);
+        if (part.isFile()) {
+            in.countFile();
+        }
+        return part;
+    }
+
+    /**
+     * アップロードファイルのパートを一時保存せずに順に読み込むイテレータを取得する。<br/>
+     * <p>
+     * アップロードファイル以外のパートは、イテレータが読み進めた時点でHTTPリクエストパラメータに追加される。
+     * 各パートの内容は、次のパートに進んだ時点で読み捨てられる。
+     * </p>
+     * <p>
+     * 解析に失敗した場合は{@link #parse()}と同様に、{@link BadRequest}、{@link RequestEntityTooLarge}、
+     * {@link nablarch.fw.results.InternalError}のいずれかを送出する。
+     * </p>
+     *
+     * @return アップロードファイルのパートのイテレータ
+     */
+    Iterator<StreamingPart> streamingIterator() {
+        return new StreamingPartIterator();
+    }
+
+    /**
+     * 読み込まれていないメッセージボディを読み捨てる。<br/>
+     * {@link #streamingIterator()}で全てのパートを読み込まなかった場合に使用する。
+     */
+    void finish() {
+        in.consume();
+    }
+
+    /**
+     * アップロードファイルのパートを一時保存せずに順に読み込むイテレータ。
+     */
+    private final class StreamingPartIterator implements Iterator<StreamingPart> {
+
+        /** 境界文字列まで読み込んだか否か */
+        private boolean started;
+
+        /** 全てのパートを読み込んだか否か */
+        private boolean finished;
+
+        /** 次に返却するパート */
+        private StreamingPart next;
+
+        /** 現在のパートの内容を読み込む入力ストリーム */
+        private PartContentInputStream current;
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            try {
+                next = readNextFilePart();
+            } catch (BadRequest e) {
+                finished = true;
+                throw e;
+            } catch (RequestEntityTooLarge e) {
+                finished = true;
+                throw e;
+            } catch (Exception e) {   // IOException or RuntimeException
+                finished = true;
+                in.consume();
+                throw new nablarch.fw.results.InternalError(e);
+            }
+            finished = next == null;
+            return next != null;
+        }
+
+        @Override
+        public StreamingPart next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            StreamingPart part = next;
+            next = null;
+            return part;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove is not supported.");
+        }
+
+        /**
+         * 次のアップロードファイルのパートまで読み進める。
+         *
+         * @return アップロードファイルのパート(存在しない場合はnull)
+         * @throws IOException 入出力例外
+         */
+        private StreamingPart readNextFilePart() throws IOException {
+            if (current != null) {
+                current.skipRemaining();
+                current = null;
+            }
+            if (!started) {
+                started = true;
+                if (ctx.getContentLength() == 0) {
+                    return null;
+                }
+                in.skipTillBoundary(extractBoundary(ctx.getContentType()));
+            }
+            PartInfo part;
+            while ((part = nextPart()) != null) {
+                if (part.isFile()) {
+                    addParam(part.getName(), part.getFileName());
+                    flushParams();
+                    current = new PartContentInputStream();
+                    return new StreamingPart(part, current);
+                }
+                addParam(part.getName(), in.readParam());
+            }
+            flushParams();
+            return null;
+        }
+    }
+
+    /**
+     * 現在のパートの内容をメッセージボディから直接読み込む入力ストリーム。
+     */
+    private final class PartContentInputStream extends InputStream {
+
+        /** 1バイト読み込み用のバッファ */
+        private final byte[] single = new byte[1];
+
+        /** パートの終端に達したか否か */
+        private boolean ended;
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (ended) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            int read = in.read(b, off, len);
+            if (read == -1) {
+                ended = true;
+            }
+            return read;
+        }
+
+        /**
+         * パートの残りの内容を読み捨てる。
+         *
+         * @throws IOException 入出力例外
+         */
+        void skipRemaining() throws IOException {
+            byte[] buf8k = new byte[8 * 1024];
+            while (read(buf8k, 0, buf8k.length) != -1) {
+                // NOP
+            }
         }
     }
 
@@ -226,20 +431,37 @@ class MultipartParser {
     }
 
     /**
-     * HTTPリクエストパラメータに値を追加する。
+     * HTTPリクエストパラメータに値を追加する。<br/>
+     * 値はパラメータ名ごとのリストに蓄積し、{@link #flushParams()}でまとめて反映する。
+     * 同名のパラメータが繰り返し送信された場合でも、配列の再作成は反映時の1回のみとなる。
      *
-     * @param name   名前
-     * @param values 値
+     * @param name  名前
+     * @param value 値
      */
-    private void addParam(String name, String... values) {
-        String[] newValue = values;
-        if (paramMap.containsKey(name)) {
+    private void addParam(String name, String value) {
+        List<String> values = addedParams.get(name);
+        if (values == null) {
+            values = new ArrayList<String>();
             String[] orig = paramMap.get(name);
-            newValue = StringUtil.merge(orig, newValue);
+            if (orig != null) {
+                Collections.addAll(values, orig);
+            }
+            addedParams.put(name, values);
         }
-        paramMap.put(name, newValue);
+        values.add(value);
+        unflushedParams.add(name);
     }
 
+    /**
+     * 蓄積したパラメータの値をHTTPリクエストパラメータに反映する。
+     */
+    private void flushParams() {
+        for (String name : unflushedParams) {
+            List<String> values = addedParams.get(name);
+            paramMap.put(name, values.toArray(new String[values.size()]));
+        }
+        unflushedParams.clear();
+    }
 
     /**
      * ファイルへの書き込みを行う。<br/>
@@ -250,17 +472,76 @@ class MultipartParser {
     private void write(PartInfo part) throws IOException {
         OutputStream out = null;
         try {
-            out = part.getOutputStream(saveDir);
-            int sum = 0;
-            int read = 0;
-            byte[] buf8k = new byte[8 * 1024];
-            while ((read = in.read(buf8k)) != -1) {
-                sum += read;
-                out.write(buf8k, 0, read);
+            out = (inMemoryThreshold > 0 || memoryFallback)
+                    ? part.getOutputStream(saveDir, inMemoryThreshold, inMemoryBudget)
+                    : part.getOutputStream(saveDir);
+            if (processors.isEmpty()) {
+                part.setSize((int) in.transferTo(out));
+                return;
             }
-            part.setSize(sum);
+            ProcessingOutputStream processing = new ProcessingOutputStream(out, part);
+            part.setSize((int) in.transferTo(processing));
+            processing.complete();
         } finally {
             FileUtil.closeQuietly(out);
         }
     }
+
+    /**
+     * 書き込まれた内容を{@link PartStreamProcessor}に渡しながら出力する出力ストリーム。<br/>
+     * アップロードファイルの内容を一度だけ読み込むために使用する。
+     */
+    private final class ProcessingOutputStream extends OutputStream {
+
+        /** 出力先 */
+        private final OutputStream out;
+
+        /** 処理対象のパート */
+        private final PartInfo part;
+
+        /** パート毎の処理 */
+        private final PartStreamProcessor.Accumulator[] accumulators;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param out  出力先
+         * @param part 処理対象のパート
+         */
+        ProcessingOutputStream(OutputStream out, PartInfo part) {
+            this.out = out;
+            this.part = part;
+            this.accumulators = new PartStreamProcessor.Accumulator[processors.size()];
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i] = processors.get(i).start(part);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            for (PartStreamProcessor.Accumulator accumulator : accumulators) {
+                accumulator.update(b, off, len);
+            }
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * 処理結果をパートに設定する。
+         */
+        void complete() {
+            for (int i = 0; i < accumulators.length; i++) {
+                part.setProcessingResult(processors.get(i).getName(), accumulators[i].getResult());
+            }
+        }
+    }
 }
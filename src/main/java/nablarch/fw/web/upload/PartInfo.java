@@ -1,13 +1,19 @@
 package nablarch.fw.web.upload;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -18,6 +24,7 @@ import nablarch.core.util.FileUtil;
 import nablarch.core.util.StringUtil;
 import nablarch.core.util.annotation.Published;
 import nablarch.fw.results.BadRequest;
+import nablarch.fw.web.TempStorageManager;
 import nablarch.fw.results.InternalError;
 import static nablarch.core.util.Builder.concat;
 
@@ -46,12 +53,27 @@ public final class PartInfo {
     /** 一時保存されたファイル */
     private File savedFile;
 
+    /** 一時保存されたファイルのサイズの確保元 */
+    private TempStorageManager.Lease lease;
+
+    /** メモリ上に保持した内容 */
+    private byte[] content;
+
+    /** メモリ上に保持した内容の確保元 */
+    private InMemoryBudget inMemoryBudget;
+
+    /** メモリ上に保持した内容を一時ファイルに保存する場合の保存先ディレクトリ */
+    private File saveDir;
+
     /** ファイルサイズ */
     private int size = 0;
 
     /** 一時ファイルの状態 */
     private Status status = Status.NOT_YET_SAVED;
 
+    /** {@link PartStreamProcessor}の処理結果 */
+    private Map<String, Object> processingResults = Collections.emptyMap();
+
     /** コンストラクタ */
     private PartInfo() {
     }
@@ -89,6 +111,29 @@ public final class PartInfo {
         return info;
     }
 
+    /**
+     * 一時保存済みのファイルを表す新しいインスタンスを取得する。<br/>
+     * マルチパート以外の方法でアップロードされたファイルに使用する。
+     *
+     * @param name        名前
+     * @param fileName    アップロード元のファイル名
+     * @param contentType Content-Type(nullの場合はデフォルト値)
+     * @param savedFile   一時保存されたファイル
+     * @param size        ファイルサイズ
+     * @return 新しいインスタンス
+     */
+    static PartInfo newInstance(String name, String fileName, String contentType, File savedFile, int size) {
+        PartInfo info = newInstance(name);
+        info.fileName = fileName;
+        if (contentType != null) {
+            info.contentType = contentType;
+        }
+        info.savedFile = savedFile;
+        info.status = Status.SAVED;
+        info.setSize(size);
+        return info;
+    }
+
     /**
      * アップロードファイルを開く。<br/>
      * 入力ストリームはクライアント側でcloseする必要がある。
@@ -97,6 +142,9 @@ public final class PartInfo {
      */
     @Published
     public InputStream getInputStream() {
+        if (status == Status.ON_MEMORY) {
+            return new ByteArrayInputStream(content);
+        }
         try {
             return new FileInputStream(savedFile);
         } catch (FileNotFoundException e) {
@@ -263,6 +311,8 @@ public final class PartInfo {
 
     /**
      * 出力ストリームを開く。<br/>
+     * 一時ファイルは、最初の書き込みで{@link TempStorageManager}から書き込むサイズを確保してから作成する。
+     * 上限を超えて拒否された場合は、書き込み途中の一時ファイルを削除する。
      * 出力ストリームはクライアント側でcloseする必要がある。
      *
      * @param saveDir 出力先ディレクトリ
@@ -271,8 +321,35 @@ public final class PartInfo {
     OutputStream getOutputStream(File saveDir) {
         savedFile = createNewFile(saveDir);
         status = Status.SAVED;
+        lease = TempStorageManager.get().newLease();
+        return new TempFileOutputStream(lease);
+    }
+
+    /**
+     * 一時ファイルを作成し、出力ストリームを開く。
+     *
+     * @param saveDir  出力先ディレクトリ
+     * @param newLease 一時ファイルのサイズの確保元
+     * @return 出力先ストリーム
+     */
+    private OutputStream openTempFile(File saveDir, TempStorageManager.Lease newLease) {
+        savedFile = createNewFile(saveDir);
+        status = Status.SAVED;
+        lease = newLease;
+        return openSavedFile(newLease);
+    }
+
+    /**
+     * 保存用のファイルを作成し、出力ストリームを開く。
+     *
+     * @param newLease 一時ファイルのサイズの確保元
+     * @return 出力先ストリーム
+     */
+    private OutputStream openSavedFile(TempStorageManager.Lease newLease) {
         try {
-            return new BufferedOutputStream(new FileOutputStream(savedFile));
+            OutputStream out = new FileOutputStream(savedFile);
+            newLease.markFileCreated();
+            return out;
         } catch (FileNotFoundException e) {
             // 保存先にwrite権が無い等の理由で出力ストリームが開けない（通常、発生しない）
             throw new IllegalStateException(
@@ -281,6 +358,38 @@ public final class PartInfo {
         }
     }
 
+    /**
+     * 書き込み途中の一時ファイルを削除する。<br/>
+     * 上限を超えて一時ファイルへの書き込みが拒否された場合に使用する。
+     *
+     * @param out 一時ファイルへの出力ストリーム(一時ファイルを作成していない場合は{@code null})
+     */
+    private void discardTempFile(OutputStream out) {
+        FileUtil.closeQuietly(out);
+        clean();
+        status = Status.REMOVED;
+    }
+
+    /**
+     * メモリ上に内容を保持する出力ストリームを開く。<br/>
+     * 書き込まれた内容が上限を超えた場合や、メモリ上に保持する内容の合計サイズの上限に達した場合は、
+     * それまでに書き込まれた内容を一時ファイルに保存し、以降の内容も一時ファイルに出力する。
+     * 出力ストリームはクライアント側でcloseする必要がある。
+     *
+     * @param saveDir   一時ファイルの出力先ディレクトリ
+     * @param threshold メモリ上に保持する内容のサイズの上限
+     * @param budget    メモリ上に保持する内容の合計サイズ
+     * @return 出力先ストリーム
+     */
+    OutputStream getOutputStream(File saveDir, int threshold, InMemoryBudget budget) {
+        if (status != Status.NOT_YET_SAVED) {
+            // 同じパートが二回保存されようとした場合（通常、発生しない）
+            throw new IllegalStateException("already saved. [" + toString() + "]");
+        }
+        this.saveDir = saveDir;
+        return new InMemoryOutputStream(threshold, budget);
+    }
+
     /**
      * 保存用に新しいファイルを作成する。
      *
@@ -288,7 +397,7 @@ public final class PartInfo {
      * @return 新しいファイル
      */
     private File createNewFile(File saveDir) {
-        if (status != Status.NOT_YET_SAVED) {
+        if (status == Status.SAVED || status == Status.REMOVED) {
             // 同じパートが二回保存されようとした場合（通常、発生しない）
             throw new IllegalStateException(
                     "already saved. [" + savedFile.getAbsolutePath() + "]");
@@ -299,6 +408,11 @@ public final class PartInfo {
 
     /** 保存したファイルを削除する。 */
     void clean() {
+        if (status == Status.ON_MEMORY) {
+            releaseContent();
+            status = Status.REMOVED;
+            return;
+        }
         if (status != Status.SAVED) {
             return;  // 保存してなければ何もしない。
         }
@@ -307,6 +421,17 @@ public final class PartInfo {
                     "could not delete a temporary file: "
                             + savedFile.getAbsolutePath());
         }
+        releaseLease();
+    }
+
+    /**
+     * 一時保存されたファイルのサイズを解放する。
+     */
+    private void releaseLease() {
+        if (lease != null) {
+            lease.release();
+            lease = null;
+        }
     }
 
     /** ファイル保存に使用するデフォルト拡張子 */
@@ -375,6 +500,34 @@ public final class PartInfo {
         this.size = size;
     }
 
+    /**
+     * {@link PartStreamProcessor}の処理結果を取得する。<br/>
+     * 処理結果はアップロードファイルの一時保存時に設定されるため、一時ファイルを再度読み込む必要はない。
+     *
+     * @param name {@link PartStreamProcessor#getName()}の値
+     * @param <T>  処理結果の型
+     * @return 処理結果(処理されていない場合はnull)
+     * @see UploadSettings#setPartStreamProcessors(List)
+     */
+    @Published
+    @SuppressWarnings("unchecked")
+    public <T> T getProcessingResult(String name) {
+        return (T) processingResults.get(name);
+    }
+
+    /**
+     * {@link PartStreamProcessor}の処理結果を設定する。
+     *
+     * @param name   {@link PartStreamProcessor#getName()}の値
+     * @param result 処理結果
+     */
+    void setProcessingResult(String name, Object result) {
+        if (processingResults.isEmpty()) {
+            processingResults = new HashMap<String, Object>();
+        }
+        processingResults.put(name, result);
+    }
+
     /**
      * 保存ファイルを設定する。<br/>
      * 自動テスト時に使用されることを想定している。
@@ -392,14 +545,57 @@ public final class PartInfo {
      * 一時保存ファイルを取得する。<br/>
      * 取得したファイルが存在しなかったり、削除される可能性もあるので
      * 使用する際は、nullチェック、ファイルの存在チェックなどの事前チェックを必ず行うこと。
+     * <p>
+     * メモリ上に保持しているアップロードファイルの場合は、本メソッドの呼び出し時に一時ファイルに保存する。
+     * この場合、{@link TempStorageManager}の上限に関わらず一時ファイルに保存する。
+     * </p>
      *
      * @return 一時保存されたファイル
      */
     @Published(tag = "architect")
     public File getSavedFile() {
+        if (status == Status.ON_MEMORY) {
+            File file = createNewFile(saveDir);
+            TempStorageManager.Lease newLease = TempStorageManager.get().newLease();
+            // ファイルの取得を要求されているため、上限に関わらずファイルに出力する
+            newLease.reserve(content.length);
+            lease = newLease;
+            writeContentTo(file);
+            newLease.markFileCreated();
+            savedFile = file;
+            releaseContent();
+            status = Status.SAVED;
+        }
         return this.savedFile;
     }
 
+    /**
+     * メモリ上に保持した内容をファイルに出力する。
+     *
+     * @param file 出力先ファイル
+     */
+    private void writeContentTo(File file) {
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            out.write(content);
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    "unexpected exception occurred. file=[" + file + "]"
+                    , e);
+        } finally {
+            FileUtil.closeQuietly(out);
+        }
+    }
+
+    /**
+     * メモリ上に保持した内容を解放する。
+     */
+    private void releaseContent() {
+        inMemoryBudget.release(content.length);
+        content = null;
+    }
+
     /**
      * ファイルを移動する。<br/>
      * 本メソッドに対するヘルパーメソッドとして
@@ -416,6 +612,12 @@ public final class PartInfo {
             case SAVED:
                 File dest = new File(dir, name);
                 FileUtil.move(savedFile, dest);
+                releaseLease();
+                status = Status.REMOVED;
+                return;
+            case ON_MEMORY:
+                writeContentTo(new File(dir, name));
+                releaseContent();
                 status = Status.REMOVED;
                 return;
             case REMOVED:
@@ -426,12 +628,195 @@ public final class PartInfo {
     }
 
 
+    /**
+     * 書き込まれた内容をメモリ上に保持する出力ストリーム。<br/>
+     * 上限を超えた時点で一時ファイルへの出力に切り替える。
+     */
+    private final class InMemoryOutputStream extends OutputStream {
+
+        /** メモリ上に保持する内容のサイズの上限 */
+        private final int threshold;
+
+        /** メモリ上に保持する内容の合計サイズ */
+        private final InMemoryBudget budget;
+
+        /** 書き込まれた内容 */
+        private byte[] buf = new byte[0];
+
+        /** 書き込まれた内容のサイズ */
+        private int count = 0;
+
+        /** 一時ファイルへの出力ストリーム(一時ファイルへの出力に切り替えるまではnull) */
+        private OutputStream fileOut;
+
+        /** 一時ファイルのサイズの確保元(一時ファイルの上限を超えるまではnull) */
+        private TempStorageManager.Lease fileLease;
+
+        /** 閉じられたか否か */
+        private boolean closed = false;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param threshold メモリ上に保持する内容のサイズの上限
+         * @param budget    メモリ上に保持する内容の合計サイズ
+         */
+        InMemoryOutputStream(int threshold, InMemoryBudget budget) {
+            this.threshold = threshold;
+            this.budget = budget;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (fileOut == null) {
+                if (count + len <= threshold && budget.reserve(len)) {
+                    if (count + len > buf.length) {
+                        buf = Arrays.copyOf(buf, Math.min(threshold, Math.max(count + len, buf.length * 2)));
+                    }
+                    System.arraycopy(b, off, buf, count, len);
+                    count += len;
+                    return;
+                }
+                if (fileLease == null) {
+                    fileLease = TempStorageManager.get().newLease();
+                }
+                if (!fileLease.acquire(count + len)) {
+                    // 一時ファイルの上限を超えるため(MEMORYの場合)、上限を超えてメモリ上に保持する。
+                    // Leaseは使い回し、メモリ上に保持した回数はパート毎に1回だけ数える
+                    budget.forceReserve(len);
+                    if (count + len > buf.length) {
+                        buf = Arrays.copyOf(buf, Math.max(count + len, buf.length * 2));
+                    }
+                    System.arraycopy(b, off, buf, count, len);
+                    count += len;
+                    return;
+                }
+                // メモリ上に保持できないため、一時ファイルへの出力に切り替える
+                fileOut = new BufferedOutputStream(openTempFile(saveDir, fileLease));
+                fileOut.write(buf, 0, count);
+                fileOut.write(b, off, len);
+                budget.release(count);
+                buf = null;
+                return;
+            }
+            try {
+                fileLease.acquire(len);
+            } catch (RuntimeException e) {
+                // 上限を超えて拒否された場合は、書き込み途中の一時ファイルを削除する
+                closed = true;
+                discardTempFile(fileOut);
+                throw e;
+            }
+            fileOut.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (fileOut != null) {
+                fileOut.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (fileOut != null) {
+                fileOut.close();
+                return;
+            }
+            content = (count == buf.length) ? buf : Arrays.copyOf(buf, count);
+            inMemoryBudget = budget;
+            status = Status.ON_MEMORY;
+        }
+    }
+
+    /**
+     * 一時ファイルへの出力ストリーム。<br/>
+     * 書き込むサイズを確保してから一時ファイルを作成する。何も書き込まれずに閉じられた場合は、空の一時ファイルを作成する。
+     */
+    private final class TempFileOutputStream extends OutputStream {
+
+        /** 一時ファイルのサイズの確保元 */
+        private final TempStorageManager.Lease fileLease;
+
+        /** 一時ファイルへの出力ストリーム(一時ファイルを作成するまではnull) */
+        private OutputStream fileOut;
+
+        /** 閉じられたか否か */
+        private boolean closed = false;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param fileLease 一時ファイルのサイズの確保元
+         */
+        TempFileOutputStream(TempStorageManager.Lease fileLease) {
+            this.fileLease = fileLease;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                fileLease.acquire(len);
+            } catch (RuntimeException e) {
+                // 上限を超えて拒否された場合は、書き込み途中の一時ファイルを削除する
+                closed = true;
+                discardTempFile(fileOut);
+                throw e;
+            }
+            open().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (fileOut != null) {
+                fileOut.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            open().close();
+        }
+
+        /**
+         * 一時ファイルを作成していなければ作成し、出力ストリームを取得する。
+         *
+         * @return 一時ファイルへの出力ストリーム
+         */
+        private OutputStream open() {
+            if (fileOut == null) {
+                fileOut = new BufferedOutputStream(openSavedFile(fileLease));
+            }
+            return fileOut;
+        }
+    }
+
     /** 一時ファイルの状態を表す列挙型 */
     private enum Status {
         /** 未保存 */
         NOT_YET_SAVED,
         /** 保存済み */
         SAVED,
+        /** メモリ上に保持 */
+        ON_MEMORY,
         /** 移動済み */
         REMOVED
     }
@@ -0,0 +1,62 @@
+package nablarch.fw.web.upload;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * アップロードファイルの内容を一時保存と同時に処理するインタフェース。<br/>
+ * <p>
+ * {@link UploadSettings#setPartStreamProcessors(java.util.List)}に設定した場合、
+ * {@link MultipartHandler}はアップロードファイルの内容を一時保存しながら本インタフェースに渡す。
+ * これにより、ハッシュ値の算出やファイル形式の判定のために、一時保存したファイルを再度読み込む必要がなくなる。
+ * 処理結果は{@link PartInfo#getProcessingResult(String)}で取得できる。
+ * </p>
+ * <p>
+ * 本インタフェースの実装は、複数のリクエストから同時に使用されるためスレッドセーフに実装すること。
+ * パート毎の状態は{@link #start(PartInfo)}で生成する{@link Accumulator}に保持すること。
+ * </p>
+ *
+ * @see PartInfo#getProcessingResult(String)
+ */
+@Published(tag = "architect")
+public interface PartStreamProcessor {
+
+    /**
+     * 処理結果を取得する際に使用する名前を取得する。
+     *
+     * @return 名前
+     */
+    String getName();
+
+    /**
+     * パートの処理を開始する。
+     *
+     * @param part 処理対象のパート
+     * @return パートの内容を処理する{@link Accumulator}
+     */
+    Accumulator start(PartInfo part);
+
+    /**
+     * 1つのパートの内容を処理するインタフェース。
+     */
+    @Published(tag = "architect")
+    interface Accumulator {
+
+        /**
+         * パートの内容を処理する。<br/>
+         * パートの内容は先頭から順に、複数回に分けて渡される。
+         *
+         * @param b   パートの内容
+         * @param off 開始位置
+         * @param len 長さ
+         */
+        void update(byte[] b, int off, int len);
+
+        /**
+         * 処理結果を取得する。<br/>
+         * パートの内容を全て渡した後に1度だけ呼び出される。
+         *
+         * @return 処理結果
+         */
+        Object getResult();
+    }
+}
@@ -0,0 +1,745 @@
+package nablarch.fw.web.upload;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import jakarta.servlet.http.HttpSession;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.disposal.Disposable;
+import nablarch.core.repository.initialization.Initializable;
+import nablarch.core.util.Builder;
+import nablarch.core.util.FileUtil;
+import nablarch.core.util.StringUtil;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.web.HttpRequest;
+import nablarch.fw.web.HttpRequestHandler;
+import nablarch.fw.web.HttpResponse;
+import nablarch.fw.web.servlet.HttpRequestWrapper;
+import nablarch.fw.web.servlet.ServletExecutionContext;
+
+/**
+ * アップロードファイルを分割して受け付け、中断したアップロードの再開を可能にするハンドラ。<br/>
+ * <p>
+ * 通信が不安定な環境では、大きなファイルのアップロードが途中で切断されると最初からやり直しになる。
+ * 本ハンドラは、クライアントが分割して送信したファイル(以下、チャンク)をサーバ側の一時ファイルに追記し、
+ * 切断された場合は受信済みのチャンクの続きから送信を再開できるようにする。
+ * 全てのチャンクを受信した時点で、{@link MultipartHandler}と同様に{@link PartInfo}を{@link HttpRequest}に格納し、
+ * 後続のハンドラ(業務アクション)を呼び出す。
+ * </p>
+ * <p>
+ * 本ハンドラは、以下のリクエストヘッダを持つリクエストのみを処理し、それ以外のリクエストは何もせずに後続のハンドラに委譲する。
+ * </p>
+ * <table border="1">
+ *     <tr><th>リクエストヘッダ</th><th>内容</th></tr>
+ *     <tr><td>X-Upload-Id</td><td>アップロードID。最初のチャンクでは指定せず、レスポンスヘッダで払い出された値を以降のリクエストで指定する。</td></tr>
+ *     <tr><td>X-Upload-Chunk-Index</td><td>チャンクの番号(0始まり)</td></tr>
+ *     <tr><td>X-Upload-Chunk-Count</td><td>チャンクの総数</td></tr>
+ *     <tr><td>X-Upload-File-Name</td><td>アップロード元のファイル名(UTF-8でURLエンコードした値)。最初のチャンクで指定する。</td></tr>
+ * </table>
+ * <p>
+ * チャンクの内容はリクエストのメッセージボディにそのまま格納する。
+ * 最初のチャンクのContent-Typeが、アップロードファイルのContent-Typeとなる。
+ * 各リクエストに対して、本ハンドラは以下のレスポンスを返す。
+ * いずれのレスポンスにも、レスポンスヘッダX-Upload-Id、X-Upload-Received-Chunks(受信済みのチャンク数)、
+ * X-Upload-Received-Bytes(受信済みのバイト数)を設定する。
+ * </p>
+ * <ul>
+ *     <li>X-Upload-Chunk-Indexを指定しない場合は、進捗の問い合わせとして200を返す。</li>
+ *     <li>受信済みのチャンク数と同じ番号のチャンクは一時ファイルに追記し、202を返す。</li>
+ *     <li>受信済みのチャンクは再送とみなして読み捨て、202を返す。</li>
+ *     <li>未受信のチャンクを飛ばして送信された場合は409を返す。</li>
+ *     <li>最後のチャンクを受信した場合は、後続のハンドラのレスポンスを返す。</li>
+ *     <li>存在しない(または期限切れの)アップロードIDが指定された場合は404を返す。</li>
+ *     <li>チャンクのサイズが{@link UploadSettings#getContentLengthLimit()}を超える場合や、
+ *     ファイルサイズが{@link #setMaxFileSize(int)}を超える場合は413を返す。</li>
+ *     <li>受信中のアップロード数が{@link #setMaxConcurrentUploads(int)}に達している場合は、新しいアップロードに503を返す。</li>
+ *     <li>同じセッションの受信中のアップロード数が{@link #setMaxUploadsPerSession(int)}に達している場合は、
+ *     新しいアップロードに429を返す。</li>
+ * </ul>
+ * <p>
+ * アップロードは、開始したリクエストのHTTPセッションに紐付け、別のセッションからのリクエストには404を返す。
+ * 開始時にHTTPセッションが存在しない場合は、最初にHTTPセッションを持つリクエストのセッションに紐付ける。
+ * このため、アップロード中にセッションIDが変更された場合(ログインなど)は、アップロードを最初からやり直す必要がある。
+ * </p>
+ * <p>
+ * チャンクの内容は、アップロード毎の排他制御の外で一旦個別の一時ファイルに受信し、
+ * 排他制御の中では受信済みのチャンクをアップロードの一時ファイルに追記する。
+ * このため、送信の遅いクライアントが同じアップロードへの他のリクエストを待たせることはない。
+ * </p>
+ * <p>
+ * 一時ファイルは{@link UploadSettings}の保存ディレクトリに作成する。
+ * 最後にチャンクを受信してから{@link #setExpirationSeconds(long)}の時間が経過したアップロードは、
+ * {@link #setCleanupIntervalSeconds(long)}の間隔で実行される定期処理により一時ファイルとともに削除される。
+ * 定期処理は{@link #initialize()}で開始する。初期化対象に設定していない場合は、最初のアップロードを受け付けた時点で開始する。
+ * いずれの場合も、{@link #dispose()}で停止するため廃棄対象に設定すること。
+ * アップロードの状態はメモリ上に保持するため、アプリケーションの再起動時や、
+ * 複数のサーバで負荷分散している場合に別のサーバにリクエストが振り分けられた場合は、404となりアップロードを最初からやり直す必要がある。
+ * </p>
+ */
+public class ResumableUploadHandler implements HttpRequestHandler, Initializable, Disposable {
+
+    /** アップロードIDのリクエストヘッダおよびレスポンスヘッダ */
+    static final String UPLOAD_ID_HEADER = "X-Upload-Id";
+
+    /** チャンクの番号のリクエストヘッダ */
+    static final String CHUNK_INDEX_HEADER = "X-Upload-Chunk-Index";
+
+    /** チャンクの総数のリクエストヘッダ */
+    static final String CHUNK_COUNT_HEADER = "X-Upload-Chunk-Count";
+
+    /** ファイル名のリクエストヘッダ */
+    static final String FILE_NAME_HEADER = "X-Upload-File-Name";
+
+    /** 受信済みのチャンク数のレスポンスヘッダ */
+    static final String RECEIVED_CHUNKS_HEADER = "X-Upload-Received-Chunks";
+
+    /** 受信済みのバイト数のレスポンスヘッダ */
+    static final String RECEIVED_BYTES_HEADER = "X-Upload-Received-Bytes";
+
+    /** 一時ファイル名の接頭辞 */
+    private static final String TEMP_FILE_PREFIX = "nablarch_resumable_";
+
+    /** 受信中のチャンクの一時ファイル名の接頭辞 */
+    private static final String CHUNK_FILE_PREFIX = TEMP_FILE_PREFIX + "chunk_";
+
+    /** チャンクを受信できることを表す値 */
+    private static final int CONTINUE = -1;
+
+    /** アップロードIDとして許容する形式 */
+    private static final Pattern UPLOAD_ID_PATTERN = Pattern.compile("[0-9a-zA-Z-]{1,64}");
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(ResumableUploadHandler.class);
+
+    /** 各種設定値 */
+    private UploadSettings settings = new UploadSettings();
+
+    /** 受信したファイルを格納するパート名 */
+    private String partName = "file";
+
+    /** ファイルサイズの上限 */
+    private int maxFileSize = Integer.MAX_VALUE;
+
+    /** アップロードの有効期限(秒) */
+    private long expirationSeconds = 60 * 60;
+
+    /** 期限切れのアップロードを削除する間隔(秒) */
+    private long cleanupIntervalSeconds = 10 * 60;
+
+    /** 受信中のアップロード数の上限 */
+    private int maxConcurrentUploads = 100;
+
+    /** セッション毎の受信中のアップロード数の上限 */
+    private int maxUploadsPerSession = 5;
+
+    /** 受信中のアップロード */
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<String, Upload>();
+
+    /** 期限切れのアップロードを削除する定期処理(開始していない場合はnull) */
+    private ScheduledExecutorService cleaner;
+
+    /**
+     * アップロード用の各種設定値を設定する。
+     *
+     * @param settings 各種設定値
+     */
+    public void setUploadSettings(UploadSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * 受信したファイルを格納するパート名を設定する。<br/>
+     * 業務アクションでは、{@link HttpRequest#getPart(String)}に本プロパティの値を指定してファイルを取得する。
+     * デフォルトは"file"。
+     *
+     * @param partName パート名
+     */
+    public void setPartName(String partName) {
+        this.partName = partName;
+    }
+
+    /**
+     * ファイルサイズの上限(バイト)を設定する。<br/>
+     * デフォルトは{@link Integer#MAX_VALUE}。
+     *
+     * @param maxFileSize ファイルサイズの上限
+     */
+    public void setMaxFileSize(int maxFileSize) {
+        if (maxFileSize < 0) {
+            throw new IllegalArgumentException("maxFileSize must not be negative.");
+        }
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * アップロードの有効期限(秒)を設定する。<br/>
+     * 最後にチャンクを受信してから有効期限が経過したアップロードは削除される。
+     * デフォルトは3600秒。
+     *
+     * @param expirationSeconds アップロードの有効期限(秒)
+     */
+    public void setExpirationSeconds(long expirationSeconds) {
+        this.expirationSeconds = expirationSeconds;
+    }
+
+    /**
+     * 期限切れのアップロードを削除する間隔(秒)を設定する。<br/>
+     * デフォルトは600秒。
+     *
+     * @param cleanupIntervalSeconds 期限切れのアップロードを削除する間隔(秒)
+     */
+    public void setCleanupIntervalSeconds(long cleanupIntervalSeconds) {
+        this.cleanupIntervalSeconds = cleanupIntervalSeconds;
+    }
+
+    /**
+     * 受信中のアップロード数の上限を設定する。<br/>
+     * 上限に達している場合、新しいアップロードには503を返す。
+     * デフォルトは100。
+     *
+     * @param maxConcurrentUploads 受信中のアップロード数の上限
+     */
+    public void setMaxConcurrentUploads(int maxConcurrentUploads) {
+        if (maxConcurrentUploads <= 0) {
+            throw new IllegalArgumentException("maxConcurrentUploads must be greater than 0.");
+        }
+        this.maxConcurrentUploads = maxConcurrentUploads;
+    }
+
+    /**
+     * セッション毎の受信中のアップロード数の上限を設定する。<br/>
+     * 上限に達している場合、同じセッションからの新しいアップロードには429を返す。
+     * HTTPセッションを持たないリクエストで開始したアップロードは対象外となる。
+     * デフォルトは5。
+     *
+     * @param maxUploadsPerSession セッション毎の受信中のアップロード数の上限
+     */
+    public void setMaxUploadsPerSession(int maxUploadsPerSession) {
+        if (maxUploadsPerSession <= 0) {
+            throw new IllegalArgumentException("maxUploadsPerSession must be greater than 0.");
+        }
+        this.maxUploadsPerSession = maxUploadsPerSession;
+    }
+
+    /**
+     * 期限切れのアップロードを削除する定期処理を開始する。
+     */
+    @Override
+    public void initialize() {
+        startCleaner();
+    }
+
+    /**
+     * 期限切れのアップロードを削除する定期処理を開始する。既に開始している場合は何もしない。
+     */
+    private synchronized void startCleaner() {
+        if (cleaner != null) {
+            return;
+        }
+        cleaner = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "nablarch-resumable-upload-cleaner");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        cleaner.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    removeExpiredUploads(System.currentTimeMillis());
+                } catch (RuntimeException e) {
+                    LOGGER.logWarn("failed to remove expired uploads.", e);
+                }
+            }
+        }, cleanupIntervalSeconds, cleanupIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 定期処理を停止し、受信中の全てのアップロードを削除する。
+     */
+    @Override
+    public void dispose() {
+        synchronized (this) {
+            if (cleaner != null) {
+                cleaner.shutdownNow();
+                cleaner = null;
+            }
+        }
+        removeExpiredUploads(Long.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param request {@link HttpRequestWrapper}でなければならない。
+     */
+    @Override
+    public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+        HttpRequestWrapper wrapper = cast(request);
+        String uploadId = wrapper.getHeader(UPLOAD_ID_HEADER);
+        String chunkIndex = wrapper.getHeader(CHUNK_INDEX_HEADER);
+        if (uploadId == null && chunkIndex == null) {
+            // 分割アップロードのリクエストでない
+            return context.handleNext(request);
+        }
+
+        String owner = getSessionId(context);
+        Upload upload;
+        if (uploadId == null) {
+            int chunkCount = parseInt(wrapper.getHeader(CHUNK_COUNT_HEADER));
+            if (chunkCount <= 0) {
+                return new HttpResponse(400);
+            }
+            upload = new Upload(UUID.randomUUID().toString(), chunkCount, owner,
+                    decodeFileName(wrapper.getHeader(FILE_NAME_HEADER)), wrapper.getContentType(),
+                    settings.getSaveDir());
+            int status = register(upload);
+            if (status != 0) {
+                return new HttpResponse(status);
+            }
+        } else {
+            upload = UPLOAD_ID_PATTERN.matcher(uploadId).matches() ? uploads.get(uploadId) : null;
+            if (upload == null || !upload.acceptOwner(owner)) {
+                return new HttpResponse(404);
+            }
+        }
+        if (chunkIndex == null) {
+            // 進捗の問い合わせ
+            return progress(200, upload);
+        }
+
+        int index = parseInt(chunkIndex);
+        if (index < 0) {
+            return progress(400, upload);
+        }
+        long limit;
+        synchronized (upload) {
+            int status = verify(upload, index);
+            if (status != CONTINUE) {
+                return progress(status, upload);
+            }
+            limit = Math.min((long) maxFileSize - upload.receivedBytes, settings.getContentLengthLimit());
+        }
+        if (wrapper.getContentLength() > settings.getContentLengthLimit()) {
+            return progress(413, upload);
+        }
+
+        // 送信の遅いクライアントが同じアップロードへの他のリクエストを待たせないよう、
+        // チャンクの受信は排他制御の外で行う。
+        File chunk = receive(wrapper.getInputStream(), limit);
+        if (chunk == null) {
+            return progress(413, upload);
+        }
+        int status;
+        try {
+            synchronized (upload) {
+                status = verify(upload, index);
+                if (status == CONTINUE) {
+                    status = append(upload, chunk);
+                }
+            }
+        } finally {
+            deleteFile(chunk);
+        }
+        if (status != 0) {
+            return progress(status, upload);
+        }
+        return complete(upload, wrapper, context);
+    }
+
+    /**
+     * リクエストのHTTPセッションIDを取得する。
+     *
+     * @param context 実行コンテキスト
+     * @return HTTPセッションID(HTTPセッションが存在しない場合はnull)
+     */
+    private static String getSessionId(ExecutionContext context) {
+        if (!(context instanceof ServletExecutionContext)) {
+            return null;
+        }
+        HttpSession session = ((ServletExecutionContext) context).getNativeHttpSession(false);
+        return session == null ? null : session.getId();
+    }
+
+    /**
+     * アップロードを受信中のアップロードとして登録する。
+     *
+     * @param upload アップロード
+     * @return 登録した場合は0、上限に達している場合はレスポンスのステータスコード
+     */
+    private synchronized int register(Upload upload) {
+        if (uploads.size() >= maxConcurrentUploads) {
+            return 503;
+        }
+        if (upload.owner != null) {
+            int owned = 0;
+            for (Upload each : uploads.values()) {
+                if (upload.owner.equals(each.owner)) {
+                    owned++;
+                }
+            }
+            if (owned >= maxUploadsPerSession) {
+                return 429;
+            }
+        }
+        startCleaner();
+        uploads.put(upload.id, upload);
+        return 0;
+    }
+
+    /**
+     * チャンクを受信できるか否かを判定する。<br/>
+     * 本メソッドはアップロードで同期化して呼び出すこと。
+     *
+     * @param upload アップロード
+     * @param index  チャンクの番号
+     * @return 受信できる場合は{@link #CONTINUE}、それ以外はレスポンスのステータスコード
+     */
+    private int verify(Upload upload, int index) {
+        if (upload.completed || !uploads.containsKey(upload.id)) {
+            // 並行して完了または削除された
+            return 404;
+        }
+        if (index >= upload.chunkCount) {
+            return 400;
+        }
+        if (index < upload.receivedChunks) {
+            // 受信済みのチャンクの再送
+            return 202;
+        }
+        if (index > upload.receivedChunks) {
+            return 409;
+        }
+        return CONTINUE;
+    }
+
+    /**
+     * チャンクを個別の一時ファイルに受信する。
+     *
+     * @param in    チャンクの内容
+     * @param limit チャンクのサイズの上限
+     * @return 受信した一時ファイル(上限を超えた場合はnull)
+     */
+    private File receive(InputStream in, long limit) {
+        File chunk = null;
+        boolean succeeded = false;
+        OutputStream out = null;
+        try {
+            chunk = File.createTempFile(CHUNK_FILE_PREFIX, null, settings.getSaveDir());
+            out = new FileOutputStream(chunk);
+            long written = 0;
+            byte[] buf = new byte[8192];
+            int read;
+            while ((read = in.read(buf)) != -1) {
+                written += read;
+                if (written > limit) {
+                    return null;
+                }
+                out.write(buf, 0, read);
+            }
+            out.close();
+            succeeded = true;
+            return chunk;
+        } catch (IOException e) {
+            throw new nablarch.fw.results.InternalError(e);
+        } finally {
+            FileUtil.closeQuietly(out);
+            if (!succeeded && chunk != null) {
+                deleteFile(chunk);
+            }
+        }
+    }
+
+    /**
+     * 受信したチャンクをアップロードの一時ファイルに追記する。<br/>
+     * 本メソッドはアップロードで同期化して呼び出すこと。
+     * 追記に失敗した場合は、一時ファイルを追記前の状態に戻す。
+     *
+     * @param upload アップロード
+     * @param chunk  受信したチャンクの一時ファイル
+     * @return 全てのチャンクを受信した場合は0、それ以外はレスポンスのステータスコード
+     */
+    private int append(Upload upload, File chunk) {
+        long length = chunk.length();
+        if (upload.receivedBytes + length > maxFileSize) {
+            return 413;
+        }
+        boolean succeeded = false;
+        InputStream in = null;
+        OutputStream out = null;
+        try {
+            in = new FileInputStream(chunk);
+            out = new FileOutputStream(upload.file, true);
+            byte[] buf = new byte[8192];
+            int read;
+            while ((read = in.read(buf)) != -1) {
+                out.write(buf, 0, read);
+            }
+            out.close();
+            succeeded = true;
+        } catch (IOException e) {
+            throw new nablarch.fw.results.InternalError(e);
+        } finally {
+            FileUtil.closeQuietly(in);
+            FileUtil.closeQuietly(out);
+            if (!succeeded) {
+                truncate(upload);
+            }
+        }
+        upload.receivedBytes += length;
+        upload.receivedChunks++;
+        upload.lastAccess = System.currentTimeMillis();
+        if (upload.receivedChunks < upload.chunkCount) {
+            return 202;
+        }
+        upload.completed = true;
+        uploads.remove(upload.id);
+        return 0;
+    }
+
+    /**
+     * 一時ファイルを削除する。削除できなかった場合はワーニングを出力する。
+     *
+     * @param file 一時ファイル
+     */
+    private static void deleteFile(File file) {
+        if (file.exists() && !FileUtil.deleteFile(file)) {
+            LOGGER.logWarn("could not delete a temporary file: " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * 一時ファイルを受信済みのバイト数まで切り詰める。
+     *
+     * @param upload アップロード
+     */
+    private static void truncate(Upload upload) {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(upload.file, "rw");
+            file.setLength(upload.receivedBytes);
+        } catch (IOException e) {
+            LOGGER.logWarn("failed to truncate a temporary file: " + upload.file.getAbsolutePath(), e);
+        } finally {
+            FileUtil.closeQuietly(file);
+        }
+    }
+
+    /**
+     * 全てのチャンクを受信したファイルを{@link HttpRequest}に格納し、後続のハンドラを呼び出す。
+     *
+     * @param upload  アップロード
+     * @param request HTTPリクエスト
+     * @param context 実行コンテキスト
+     * @return HTTPレスポンス
+     */
+    private HttpResponse complete(Upload upload, HttpRequestWrapper request, ExecutionContext context) {
+        PartInfoHolder parts = new PartInfoHolder();
+        parts.addPart(PartInfo.newInstance(partName, upload.fileName, upload.contentType,
+                upload.file, (int) upload.receivedBytes));
+        request.setMultipart(parts);
+        parts.logAllPart();
+        try {
+            return context.handleNext(request);
+        } finally {
+            if (settings.isAutoCleaning()) {
+                try {
+                    parts.cleanup();
+                } catch (Throwable t) {
+                    LOGGER.logWarn("failed to delete temp file.", t);
+                }
+            }
+        }
+    }
+
+    /**
+     * 進捗を設定したレスポンスを生成する。
+     *
+     * @param status ステータスコード
+     * @param upload アップロード
+     * @return HTTPレスポンス
+     */
+    private static HttpResponse progress(int status, Upload upload) {
+        HttpResponse response = new HttpResponse(status);
+        response.setHeader(UPLOAD_ID_HEADER, upload.id);
+        response.setHeader(RECEIVED_CHUNKS_HEADER, String.valueOf(upload.receivedChunks));
+        response.setHeader(RECEIVED_BYTES_HEADER, String.valueOf(upload.receivedBytes));
+        return response;
+    }
+
+    /**
+     * 最後にチャンクを受信してから有効期限が経過したアップロードを削除する。
+     *
+     * @param now 現在時刻
+     */
+    void removeExpiredUploads(long now) {
+        long expiration = TimeUnit.SECONDS.toMillis(expirationSeconds);
+        for (Iterator<Upload> it = uploads.values().iterator(); it.hasNext();) {
+            Upload upload = it.next();
+            if (now == Long.MAX_VALUE || now - upload.lastAccess > expiration) {
+                synchronized (upload) {
+                    it.remove();
+                    if (!upload.completed) {
+                        deleteFile(upload.file);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 受信中のアップロード数を取得する。
+     *
+     * @return 受信中のアップロード数
+     */
+    int getUploadCount() {
+        return uploads.size();
+    }
+
+    /**
+     * ヘッダの値を数値に変換する。
+     *
+     * @param value ヘッダの値
+     * @return 数値(変換できない場合は-1)
+     */
+    private static int parseInt(String value) {
+        if (StringUtil.isNullOrEmpty(value)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * URLエンコードされたファイル名をデコードする。
+     *
+     * @param value URLエンコードされたファイル名
+     * @return ファイル名
+     */
+    private static String decodeFileName(String value) {
+        if (StringUtil.isNullOrEmpty(value)) {
+            return "upload.dat";
+        }
+        try {
+            String fileName = URLDecoder.decode(value, "UTF-8");
+            int slash = Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\'));
+            return fileName.substring(slash + 1);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);   // never occurs
+        } catch (IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    /**
+     * {@link HttpRequest}を{@link HttpRequestWrapper}にキャストする。
+     *
+     * @param request キャスト対象のHttpRequest
+     * @return キャスト後のインスタンス
+     * @throws UnsupportedOperationException キャストに失敗した場合。
+     */
+    private HttpRequestWrapper cast(HttpRequest request) throws UnsupportedOperationException {
+        try {
+            return (HttpRequestWrapper) request;
+        } catch (ClassCastException e) {
+            throw new UnsupportedOperationException(Builder.concat(
+                    "ResumableUploadHandler expects ", HttpRequestWrapper.class.getName(),
+                    " as HttpRequest. but was ", request.getClass().getName(), "."), e);
+        }
+    }
+
+    /**
+     * 受信中のアップロード。<br/>
+     * 状態の更新は本オブジェクトで同期化して行う。
+     */
+    private static final class Upload {
+
+        /** アップロードID */
+        private final String id;
+
+        /** チャンクの総数 */
+        private final int chunkCount;
+
+        /** アップロードを紐付けたHTTPセッションID(紐付けていない場合はnull) */
+        private volatile String owner;
+
+        /** アップロード元のファイル名 */
+        private final String fileName;
+
+        /** Content-Type */
+        private final String contentType;
+
+        /** 一時ファイル */
+        private final File file;
+
+        /** 受信済みのチャンク数 */
+        private int receivedChunks = 0;
+
+        /** 受信済みのバイト数 */
+        private long receivedBytes = 0;
+
+        /** 最後にチャンクを受信した時刻 */
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        /** 全てのチャンクを受信したか否か */
+        private boolean completed = false;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param id          アップロードID
+         * @param chunkCount  チャンクの総数
+         * @param owner       開始したリクエストのHTTPセッションID
+         * @param fileName    アップロード元のファイル名
+         * @param contentType Content-Type
+         * @param saveDir     一時ファイルの保存ディレクトリ
+         */
+        Upload(String id, int chunkCount, String owner, String fileName, String contentType, File saveDir) {
+            this.id = id;
+            this.chunkCount = chunkCount;
+            this.owner = owner;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.file = new File(saveDir, TEMP_FILE_PREFIX + id);
+        }
+
+        /**
+         * リクエストがアップロードを開始したセッションからのものか否かを判定する。<br/>
+         * アップロードをセッションに紐付けていない場合は、リクエストのセッションに紐付ける。
+         *
+         * @param sessionId リクエストのHTTPセッションID
+         * @return 開始したセッションからのリクエストの場合は{@code true}
+         */
+        synchronized boolean acceptOwner(String sessionId) {
+            if (owner == null) {
+                owner = sessionId;
+                return true;
+            }
+            return owner.equals(sessionId);
+        }
+    }
+}
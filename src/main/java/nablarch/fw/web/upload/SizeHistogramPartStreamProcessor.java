@@ -0,0 +1,125 @@
+package nablarch.fw.web.upload;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * アップロードファイルのサイズの分布を集計する{@link PartStreamProcessor}実装クラス。<br/>
+ * <p>
+ * アップロードファイルのサイズを、{@link #setBuckets(String)}で設定した境界値で区切った区間毎に集計する。
+ * 集計結果は{@link #getCounts()}で取得できる。
+ * </p>
+ * <p>
+ * パート毎の処理結果は、アップロードファイルが属する区間の上限値を表す文字列となる。
+ * 最大の境界値を超える場合は"+Inf"となる。
+ * 名前のデフォルトは"sizeBucket"。
+ * </p>
+ */
+@Published(tag = "architect")
+public class SizeHistogramPartStreamProcessor implements PartStreamProcessor {
+
+    /** 最大の境界値を超える区間を表す文字列 */
+    private static final String INFINITY = "+Inf";
+
+    /** 名前 */
+    private String name = "sizeBucket";
+
+    /** 区間の境界値(昇順) */
+    private long[] bounds = {1024L, 10 * 1024L, 100 * 1024L, 1024 * 1024L, 10 * 1024 * 1024L, 100 * 1024 * 1024L};
+
+    /** 区間毎の件数 */
+    private AtomicLongArray counts = new AtomicLongArray(bounds.length + 1);
+
+    /** {@inheritDoc} */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 名前を設定する。
+     *
+     * @param name 名前
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 区間の境界値(バイト)をカンマ区切りで設定する。<br/>
+     * デフォルトは"1024,10240,102400,1048576,10485760,104857600"。
+     * 境界値は昇順で指定すること。
+     *
+     * @param buckets 区間の境界値
+     * @throws IllegalArgumentException 境界値が数値でない場合、昇順でない場合
+     */
+    public void setBuckets(String buckets) {
+        String[] values = buckets.split(",");
+        long[] newBounds = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            try {
+                newBounds[i] = Long.parseLong(values[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid bucket. [" + buckets + "]", e);
+            }
+            if (i > 0 && newBounds[i] <= newBounds[i - 1]) {
+                throw new IllegalArgumentException("buckets must be in ascending order. [" + buckets + "]");
+            }
+        }
+        bounds = newBounds;
+        counts = new AtomicLongArray(newBounds.length + 1);
+    }
+
+    /**
+     * 区間の境界値を取得する。
+     *
+     * @return 区間の境界値
+     */
+    public long[] getBuckets() {
+        return bounds.clone();
+    }
+
+    /**
+     * 区間毎の件数を取得する。<br/>
+     * 戻り値の要素数は、区間の境界値の数+1となる。最後の要素は最大の境界値を超えた件数を表す。
+     *
+     * @return 区間毎の件数
+     */
+    public long[] getCounts() {
+        long[] result = new long[counts.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Accumulator start(PartInfo part) {
+        final long[] currentBounds = bounds;
+        final AtomicLongArray currentCounts = counts;
+        return new Accumulator() {
+
+            /** サイズ */
+            private long size = 0;
+
+            @Override
+            public void update(byte[] b, int off, int len) {
+                size += len;
+            }
+
+            @Override
+            public Object getResult() {
+                for (int i = 0; i < currentBounds.length; i++) {
+                    if (size <= currentBounds[i]) {
+                        currentCounts.incrementAndGet(i);
+                        return String.valueOf(currentBounds[i]);
+                    }
+                }
+                currentCounts.incrementAndGet(currentBounds.length);
+                return INFINITY;
+            }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+package nablarch.fw.web.upload;
+
+import java.io.InputStream;
+
+import nablarch.core.util.annotation.Published;
+
+import static nablarch.core.util.Builder.concat;
+
+/**
+ * ストリーミングモードで読み込むアップロードファイルのパートを表すクラス。<br/>
+ * <p>
+ * {@link PartInfo}と異なり、パートの内容は一時ファイルに保存されない。
+ * {@link #getInputStream()}で取得した入力ストリームは、HTTPリクエストの
+ * メッセージボディから直接パートの内容を読み込む。
+ * </p>
+ * <p>
+ * パートの内容は次のパートに進んだ時点で読み込めなくなる。
+ * 読み込まれなかった内容は読み捨てられる。
+ * </p>
+ *
+ * @see MultipartHandler#setStreaming(boolean)
+ */
+@Published
+public final class StreamingPart {
+
+    /** パートのヘッダ情報 */
+    private final PartInfo header;
+
+    /** パートの内容を読み込む入力ストリーム */
+    private final InputStream content;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param header  パートのヘッダ情報
+     * @param content パートの内容を読み込む入力ストリーム
+     */
+    StreamingPart(PartInfo header, InputStream content) {
+        this.header = header;
+        this.content = content;
+    }
+
+    /**
+     * 名前を取得する。<br/>
+     *
+     * @return POSTされたときのname属性
+     * @see PartInfo#getName()
+     */
+    public String getName() {
+        return header.getName();
+    }
+
+    /**
+     * ファイル名を取得する。<br/>
+     *
+     * @return アップロード元のファイル名
+     * @see PartInfo#getFileName()
+     */
+    public String getFileName() {
+        return header.getFileName();
+    }
+
+    /**
+     * Content-Typeを取得する。
+     *
+     * @return Content-Type
+     */
+    public String getContentType() {
+        return header.getContentType();
+    }
+
+    /**
+     * パートの内容を読み込む入力ストリームを取得する。<br/>
+     * 入力ストリームはHTTPリクエストのメッセージボディを直接読み込むため、
+     * 一度しか読み込むことができない。
+     *
+     * @return 入力ストリーム
+     */
+    public InputStream getInputStream() {
+        return content;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return concat("StreamingPart {",
+                      "name='", getName(), '\'',
+                      ", fileName='", getFileName(), '\'',
+                      ", contentType='", getContentType(), '\'',
+                      '}');
+    }
+}
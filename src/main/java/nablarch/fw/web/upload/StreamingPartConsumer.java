@@ -0,0 +1,33 @@
+package nablarch.fw.web.upload;
+
+import java.io.IOException;
+
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.web.HttpRequest;
+
+/**
+ * ストリーミングモードでアップロードファイルのパートを処理するインタフェース。<br/>
+ * <p>
+ * {@link MultipartHandler#setPartConsumer(StreamingPartConsumer)}に設定した場合、
+ * {@link MultipartHandler}は後続のハンドラを呼び出す前に、アップロードファイルのパートを
+ * 1つずつ本インタフェースに渡す。
+ * </p>
+ *
+ * @see MultipartHandler#setPartConsumer(StreamingPartConsumer)
+ */
+@Published(tag = "architect")
+public interface StreamingPartConsumer {
+
+    /**
+     * アップロードファイルのパートを処理する。<br/>
+     * パートの内容は本メソッドの中で読み込む必要がある。
+     * 本メソッドの終了後に読み込まれなかった内容は読み捨てられる。
+     *
+     * @param part    アップロードファイルのパート
+     * @param request HTTPリクエスト
+     * @param context 実行コンテキスト
+     * @throws IOException 入出力例外
+     */
+    void consume(StreamingPart part, HttpRequest request, ExecutionContext context) throws IOException;
+}
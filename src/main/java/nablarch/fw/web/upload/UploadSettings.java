@@ -4,6 +4,8 @@ import nablarch.core.util.FilePathSetting;
 
 import java.io.File;
 import java.net.URL;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * ファイルアップロードに関する各種設定値を保持するクラス。<br/>
@@ -18,6 +20,9 @@ public class UploadSettings {
     /** デフォルトの一時保存ディレクトリ */
     private static final File DEFAULT_SAVE_DIR = new File(System.getProperty("java.io.tmpdir"));
 
+    /** メモリ上に保持するアップロードファイルの合計サイズの上限のデフォルト値(32MB) */
+    private static final long DEFAULT_IN_MEMORY_BUDGET = 32L * 1024 * 1024;
+
    /** 許容するContent-Lengthの最大値 */
     private int contentLengthLimit = Integer.MAX_VALUE;
     
@@ -27,6 +32,15 @@ public class UploadSettings {
     /** ファイルの自動クリーニングを行うかどうか */
     private boolean autoCleaning = true;
 
+    /** メモリ上に保持するアップロードファイルのサイズの上限 */
+    private int inMemoryThreshold = 0;
+
+    /** メモリ上に保持するアップロードファイルの合計サイズ */
+    private InMemoryBudget inMemoryBudget = new InMemoryBudget(DEFAULT_IN_MEMORY_BUDGET);
+
+    /** アップロードファイルの内容を一時保存と同時に処理する{@link PartStreamProcessor} */
+    private List<PartStreamProcessor> partStreamProcessors = Collections.emptyList();
+
 
     /**
      * 保存ディレクトリを取得する。<br/>
@@ -107,4 +121,87 @@ public class UploadSettings {
         this.autoCleaning = autoCleaning;
     }
 
+    /**
+     * メモリ上に保持するアップロードファイルのサイズの上限を取得する。
+     *
+     * @return メモリ上に保持するアップロードファイルのサイズの上限(バイト)
+     */
+    public int getInMemoryThreshold() {
+        return inMemoryThreshold;
+    }
+
+    /**
+     * メモリ上に保持するアップロードファイルのサイズの上限を設定する。
+     * <p>
+     * サイズがこの値以下のアップロードファイルは一時ファイルを作成せずにメモリ上に保持する。
+     * この値を超えるアップロードファイルは、従来通り一時ファイルに保存する。
+     * メモリ上に保持したアップロードファイルも、{@link PartInfo#getInputStream()}、
+     * {@link PartInfo#size()}、{@link PartInfo#moveTo(File, String)}は一時ファイルに保存した場合と同様に使用できる。
+     * </p>
+     * <p>
+     * 0を設定した場合は、全てのアップロードファイルを一時ファイルに保存する。
+     * デフォルトは0。
+     * なお、自動クリーニングを行わない場合({@link #setAutoCleaning(boolean)}にfalseを設定した場合)、
+     * 本設定は無視され、全てのアップロードファイルを一時ファイルに保存する。
+     * </p>
+     *
+     * @param inMemoryThreshold メモリ上に保持するアップロードファイルのサイズの上限(バイト)
+     */
+    public void setInMemoryThreshold(int inMemoryThreshold) {
+        if (inMemoryThreshold < 0) {
+            throw new IllegalArgumentException(
+                    "inMemoryThreshold must not be negative.");
+        }
+        this.inMemoryThreshold = inMemoryThreshold;
+    }
+
+    /**
+     * メモリ上に保持するアップロードファイルの合計サイズの上限を設定する。
+     * <p>
+     * 全てのリクエストでメモリ上に保持しているアップロードファイルの合計サイズがこの値を超える場合、
+     * {@link #setInMemoryThreshold(int)}の設定値以下のアップロードファイルであっても一時ファイルに保存する。
+     * デフォルトは32MB。
+     * </p>
+     *
+     * @param inMemoryBudget メモリ上に保持するアップロードファイルの合計サイズの上限(バイト)
+     */
+    public void setInMemoryBudget(long inMemoryBudget) {
+        if (inMemoryBudget < 0) {
+            throw new IllegalArgumentException(
+                    "inMemoryBudget must not be negative.");
+        }
+        this.inMemoryBudget = new InMemoryBudget(inMemoryBudget);
+    }
+
+    /**
+     * メモリ上に保持するアップロードファイルの合計サイズを取得する。
+     *
+     * @return メモリ上に保持するアップロードファイルの合計サイズ
+     */
+    InMemoryBudget getInMemoryBudget() {
+        return inMemoryBudget;
+    }
+
+    /**
+     * アップロードファイルの内容を一時保存と同時に処理する{@link PartStreamProcessor}を取得する。
+     *
+     * @return {@link PartStreamProcessor}のリスト
+     */
+    public List<PartStreamProcessor> getPartStreamProcessors() {
+        return partStreamProcessors;
+    }
+
+    /**
+     * アップロードファイルの内容を一時保存と同時に処理する{@link PartStreamProcessor}を設定する。
+     * <p>
+     * 設定した{@link PartStreamProcessor}は、アップロードファイルを一時保存する際に設定順に呼び出される。
+     * 処理結果は{@link PartInfo#getProcessingResult(String)}で取得できる。
+     * ストリーミングモード({@link MultipartHandler#setStreaming(boolean)})では使用されない。
+     * </p>
+     *
+     * @param partStreamProcessors {@link PartStreamProcessor}のリスト
+     */
+    public void setPartStreamProcessors(List<PartStreamProcessor> partStreamProcessors) {
+        this.partStreamProcessors = partStreamProcessors;
+    }
 }
@@ -9,7 +9,7 @@ import static nablarch.core.util.StringUtil.nullToEmpty;
  *
  * @author TIS
  */
-public class UserAgent {
+public class UserAgent implements Cloneable {
 
     /** デフォルトの種類 */
     @Published
@@ -201,6 +201,23 @@ public class UserAgent {
         this.osVersion = osVersion;
     }
 
+    /**
+     * 本オブジェクトの複製を生成する。
+     * <p/>
+     * 複製はサブクラスの型を保ち、サブクラスで追加されたフィールドも含めて値がコピーされる(シャローコピー)。
+     * サブクラスで可変なオブジェクトをフィールドに持つ場合は、本メソッドをオーバーライドしてそのオブジェクトも複製すること。
+     *
+     * @return 複製した{@code UserAgent}オブジェクト
+     */
+    @Published(tag = "architect")
+    public UserAgent copy() {
+        try {
+            return (UserAgent) super.clone();
+        } catch (CloneNotSupportedException e) {
+            // Cloneableを実装しているため発生しない
+            throw new IllegalStateException(e);
+        }
+    }
 
     /**
      * 与えられた文字列がnullの場合、代替値を返却する。
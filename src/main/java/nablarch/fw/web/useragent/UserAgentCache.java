@@ -0,0 +1,291 @@
+package nablarch.fw.web.useragent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * User-Agent文字列をキーとして、User-Agent毎に決まる値を保持するキャッシュ。
+ * <p>
+ * 保持する件数には上限があり、上限に達した後は、参照回数の多いUser-Agentを優先して保持する。
+ * 上限に達した後に初めて参照されたUser-Agentは保持せず、保持していないUser-Agentの参照回数のみを数える。
+ * 保持していないUser-Agentが、保持しているUser-Agentのうち最も参照回数の少ないものより多く参照された時点で入れ替える。
+ * このため、一度しか使用されないUser-Agentを大量に送信されても、よく使用されるUser-Agentが追い出されることはない。
+ * </p>
+ * <p>
+ * 参照回数は一定回数の参照毎に半減させ、使用されなくなったUser-Agentが入れ替わるようにしている。
+ * また、{@link #setMaxKeyLength(int)}を超える長さのUser-Agent文字列は保持しない。
+ * </p>
+ * <p>
+ * 本クラスはスレッドセーフである。
+ * </p>
+ *
+ * @param <V> 保持する値の型
+ */
+@Published(tag = "architect")
+public class UserAgentCache<V> {
+
+    /**
+     * キャッシュに保持していない場合に値を生成するインタフェース。
+     *
+     * @param <V> 値の型
+     */
+    @Published(tag = "architect")
+    public interface Loader<V> {
+
+        /**
+         * User-Agent文字列に対応する値を生成する。
+         *
+         * @param userAgent User-Agent文字列
+         * @return 値
+         */
+        V load(String userAgent);
+    }
+
+    /** 保持する件数の上限のデフォルト値 */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    /** 保持する件数の上限 */
+    private final int maxSize;
+
+    /** 保持するUser-Agent文字列の長さの上限 */
+    private volatile int maxKeyLength = 512;
+
+    /** 保持している値 */
+    private final ConcurrentMap<String, Entry<V>> entries = new ConcurrentHashMap<String, Entry<V>>();
+
+    /** 保持していないUser-Agentの参照回数 */
+    private final ConcurrentMap<String, AtomicInteger> candidates = new ConcurrentHashMap<String, AtomicInteger>();
+
+    /** 参照回数を半減させるまでの残りの参照回数 */
+    private final AtomicInteger untilAging;
+
+    /** キャッシュヒット数 */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /** キャッシュミス数 */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /** 入れ替えた件数 */
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * 保持する件数の上限をデフォルト値として、キャッシュを生成する。
+     */
+    public UserAgentCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * キャッシュを生成する。
+     *
+     * @param maxSize 保持する件数の上限(0の場合は保持しない)
+     */
+    public UserAgentCache(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative. [" + maxSize + "]");
+        }
+        this.maxSize = maxSize;
+        this.untilAging = new AtomicInteger(agingInterval());
+    }
+
+    /**
+     * 保持するUser-Agent文字列の長さの上限を設定する。<br/>
+     * デフォルトは512文字。
+     *
+     * @param maxKeyLength 長さの上限
+     */
+    public void setMaxKeyLength(int maxKeyLength) {
+        this.maxKeyLength = maxKeyLength;
+    }
+
+    /**
+     * User-Agent文字列に対応する値を取得する。<br/>
+     * 保持していない場合は、{@link Loader}で生成した値を返す。
+     * User-Agent文字列が{@code null}の場合は、保持せずに{@link Loader}で生成した値を返す。
+     *
+     * @param userAgent User-Agent文字列
+     * @param loader    値を生成する{@link Loader}
+     * @return 値
+     */
+    public V get(String userAgent, Loader<V> loader) {
+        if (userAgent == null || userAgent.length() > maxKeyLength || maxSize == 0) {
+            return loader.load(userAgent);
+        }
+        age();
+        Entry<V> entry = entries.get(userAgent);
+        if (entry != null) {
+            hitCount.incrementAndGet();
+            entry.frequency.incrementAndGet();
+            return entry.value;
+        }
+        missCount.incrementAndGet();
+        V value = loader.load(userAgent);
+        admit(userAgent, value);
+        return value;
+    }
+
+    /**
+     * 保持していないUser-Agentの値を保持するか判定し、必要に応じて入れ替える。
+     *
+     * @param userAgent User-Agent文字列
+     * @param value     値
+     */
+    private void admit(String userAgent, V value) {
+        if (entries.size() < maxSize) {
+            entries.putIfAbsent(userAgent, new Entry<V>(value, 1));
+            return;
+        }
+        int frequency = recordCandidate(userAgent);
+        if (frequency < 2) {
+            // 一度しか参照されていないUser-Agentは入れ替えの対象としない
+            return;
+        }
+        String victim = null;
+        int victimFrequency = Integer.MAX_VALUE;
+        for (Map.Entry<String, Entry<V>> e : entries.entrySet()) {
+            int f = e.getValue().frequency.get();
+            if (f < victimFrequency) {
+                victim = e.getKey();
+                victimFrequency = f;
+            }
+        }
+        if (victim != null && frequency > victimFrequency && entries.remove(victim) != null) {
+            evictionCount.incrementAndGet();
+            candidates.remove(userAgent);
+            entries.putIfAbsent(userAgent, new Entry<V>(value, frequency));
+        }
+    }
+
+    /**
+     * 保持していないUser-Agentの参照回数を数える。
+     *
+     * @param userAgent User-Agent文字列
+     * @return 参照回数
+     */
+    private int recordCandidate(String userAgent) {
+        AtomicInteger counter = candidates.get(userAgent);
+        if (counter == null) {
+            if (candidates.size() >= maxSize) {
+                // 保持していないUser-Agentが多すぎる場合は、参照回数を数え直す
+                candidates.clear();
+            }
+            AtomicInteger newCounter = new AtomicInteger();
+            counter = candidates.putIfAbsent(userAgent, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        return counter.incrementAndGet();
+    }
+
+    /**
+     * 一定回数の参照毎に、参照回数を半減させる。
+     */
+    private void age() {
+        if (untilAging.decrementAndGet() > 0) {
+            return;
+        }
+        untilAging.set(agingInterval());
+        for (Entry<V> entry : entries.values()) {
+            int f;
+            do {
+                f = entry.frequency.get();
+            } while (!entry.frequency.compareAndSet(f, f / 2));
+        }
+        candidates.clear();
+    }
+
+    /**
+     * 参照回数を半減させる間隔を取得する。
+     *
+     * @return 参照回数を半減させる間隔
+     */
+    private int agingInterval() {
+        return Math.max(maxSize, 1) * 10;
+    }
+
+    /**
+     * 保持している値を全て破棄する。
+     */
+    public void clear() {
+        entries.clear();
+        candidates.clear();
+    }
+
+    /**
+     * 保持している件数を取得する。
+     *
+     * @return 保持している件数
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * キャッシュヒット数を取得する。
+     *
+     * @return キャッシュヒット数
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * キャッシュミス数を取得する。
+     *
+     * @return キャッシュミス数
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * キャッシュヒット率を取得する。
+     *
+     * @return キャッシュヒット率(参照がない場合は0)
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * 入れ替えた件数を取得する。
+     *
+     * @return 入れ替えた件数
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * 保持している値と参照回数。
+     *
+     * @param <V> 値の型
+     */
+    private static final class Entry<V> {
+
+        /** 値 */
+        private final V value;
+
+        /** 参照回数 */
+        private final AtomicInteger frequency;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param value     値
+         * @param frequency 参照回数
+         */
+        Entry(V value, int frequency) {
+            this.value = value;
+            this.frequency = new AtomicInteger(frequency);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package nablarch.common.web.interceptor;
+
+import nablarch.common.web.interceptor.sample.form.SampleForm;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.web.MockHttpRequest;
+import org.junit.Test;
+
+import java.io.Serializable;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link FormBindingPlan}のテスト。
+ */
+public class FormBindingPlanTest {
+
+    /**
+     * フォームクラス毎に同じ{@link FormBindingPlan}が使用されること。
+     */
+    @Test
+    public void testOf() {
+        assertThat(FormBindingPlan.of(SampleForm.class), is(sameInstance(FormBindingPlan.of(SampleForm.class))));
+    }
+
+    /**
+     * デフォルトコンストラクタでフォームが生成され、初期化メソッドが実行されること。
+     */
+    @Test
+    public void testNewInstanceAndInitialize() throws Throwable {
+        FormBindingPlan plan = FormBindingPlan.of(SampleForm.class);
+        for (int i = 0; i < 2; i++) {
+            // 2回目は取得済みの初期化メソッドが使用される
+            Serializable form = plan.newInstance();
+            assertThat(form, is(instanceOf(SampleForm.class)));
+            plan.initialize("setInitValues", form, new MockHttpRequest(), new ExecutionContext());
+            assertThat(((SampleForm) form).getUserId(), is("9999999999"));
+        }
+    }
+
+    /**
+     * コンストラクタや初期化メソッドにアクセスできない場合は例外が発生すること。
+     */
+    @Test
+    public void testFailed() throws Throwable {
+        try {
+            FormBindingPlan.of(NoInstance.class).newInstance();
+            fail();
+        } catch (IllegalAccessException e) {
+            // OK
+        }
+        try {
+            FormBindingPlan.of(SampleForm.class).initialize("init", new SampleForm(), new MockHttpRequest(), new ExecutionContext());
+            fail();
+        } catch (NoSuchMethodException e) {
+            // OK
+        }
+    }
+
+    private static final class NoInstance implements Serializable {
+        private NoInstance() {}
+    }
+}
@@ -32,6 +32,7 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -50,6 +51,8 @@ import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -538,6 +541,80 @@ public class BeanValidationStrategyTest {
 
     }
 
+    /**
+     * パラメータ名の位置の索引はリクエスト毎に1度だけ作成されること。
+     * 同じ位置のメッセージや、パラメータ名にないメッセージは元の順序が維持されること。
+     */
+    @Test
+    public void testSortMessagesParameterIndex() {
+        final List<String> paramNames = new ArrayList<>();
+        paramNames.add("b");
+        paramNames.add("a");
+        paramNames.add("b");
+        when(mockHttpServletRequest.getParameterNames()).thenReturn(Collections.enumeration(paramNames));
+
+        final Message global = mock(Message.class);
+        final Message unknown = propertyMessage("c");
+        final Message a = propertyMessage("a");
+        final Message b1 = propertyMessage("b");
+        final Message b2 = propertyMessage("b");
+        final List<Message> messages = new ArrayList<>();
+        Collections.addAll(messages, global, a, unknown, b1, b2);
+
+        final BeanValidationStrategy sut = new BeanValidationStrategy();
+        for (int i = 0; i < 2; i++) {
+            assertThat(sut.sortMessages(messages, context, null),
+                    IsIterableContainingInOrder.contains(b1, b2, a, global, unknown));
+        }
+        verify(mockHttpServletRequest, times(1)).getParameterNames();
+        assertThat("元のリストは変更されないこと", messages.get(0), is(global));
+    }
+
+    /**
+     * リクエストパラメータが変更された場合は、パラメータ名の位置の索引が作成し直されること。
+     */
+    @Test
+    public void testSortMessagesParameterIndexRebuilt() {
+        final Map<String, String[]> forwarded = new HashMap<>();
+        forwarded.put("a", new String[] {"1"});
+        when(mockHttpServletRequest.getParameterMap()).thenReturn(new HashMap<String, String[]>(), forwarded);
+        when(mockHttpServletRequest.getParameterNames())
+                .thenReturn(Collections.enumeration(Arrays.asList("b", "a")), Collections.enumeration(Arrays.asList("a", "b")));
+
+        final Message a = propertyMessage("a");
+        final Message b = propertyMessage("b");
+        final List<Message> messages = new ArrayList<>();
+        Collections.addAll(messages, a, b);
+
+        final BeanValidationStrategy sut = new BeanValidationStrategy();
+        assertThat(sut.sortMessages(messages, context, null), IsIterableContainingInOrder.contains(b, a));
+        // フォワードなどでパラメータMapが置き換えられた場合
+        assertThat(sut.sortMessages(messages, context, null), IsIterableContainingInOrder.contains(a, b));
+        verify(mockHttpServletRequest, times(2)).getParameterNames();
+
+        // 同じMapに要素が追加された場合
+        forwarded.put("c", new String[] {"1"});
+        when(mockHttpServletRequest.getParameterNames()).thenReturn(Collections.enumeration(Arrays.asList("b", "a", "c")));
+        assertThat(sut.sortMessages(messages, context, null), IsIterableContainingInOrder.contains(b, a));
+
+        // 同じMapで要素数を変えずにパラメータ名が置き換えられた場合
+        forwarded.remove("c");
+        forwarded.put("d", new String[] {"1"});
+        when(mockHttpServletRequest.getParameterNames()).thenReturn(Collections.enumeration(Arrays.asList("a", "d", "b")));
+        assertThat(sut.sortMessages(messages, context, null), IsIterableContainingInOrder.contains(a, b));
+
+        // パラメータの値のみが変更された場合は作成し直さないこと
+        forwarded.put("d", new String[] {"2"});
+        assertThat(sut.sortMessages(messages, context, null), IsIterableContainingInOrder.contains(a, b));
+        verify(mockHttpServletRequest, times(4)).getParameterNames();
+    }
+
+    private static Message propertyMessage(String propertyName) {
+        final ValidationResultMessage message = mock(ValidationResultMessage.class);
+        when(message.getPropertyName()).thenReturn(propertyName);
+        return message;
+    }
+
     private static class MessageMatcher extends TypeSafeMatcher<Message> {
 
         private final String message;
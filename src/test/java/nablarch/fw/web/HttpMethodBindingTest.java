@@ -2,10 +2,15 @@ package nablarch.fw.web;
 
 import static nablarch.test.support.tool.Hereis.string;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Method;
 
 import nablarch.core.util.Builder;
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.Result;
+import nablarch.fw.web.interceptor.OnError;
 import nablarch.test.support.tool.Hereis;
 import org.junit.Assert;
 import org.junit.Before;
@@ -238,7 +243,146 @@ public class HttpMethodBindingTest {
             assertEquals(404, e.getStatusCode());
         }
     }
-    
-    
 
+    /**
+     * 委譲先クラス毎の索引から、リソース名の正規化とdoへの読み替えを含めて委譲先メソッドが決定されること。
+     */
+    @Test
+    public void testDispatchIndex() {
+        Object action = new Object() {
+            public HttpResponse getIndexHtml(HttpRequest req, ExecutionContext ctx) {
+                return new HttpResponse(200);
+            }
+
+            public HttpResponse doCleanUp(HttpRequest req, ExecutionContext ctx) {
+                return new HttpResponse(201);
+            }
+
+            public HttpResponse putItem(HttpRequest req, ExecutionContext ctx) {
+                return new HttpResponse(202);
+            }
+        };
+
+        for (int i = 0; i < 2; i++) {
+            // 2回目は作成済みの索引が使用される
+            HttpRequestHandler handler = new HttpMethodBinding(action);
+            assertEquals(200, dispatch(handler, "GET", "/app/Index.HTML").getStatusCode());
+            assertEquals(200, dispatch(handler, "get", "/app/index-html/").getStatusCode());
+            assertEquals(201, dispatch(handler, "POST", "/app/clean_up").getStatusCode());
+            assertEquals(201, dispatch(handler, "GET", "/cleanUp?x=1").getStatusCode());
+            assertEquals(202, dispatch(handler, "PUT", "/item").getStatusCode());
+            assertNotFound(handler, "POST", "/app/index.html");
+            assertNotFound(handler, "PUT", "/cleanUp");
+            assertNotFound(handler, "GET", "/index.html/app");
+            assertNotFound(handler, "GET", "/index.html.bak");
+        }
+    }
+
+    /**
+     * ASCII以外の文字を含むリソース名や、サブクラスの場合も同様に委譲先メソッドが決定されること。
+     */
+    @Test
+    public void testDispatchWithoutIndex() {
+        Object action = new Object() {
+            public HttpResponse getIndexHtml(HttpRequest req, ExecutionContext ctx) {
+                return new HttpResponse(200);
+            }
+        };
+        HttpRequestHandler handler = new HttpMethodBinding(action);
+        assertEquals(200, dispatch(handler, "GET", "/app/index\u3042.html").getStatusCode());
+
+        handler = new HttpMethodBinding(action) {
+        };
+        assertEquals(200, dispatch(handler, "GET", "/app/index.html").getStatusCode());
+        assertNotFound(handler, "GET", "/app/top.html");
+    }
+
+    /**
+     * 直接呼び出す場合も、インターセプタを経由して委譲先メソッドが呼び出されること。
+     */
+    @Test
+    public void testDirectInvocation() throws Exception {
+        HttpMethodBinding.Binder binder = new HttpMethodBinding.Binder();
+        binder.setDirectInvocation(true);
+        DirectAction action = new DirectAction();
+
+        for (int i = 0; i < 2; i++) {
+            // 2回目は作成済みのインターセプタが使用される
+            HttpRequestHandler handler = (HttpRequestHandler) binder.bind(action);
+            assertEquals(200, dispatch(handler, "GET", "/app/index.html").getStatusCode());
+            try {
+                dispatch(handler, "POST", "/app/fail");
+                Assert.fail();
+            } catch (HttpErrorResponse e) {
+                assertEquals(400, e.getResponse().getStatusCode());
+            }
+            assertNotFound(handler, "GET", "/app/top.html");
+        }
+        assertEquals(2, action.count);
+
+        Method method = DirectAction.class.getMethod("doFail", HttpRequest.class, ExecutionContext.class);
+        assertSame(ActionInvoker.of(method), ActionInvoker.of(method));
+    }
+
+    /**
+     * 公開されていないクラスのメソッドも直接呼び出せること。
+     * 委譲先メソッドで発生した例外はそのまま送出されること。
+     */
+    @Test
+    public void testDirectInvocationNonPublicClass() throws Exception {
+        Object action = new Object() {
+            public HttpResponse getIndexHtml(HttpRequest req, ExecutionContext ctx) {
+                return new HttpResponse(200);
+            }
+
+            public HttpResponse doFail(HttpRequest req, ExecutionContext ctx) {
+                throw new IllegalStateException("fail");
+            }
+        };
+        HttpRequestHandler handler = new HttpMethodBinding(action, true);
+        assertEquals(200, dispatch(handler, "GET", "/app/index.html").getStatusCode());
+        try {
+            dispatch(handler, "GET", "/app/fail");
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            assertEquals("fail", e.getMessage());
+        }
+        assertNull("静的メソッドは直接呼び出さないこと",
+                ActionInvoker.of(HttpMethodBindingTest.class.getDeclaredMethod("staticAction", HttpRequest.class, ExecutionContext.class)));
+    }
+
+    public static class DirectAction {
+
+        private int count;
+
+        public HttpResponse getIndexHtml(HttpRequest req, ExecutionContext ctx) {
+            count++;
+            return new HttpResponse(200);
+        }
+
+        @OnError(type = IllegalStateException.class, path = "/error.jsp")
+        public HttpResponse doFail(HttpRequest req, ExecutionContext ctx) {
+            throw new IllegalStateException("fail");
+        }
+    }
+
+    public static HttpResponse staticAction(HttpRequest req, ExecutionContext ctx) {
+        return new HttpResponse(200);
+    }
+
+    private HttpResponse dispatch(HttpRequestHandler handler, String method, String uri) {
+        MockHttpRequest request = new MockHttpRequest();
+        request.setMethod(method);
+        request.setRequestUri(uri);
+        return handler.handle(request, ctx);
+    }
+
+    private void assertNotFound(HttpRequestHandler handler, String method, String uri) {
+        try {
+            dispatch(handler, method, uri);
+            Assert.fail();
+        } catch (Result.Error e) {
+            assertEquals(404, e.getStatusCode());
+        }
+    }
 }
@@ -0,0 +1,367 @@
+package nablarch.fw.web;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import nablarch.core.repository.ObjectLoader;
+import nablarch.core.repository.SystemRepository;
+import nablarch.fw.results.RequestEntityTooLarge;
+import nablarch.fw.results.ServiceUnavailable;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * {@link TempStorageManager}のテストクラス。
+ */
+public class TempStorageManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final TempStorageManager target = new TempStorageManager();
+
+    @After
+    public void tearDown() {
+        ResponseBody.cleanup();
+        new HttpResponseSetting().setBufferLimitSizeKb(1024).setTempDirPath(null);
+        SystemRepository.clear();
+    }
+
+    /**
+     * コンポーネント設定ファイルに定義されていない場合は、上限なしのインスタンスが使用されること。
+     */
+    @Test
+    public void testGet() {
+        TempStorageManager defaultManager = TempStorageManager.get();
+        assertThat(defaultManager.isMemoryFallback(), is(false));
+        TempStorageManager.beginRequest();
+        assertThat(defaultManager.newLease().acquire(Long.MAX_VALUE / 2), is(true));
+        TempStorageManager.endRequest();
+
+        register(target);
+        assertThat(TempStorageManager.get(), is(sameInstance(target)));
+    }
+
+    /**
+     * 上限内であればサイズを確保でき、解放すると使用中のサイズが減ること。
+     */
+    @Test
+    public void testAcquireAndRelease() {
+        target.setMaxTotalBytes(100);
+        TempStorageManager.Lease lease = target.newLease();
+        assertThat(lease.acquire(60), is(true));
+        assertThat(lease.acquire(40), is(true));
+        assertThat(lease.getBytes(), is(100L));
+        assertThat(target.getLiveBytes(), is(100L));
+        assertThat("一時ファイルを作成するまでは数えないこと", target.getLiveFiles(), is(0L));
+        lease.markFileCreated();
+        lease.markFileCreated();
+        assertThat(target.getLiveFiles(), is(1L));
+
+        lease.release();
+        lease.release();
+        assertThat("2回目の解放では何もしないこと", target.getLiveBytes(), is(0L));
+        assertThat(target.getLiveFiles(), is(0L));
+        assertThat(target.getPeakBytes(), is(100L));
+        TempStorageManager.endRequest();
+    }
+
+    /**
+     * REJECTの場合、全リクエストの上限を超えると503、1リクエストの上限を超えると413となること。
+     */
+    @Test
+    public void testReject() {
+        target.setMaxTotalBytes(100);
+        target.setMaxRequestBytes(50);
+
+        TempStorageManager.beginRequest();
+        TempStorageManager.Lease lease = target.newLease();
+        assertThat(lease.acquire(40), is(true));
+        try {
+            target.newLease().acquire(20);
+            fail("1リクエストの上限を超えるため、例外が発生すること");
+        } catch (RequestEntityTooLarge e) {
+            assertThat(e.getStatusCode(), is(413));
+        }
+        lease.release();
+        TempStorageManager.endRequest();
+
+        // リクエストの処理中でない場合は、1リクエストの上限はLease毎に適用される
+        assertThat("別のリクエストでは確保できること", target.newLease().acquire(50), is(true));
+        assertThat(target.newLease().acquire(50), is(true));
+        try {
+            target.newLease().acquire(20);
+            fail("全リクエストの上限を超えるため、例外が発生すること");
+        } catch (ServiceUnavailable e) {
+            assertThat(e.getStatusCode(), is(503));
+        }
+        assertThat(target.getRejectedCount(), is(2L));
+    }
+
+    /**
+     * WAITの場合、空きができるまで待機し、時間内に空きができなければ503となること。
+     */
+    @Test
+    public void testWait() throws Exception {
+        target.setMaxTotalBytes(100);
+        target.setOverflowPolicy("wait");
+        target.setWaitTimeoutMillis(50);
+
+        final TempStorageManager.Lease lease = target.newLease();
+        lease.acquire(100);
+        try {
+            target.newLease().acquire(1);
+            fail("空きができないため、例外が発生すること");
+        } catch (ServiceUnavailable e) {
+            assertThat(e.getStatusCode(), is(503));
+        }
+
+        target.setWaitTimeoutMillis(10000);
+        Thread releaser = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                    return;
+                }
+                lease.release();
+            }
+        };
+        releaser.start();
+        assertThat("解放されると確保できること", target.newLease().acquire(100), is(true));
+        releaser.join();
+        assertThat(target.getWaitedCount(), is(2L));
+        assertThat(target.getRejectedCount(), is(1L));
+        TempStorageManager.endRequest();
+    }
+
+    /**
+     * MEMORYの場合、上限を超えると例外を送出せずにfalseを返すこと。
+     */
+    @Test
+    public void testMemory() {
+        target.setMaxTotalBytes(10);
+        target.setOverflowPolicy("MEMORY");
+        assertThat(target.isMemoryFallback(), is(true));
+
+        TempStorageManager.Lease lease = target.newLease();
+        assertThat(lease.acquire(11), is(false));
+        assertThat(lease.acquire(12), is(false));
+        assertThat(lease.getBytes(), is(0L));
+        assertThat("Lease毎に1回だけ数えること", target.getMemoryFallbackCount(), is(1L));
+        assertThat(target.getRejectedCount(), is(0L));
+        assertThat(target.newLease().acquire(11), is(false));
+        assertThat(target.getMemoryFallbackCount(), is(2L));
+        TempStorageManager.endRequest();
+    }
+
+    /**
+     * リクエストの処理終了時に、解放されていない{@link TempStorageManager.Lease}が全て解放されること。
+     */
+    @Test
+    public void testEndRequest() {
+        target.setMaxTotalBytes(100);
+        assertThat(TempStorageManager.beginRequest(), is(true));
+        assertThat("集計中は開始しないこと", TempStorageManager.beginRequest(), is(false));
+
+        TempStorageManager.Lease lease = target.newLease();
+        lease.acquire(60);
+        lease.markFileCreated();
+        TempStorageManager.Lease reserved = target.newLease();
+        reserved.reserve(70);
+        reserved.markFileCreated();
+        assertThat("上限に関わらず確保されること", target.getLiveBytes(), is(130L));
+        assertThat(target.getLiveFiles(), is(2L));
+
+        TempStorageManager.endRequest();
+        assertThat(target.getLiveBytes(), is(0L));
+        assertThat(target.getLiveFiles(), is(0L));
+        lease.release();
+        assertThat("解放済みのLeaseは解放しないこと", target.getLiveFiles(), is(0L));
+
+        assertThat("終了後は再び集計を開始できること", TempStorageManager.beginRequest(), is(true));
+        TempStorageManager.endRequest();
+    }
+
+    /**
+     * 不正な動作が指定された場合は例外が発生すること。
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidOverflowPolicy() {
+        target.setOverflowPolicy("DISCARD");
+    }
+
+    /**
+     * ラップした出力ストリームへの書き込み時にサイズが確保されること。
+     */
+    @Test
+    public void testWrap() throws IOException {
+        target.setMaxTotalBytes(5);
+        TempStorageManager.Lease lease = target.newLease();
+        OutputStream out = lease.wrap(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        });
+        out.write('a');
+        out.write(new byte[] {'b', 'c', 'd'}, 0, 3);
+        assertThat(lease.getBytes(), is(4L));
+        try {
+            out.write(new byte[2]);
+            fail("上限を超えるため、例外が発生すること");
+        } catch (ServiceUnavailable e) {
+            assertThat(lease.getBytes(), is(4L));
+        }
+        lease.release();
+        TempStorageManager.endRequest();
+    }
+
+    /**
+     * 初期化時に、経過時間を過ぎた一時ファイル(レスポンスボディ、アップロードファイル)のみが削除されること。
+     */
+    @Test
+    public void testInitialize() throws IOException {
+        File dir = folder.newFolder();
+        File orphan = new File(dir, "nablarch_temp_1.tmp");
+        File recent = new File(dir, "nablarch_temp_2.tmp");
+        File other = new File(dir, "other.tmp");
+        File upload = new File(dir, "17000000000001230a1b2c3d4e.txt");
+        File resumable = new File(dir, "nablarch_resumable_0123");
+        for (File file : Arrays.asList(orphan, recent, other, upload, resumable)) {
+            assertThat(file.createNewFile(), is(true));
+            file.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000L);
+        }
+        recent.setLastModified(System.currentTimeMillis());
+
+        target.setReclaimDirs(Arrays.asList(dir.getPath(), new File(dir, "notFound").getPath()));
+        target.initialize();
+
+        assertThat(orphan.exists(), is(false));
+        assertThat(recent.exists(), is(true));
+        assertThat(other.exists(), is(true));
+        assertThat(upload.exists(), is(false));
+        assertThat(resumable.exists(), is(false));
+        assertThat(target.getReclaimedFiles(), is(3L));
+    }
+
+    /**
+     * レスポンスボディの一時ファイルのサイズが集計され、リクエストの処理終了時に解放されること。
+     */
+    @Test
+    public void testResponseBody() {
+        new HttpResponseSetting().setBufferLimitSizeKb(32);
+        register(target);
+
+        HttpResponse response = new HttpResponse(200);
+        response.write(new byte[1000]);
+        assertThat("ヒープ上のバッファに収まる場合は確保しないこと", target.getLiveBytes(), is(0L));
+        response.write(new byte[20000]);
+        response.write(new byte[500]);
+        assertThat(target.getLiveBytes(), is(21500L));
+        assertThat(target.getLiveFiles(), is(1L));
+
+        ResponseBody.cleanup();
+        assertThat(target.getLiveBytes(), is(0L));
+        assertThat(target.getLiveFiles(), is(0L));
+    }
+
+    /**
+     * MEMORYの場合、上限を超えるとレスポンスボディがヒープ上に保持されること。
+     */
+    @Test
+    public void testResponseBodyMemoryFallback() {
+        new HttpResponseSetting().setBufferLimitSizeKb(32);
+        target.setMaxTotalBytes(15000);
+        target.setOverflowPolicy("MEMORY");
+        register(target);
+
+        HttpResponse response = new HttpResponse(200);
+        response.write("0123456789");
+        response.write(new byte[20000]);
+        response.write(new byte[20000]);
+        assertThat(target.getLiveBytes(), is(0L));
+        assertThat("ボディ毎に1回だけ数えること", target.getMemoryFallbackCount(), is(1L));
+        assertThat(target.getLiveFiles(), is(0L));
+        String body = response.getBodyString();
+        assertThat(body.substring(0, 10), is("0123456789"));
+        assertThat(body.length(), is(40010));
+
+        ResponseBody.cleanup();
+        assertThat(target.getLiveFiles(), is(0L));
+    }
+
+    /**
+     * REJECTの場合、上限を超えるとレスポンスボディへの書き込み時に例外が発生すること。
+     */
+    @Test
+    public void testResponseBodyReject() {
+        new HttpResponseSetting().setBufferLimitSizeKb(32);
+        target.setMaxRequestBytes(15000);
+        register(target);
+
+        HttpResponse response = new HttpResponse(200);
+        try {
+            response.write(new byte[20000]);
+            fail("1リクエストの上限を超えるため、例外が発生すること");
+        } catch (RequestEntityTooLarge e) {
+            assertThat(target.getRejectedCount(), is(1L));
+        }
+        assertThat("一時ファイルを作成する前に拒否されること", target.getLiveFiles(), is(0L));
+    }
+
+    /**
+     * REJECTの場合、一時ファイルへの書き込み途中で上限を超えると、書き込み途中の一時ファイルが削除されること。
+     */
+    @Test
+    public void testResponseBodyRejectAfterTempFileCreated() throws IOException {
+        File dir = folder.newFolder();
+        HttpResponseSetting setting = new HttpResponseSetting();
+        setting.setBufferLimitSizeKb(1);
+        setting.setTempDirPath(dir.getPath());
+        target.setMaxRequestBytes(5000);
+        register(target);
+
+        HttpResponse response = new HttpResponse(200);
+        response.write(new byte[2000]);
+        assertThat(dir.listFiles().length, is(1));
+        assertThat(target.getLiveFiles(), is(1L));
+        try {
+            response.write(new byte[4000]);
+            fail("1リクエストの上限を超えるため、例外が発生すること");
+        } catch (RequestEntityTooLarge e) {
+            assertThat(e.getStatusCode(), is(413));
+        }
+        assertThat(dir.listFiles().length, is(0));
+        assertThat(target.getLiveBytes(), is(0L));
+        assertThat(target.getLiveFiles(), is(0L));
+    }
+
+    /**
+     * リポジトリに登録する。
+     *
+     * @param manager {@link TempStorageManager}
+     */
+    private static void register(final TempStorageManager manager) {
+        SystemRepository.load(new ObjectLoader() {
+            @Override
+            public Map<String, Object> load() {
+                Map<String, Object> components = new HashMap<String, Object>();
+                components.put("tempStorageManager", manager);
+                return components;
+            }
+        });
+    }
+}
@@ -155,6 +155,35 @@ public class DownloadFileNameEncoderFactoryTest {
         }
     }
     
+    @Test
+    public void testGetEncoderCached() {
+        UrlDownloadFileNameEncoder urlEncoder = new UrlDownloadFileNameEncoder();
+        MimeBDownloadFileNameEncoder mimeEncoder = new MimeBDownloadFileNameEncoder();
+        ArrayList<DownloadFileNameEncoderEntry> list = new ArrayList<DownloadFileNameEncoderEntry>();
+        list.add(createEntry(".*WebKit.*", urlEncoder));
+
+        DownloadFileNameEncoderFactory factory = new DownloadFileNameEncoderFactory();
+        factory.setDownloadFileNameEncoderEntries(list);
+
+        String userAgent = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko)";
+        Assert.assertSame(urlEncoder, factory.getEncoder(userAgent));
+        Assert.assertSame(urlEncoder, factory.getEncoder(userAgent));
+        Assert.assertEquals(1L, factory.getEncoderCache().getHitCount());
+        Assert.assertEquals(1L, factory.getEncoderCache().getMissCount());
+
+        // エントリを変更した場合は、選択済みのエンコーダが破棄されること
+        list = new ArrayList<DownloadFileNameEncoderEntry>();
+        list.add(createEntry(".*Gecko.*", mimeEncoder));
+        factory.setDownloadFileNameEncoderEntries(list);
+        Assert.assertEquals(0, factory.getEncoderCache().size());
+        Assert.assertSame(mimeEncoder, factory.getEncoder(userAgent));
+
+        // 保持しない設定の場合も、エンコーダが選択されること
+        factory.setEncoderCacheSize(0);
+        Assert.assertSame(mimeEncoder, factory.getEncoder(userAgent));
+        Assert.assertEquals(0, factory.getEncoderCache().size());
+    }
+
     private DownloadFileNameEncoderEntry createEntry(String userAgentPattern, DownloadFileNameEncoder encoder) {
         DownloadFileNameEncoderEntry entry = new DownloadFileNameEncoderEntry();
         entry.setUserAgentPattern(userAgentPattern);
@@ -0,0 +1,155 @@
+package nablarch.fw.web.handler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import nablarch.fw.web.HttpResponse;
+import nablarch.fw.web.handler.HttpAccessLogFormatter.HttpAccessLogContext;
+import nablarch.fw.web.servlet.MockServletRequest;
+import nablarch.fw.web.servlet.ServletExecutionContext;
+import org.junit.Test;
+
+/**
+ * {@link AccessLogSampler}のテスト。
+ */
+public class AccessLogSamplerTest {
+
+    /**
+     * 最初に前方一致したパスの抽出率が適用され、一致しない場合はデフォルトの抽出率が適用されること。
+     */
+    @Test
+    public void testSample() {
+        AccessLogSampler sut = new AccessLogSampler("/action/search=0.0, /action/=1.0", 0.0d, 0, 500);
+
+        HttpAccessLogContext search = createLogContext("/action/search/list");
+        sut.sample(search);
+        assertFalse(search.isSampled());
+
+        HttpAccessLogContext menu = createLogContext("/action/menu");
+        sut.sample(menu);
+        assertTrue(menu.isSampled());
+
+        HttpAccessLogContext other = createLogContext("/css/style.css");
+        sut.sample(other);
+        assertFalse(other.isSampled());
+
+        Map<String, Double> rates = sut.getEffectiveRates();
+        assertThat(rates.keySet(), contains("/action/search", "/action/", "*"));
+        assertThat(rates.get("/action/search"), is(0.0d));
+        assertThat(rates.get("/action/"), is(1.0d));
+        assertThat(rates.get("*"), is(0.0d));
+    }
+
+    /**
+     * 1秒あたりの上限を超えた分は抽出されないこと。
+     */
+    @Test
+    public void testMaxPerSecond() {
+        AccessLogSampler sut = new AccessLogSampler(null, 1.0d, 2, 500);
+
+        int sampled = 0;
+        for (int i = 0; i < 10; i++) {
+            HttpAccessLogContext context = createLogContext("/action/menu");
+            sut.sample(context);
+            if (context.isSampled()) {
+                sampled++;
+            }
+        }
+        assertTrue("sampled = " + sampled, sampled >= 2 && sampled < 10);
+        assertThat(sut.getEffectiveRates().get("*"), closeTo(sampled / 10.0d, 0.0001d));
+    }
+
+    /**
+     * ステータスコードが閾値以上の場合のみ抽出対象に変更され、実際の抽出率に含まれること。
+     */
+    @Test
+    public void testPromoteOnError() {
+        AccessLogSampler sut = new AccessLogSampler(null, 0.0d, 0, 500);
+
+        HttpAccessLogContext success = createLogContext("/action/menu");
+        sut.sample(success);
+        success.setResponse(new HttpResponse(404));
+        assertFalse(sut.promoteOnError(success));
+        assertFalse(success.isSampled());
+
+        HttpAccessLogContext error = createLogContext("/action/menu");
+        sut.sample(error);
+        error.setResponse(new HttpResponse(503));
+        assertTrue(sut.promoteOnError(error));
+        assertTrue(error.isSampled());
+        assertFalse(sut.promoteOnError(error));
+
+        assertThat(sut.getEffectiveRates().get("*"), is(0.5d));
+    }
+
+    /**
+     * 閾値に0を指定した場合は、ステータスコードによって抽出対象に変更されないこと。
+     */
+    @Test
+    public void testPromoteOnErrorDisabled() {
+        AccessLogSampler sut = new AccessLogSampler(null, 0.0d, 0, 0);
+
+        HttpAccessLogContext context = createLogContext("/action/menu");
+        sut.sample(context);
+        context.setResponse(new HttpResponse(500));
+        assertFalse(sut.promoteOnError(context));
+        assertFalse(context.isSampled());
+    }
+
+    /**
+     * 判定したリクエストがない場合、実際の抽出率は空となること。
+     */
+    @Test
+    public void testNoRequest() {
+        AccessLogSampler sut = new AccessLogSampler("/action/=0.5", 1.0d, 0, 500);
+        assertTrue(sut.getEffectiveRates().isEmpty());
+    }
+
+    /**
+     * 不正な指定の場合は例外が送出されること。
+     */
+    @Test
+    public void testIllegalSetting() {
+        try {
+            new AccessLogSampler("/action/", 1.0d, 0, 500);
+            throw new AssertionError("must throw IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("sampling rate must be specified as 'path=rate'. entry = [/action/]"));
+        }
+        try {
+            new AccessLogSampler("action=0.5", 1.0d, 0, 500);
+            throw new AssertionError("must throw IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("sampling path must start with '/'. path = [action]"));
+        }
+        try {
+            new AccessLogSampler(null, 1.5d, 0, 500);
+            throw new AssertionError("must throw IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("sampling rate must be between 0.0 and 1.0. name = [*], rate = 1.5"));
+        }
+    }
+
+    /**
+     * リクエストパスを指定して{@link HttpAccessLogContext}を生成する。
+     *
+     * @param path リクエストパス
+     * @return {@link HttpAccessLogContext}
+     */
+    private static HttpAccessLogContext createLogContext(String path) {
+        MockServletRequest servletReq = new MockServletRequest();
+        servletReq.setContextPath("");
+        servletReq.setRequestURI(path);
+        ServletExecutionContext context = new ServletExecutionContext(servletReq, null, null);
+        HttpAccessLogContext logContext = new HttpAccessLogContext();
+        logContext.setContext(context);
+        logContext.setRequest(context.getHttpRequest());
+        return logContext;
+    }
+}
@@ -0,0 +1,246 @@
+package nablarch.fw.web.handler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.core.ThreadContext;
+import nablarch.core.log.Logger;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * {@link AsyncHttpAccessLogWriter}のテスト。
+ */
+public class AsyncHttpAccessLogWriterTest {
+
+    /** 書き込まれたメッセージ */
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+
+    /** 書き込んだスレッドのリクエストID */
+    private final List<String> requestIds = Collections.synchronizedList(new ArrayList<String>());
+
+    /** 書き込んだスレッド */
+    private final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+
+    /** 書き込みを待たせるラッチ */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        ThreadContext.clear();
+    }
+
+    /**
+     * 格納したログが、格納した順にリクエストスレッドのスレッドコンテキストの値で書き込まれること。
+     */
+    @Test
+    public void testSubmit() {
+        release.countDown();
+        AsyncHttpAccessLogWriter sut = new AsyncHttpAccessLogWriter(
+                recordingLogger(), 16, 4, AsyncHttpAccessLogWriter.FullPolicy.BLOCK);
+
+        for (int i = 0; i < 10; i++) {
+            ThreadContext.setRequestId("req" + i);
+            sut.submit("message" + i, new Object[0]);
+        }
+        sut.terminate(5000L);
+
+        assertThat(messages.size(), is(10));
+        for (int i = 0; i < 10; i++) {
+            assertThat(messages.get(i), is("message" + i));
+            assertThat(requestIds.get(i), is("req" + i));
+            assertTrue(threads.get(i) != Thread.currentThread());
+        }
+        assertThat(sut.getEnqueuedCount(), is(10L));
+        assertThat(sut.getDroppedCount(), is(0L));
+        assertThat(sut.getQueuedCount(), is(0));
+    }
+
+    /**
+     * DROPの場合、バッファが満杯の時に格納したログが破棄され、件数が数えられること。
+     */
+    @Test
+    public void testDropPolicy() throws Exception {
+        AsyncHttpAccessLogWriter sut = new AsyncHttpAccessLogWriter(
+                recordingLogger(), 2, 1, AsyncHttpAccessLogWriter.FullPolicy.DROP);
+
+        sut.submit("message0", new Object[0]);
+        awaitEmpty(sut);
+        sut.submit("message1", new Object[0]);
+        sut.submit("message2", new Object[0]);
+        sut.submit("message3", new Object[0]);
+        sut.submit("message4", new Object[0]);
+
+        assertThat(sut.getQueuedCount(), is(2));
+        assertThat(sut.getEnqueuedCount(), is(3L));
+        assertThat(sut.getDroppedCount(), is(2L));
+
+        release.countDown();
+        sut.terminate(5000L);
+
+        assertThat(messages, contains("message0", "message1", "message2"));
+    }
+
+    /**
+     * BLOCKの場合、バッファが満杯の時はログを破棄せずに空きができるまで待つこと。
+     */
+    @Test
+    public void testBlockPolicy() throws Exception {
+        final AsyncHttpAccessLogWriter sut = new AsyncHttpAccessLogWriter(
+                recordingLogger(), 1, 1, AsyncHttpAccessLogWriter.FullPolicy.BLOCK);
+
+        sut.submit("message0", new Object[0]);
+        awaitEmpty(sut);
+        sut.submit("message1", new Object[0]);
+        Thread blocked = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sut.submit("message2", new Object[0]);
+            }
+        });
+        blocked.start();
+        blocked.join(200L);
+        assertTrue(blocked.isAlive());
+
+        release.countDown();
+        blocked.join(5000L);
+        sut.terminate(5000L);
+
+        assertThat(messages, contains("message0", "message1", "message2"));
+        assertThat(sut.getDroppedCount(), is(0L));
+    }
+
+    /**
+     * BLOCKの場合でも、書き込みスレッドが停止している時は呼び出し元のスレッドで直接書き込まれること。
+     */
+    @Test
+    public void testBlockPolicyWithoutWriterThread() throws Exception {
+        release.countDown();
+        AsyncHttpAccessLogWriter sut = new AsyncHttpAccessLogWriter(
+                recordingLogger(), 1, 1, AsyncHttpAccessLogWriter.FullPolicy.BLOCK);
+
+        // 書き込みスレッドをErrorで停止させる
+        sut.submit("die", new Object[0]);
+        awaitEmpty(sut);
+        sut.submit("message1", new Object[0]);
+        sut.submit("message2", new Object[0]);
+
+        assertThat(messages, contains("message2"));
+        assertTrue(threads.get(0) == Thread.currentThread());
+
+        sut.terminate(5000L);
+        assertThat(messages, contains("message2", "message1"));
+    }
+
+    /**
+     * 書き込みに失敗した場合は件数を数え、書き込みスレッドは後続のログの書き込みを継続すること。
+     */
+    @Test
+    public void testWriteFailure() throws Exception {
+        release.countDown();
+        AsyncHttpAccessLogWriter sut = new AsyncHttpAccessLogWriter(
+                recordingLogger(), 16, 4, AsyncHttpAccessLogWriter.FullPolicy.BLOCK);
+
+        sut.submit("fail", new Object[0]);
+        sut.submit("message1", new Object[0]);
+        awaitEmpty(sut);
+        sut.submit("fail", new Object[0]);
+        sut.submit("message2", new Object[0]);
+        sut.terminate(5000L);
+
+        assertThat(messages, contains("message1", "message2"));
+        assertThat(sut.getFailedCount(), is(2L));
+    }
+
+    /**
+     * 終了後に格納したログは、呼び出し元のスレッドで直接書き込まれること。
+     */
+    @Test
+    public void testSubmitAfterTerminate() {
+        release.countDown();
+        AsyncHttpAccessLogWriter sut = new AsyncHttpAccessLogWriter(
+                recordingLogger(), 16, 4, AsyncHttpAccessLogWriter.FullPolicy.BLOCK);
+        sut.terminate(5000L);
+
+        sut.submit("message0", new Object[0]);
+
+        assertThat(messages, contains("message0"));
+        assertTrue(threads.get(0) == Thread.currentThread());
+        assertThat(sut.getEnqueuedCount(), is(0L));
+    }
+
+    /**
+     * バッファの容量と取り出す件数に0以下を指定した場合、例外が送出されること。
+     */
+    @Test
+    public void testIllegalSize() {
+        try {
+            new AsyncHttpAccessLogWriter(recordingLogger(), 0, 1, AsyncHttpAccessLogWriter.FullPolicy.BLOCK);
+            throw new AssertionError("must throw IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("bufferSize must be greater than 0. bufferSize = 0"));
+        }
+        try {
+            new AsyncHttpAccessLogWriter(recordingLogger(), 1, 0, AsyncHttpAccessLogWriter.FullPolicy.BLOCK);
+            throw new AssertionError("must throw IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("batchSize must be greater than 0. batchSize = 0"));
+        }
+    }
+
+    /**
+     * 書き込みスレッドがバッファからログを取り出すまで待つ。
+     *
+     * @param sut テスト対象
+     * @throws InterruptedException 割り込まれた場合
+     */
+    private static void awaitEmpty(AsyncHttpAccessLogWriter sut) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sut.getQueuedCount() != 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertThat(sut.getQueuedCount(), is(0));
+    }
+
+    /**
+     * INFOレベルのメッセージを記録するロガーを生成する。
+     * <p/>
+     * {@link #release}が解放されるまで書き込みを待つ。
+     *
+     * @return ロガー
+     */
+    private Logger recordingLogger() {
+        return (Logger) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Logger.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (!"logInfo".equals(method.getName())) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        release.await(5, TimeUnit.SECONDS);
+                        if ("fail".equals(args[0])) {
+                            throw new IllegalStateException("fail");
+                        }
+                        if ("die".equals(args[0])) {
+                            throw new Error("die");
+                        }
+                        messages.add((String) args[0]);
+                        requestIds.add(ThreadContext.getRequestId());
+                        threads.add(Thread.currentThread());
+                        return null;
+                    }
+                });
+    }
+}
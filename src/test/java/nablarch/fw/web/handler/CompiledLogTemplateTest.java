@@ -0,0 +1,58 @@
+package nablarch.fw.web.handler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+import org.junit.Test;
+
+/**
+ * {@link CompiledLogTemplate}のテスト。
+ */
+public class CompiledLogTemplateTest {
+
+    /**
+     * {@link SimpleDateFormat}と同じ結果となるパターンの場合、同じ文字列にフォーマットされること。
+     */
+    @Test
+    public void testToDateTimeFormatter() {
+        String[] patterns = {"yyyy-MM-dd HH:mm:ss.SSS", "yyyy/MM/dd hh:mm:ss a", "yyyyMMdd'T'HHmmss"};
+        long[] times = {0L, 1500000000123L, 1700000000999L};
+        for (String pattern : patterns) {
+            DateTimeFormatter formatter = CompiledLogTemplate.toDateTimeFormatter(new SimpleDateFormat(pattern));
+            assertThat(pattern, formatter, is(notNullValue()));
+            for (long time : times) {
+                assertThat(pattern, formatter.format(Instant.ofEpochMilli(time)),
+                        is(new SimpleDateFormat(pattern).format(new Date(time))));
+            }
+        }
+    }
+
+    /**
+     * {@link SimpleDateFormat}と結果が異なるパターンの場合、{@code null}が返されること。
+     */
+    @Test
+    public void testToDateTimeFormatterWithIncompatiblePattern() {
+        assertThat(CompiledLogTemplate.toDateTimeFormatter(new SimpleDateFormat("yyyy/MM/dd HH-mm-ss[SSS]")), is(nullValue()));
+        assertThat(CompiledLogTemplate.toDateTimeFormatter(new SimpleDateFormat("HH:mm:ss.S")), is(nullValue()));
+        assertThat(CompiledLogTemplate.toDateTimeFormatter(new SimpleDateFormat("yyyy-MM-dd z")), is(nullValue()));
+        assertThat(CompiledLogTemplate.toDateTimeFormatter(new SimpleDateFormat("YYYY-MM-dd")), is(nullValue()));
+    }
+
+    /**
+     * {@link SimpleDateFormat}以外の日時フォーマットの場合、{@code null}が返されること。
+     */
+    @Test
+    public void testToDateTimeFormatterWithOtherDateFormat() {
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd") {
+        };
+        assertThat(CompiledLogTemplate.toDateTimeFormatter(dateFormat), is(nullValue()));
+    }
+}
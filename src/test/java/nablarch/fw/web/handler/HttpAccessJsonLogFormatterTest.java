@@ -4,6 +4,7 @@ import nablarch.common.web.MockHttpSession;
 import nablarch.common.web.handler.NormalHandler;
 import nablarch.common.web.session.InternalSessionUtil;
 import nablarch.core.ThreadContext;
+import nablarch.core.log.CustomClassLoader;
 import nablarch.core.log.LogTestSupport;
 import nablarch.core.text.json.BasicJsonSerializationManager;
 import nablarch.core.text.json.JsonSerializationManager;
@@ -44,6 +45,16 @@ public class HttpAccessJsonLogFormatterTest extends LogTestSupport {
     @Rule
     public SystemPropertyCleaner systemPropertyCleaner = new SystemPropertyCleaner();
 
+    /**
+     * 変更したシステムプロパティを反映するため、ログの設定を読み込み直す。
+     * <p/>
+     * {@link nablarch.core.log.app.AppLogUtil}はコンテキストクラスローダ毎に設定を保持するため、クラスローダを切り替える。
+     */
+    private static void reloadProps() {
+        Thread.currentThread().setContextClassLoader(
+                new CustomClassLoader(Thread.currentThread().getContextClassLoader()));
+    }
+
     @Before
     public void setup() {
         ThreadContext.clear();
@@ -666,6 +677,62 @@ public class HttpAccessJsonLogFormatterTest extends LogTestSupport {
         assertThat(formatter.containsMemoryItem(), is(true));
     }
 
+    /**
+     * formatEnd のターゲットに cpuTime、allocatedBytes が設定されている場合のみ、
+     * containsCpuTimeItem、containsAllocatedBytesItem に true が設定されていることをテスト。
+     */
+    @Test
+    public void testContainsThreadItem() {
+        System.setProperty("httpAccessLogFormatter.beginTargets", "cpuTime,allocatedBytes");
+        System.setProperty("httpAccessLogFormatter.endTargets", "label");
+        HttpAccessLogFormatter formatter = new HttpAccessJsonLogFormatter();
+        assertThat(formatter.containsCpuTimeItem(), is(false));
+        assertThat(formatter.containsAllocatedBytesItem(), is(false));
+
+        System.setProperty("httpAccessLogFormatter.endTargets", "label,cpuTime");
+        reloadProps();
+        formatter = new HttpAccessJsonLogFormatter();
+        assertThat(formatter.containsCpuTimeItem(), is(true));
+        assertThat(formatter.containsAllocatedBytesItem(), is(false));
+
+        System.setProperty("httpAccessLogFormatter.endTargets", "label,allocatedBytes");
+        reloadProps();
+        formatter = new HttpAccessJsonLogFormatter();
+        assertThat(formatter.containsCpuTimeItem(), is(false));
+        assertThat(formatter.containsAllocatedBytesItem(), is(true));
+    }
+
+    /**
+     * CPU時間と割り当てたメモリ量が、ストリーミングの有無に関わらず出力され、
+     * 計測できなかった場合は出力されないことをテスト。
+     */
+    @Test
+    public void testCpuTimeAndAllocatedBytes() {
+        System.setProperty("httpAccessLogFormatter.endTargets", "label,cpuTime,allocatedBytes");
+
+        HttpAccessLogFormatter formatter = new HttpAccessJsonLogFormatter();
+        System.setProperty("httpAccessLogFormatter.streamingEnabled", "true");
+        reloadProps();
+        HttpAccessLogFormatter streaming = new HttpAccessJsonLogFormatter();
+
+        for (HttpAccessLogFormatter sut : new HttpAccessLogFormatter[] {formatter, streaming}) {
+            HttpAccessLogFormatter.HttpAccessLogContext logContext = createEmptyLogContext();
+            logContext.setStartCpuTime(1000000L);
+            logContext.setEndCpuTime(13500000L);
+            logContext.setStartAllocatedBytes(2048L);
+            logContext.setEndAllocatedBytes(10240L);
+            assertThat(sut.formatEnd(logContext).substring("$JSON$".length()), isJson(allOf(
+                    withJsonPath("$", hasEntry("cpuTime", 12)),
+                    withJsonPath("$", hasEntry("allocatedBytes", 8192)))));
+
+            logContext = createEmptyLogContext();
+            assertThat(sut.formatEnd(logContext).substring("$JSON$".length()), isJson(allOf(
+                    withJsonPath("$", hasEntry("label", "HTTP ACCESS END")),
+                    withoutJsonPath("$.cpuTime"),
+                    withoutJsonPath("$.allocatedBytes"))));
+        }
+    }
+
     /**
      * {@code structuredMessagePrefix}の指定ができることをテスト。
      */
@@ -773,6 +840,156 @@ public class HttpAccessJsonLogFormatterTest extends LogTestSupport {
         )));
     }
 
+    /**
+     * {@code streamingEnabled}を指定した場合に、JSONを直接書き込んでフォーマットできることをテスト。
+     */
+    @Test
+    public void testStreaming() throws Exception {
+        System.setProperty("httpAccessLogFormatter.streamingEnabled", "true");
+        System.setProperty("httpAccessLogFormatter.endTargets",
+                "label,requestId,userId,sessionId,sessionStoreId,url,statusCode,contentPath,"
+                        + "startTime,endTime,executionTime,maxMemory,freeMemory,sessionScope");
+        System.setProperty("httpAccessLogFormatter.maskingPatterns", "sparam2");
+
+        HttpAccessLogFormatter.HttpAccessLogContext logContext = createEmptyLogContext();
+        MockServletRequest servletReq = extractMockServletRequest(logContext);
+        servletReq.setRequestUrl("request_url_\"test\"\n");
+        logContext.setStartTime(toMilliseconds("2021-03-03 19:23:52.553"));
+        logContext.setEndTime(toMilliseconds("2021-03-03 19:23:52.853"));
+        logContext.setMaxMemory(2088763392);
+        logContext.setFreeMemory(1088763392);
+        ((MockHttpSession) servletReq.getSession()).setId("session_id_test");
+        logContext.setResponse(new HttpResponse(404, "/success.jsp"));
+        Map<String, Object> sessionScope = logContext.getContext().getSessionScopeMap();
+        sessionScope.put("sparam1", "sparam1_test");
+        sessionScope.put("sparam2", "sparam2_test");
+
+        ThreadContext.setRequestId("request_id_test");
+
+        HttpAccessLogFormatter formatter = new HttpAccessJsonLogFormatter();
+        String message = formatter.formatEnd(logContext);
+        assertThat(message.startsWith("$JSON$"), is(true));
+        assertThat(message.substring("$JSON$".length()), isJson(allOf(
+                withJsonPath("$.*", hasSize(12)),
+                withJsonPath("$", hasEntry("label", "HTTP ACCESS END")),
+                withJsonPath("$", hasEntry("requestId", "request_id_test")),
+                withoutJsonPath("$.userId"),
+                withoutJsonPath("$.sessionStoreId"),
+                withJsonPath("$", hasEntry("sessionId", "session_id_test")),
+                withJsonPath("$", hasEntry("url", "request_url_\"test\"\n")),
+                withJsonPath("$", hasEntry("statusCode", 404)),
+                withJsonPath("$", hasEntry("contentPath", "servlet:///success.jsp")),
+                withJsonPath("$", hasEntry("startTime", "2021-03-03 19:23:52.553")),
+                withJsonPath("$", hasEntry("endTime", "2021-03-03 19:23:52.853")),
+                withJsonPath("$", hasEntry("executionTime", 300)),
+                withJsonPath("$", hasEntry("maxMemory", 2088763392)),
+                withJsonPath("$", hasEntry("freeMemory", 1088763392)),
+                withJsonPath("$.sessionScope", hasEntry("sparam1", "sparam1_test")),
+                withJsonPath("$.sessionScope", hasEntry("sparam2", "*****")))));
+
+        // 同じスレッドで繰り返しフォーマットしても結果が変わらないこと
+        assertThat(formatter.formatEnd(logContext), is(message));
+    }
+
+    /**
+     * {@code streamingEnabled}を指定した場合に、リクエストパラメータの出力量の上限を設定できることをテスト。
+     */
+    @Test
+    public void testStreamingWithMapLimits() {
+        System.setProperty("httpAccessLogFormatter.streamingEnabled", "true");
+        System.setProperty("httpAccessLogFormatter.parametersTargets", "label,parameters");
+        System.setProperty("httpAccessLogFormatter.maxMapEntries", "2");
+        System.setProperty("httpAccessLogFormatter.maxMapValueLength", "5");
+
+        HttpAccessLogFormatter.HttpAccessLogContext logContext = createEmptyLogContext();
+        MockServletRequest servletReq = extractMockServletRequest(logContext);
+        servletReq.getParams().put("req_param1", new String[] {"abcdefgh", "abc"});
+        servletReq.getParams().put("req_param2", new String[] {"abcdefgh"});
+        servletReq.getParams().put("req_param3", new String[] {"abcdefgh"});
+
+        HttpAccessLogFormatter formatter = new HttpAccessJsonLogFormatter();
+        String message = formatter.formatParameters(logContext);
+        assertThat(message.startsWith("$JSON$"), is(true));
+        assertThat(message.substring("$JSON$".length()), isJson(allOf(
+                withJsonPath("$", hasEntry("label", "PARAMETERS")),
+                withJsonPath("$.parameters.*", hasSize(2)),
+                withJsonPath("$", hasEntry("parametersOmittedCount", 1)))));
+        assertThat(message.contains("\"abcde...(truncated)\""), is(true));
+        assertThat(message.contains("abcdef"), is(false));
+    }
+
+    /**
+     * {@code streamingEnabled}を指定した場合でも、上限を指定しなければリクエストパラメータが全て出力されることをテスト。
+     */
+    @Test
+    public void testStreamingParameters() {
+        System.setProperty("httpAccessLogFormatter.streamingEnabled", "true");
+        System.setProperty("httpAccessLogFormatter.maskingPatterns", "req_param2");
+
+        HttpAccessLogFormatter.HttpAccessLogContext logContext = createEmptyLogContext();
+        MockServletRequest servletReq = extractMockServletRequest(logContext);
+        servletReq.getParams().put("req_param1", new String[] {"req_param1_test", "req_param1_test2"});
+        servletReq.getParams().put("req_param2", new String[] {"req_param2_test"});
+
+        HttpAccessLogFormatter formatter = new HttpAccessJsonLogFormatter();
+        String message = formatter.formatParameters(logContext);
+        assertThat(message.substring("$JSON$".length()), isJson(allOf(
+                withJsonPath("$", hasEntry("label", "PARAMETERS")),
+                withJsonPath("$.parameters.req_param1", hasSize(2)),
+                withJsonPath("$.parameters.req_param1[1]", equalTo("req_param1_test2")),
+                withJsonPath("$.parameters.req_param2[0]", equalTo("*****")),
+                withoutJsonPath("$.parametersOmittedCount"))));
+    }
+
+    /**
+     * サンプリングによって出力対象外となった場合、ストリーミングの有無に関わらず
+     * リクエストパラメータとセッションスコープ情報が出力されないことをテスト。
+     */
+    @Test
+    public void testNotSampled() {
+        System.setProperty("httpAccessLogFormatter.endTargets", "label,statusCode,parameters,sessionScope");
+
+        HttpAccessLogFormatter.HttpAccessLogContext logContext = createEmptyLogContext();
+        MockServletRequest servletReq = extractMockServletRequest(logContext);
+        servletReq.getParams().put("req_param1", new String[] {"req_param1_test"});
+        logContext.setResponse(new HttpResponse(200));
+        logContext.setSampled(false);
+
+        HttpAccessLogFormatter formatter = new HttpAccessJsonLogFormatter();
+        System.setProperty("httpAccessLogFormatter.streamingEnabled", "true");
+        reloadProps();
+        HttpAccessLogFormatter streaming = new HttpAccessJsonLogFormatter();
+
+        for (HttpAccessLogFormatter sut : new HttpAccessLogFormatter[] {formatter, streaming}) {
+            assertThat(sut.formatEnd(logContext).substring("$JSON$".length()), isJson(allOf(
+                    withJsonPath("$", hasEntry("label", "HTTP ACCESS END")),
+                    withJsonPath("$", hasEntry("statusCode", 200)),
+                    withoutJsonPath("$.parameters"),
+                    withoutJsonPath("$.sessionScope"))));
+            assertThat(sut.formatParameters(logContext).substring("$JSON$".length()), isJson(allOf(
+                    withJsonPath("$", hasEntry("label", "PARAMETERS")),
+                    withoutJsonPath("$.parameters"))));
+        }
+    }
+
+    /**
+     * {@link JsonSerializationManager}を変更している場合は、{@code streamingEnabled}を指定しても
+     * {@link JsonSerializationManager}でフォーマットされることをテスト。
+     */
+    @Test
+    public void testStreamingWithCustomSerializationManager() {
+        System.setProperty("httpAccessLogFormatter.streamingEnabled", "true");
+        System.setProperty("httpAccessLogFormatter.beginTargets", "label");
+
+        HttpAccessLogFormatter formatter = new HttpAccessJsonLogFormatter() {
+            @Override
+            protected JsonSerializationManager createSerializationManager(JsonSerializationSettings settings) {
+                return new MockJsonSerializationManager();
+            }
+        };
+        assertThat(formatter.formatBegin(createEmptyLogContext()), is("$JSON$mock serialization"));
+    }
+
     public static class MockJsonSerializationManager extends BasicJsonSerializationManager {
 
         @Override
@@ -9,6 +9,7 @@ import static org.junit.Assert.fail;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.regex.Pattern;
 import jakarta.servlet.http.HttpServletRequest;
@@ -17,6 +18,7 @@ import jakarta.servlet.http.HttpSession;
 import nablarch.common.web.MockHttpSession;
 import nablarch.common.web.handler.NormalHandler;
 import nablarch.common.web.session.InternalSessionUtil;
+import nablarch.core.log.CustomClassLoader;
 import nablarch.core.log.LogTestSupport;
 import nablarch.core.log.LogTestUtil;
 import nablarch.core.log.Logger;
@@ -31,6 +33,16 @@ public class HttpAccessLogFormatterTest extends LogTestSupport {
     
     private HttpAccessLogContext logContext;
     
+    /**
+     * 変更したシステムプロパティを反映するため、ログの設定を読み込み直す。
+     * <p/>
+     * {@link nablarch.core.log.app.AppLogUtil}はコンテキストクラスローダ毎に設定を保持するため、クラスローダを切り替える。
+     */
+    private static void reloadProps() {
+        Thread.currentThread().setContextClassLoader(
+                new CustomClassLoader(Thread.currentThread().getContextClassLoader()));
+    }
+
     private void init() {
         logContext = new HttpAccessLogContext();
         HttpServletRequest servletReq = initServletReq("POST", "/handler/NormalHandler/index.html");
@@ -293,6 +305,166 @@ public class HttpAccessLogFormatterTest extends LogTestSupport {
         }
     }
 
+    /**
+     * テンプレートのコンパイルを有効にした場合に、無効な場合と同じメッセージにフォーマットされること。
+     */
+    @Test
+    public void testCompiledTemplate() {
+
+        init();
+        logContext.setStartTime(1500000000123L);
+        logContext.setEndTime(1500000000456L);
+        logContext.setMaxMemory(1024L);
+        logContext.setFreeMemory(512L);
+
+        System.setProperty("httpAccessLogFormatter.beginFormat",
+                "sessionScope = [$sessionScope$]"
+              + "\n\tparameters  = [$parameters$]"
+              + "\n\tclient_host = [$clientHost$]"
+              + "\n\tport        = [$port$]"
+              + "\n\tmethod      = [$method$]"
+              + "\n\turl         = [$url$$query$]"
+              + "\n\t> sid = [$sessionId$] @@@@ BEGIN @@@@");
+        System.setProperty("httpAccessLogFormatter.endFormat",
+                "max_memory = [$maxMemory$] free_memory = [$freeMemory$]"
+              + " start_time = [$startTime$] end_time = [$endTime$] execution_time = [$executionTime$]"
+              + " status_code = [$statusCode$] content_path = [$contentPath$]");
+        System.setProperty("httpAccessLogFormatter.maskingPatterns", ".*param2");
+
+        HttpAccessLogFormatter expected = new HttpAccessLogFormatter();
+        System.setProperty("httpAccessLogFormatter.compiledTemplateEnabled", "true");
+        reloadProps();
+        HttpAccessLogFormatter sut = new HttpAccessLogFormatter();
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(sut.formatBegin(logContext), is(expected.formatBegin(logContext)));
+            assertThat(sut.formatParameters(logContext), is(expected.formatParameters(logContext)));
+            assertThat(sut.formatDispatchingClass(logContext), is(expected.formatDispatchingClass(logContext)));
+            assertThat(sut.formatEnd(logContext), is(expected.formatEnd(logContext)));
+        }
+        assertTrue(sut.formatBegin(logContext).contains("req_param2 = [*****]"));
+        assertTrue(sut.formatEnd(logContext).contains("execution_time = [333] status_code = [404]"));
+    }
+
+    /**
+     * テンプレートのコンパイルを有効にした場合に、プリミティブ型の配列やコレクションを含むセッションスコープ情報が
+     * 無効な場合と同じメッセージにフォーマットされること。
+     */
+    @Test
+    public void testCompiledTemplateWithArrayValues() {
+
+        init();
+        Map<String, Object> sessionScope = logContext.getSessionScopeMap();
+        sessionScope.put("ints", new int[] {1, 2, 3});
+        sessionScope.put("strings", new String[] {"a", "b"});
+        sessionScope.put("masked_longs", new long[] {4L, 5L});
+        sessionScope.put("masked_strings", new String[] {"a", null});
+        sessionScope.put("list", Arrays.asList("x", "y"));
+        sessionScope.put("nothing", null);
+
+        System.setProperty("httpAccessLogFormatter.beginFormat", "sessionScope = [$sessionScope$]");
+        System.setProperty("httpAccessLogFormatter.maskingPatterns", "masked_.*");
+
+        HttpAccessLogFormatter expected = new HttpAccessLogFormatter();
+        System.setProperty("httpAccessLogFormatter.compiledTemplateEnabled", "true");
+        reloadProps();
+        HttpAccessLogFormatter sut = new HttpAccessLogFormatter();
+
+        String message = sut.formatBegin(logContext);
+        assertThat(message, is(expected.formatBegin(logContext)));
+        assertTrue(message.contains("ints = [1, 2, 3]"));
+        assertTrue(message.contains("masked_longs = [*****, *****]"));
+        assertTrue(message.contains("list = [x, y]"));
+    }
+
+    /**
+     * CPU時間と割り当てたメモリ量が、テンプレートのコンパイルの有無に関わらず出力され、
+     * 計測できなかった場合は空文字となること。
+     */
+    @Test
+    public void testCpuTimeAndAllocatedBytes() {
+
+        init();
+
+        System.setProperty("httpAccessLogFormatter.endFormat",
+                "cpu_time = [$cpuTime$] allocated_bytes = [$allocatedBytes$]");
+
+        HttpAccessLogFormatter formatter = new HttpAccessLogFormatter();
+        assertTrue(formatter.containsCpuTimeItem());
+        assertTrue(formatter.containsAllocatedBytesItem());
+        assertFalse(formatter.containsMemoryItem());
+        System.setProperty("httpAccessLogFormatter.compiledTemplateEnabled", "true");
+        reloadProps();
+        HttpAccessLogFormatter compiled = new HttpAccessLogFormatter();
+
+        for (HttpAccessLogFormatter sut : new HttpAccessLogFormatter[] {formatter, compiled}) {
+            assertThat(sut.formatEnd(logContext), is("cpu_time = [] allocated_bytes = []"));
+        }
+
+        logContext.setStartCpuTime(1000000L);
+        logContext.setEndCpuTime(13500000L);
+        logContext.setStartAllocatedBytes(2048L);
+        logContext.setEndAllocatedBytes(10240L);
+        for (HttpAccessLogFormatter sut : new HttpAccessLogFormatter[] {formatter, compiled}) {
+            assertThat(sut.formatEnd(logContext), is("cpu_time = [12] allocated_bytes = [8192]"));
+        }
+
+        System.setProperty("httpAccessLogFormatter.endFormat", "status_code = [$statusCode$]");
+        reloadProps();
+        formatter = new HttpAccessLogFormatter();
+        assertFalse(formatter.containsCpuTimeItem());
+        assertFalse(formatter.containsAllocatedBytesItem());
+    }
+
+    /**
+     * サンプリングによって出力対象外となった場合、テンプレートのコンパイルの有無に関わらず
+     * リクエストパラメータとセッションスコープ情報が{@link HttpAccessLogFormatter#NOT_SAMPLED}となること。
+     */
+    @Test
+    public void testNotSampled() {
+
+        init();
+        logContext.setSampled(false);
+
+        System.setProperty("httpAccessLogFormatter.beginFormat",
+                "sessionScope = [$sessionScope$] parameters = [$parameters$] method = [$method$]");
+
+        HttpAccessLogFormatter formatter = new HttpAccessLogFormatter();
+        System.setProperty("httpAccessLogFormatter.compiledTemplateEnabled", "true");
+        reloadProps();
+        HttpAccessLogFormatter compiled = new HttpAccessLogFormatter();
+
+        for (HttpAccessLogFormatter sut : new HttpAccessLogFormatter[] {formatter, compiled}) {
+            assertThat(sut.formatBegin(logContext),
+                    is("sessionScope = [(not sampled)] parameters = [(not sampled)] method = [POST]"));
+        }
+
+        logContext.setSampled(true);
+        assertTrue(compiled.formatBegin(logContext).contains("req_param1 = [req_param1_test]"));
+    }
+
+    /**
+     * テンプレートのコンパイルを有効にした場合に、{@link java.time.format.DateTimeFormatter}で扱えない日時パターンでも
+     * 無効な場合と同じメッセージにフォーマットされること。
+     */
+    @Test
+    public void testCompiledTemplateWithIncompatibleDatePattern() {
+
+        init();
+        logContext.setStartTime(1500000000123L);
+        logContext.setEndTime(1500000000456L);
+
+        System.setProperty("httpAccessLogFormatter.endFormat", "start_time = [$startTime$] end_time = [$endTime$]");
+        System.setProperty("httpAccessLogFormatter.datePattern", "yyyy/MM/dd HH-mm-ss[SSS]");
+
+        HttpAccessLogFormatter expected = new HttpAccessLogFormatter();
+        System.setProperty("httpAccessLogFormatter.compiledTemplateEnabled", "true");
+        reloadProps();
+        HttpAccessLogFormatter sut = new HttpAccessLogFormatter();
+
+        assertThat(sut.formatEnd(logContext), is(expected.formatEnd(logContext)));
+    }
+
     /**
      * マスキング文字が2文字以上の場合に例外が送出されること。
      */
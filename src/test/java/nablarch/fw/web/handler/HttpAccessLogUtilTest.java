@@ -0,0 +1,174 @@
+package nablarch.fw.web.handler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.core.Is.is;
+
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.log.LogTestSupport;
+import nablarch.fw.web.HttpResponse;
+import nablarch.fw.web.handler.HttpAccessLogFormatter.HttpAccessLogContext;
+import nablarch.fw.web.servlet.MockServletExecutionContext;
+import nablarch.fw.web.servlet.MockServletRequest;
+import nablarch.fw.web.servlet.ServletExecutionContext;
+import nablarch.test.support.log.app.OnMemoryLogWriter;
+import org.junit.Test;
+
+/**
+ * {@link HttpAccessLogUtil}のテスト。
+ */
+public class HttpAccessLogUtilTest extends LogTestSupport {
+
+    /**
+     * 非同期出力が有効な場合、終了時にバッファのログが全て書き込まれること。
+     */
+    @Test
+    public void testAsync() {
+        System.setProperty("httpAccessLogFormatter.beginFormat", "begin sessionStoreId = $sessionStoreId$");
+        System.setProperty("httpAccessLogFormatter.parametersFormat", "parameters");
+        System.setProperty("httpAccessLogFormatter.dispatchingClassFormat", "dispatching");
+        System.setProperty("httpAccessLogFormatter.endFormat", "end sessionStoreId = $sessionStoreId$");
+        System.setProperty("httpAccessLogFormatter.asyncEnabled", "true");
+        System.setProperty("httpAccessLogFormatter.asyncBufferSize", "4");
+        System.setProperty("httpAccessLogFormatter.asyncFullPolicy", "BLOCK");
+        OnMemoryLogWriter.clear();
+
+        HttpAccessLogUtil.initialize();
+        HttpAccessLogContext logContext = new HttpAccessLogContext();
+        logContext.setContext(new MockServletExecutionContext());
+        for (int i = 0; i < 5; i++) {
+            HttpAccessLogUtil.begin(logContext, null);
+            HttpAccessLogUtil.logParameters(logContext);
+            HttpAccessLogUtil.logDispatchingClass(logContext);
+            HttpAccessLogUtil.end(logContext, null);
+        }
+        HttpAccessLogUtil.terminate();
+
+        List<String> messages = OnMemoryLogWriter.getMessages("writer.accessLog");
+        assertThat(messages.size(), is(20));
+        assertThat(messages.get(0), containsString("begin sessionStoreId = null"));
+        assertThat(messages.get(1), containsString("parameters"));
+        assertThat(messages.get(2), containsString("dispatching"));
+        assertThat(messages.get(19), containsString("end sessionStoreId = null"));
+        assertThat(HttpAccessLogUtil.getAsyncEnqueuedCount(), is(20L));
+        assertThat(HttpAccessLogUtil.getAsyncDroppedCount(), is(0L));
+        assertThat(HttpAccessLogUtil.getAsyncFailedCount(), is(0L));
+        assertThat(HttpAccessLogUtil.getAsyncQueuedCount(), is(0));
+    }
+
+    /**
+     * 非同期出力が無効な場合、呼び出し時に書き込まれ、件数は0となること。
+     */
+    @Test
+    public void testSync() {
+        System.setProperty("httpAccessLogFormatter.beginFormat", "begin sessionStoreId = $sessionStoreId$");
+        OnMemoryLogWriter.clear();
+
+        HttpAccessLogContext logContext = new HttpAccessLogContext();
+        logContext.setContext(new MockServletExecutionContext());
+        HttpAccessLogUtil.begin(logContext, null);
+
+        List<String> messages = OnMemoryLogWriter.getMessages("writer.accessLog");
+        assertThat(messages.size(), is(1));
+        assertThat(messages.get(0), containsString("begin sessionStoreId = null"));
+        assertThat(HttpAccessLogUtil.getAsyncEnqueuedCount(), is(0L));
+        assertThat(HttpAccessLogUtil.getAsyncDroppedCount(), is(0L));
+        assertThat(HttpAccessLogUtil.getAsyncFailedCount(), is(0L));
+        HttpAccessLogUtil.terminate();
+    }
+
+    /**
+     * 抽出対象外のリクエストでは、開始時と終了時のログのみが出力され、
+     * ステータスコードがエラーの場合は終了時にhiddenパラメータ復号後のログが出力されること。
+     */
+    @Test
+    public void testSampling() {
+        System.setProperty("httpAccessLogFormatter.beginFormat", "begin parameters = [$parameters$]");
+        System.setProperty("httpAccessLogFormatter.parametersFormat", "parameters = [$parameters$]");
+        System.setProperty("httpAccessLogFormatter.dispatchingClassFormat", "dispatching");
+        System.setProperty("httpAccessLogFormatter.endFormat", "end status = [$statusCode$] parameters = [$parameters$]");
+        System.setProperty("httpAccessLogFormatter.samplingRates", "/action/search=0.0");
+        OnMemoryLogWriter.clear();
+
+        HttpAccessLogContext success = createLogContext("/action/search/list");
+        HttpAccessLogUtil.begin(success, null);
+        HttpAccessLogUtil.logParameters(success);
+        HttpAccessLogUtil.logDispatchingClass(success);
+        success.setResponse(new HttpResponse(200));
+        HttpAccessLogUtil.end(success, null);
+
+        List<String> messages = OnMemoryLogWriter.getMessages("writer.accessLog");
+        assertThat(messages.size(), is(3));
+        assertThat(messages.get(0), containsString("begin parameters = [(not sampled)]"));
+        assertThat(messages.get(1), containsString("dispatching"));
+        assertThat(messages.get(2), containsString("end status = [200] parameters = [(not sampled)]"));
+
+        OnMemoryLogWriter.clear();
+        HttpAccessLogContext error = createLogContext("/action/search/list");
+        HttpAccessLogUtil.begin(error, null);
+        HttpAccessLogUtil.logParameters(error);
+        HttpAccessLogUtil.logDispatchingClass(error);
+        error.setResponse(new HttpResponse(500));
+        HttpAccessLogUtil.end(error, null);
+
+        messages = OnMemoryLogWriter.getMessages("writer.accessLog");
+        assertThat(messages.size(), is(4));
+        assertThat(messages.get(0), containsString("begin parameters = [(not sampled)]"));
+        assertThat(messages.get(1), containsString("dispatching"));
+        assertThat(messages.get(2), containsString("parameters = [{"));
+        assertThat(messages.get(2), containsString("param = [value]"));
+        assertThat(messages.get(3), containsString("end status = [500] parameters = [{"));
+
+        OnMemoryLogWriter.clear();
+        HttpAccessLogContext other = createLogContext("/action/menu");
+        HttpAccessLogUtil.begin(other, null);
+        HttpAccessLogUtil.logParameters(other);
+
+        messages = OnMemoryLogWriter.getMessages("writer.accessLog");
+        assertThat(messages.size(), is(2));
+        assertThat(messages.get(0), not(containsString("(not sampled)")));
+        assertThat(messages.get(1), containsString("param = [value]"));
+
+        Map<String, Double> rates = HttpAccessLogUtil.getSamplingRates();
+        assertThat(rates.get("/action/search"), is(0.5d));
+        assertThat(rates.get("*"), is(1.0d));
+    }
+
+    /**
+     * 抽出の指定がない場合は全て出力され、実際の抽出率は空となること。
+     */
+    @Test
+    public void testNoSampling() {
+        System.setProperty("httpAccessLogFormatter.parametersFormat", "parameters = [$parameters$]");
+        OnMemoryLogWriter.clear();
+
+        HttpAccessLogContext logContext = createLogContext("/action/search/list");
+        HttpAccessLogUtil.begin(logContext, null);
+        HttpAccessLogUtil.logParameters(logContext);
+
+        List<String> messages = OnMemoryLogWriter.getMessages("writer.accessLog");
+        assertThat(messages.get(messages.size() - 1), containsString("param = [value]"));
+        assertThat(HttpAccessLogUtil.getSamplingRates().isEmpty(), is(true));
+    }
+
+    /**
+     * リクエストパスを指定して{@link HttpAccessLogContext}を生成する。
+     * @param path リクエストパス
+     * @return {@link HttpAccessLogContext}
+     */
+    private static HttpAccessLogContext createLogContext(String path) {
+        MockServletRequest servletReq = new MockServletRequest();
+        servletReq.setContextPath("");
+        servletReq.setRequestURI(path);
+        servletReq.setRequestUrl("http://localhost" + path);
+        servletReq.getParams().put("param", new String[] {"value"});
+        ServletExecutionContext context = new ServletExecutionContext(servletReq, null, null);
+        HttpAccessLogContext logContext = new HttpAccessLogContext();
+        logContext.setContext(context);
+        logContext.setRequest(context.getHttpRequest());
+        return logContext;
+    }
+}
@@ -0,0 +1,68 @@
+package nablarch.fw.web.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.web.HttpRequest;
+import nablarch.fw.web.HttpResponse;
+import nablarch.fw.web.MockHttpRequest;
+import org.junit.Test;
+
+/**
+ * {@link HttpRewriteHandler}のテストケース
+ */
+public class HttpRewriteHandlerTest {
+
+    private HttpRequest rewrittenRequest = null;
+
+    private Handler<HttpRequest, HttpResponse>
+    testHandler = new Handler<HttpRequest, HttpResponse>() {
+        public HttpResponse handle(HttpRequest req, ExecutionContext ctx) {
+            rewrittenRequest = req;
+            return new HttpResponse("servlet:///pages/" + req.getRequestPath().substring(1));
+        }
+    };
+
+    /**
+     * 先頭の固定文字列が一致しないルールは評価されず、最初に適用されたルールで書き換えられること。
+     */
+    @Test
+    public void testRewrite() {
+        HttpRewriteHandler handler = new HttpRewriteHandler()
+            .addRequestPathRewriteRule(new HttpRequestRewriteRule()
+                .setPattern("^/admin/(.*)")
+                .setRewriteTo("/admin-${1}"))
+            .addRequestPathRewriteRule(new HttpRequestRewriteRule()
+                .setPattern("^/app/m/(.*)")
+                .setRewriteTo("/mobile-${1}"))
+            .addRequestPathRewriteRule(new HttpRequestRewriteRule()
+                .setPattern("^/app/(.*)")
+                .setRewriteTo("/pc-${1}"))
+            .addContentPathRewriteRule(new ContentPathRewriteRule()
+                .setPattern("^servlet:///pages/mobile-(.*)")
+                .setRewriteTo("servlet:///pages/m/${1}"));
+
+        HttpResponse response = new ExecutionContext()
+            .addHandler(handler)
+            .addHandler(testHandler)
+            .handleNext(new MockHttpRequest("GET /app/m/index.html HTTP/1.1"));
+
+        assertEquals("/mobile-index.html", rewrittenRequest.getRequestPath());
+        assertEquals("servlet:///pages/m/index.html", response.getContentPath().toString());
+        assertEquals("リクエストパスは1件、コンテンツパスは1件評価されること", 2L, handler.getEvaluatedRuleCount());
+        assertEquals("/admin/で始まるルールは評価されないこと", 1L, handler.getSkippedRuleCount());
+        assertTrue(handler.getEvaluationNanos() >= 0L);
+
+        // 後から追加したルールも評価されること
+        handler.addRequestPathRewriteRule(new HttpRequestRewriteRule()
+            .setPattern("^/top")
+            .setRewriteTo("/app/index.html"));
+        new ExecutionContext()
+            .addHandler(handler)
+            .addHandler(testHandler)
+            .handleNext(new MockHttpRequest("GET /top HTTP/1.1"));
+        assertEquals("/app/index.html", rewrittenRequest.getRequestPath());
+    }
+}
@@ -1,9 +1,13 @@
 package nablarch.fw.web.handler;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import nablarch.fw.ExecutionContext;
 import nablarch.fw.Handler;
@@ -102,6 +106,93 @@ public class NormalizationHandlerTest {
         assertThat("なにも実行されない", request.getParam("param"), is(toArray("value")));
     }
 
+    /**
+     * 値が変更されないパラメータは、同じ配列のまま更新されないこと。
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testNotChanged() throws Exception {
+        final ExecutionContext context = new ExecutionContext();
+        context.addHandler(new Handler<HttpRequest, Object>() {
+            @Override
+            public Object handle(final HttpRequest request, final ExecutionContext context) {
+                return request;
+            }
+        });
+        final MockHttpRequest request = new MockHttpRequest();
+        final String[] notTrimmed = toArray("value", "v a l");
+        final String[] partlyTrimmed = toArray("value", " v ");
+        request.setParam("notTrimmed", notTrimmed);
+        request.setParam("partlyTrimmed", partlyTrimmed);
+
+        sut.handle(request, context);
+
+        assertThat("同じ配列のままであること", request.getParam("notTrimmed"), is(sameInstance(notTrimmed)));
+        assertThat("同じ文字列のままであること", request.getParam("notTrimmed")[0], is(sameInstance(notTrimmed[0])));
+        assertThat(request.getParam("partlyTrimmed"), is(toArray("value", "v")));
+        assertThat("元の配列は変更されないこと", partlyTrimmed, is(toArray("value", " v ")));
+        assertThat(request.getParam("partlyTrimmed")[0], is(sameInstance(partlyTrimmed[0])));
+    }
+
+    /**
+     * ノーマライズ対象か否かの判定結果がパラメータ名毎に保持されること。
+     * 上限を超えたパラメータ名は保持されず、都度判定されること。
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCachedPlan() throws Exception {
+        final List<String> judged = new ArrayList<String>();
+        sut.setMaxCachedKeys(1);
+        sut.setNormalizers(Collections.<Normalizer>singletonList(new Normalizer() {
+            @Override
+            public boolean canNormalize(final String key) {
+                judged.add(key);
+                return key.equals("target");
+            }
+
+            @Override
+            public String[] normalize(final String[] value) {
+                return toArray("[" + value[0] + "]");
+            }
+        }));
+
+        for (int i = 0; i < 3; i++) {
+            final MockHttpRequest request = new MockHttpRequest();
+            request.setParam("target", "value");
+            sut.handle(request, createContext());
+            assertThat(request.getParam("target"), is(toArray("[value]")));
+        }
+        assertThat("初回のみ判定されること", judged, is(Arrays.asList("target")));
+
+        for (int i = 0; i < 2; i++) {
+            final MockHttpRequest request = new MockHttpRequest();
+            request.setParam("other", "value");
+            sut.handle(request, createContext());
+            assertThat(request.getParam("other"), is(toArray("value")));
+        }
+        assertThat("上限を超えたため都度判定されること", judged, is(Arrays.asList("target", "other", "other")));
+    }
+
+    /**
+     * 受け取ったリクエストを返すハンドラを設定した{@link ExecutionContext}を生成する。
+     * <p/>
+     * ハンドラは処理の都度キューから取り出されるため、リクエスト毎に生成すること。
+     *
+     * @return {@link ExecutionContext}
+     */
+    private static ExecutionContext createContext() {
+        final ExecutionContext context = new ExecutionContext();
+        context.addHandler(new Handler<HttpRequest, Object>() {
+            @Override
+            public Object handle(final HttpRequest request, final ExecutionContext context) {
+                return request;
+            }
+        });
+        return context;
+    }
+
     /**
      * 配列に変換する。
      */
@@ -0,0 +1,44 @@
+package nablarch.fw.web.handler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * {@link RewriteRuleIndex}のテストケース
+ */
+public class RewriteRuleIndexTest {
+
+    /**
+     * パターンの先頭の固定文字列がリテラル接頭辞となること。
+     */
+    @Test
+    public void testLiteralPrefixOf() {
+        assertEquals("/app/m/", RewriteRuleIndex.literalPrefixOf("^/app/m/(.*)"));
+        assertEquals("/app", RewriteRuleIndex.literalPrefixOf("^/app\\.html"));
+        assertEquals("/ap", RewriteRuleIndex.literalPrefixOf("^/app?/"));
+        assertEquals("/app", RewriteRuleIndex.literalPrefixOf("^/app+/"));
+        assertEquals("", RewriteRuleIndex.literalPrefixOf("^.*"));
+        assertEquals("", RewriteRuleIndex.literalPrefixOf("/app/(.*)"));
+        assertEquals("", RewriteRuleIndex.literalPrefixOf("^/app/|^/admin/"));
+        assertEquals("", RewriteRuleIndex.literalPrefixOf(null));
+    }
+
+    /**
+     * パスに適用し得るルールのみが定義順に返されること。
+     */
+    @Test
+    public void testCandidates() {
+        RewriteRuleIndex index = new RewriteRuleIndex(Arrays.asList(
+                "/app/admin/", "", "/app/", "/static/", null, "/APP/m"));
+        assertEquals(6, index.size());
+        assertArrayEquals(new int[] {0, 1, 2, 4}, index.candidates("/app/admin/menu"));
+        assertArrayEquals(new int[] {1, 2, 4, 5}, index.candidates("/app/m/index.html"));
+        assertArrayEquals(new int[] {1, 3, 4}, index.candidates("/static/style.css"));
+        assertArrayEquals(new int[] {1, 4}, index.candidates("/other"));
+        assertArrayEquals(new int[] {1, 4}, index.candidates(""));
+    }
+}
@@ -0,0 +1,32 @@
+package nablarch.fw.web.handler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import org.junit.Test;
+
+/**
+ * {@link StreamingJsonLogTemplate}のテスト。
+ */
+public class StreamingJsonLogTemplateTest {
+
+    /**
+     * JSONの文字列として必要な文字がエスケープされること。
+     */
+    @Test
+    public void testAppendString() {
+        StringBuilder sb = new StringBuilder();
+        assertThat(StreamingJsonLogTemplate.appendString(sb, "a\"b\\c/\b\f\n\r\t\u0001\u001fあ"), is(true));
+        assertThat(sb.toString(), is("\"a\\\"b\\\\c/\\b\\f\\n\\r\\t\\u0001\\u001fあ\""));
+    }
+
+    /**
+     * {@code null}の場合は何も書き込まれないこと。
+     */
+    @Test
+    public void testAppendNull() {
+        StringBuilder sb = new StringBuilder();
+        assertThat(StreamingJsonLogTemplate.appendString(sb, null), is(false));
+        assertThat(sb.length(), is(0));
+    }
+}
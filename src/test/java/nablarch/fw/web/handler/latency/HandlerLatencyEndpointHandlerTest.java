@@ -0,0 +1,66 @@
+package nablarch.fw.web.handler.latency;
+
+import java.util.Collections;
+import java.util.Map;
+
+import nablarch.core.repository.ObjectLoader;
+import nablarch.core.repository.SystemRepository;
+import nablarch.fw.web.HttpResponse;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@link HandlerLatencyEndpointHandler}のテスト。
+ */
+public class HandlerLatencyEndpointHandlerTest {
+
+    @After
+    public void tearDown() {
+        SystemRepository.clear();
+    }
+
+    /**
+     * 設定した{@link HandlerLatencyRecorder}の集計結果が返されること。
+     */
+    @Test
+    public void testRecorder() {
+        HandlerLatencyEndpointHandler sut = new HandlerLatencyEndpointHandler();
+        sut.setRecorder(new HandlerLatencyRecorder());
+        HttpResponse response = sut.handle(null, null);
+
+        assertThat(response.getStatusCode(), is(200));
+        assertThat(response.getContentType(), is("text/plain;charset=UTF-8"));
+        assertThat(response.getBodyString(), startsWith("handler\tpathGroup\t"));
+    }
+
+    /**
+     * リポジトリ上の{@link HandlerLatencyRecorder}が使用されること。
+     */
+    @Test
+    public void testRepository() {
+        SystemRepository.load(new ObjectLoader() {
+            @Override
+            public Map<String, Object> load() {
+                return Collections.<String, Object>singletonMap("handlerLatencyRecorder", new HandlerLatencyRecorder());
+            }
+        });
+        HandlerLatencyEndpointHandler sut = new HandlerLatencyEndpointHandler();
+        sut.setContentType("text/plain");
+        HttpResponse response = sut.handle(null, null);
+
+        assertThat(response.getStatusCode(), is(200));
+        assertThat(response.getContentType(), is("text/plain"));
+    }
+
+    /**
+     * {@link HandlerLatencyRecorder}が存在しない場合は404が返されること。
+     */
+    @Test
+    public void testNoRecorder() {
+        assertThat(new HandlerLatencyEndpointHandler().handle(null, null).getStatusCode(), is(404));
+    }
+}
@@ -0,0 +1,244 @@
+package nablarch.fw.web.handler.latency;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.web.HttpRequest;
+import nablarch.fw.web.HttpResponse;
+import nablarch.fw.web.MockHttpRequest;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@link HandlerLatencyRecorder}のテスト。
+ */
+public class HandlerLatencyRecorderTest {
+
+    /** テストで使用するMBeanのオブジェクト名 */
+    private static final String OBJECT_NAME = "nablarch:type=HandlerLatencyRecorderTest";
+
+    /** テスト対象 */
+    private final HandlerLatencyRecorder sut = new HandlerLatencyRecorder();
+
+    @After
+    public void tearDown() {
+        sut.dispose();
+    }
+
+    /**
+     * ハンドラのクラスとリクエストパスのグループ毎に、後続のハンドラを除いた処理時間が記録されること。
+     */
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void testInstrument() {
+        sut.setPathGroups(Arrays.asList("/api/", "/admin/"));
+        OuterHandler outer = new OuterHandler();
+        List<Handler> original = Arrays.<Handler>asList(outer, new SleepHandler());
+        List<Handler> instrumented = sut.instrument(original);
+
+        assertThat(instrumented.size(), is(2));
+        assertThat(original.get(0), is(sameInstance((Handler) outer)));
+        assertThat(((InstrumentedHandler) instrumented.get(0)).getHandler(), is(sameInstance((Handler) outer)));
+        assertThat(sut.instrument(instrumented).get(0), is(sameInstance(instrumented.get(0))));
+
+        handle(instrumented, "GET /api/users HTTP/1.1");
+        handle(instrumented, "GET /api/users/1 HTTP/1.1");
+        handle(instrumented, "GET /index.html HTTP/1.1");
+
+        List<HandlerLatency> latencies = sut.getLatencies();
+        assertThat(latencies.size(), is(6));
+        assertThat(sut.getEntryCount(), is(6));
+
+        HandlerLatency outerApi = latencies.get(0);
+        assertThat(outerApi.getHandlerName(), is(OuterHandler.class.getName()));
+        assertThat(outerApi.getPathGroup(), is("/api/"));
+        assertThat(outerApi.getWallTime().getCount(), is(2L));
+        assertThat(latencies.get(1).getPathGroup(), is("/admin/"));
+        assertThat(latencies.get(1).getWallTime().getCount(), is(0L));
+        assertThat(latencies.get(2).getPathGroup(), is(HandlerLatencyRecorder.DEFAULT_PATH_GROUP));
+        assertThat(latencies.get(2).getWallTime().getCount(), is(1L));
+
+        HandlerLatency sleepApi = latencies.get(3);
+        assertThat(sleepApi.getHandlerName(), is(SleepHandler.class.getName()));
+        assertThat(sleepApi.getWallTime().getCount(), is(2L));
+        assertThat(sleepApi.getWallTime().getMax() >= 10000000L, is(true));
+        assertThat("後続のハンドラの処理時間は含まない",
+                outerApi.getWallTime().getMax() < sleepApi.getWallTime().getMax(), is(true));
+        assertThat(outerApi.getCpuTime().getCount(), is(0L));
+    }
+
+    /**
+     * CPU時間の計測を有効にした場合は、CPU時間も記録されること。
+     */
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void testCpuTime() {
+        sut.setCpuTimeEnabled(true);
+        if (!sut.isCpuTimeEnabled()) {
+            return;
+        }
+        List<Handler> instrumented = sut.instrument(Arrays.<Handler>asList(new OuterHandler(), new SleepHandler()));
+        handle(instrumented, "GET /index.html HTTP/1.1");
+
+        HandlerLatency sleep = sut.getLatencies().get(1);
+        assertThat(sleep.getCpuTime().getCount(), is(1L));
+        assertThat("スリープ中はCPU時間に含まれない",
+                sleep.getCpuTime().getMax() < sleep.getWallTime().getMax(), is(true));
+    }
+
+    /**
+     * 同じクラスのハンドラはまとめて集計されること。
+     */
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void testSameHandlerClass() {
+        List<Handler> instrumented = sut.instrument(
+                Arrays.<Handler>asList(new OuterHandler(), new OuterHandler(), new SleepHandler()));
+        handle(instrumented, "GET /index.html HTTP/1.1");
+
+        assertThat(sut.getLatencies().size(), is(2));
+        assertThat(sut.getLatencies().get(0).getWallTime().getCount(), is(2L));
+    }
+
+    /**
+     * 例外が送出された場合も処理時間が記録されること。
+     */
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void testException() {
+        Handler<Object, Object> failing = new Handler<Object, Object>() {
+            @Override
+            public Object handle(Object data, ExecutionContext context) {
+                throw new IllegalStateException("failure");
+            }
+        };
+        List<Handler> instrumented = sut.instrument(Arrays.<Handler>asList(new OuterHandler(), failing));
+        try {
+            handle(instrumented, "GET /index.html HTTP/1.1");
+            throw new AssertionError("must throw IllegalStateException.");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("failure"));
+        }
+        assertThat(sut.getLatencies().get(0).getWallTime().getCount(), is(1L));
+        assertThat(sut.getLatencies().get(1).getWallTime().getCount(), is(1L));
+
+        handle(sut.instrument(Arrays.<Handler>asList(new OuterHandler(), new SleepHandler())), "GET /index.html HTTP/1.1");
+        assertThat("入れ子の状態が残っていないこと", sut.getLatencies().get(0).getWallTime().getCount(), is(2L));
+        assertThat("後続のハンドラの処理時間は含まない",
+                sut.getLatencies().get(0).getWallTime().getMax() < 20000000L, is(true));
+    }
+
+    /**
+     * 記録がある集計結果のみテキスト形式で出力され、{@link HandlerLatencyRecorder#reset()}で破棄されること。
+     */
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void testReport() {
+        sut.setPathGroups(Collections.singletonList("/api/"));
+        List<Handler> instrumented = sut.instrument(Arrays.<Handler>asList(new OuterHandler(), new SleepHandler()));
+        handle(instrumented, "GET /api/users HTTP/1.1");
+
+        String[] lines = sut.getReport().split("\r?\n");
+        assertThat(lines.length, is(3));
+        assertThat(lines[0], is("handler\tpathGroup\tcount\twallMean\twallP50\twallP90\twallP99\twallMax"
+                                        + "\tcpuMean\tcpuP99"));
+        assertThat(lines[1], containsString(OuterHandler.class.getName() + "\t/api/\t1\t"));
+        assertThat(lines[2], containsString(SleepHandler.class.getName() + "\t/api/\t1\t"));
+        assertThat(lines[1].split("\t").length, is(10));
+
+        sut.reset();
+        assertThat(sut.getReport().split("\r?\n").length, is(1));
+    }
+
+    /**
+     * {@link HandlerLatencyRecorder#initialize()}でMBeanサーバに登録され、
+     * {@link HandlerLatencyRecorder#dispose()}で登録が解除されること。
+     */
+    @Test
+    public void testJmx() throws Exception {
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        sut.setObjectName(OBJECT_NAME);
+        sut.initialize();
+        sut.initialize();
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name), is(true));
+        assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "EntryCount"), is((Object) 0));
+        assertThat((String) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Report"),
+                containsString("handler\tpathGroup"));
+
+        sut.dispose();
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name), is(false));
+    }
+
+    /**
+     * JMXを無効にした場合は、MBeanサーバに登録されないこと。
+     */
+    @Test
+    public void testJmxDisabled() throws Exception {
+        sut.setObjectName(OBJECT_NAME);
+        sut.setJmxEnabled(false);
+        sut.initialize();
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(OBJECT_NAME)), is(false));
+    }
+
+    /**
+     * "/"で始まらないリクエストパスのグループを設定した場合は例外が送出されること。
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPathGroup() {
+        sut.setPathGroups(Collections.singletonList("api/"));
+    }
+
+    /**
+     * HTTPリクエスト以外のデータは、いずれのグループにも一致しないものとして扱われること。
+     */
+    @Test
+    public void testGroupOfNonHttpRequest() {
+        sut.setPathGroups(Collections.singletonList("/api/"));
+        assertThat(sut.groupOf("/api/users"), is(1));
+        assertThat(sut.groupOf(new MockHttpRequest("GET /api/users HTTP/1.1")), is(0));
+        assertThat(sut.groupOf(new MockHttpRequest("GET /apis HTTP/1.1")), is(not(0)));
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static void handle(List<Handler> handlerQueue, String requestLine) {
+        new ExecutionContext().setHandlerQueue((List) handlerQueue)
+                              .handleNext(new MockHttpRequest(requestLine));
+    }
+
+    /**
+     * 後続のハンドラを呼び出すハンドラ。
+     */
+    private static class OuterHandler implements Handler<HttpRequest, Object> {
+        @Override
+        public Object handle(HttpRequest request, ExecutionContext context) {
+            return context.handleNext(request);
+        }
+    }
+
+    /**
+     * スリープするハンドラ。
+     */
+    private static class SleepHandler implements Handler<HttpRequest, HttpResponse> {
+        @Override
+        public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new HttpResponse(200);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package nablarch.fw.web.handler.latency;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@link LatencyHistogram}のテスト。
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * 各区間の上限値が、その区間に含まれる最大の値であること。
+     */
+    @Test
+    public void testBucketUpperBound() {
+        for (int bucket = 0; bucket < LatencyHistogram.getBucketCount() - 1; bucket++) {
+            long upper = LatencyHistogram.getBucketUpperBound(bucket);
+            assertThat("bucket " + bucket, LatencyHistogram.bucketOf(upper), is(bucket));
+            assertThat("bucket " + bucket, LatencyHistogram.bucketOf(upper + 1), is(bucket + 1));
+        }
+        assertThat(LatencyHistogram.getBucketUpperBound(LatencyHistogram.getBucketCount() - 1), is(Long.MAX_VALUE));
+        assertThat(LatencyHistogram.bucketOf(Long.MAX_VALUE), is(LatencyHistogram.getBucketCount() - 1));
+    }
+
+    /**
+     * 64未満の値は値毎の区間となり、それ以上の区間の幅は値の1/32以下であること。
+     */
+    @Test
+    public void testBucketPrecision() {
+        for (int bucket = 0; bucket < 64; bucket++) {
+            assertThat("bucket " + bucket, LatencyHistogram.getBucketUpperBound(bucket), is((long) bucket));
+        }
+        for (int bucket = 64; bucket < LatencyHistogram.getBucketCount() - 1; bucket++) {
+            long lower = LatencyHistogram.getBucketUpperBound(bucket - 1) + 1;
+            long upper = LatencyHistogram.getBucketUpperBound(bucket);
+            assertThat("bucket " + bucket, (upper - lower + 1) * 32 <= lower, is(true));
+        }
+    }
+
+    /**
+     * 件数、合計値、最大値、平均値、パーセンタイルが集計されること。
+     */
+    @Test
+    public void testRecord() {
+        LatencyHistogram sut = new LatencyHistogram();
+        assertThat(sut.getPercentile(0.5), is(0L));
+        assertThat(sut.getMean(), is(0L));
+
+        for (long i = 1; i <= 100; i++) {
+            sut.record(i * 1000);
+        }
+        sut.record(-1);
+
+        assertThat(sut.getCount(), is(101L));
+        assertThat(sut.getSum(), is(5050000L));
+        assertThat(sut.getMax(), is(100000L));
+        assertThat(sut.getMean(), is(5050000L / 101));
+        assertThat(sut.getPercentile(0.0), is(0L));
+        assertThat(sut.getPercentile(1.0), is(100000L));
+        long p50 = sut.getPercentile(0.5);
+        assertThat("p50 = " + p50, p50 >= 50000 && p50 <= 50000 * 33 / 32, is(true));
+        long p99 = sut.getPercentile(0.99);
+        assertThat("p99 = " + p99, p99 >= 99000 && p99 <= 100000, is(true));
+    }
+
+    /**
+     * 区間毎の件数を取得できること。
+     */
+    @Test
+    public void testBucketCounts() {
+        LatencyHistogram sut = new LatencyHistogram();
+        sut.record(3);
+        sut.record(3);
+        sut.record(1000);
+
+        long[] counts = sut.getBucketCounts();
+        assertThat(counts.length, is(LatencyHistogram.getBucketCount()));
+        assertThat(counts[3], is(2L));
+        assertThat(counts[LatencyHistogram.bucketOf(1000)], is(1L));
+    }
+
+    /**
+     * {@link LatencyHistogram#reset()}で記録が破棄されること。
+     */
+    @Test
+    public void testReset() {
+        LatencyHistogram sut = new LatencyHistogram();
+        sut.record(12345);
+        sut.reset();
+
+        assertThat(sut.getCount(), is(0L));
+        assertThat(sut.getSum(), is(0L));
+        assertThat(sut.getMax(), is(0L));
+        assertThat(sut.getPercentile(0.99), is(0L));
+    }
+
+    /**
+     * 割合が範囲外の場合は例外が送出されること。
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRatio() {
+        new LatencyHistogram().getPercentile(1.5);
+    }
+}
@@ -0,0 +1,71 @@
+package nablarch.fw.web.handler.latency;
+
+import java.util.Collections;
+import java.util.Map;
+
+import nablarch.core.repository.ObjectLoader;
+import nablarch.core.repository.SystemRepository;
+import nablarch.fw.web.HttpResponse;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@link RequestLatencyEndpointHandler}のテスト。
+ */
+public class RequestLatencyEndpointHandlerTest {
+
+    @After
+    public void tearDown() {
+        SystemRepository.clear();
+    }
+
+    /**
+     * 設定した{@link RequestLatencyRecorder}の集計結果がPrometheusのテキスト形式で返されること。
+     */
+    @Test
+    public void testRecorder() {
+        RequestLatencyRecorder recorder = new RequestLatencyRecorder();
+        recorder.record("RW11AC0101", 1000000L);
+        RequestLatencyEndpointHandler sut = new RequestLatencyEndpointHandler();
+        sut.setRecorder(recorder);
+        HttpResponse response = sut.handle(null, null);
+
+        assertThat(response.getStatusCode(), is(200));
+        assertThat(response.getContentType(), is("text/plain; version=0.0.4; charset=utf-8"));
+        assertThat(response.getBodyString(), startsWith("# HELP nablarch_request_latency_seconds "));
+        assertThat(response.getBodyString(),
+                containsString("nablarch_request_latency_seconds_count{request_id=\"RW11AC0101\"} 1\n"));
+    }
+
+    /**
+     * リポジトリ上の{@link RequestLatencyRecorder}が使用されること。
+     */
+    @Test
+    public void testRepository() {
+        SystemRepository.load(new ObjectLoader() {
+            @Override
+            public Map<String, Object> load() {
+                return Collections.<String, Object>singletonMap("requestLatencyRecorder", new RequestLatencyRecorder());
+            }
+        });
+        RequestLatencyEndpointHandler sut = new RequestLatencyEndpointHandler();
+        sut.setContentType("text/plain");
+        HttpResponse response = sut.handle(null, null);
+
+        assertThat(response.getStatusCode(), is(200));
+        assertThat(response.getContentType(), is("text/plain"));
+    }
+
+    /**
+     * {@link RequestLatencyRecorder}が存在しない場合は404が返されること。
+     */
+    @Test
+    public void testNoRecorder() {
+        assertThat(new RequestLatencyEndpointHandler().handle(null, null).getStatusCode(), is(404));
+    }
+}
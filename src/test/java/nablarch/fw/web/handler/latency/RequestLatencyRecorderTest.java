@@ -0,0 +1,303 @@
+package nablarch.fw.web.handler.latency;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.ObjectName;
+
+import nablarch.common.util.WebRequestUtil;
+import nablarch.core.repository.ObjectLoader;
+import nablarch.core.repository.SystemRepository;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.web.HttpErrorResponse;
+import nablarch.fw.web.HttpRequest;
+import nablarch.fw.web.HttpResponse;
+import nablarch.fw.web.MockHttpRequest;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@link RequestLatencyRecorder}と{@link RequestLatencyHandler}のテスト。
+ */
+public class RequestLatencyRecorderTest {
+
+    /** テストで使用するMBeanのオブジェクト名 */
+    private static final String OBJECT_NAME = "nablarch:type=RequestLatencyRecorderTest";
+
+    /** テスト対象 */
+    private final RequestLatencyRecorder sut = new RequestLatencyRecorder();
+
+    @After
+    public void tearDown() {
+        sut.dispose();
+        SystemRepository.clear();
+    }
+
+    /**
+     * リクエストID毎に処理時間が記録され、例外が送出された場合も記録されること。
+     */
+    @Test
+    public void testHandler() {
+        RequestLatencyHandler handler = new RequestLatencyHandler();
+        handler.setRecorder(sut);
+
+        handle(handler, new SleepHandler(), "GET /action/RW11AC0101 HTTP/1.1");
+        handle(handler, new SleepHandler(), "GET /action/RW11AC0101 HTTP/1.1");
+        try {
+            handle(handler, new Handler<HttpRequest, HttpResponse>() {
+                @Override
+                public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+                    throw new IllegalStateException("failure");
+                }
+            }, "GET /action/RW11AC0102 HTTP/1.1");
+            throw new AssertionError("must throw IllegalStateException.");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("failure"));
+        }
+
+        assertThat(sut.getRouteCount(), is(2));
+        String[] lines = sut.getReport().split("\r?\n");
+        assertThat(lines.length, is(3));
+        assertThat(lines[0], is("requestId\tcount\ttotalCount\tp50\tp90\tp99\tmax"));
+        assertThat(lines[1], containsString(WebRequestUtil.getRequestId("/action/RW11AC0101") + "\t2\t2\t"));
+        assertThat(lines[2], containsString(WebRequestUtil.getRequestId("/action/RW11AC0102") + "\t1\t1\t"));
+        assertThat(Long.parseLong(lines[1].split("\t")[6]) >= 10000000L, is(true));
+    }
+
+    /**
+     * {@link RequestLatencyRecorder}を設定しない場合は、リポジトリ上のコンポーネントに記録され、
+     * 存在しない場合は記録されずに後続のハンドラが呼び出されること。
+     */
+    @Test
+    public void testHandlerWithRepository() {
+        RequestLatencyHandler handler = new RequestLatencyHandler();
+        HttpResponse response = handle(handler, new SleepHandler(), "GET /action/RW11AC0101 HTTP/1.1");
+        assertThat(response.getStatusCode(), is(200));
+
+        SystemRepository.load(new ObjectLoader() {
+            @Override
+            public Map<String, Object> load() {
+                return Collections.<String, Object>singletonMap("requestLatencyRecorder", sut);
+            }
+        });
+        handle(handler, new SleepHandler(), "GET /action/RW11AC0101 HTTP/1.1");
+        assertThat(sut.getRouteCount(), is(1));
+    }
+
+    /**
+     * リクエストIDの数が上限に達した場合は、{@link RequestLatencyRecorder#OTHER_ROUTE}として記録されること。
+     */
+    @Test
+    public void testMaxRoutes() {
+        sut.setMaxRoutes(2);
+        sut.record("A", 100L);
+        sut.record("B", 100L);
+        sut.record("C", 100L);
+        sut.record("D", 100L);
+        sut.record("A", 100L);
+        sut.record(null, 100L);
+
+        assertThat(sut.getRouteCount(), is(3));
+        assertThat(sut.getOverflowCount(), is(2L));
+        String report = sut.getReport();
+        assertThat(report, containsString("A\t2\t2\t"));
+        assertThat(report, containsString("B\t1\t1\t"));
+        assertThat(report, containsString(RequestLatencyRecorder.OTHER_ROUTE + "\t3\t3\t"));
+        assertThat(report, not(containsString("C\t")));
+
+        sut.reset();
+        assertThat(sut.getRouteCount(), is(0));
+        assertThat(sut.getOverflowCount(), is(0L));
+        sut.record("C", 100L);
+        assertThat(sut.getReport(), containsString("C\t1\t1\t"));
+    }
+
+    /**
+     * リクエストIDの数が上限に達した場合は、集計する時間内に記録がないリクエストIDが破棄され、
+     * 破棄は集計する時間の区間毎に1回までとなること。
+     */
+    @Test
+    public void testEvictIdleRoutes() {
+        long now = System.currentTimeMillis();
+        sut.setMaxRoutes(2);
+        sut.record("A", 100L, now - 120000L);
+        sut.record("B", 100L, now);
+        sut.record("C", 100L, now);
+
+        assertThat(sut.getRouteCount(), is(2));
+        assertThat(sut.getOverflowCount(), is(0L));
+        assertThat(sut.getPrometheusReport(), not(containsString("request_id=\"A\"")));
+        assertThat(sut.getReport(), containsString("C\t1\t1\t"));
+
+        sut.record("D", 100L, now - 60000L);
+        sut.record("E", 100L, now);
+        assertThat("区間内に2回目の破棄は行わない", sut.getOverflowCount(), is(2L));
+        assertThat(sut.getReport(), containsString(RequestLatencyRecorder.OTHER_ROUTE + "\t1\t2\t"));
+    }
+
+    /**
+     * ステータスコードが404のレスポンスは、{@link RequestLatencyRecorder#OTHER_ROUTE}として記録されること。
+     */
+    @Test
+    public void testHandlerNotFound() {
+        RequestLatencyHandler handler = new RequestLatencyHandler();
+        handler.setRecorder(sut);
+
+        handle(handler, new Handler<HttpRequest, HttpResponse>() {
+            @Override
+            public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+                return new HttpResponse(404);
+            }
+        }, "GET /action/unknown1 HTTP/1.1");
+        try {
+            handle(handler, new Handler<HttpRequest, HttpResponse>() {
+                @Override
+                public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+                    throw new HttpErrorResponse(404);
+                }
+            }, "GET /action/unknown2 HTTP/1.1");
+            throw new AssertionError("must throw HttpErrorResponse.");
+        } catch (HttpErrorResponse e) {
+            assertThat(e.getResponse().getStatusCode(), is(404));
+        }
+        try {
+            handle(handler, new Handler<HttpRequest, HttpResponse>() {
+                @Override
+                public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+                    throw new HttpErrorResponse(400);
+                }
+            }, "GET /action/RW11AC0103 HTTP/1.1");
+            throw new AssertionError("must throw HttpErrorResponse.");
+        } catch (HttpErrorResponse e) {
+            assertThat(e.getResponse().getStatusCode(), is(400));
+        }
+
+        assertThat(sut.getRouteCount(), is(2));
+        String report = sut.getReport();
+        assertThat(report, containsString(RequestLatencyRecorder.OTHER_ROUTE + "\t2\t2\t"));
+        assertThat(report, containsString(WebRequestUtil.getRequestId("/action/RW11AC0103") + "\t1\t1\t"));
+        assertThat(report, not(containsString("unknown")));
+    }
+
+    /**
+     * Prometheusのテキスト形式で出力され、集計する時間を過ぎたリクエストIDのパーセンタイルはNaNとなること。
+     */
+    @Test
+    public void testPrometheusReport() {
+        sut.record("RW11AC0101", 2000000L);
+        sut.record("RW11AC0101", 4000000L);
+        sut.record("a\"b", 1000L, System.currentTimeMillis() - 120000L);
+
+        String report = sut.getPrometheusReport();
+        assertThat(report, containsString(
+                "# HELP nablarch_request_latency_seconds Request latency by request ID."
+                        + " Quantiles cover the last 60 seconds.\n"
+                        + "# TYPE nablarch_request_latency_seconds summary\n"));
+        assertThat(report, containsString(
+                "nablarch_request_latency_seconds{request_id=\"RW11AC0101\",quantile=\"0.5\"} 0.00"));
+        assertThat(report, containsString(
+                "nablarch_request_latency_seconds{request_id=\"RW11AC0101\",quantile=\"0.99\"} 0.004\n"));
+        assertThat(report, containsString("nablarch_request_latency_seconds_sum{request_id=\"RW11AC0101\"} 0.006\n"));
+        assertThat(report, containsString("nablarch_request_latency_seconds_count{request_id=\"RW11AC0101\"} 2\n"));
+        assertThat(report, containsString(
+                "nablarch_request_latency_seconds{request_id=\"a\\\"b\",quantile=\"0.9\"} NaN\n"));
+        assertThat(report, containsString("nablarch_request_latency_seconds_count{request_id=\"a\\\"b\"} 1\n"));
+        assertThat(report, containsString("# TYPE nablarch_request_latency_max_seconds gauge\n"));
+        assertThat(report, containsString("nablarch_request_latency_max_seconds{request_id=\"RW11AC0101\"} 0.004\n"));
+        assertThat(report, containsString("nablarch_request_latency_max_seconds{request_id=\"a\\\"b\"} 0.0\n"));
+        assertThat("集計する時間内に記録がないリクエストIDはテキスト形式に出力されない",
+                sut.getReport(), not(containsString("a\"b")));
+    }
+
+    /**
+     * ラベルの値がエスケープされること。
+     */
+    @Test
+    public void testEscapeLabelValue() {
+        assertThat(RequestLatencyRecorder.escapeLabelValue("a\\b\"c\nd"), is("a\\\\b\\\"c\\nd"));
+    }
+
+    /**
+     * {@link RequestLatencyRecorder#initialize()}でMBeanサーバに登録され、
+     * {@link RequestLatencyRecorder#dispose()}で登録が解除されること。
+     */
+    @Test
+    public void testJmx() throws Exception {
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        sut.setObjectName(OBJECT_NAME);
+        sut.setWindowSeconds(300);
+        sut.initialize();
+        sut.initialize();
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name), is(true));
+        assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "RouteCount"), is((Object) 0));
+        assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "MaxRoutes"), is((Object) 100));
+        assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "WindowSeconds"), is((Object) 300));
+        assertThat((String) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Report"),
+                containsString("requestId\tcount"));
+
+        sut.dispose();
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name), is(false));
+    }
+
+    /**
+     * JMXを無効にした場合は、MBeanサーバに登録されないこと。
+     */
+    @Test
+    public void testJmxDisabled() throws Exception {
+        sut.setObjectName(OBJECT_NAME);
+        sut.setJmxEnabled(false);
+        sut.initialize();
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(OBJECT_NAME)), is(false));
+    }
+
+    /**
+     * 不正な設定値の場合は例外が送出されること。
+     */
+    @Test
+    public void testInvalidSetting() {
+        try {
+            sut.setMaxRoutes(-1);
+            throw new AssertionError("must throw IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("maxRoutes must not be negative. maxRoutes = -1"));
+        }
+        try {
+            sut.setWindowSeconds(0);
+            throw new AssertionError("must throw IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("windowSeconds must be greater than 0. windowSeconds = 0"));
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static HttpResponse handle(Handler<HttpRequest, HttpResponse> handler,
+                                       Handler<HttpRequest, HttpResponse> next, String requestLine) {
+        List handlerQueue = Arrays.asList(handler, next);
+        return new ExecutionContext().setHandlerQueue(handlerQueue)
+                                     .handleNext(new MockHttpRequest(requestLine));
+    }
+
+    /**
+     * スリープするハンドラ。
+     */
+    private static class SleepHandler implements Handler<HttpRequest, HttpResponse> {
+        @Override
+        public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+            try {
+                Thread.sleep(10L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new HttpResponse(200);
+        }
+    }
+}
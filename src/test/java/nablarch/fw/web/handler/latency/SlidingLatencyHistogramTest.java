@@ -0,0 +1,96 @@
+package nablarch.fw.web.handler.latency;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@link SlidingLatencyHistogram}のテスト。
+ */
+public class SlidingLatencyHistogramTest {
+
+    /**
+     * 集計する時間内の記録からパーセンタイルと最大値が算出され、件数と合計値は累計となること。
+     */
+    @Test
+    public void testSnapshot() {
+        SlidingLatencyHistogram sut = new SlidingLatencyHistogram(6000L, 6);
+        for (int i = 1; i <= 100; i++) {
+            sut.record(i, 10000L);
+        }
+        SlidingLatencyHistogram.Snapshot snapshot = sut.snapshot(10500L);
+        assertThat(snapshot.getCount(), is(100L));
+        assertThat(snapshot.getTotalCount(), is(100L));
+        assertThat(snapshot.getTotalSum(), is(5050L));
+        assertThat(snapshot.getMax(), is(100L));
+        assertThat(snapshot.getPercentile(0.99) >= 99L, is(true));
+        assertThat(snapshot.getPercentile(1.0), is(100L));
+        assertThat(snapshot.getPercentile(0.5) >= 50L && snapshot.getPercentile(0.5) <= 63L, is(true));
+    }
+
+    /**
+     * 集計する時間を過ぎた記録はパーセンタイルと最大値に含まれず、累計には含まれること。
+     */
+    @Test
+    public void testSlide() {
+        SlidingLatencyHistogram sut = new SlidingLatencyHistogram(6000L, 6);
+        sut.record(1000000L, 10000L);
+        sut.record(10L, 13000L);
+
+        SlidingLatencyHistogram.Snapshot snapshot = sut.snapshot(15999L);
+        assertThat(snapshot.getCount(), is(2L));
+        assertThat(snapshot.getMax(), is(1000000L));
+
+        snapshot = sut.snapshot(16000L);
+        assertThat(snapshot.getCount(), is(1L));
+        assertThat(snapshot.getMax(), is(10L));
+        assertThat(snapshot.getTotalCount(), is(2L));
+        assertThat(snapshot.getTotalSum(), is(1000010L));
+
+        sut.record(20L, 16000L);
+        snapshot = sut.snapshot(16000L);
+        assertThat("同じ区間を使い回す際に古い記録が破棄されること", snapshot.getCount(), is(2L));
+        assertThat(snapshot.getMax(), is(20L));
+
+        assertThat(sut.snapshot(30000L).getCount(), is(0L));
+        assertThat(sut.snapshot(30000L).getPercentile(0.5), is(0L));
+    }
+
+    /**
+     * {@link SlidingLatencyHistogram#reset()}で全ての記録が破棄されること。
+     */
+    @Test
+    public void testReset() {
+        SlidingLatencyHistogram sut = new SlidingLatencyHistogram(6000L, 6);
+        sut.record(100L, 10000L);
+        sut.reset();
+
+        SlidingLatencyHistogram.Snapshot snapshot = sut.snapshot(10000L);
+        assertThat(snapshot.getCount(), is(0L));
+        assertThat(snapshot.getTotalCount(), is(0L));
+        assertThat(snapshot.getTotalSum(), is(0L));
+    }
+
+    /**
+     * 集計する時間内に記録がない場合は{@link SlidingLatencyHistogram#isIdle(long)}が{@code true}となること。
+     */
+    @Test
+    public void testIsIdle() {
+        SlidingLatencyHistogram sut = new SlidingLatencyHistogram(6000L, 6);
+        assertThat(sut.isIdle(10000L), is(true));
+
+        sut.record(100L, 10000L);
+        assertThat(sut.isIdle(10000L), is(false));
+        assertThat(sut.isIdle(15999L), is(false));
+        assertThat(sut.isIdle(16000L), is(true));
+    }
+
+    /**
+     * 集計する時間が区間の数より小さい場合は例外が送出されること。
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWindow() {
+        new SlidingLatencyHistogram(5L, 6);
+    }
+}
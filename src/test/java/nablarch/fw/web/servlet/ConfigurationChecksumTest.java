@@ -0,0 +1,151 @@
+package nablarch.fw.web.servlet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * {@link ConfigurationChecksum}のテストクラス。
+ */
+public class ConfigurationChecksumTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private ClassLoader defaultClassLoader;
+
+    private File root;
+
+    private final Map<String, String> parameters = Collections.singletonMap("di.allow-static-property", "false");
+
+    @Before
+    public void setUp() throws IOException {
+        root = tempFolder.newFolder("classes");
+        defaultClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(
+                new URLClassLoader(new URL[] {root.toURI().toURL()}, defaultClassLoader));
+        write("app/root.xml", "<component-configuration xmlns=\"http://tis.co.jp/nablarch/component-configuration\">"
+                + "<import file=\"app/child.xml\"/><config-file file=\"app/env.config\"/></component-configuration>");
+        write("app/child.xml", "<component-configuration><component name=\"a\" class=\"A\"/></component-configuration>");
+        write("app/env.config", "key=value");
+    }
+
+    @After
+    public void tearDown() {
+        Thread.currentThread().setContextClassLoader(defaultClassLoader);
+    }
+
+    /**
+     * インポートした設定ファイルと環境設定ファイルが列挙されること。
+     */
+    @Test
+    public void testCollectFiles() {
+        assertThat(ConfigurationChecksum.collectFiles("classpath:app/root.xml"),
+                   contains("classpath:app/root.xml", "app/child.xml", "app/env.config"));
+    }
+
+    /**
+     * ディレクトリを指定した要素がある場合は列挙できないこと。
+     */
+    @Test
+    public void testCollectFilesWithDirectory() throws IOException {
+        write("app/child.xml", "<component-configuration><import dir=\"app/conf\"/></component-configuration>");
+
+        assertThat(ConfigurationChecksum.collectFiles("classpath:app/root.xml"), is(nullValue()));
+    }
+
+    /**
+     * 内容が変わらなければ同じチェックサムとなること。
+     */
+    @Test
+    public void testSameConfiguration() {
+        List<String> files = ConfigurationChecksum.collectFiles("classpath:app/root.xml");
+        String checksum = ConfigurationChecksum.of(files, parameters);
+
+        assertThat(checksum.length(), is(64));
+        assertThat(ConfigurationChecksum.of(files, parameters), is(checksum));
+    }
+
+    /**
+     * インポートした設定ファイルと環境設定ファイルの変更が反映されること。
+     */
+    @Test
+    public void testImportedFilesAreIncluded() throws IOException {
+        List<String> files = ConfigurationChecksum.collectFiles("classpath:app/root.xml");
+        String checksum = ConfigurationChecksum.of(files, parameters);
+
+        write("app/child.xml", "<component-configuration><component name=\"b\" class=\"B\"/></component-configuration>");
+        String changedImport = ConfigurationChecksum.of(files, parameters);
+        assertThat(changedImport, not(checksum));
+
+        write("app/env.config", "key=changed");
+        assertThat(ConfigurationChecksum.of(files, parameters), not(changedImport));
+    }
+
+    /**
+     * 初期化パラメータの変更が反映されること。
+     */
+    @Test
+    public void testParametersAreIncluded() {
+        List<String> files = ConfigurationChecksum.collectFiles("classpath:app/root.xml");
+
+        assertThat(ConfigurationChecksum.of(files, parameters),
+                   not(ConfigurationChecksum.of(files, Collections.singletonMap("di.allow-static-property", "true"))));
+    }
+
+    /**
+     * 存在しない設定ファイルや循環するインポートがあっても算出でき、ファイルが追加された場合は反映されること。
+     */
+    @Test
+    public void testMissingAndCyclicFiles() throws IOException {
+        write("app/child.xml", "<component-configuration><import file=\"classpath:app/root.xml\"/>"
+                + "<import file=\"app/missing.xml\"/></component-configuration>");
+        List<String> files = ConfigurationChecksum.collectFiles("classpath:app/root.xml");
+        String checksum = ConfigurationChecksum.of(files, parameters);
+
+        write("app/missing.xml", "<component-configuration/>");
+        assertThat(ConfigurationChecksum.of(files, parameters), not(checksum));
+    }
+
+    /**
+     * URLで指定した設定ファイルからも算出できること。
+     */
+    @Test
+    public void testFileUrl() throws IOException {
+        String url = new File(root, "app/root.xml").toURI().toString();
+        List<String> files = ConfigurationChecksum.collectFiles(url);
+        String checksum = ConfigurationChecksum.of(files, parameters);
+
+        write("app/child.xml", "<component-configuration/>");
+        assertThat(ConfigurationChecksum.of(files, parameters), not(checksum));
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
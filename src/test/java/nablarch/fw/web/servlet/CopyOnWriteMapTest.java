@@ -0,0 +1,144 @@
+package nablarch.fw.web.servlet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * {@link CopyOnWriteMap}のテストクラス。
+ */
+public class CopyOnWriteMapTest {
+
+    private final Map<String, String> baseMap = new HashMap<String, String>() {{
+        put("var1", "val1");
+        put("var2", "val2");
+    }};
+
+    /**
+     * 読み取り操作ではコピーが作成されず、ベースマップの内容が参照されること。
+     */
+    @Test
+    public void testReadDoesNotCopy() {
+        CopyOnWriteMap<String, String> sut = new CopyOnWriteMap<String, String>(baseMap);
+
+        assertThat(sut.get("var1"), is("val1"));
+        assertThat(sut.containsKey("var2"), is(true));
+        assertThat(sut.size(), is(2));
+        assertThat(sut.keySet().size(), is(2));
+        assertThat(sut.keySet().contains("var1"), is(true));
+        assertThat(sut.values().contains("val2"), is(true));
+        int count = 0;
+        for (Map.Entry<String, String> entry : sut.entrySet()) {
+            assertThat(entry.getValue(), is(baseMap.get(entry.getKey())));
+            count++;
+        }
+        assertThat(count, is(2));
+        assertThat(sut.isCopied(), is(false));
+
+        baseMap.put("var3", "val3");
+        assertThat("コピー前はベースマップの変更が見えること", sut.get("var3"), is("val3"));
+    }
+
+    /**
+     * 書き込み操作でコピーが作成され、ベースマップが変更されないこと。
+     */
+    @Test
+    public void testWriteCopies() {
+        CopyOnWriteMap<String, String> sut = new CopyOnWriteMap<String, String>(baseMap);
+
+        sut.put("var1", "changed");
+        assertThat(sut.isCopied(), is(true));
+        assertThat(sut.get("var1"), is("changed"));
+        assertThat(baseMap.get("var1"), is("val1"));
+
+        sut.remove("var2");
+        assertThat(sut.containsKey("var2"), is(false));
+        assertThat(baseMap.get("var2"), is("val2"));
+
+        sut.putAll(Collections.singletonMap("var4", "val4"));
+        assertThat(sut.get("var4"), is("val4"));
+        assertThat(baseMap.containsKey("var4"), is(false));
+
+        sut.clear();
+        assertThat(sut.isEmpty(), is(true));
+        assertThat(baseMap.size(), is(2));
+    }
+
+    /**
+     * 存在しないキーの削除ではコピーが作成されないこと。
+     */
+    @Test
+    public void testRemoveAbsentKey() {
+        CopyOnWriteMap<String, String> sut = new CopyOnWriteMap<String, String>(baseMap);
+
+        assertThat(sut.remove("unknown"), is(nullValue()));
+        assertThat(sut.isCopied(), is(false));
+    }
+
+    /**
+     * 変更不可能なMapをベースマップとした場合でも書き込みが行えること。
+     */
+    @Test
+    public void testUnmodifiableBaseMap() {
+        CopyOnWriteMap<String, String> sut = new CopyOnWriteMap<String, String>(
+                Collections.unmodifiableMap(baseMap));
+
+        sut.put("var3", "val3");
+        assertThat(sut.get("var3"), is("val3"));
+        assertThat(sut.get("var1"), is("val1"));
+    }
+
+    /**
+     * ビューを介した変更を行った時点でコピーが作成され、変更がベースマップに影響しないこと。
+     */
+    @Test
+    public void testViews() {
+        CopyOnWriteMap<String, String> sut = new CopyOnWriteMap<String, String>(baseMap);
+
+        assertThat(sut.keySet().remove("none"), is(false));
+        assertThat(sut.isCopied(), is(false));
+        sut.keySet().remove("var1");
+        assertThat(sut.isCopied(), is(true));
+        assertThat(sut.containsKey("var1"), is(false));
+        assertThat(baseMap.containsKey("var1"), is(true));
+
+        sut.entrySet().iterator().next().setValue("changed");
+        assertThat(sut.get("var2"), is("changed"));
+        assertThat(baseMap.get("var2"), is("val2"));
+
+        sut.values().clear();
+        assertThat(sut.isEmpty(), is(true));
+        assertThat(baseMap.size(), is(2));
+    }
+
+    /**
+     * コピーの作成前に取得したイテレータを介して、エントリの変更と削除が行えること。
+     */
+    @Test
+    public void testIteratorBeforeCopy() {
+        CopyOnWriteMap<String, String> sut = new CopyOnWriteMap<String, String>(baseMap);
+
+        Iterator<Map.Entry<String, String>> it = sut.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, String> entry = it.next();
+            if (entry.getKey().equals("var1")) {
+                assertThat(entry.setValue("changed"), is("val1"));
+                assertThat(entry.getValue(), is("changed"));
+            } else {
+                it.remove();
+            }
+        }
+        assertThat(sut.isCopied(), is(true));
+        assertThat(sut.get("var1"), is("changed"));
+        assertThat(sut.containsKey("var2"), is(false));
+        assertThat(baseMap.get("var1"), is("val1"));
+        assertThat(baseMap.get("var2"), is("val2"));
+    }
+}
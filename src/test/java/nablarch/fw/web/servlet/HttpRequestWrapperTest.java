@@ -49,6 +49,7 @@ public class HttpRequestWrapperTest {
         when(nablarchHttpServletRequestWrapper.getRequestURI()).thenReturn("www.example.com/index.html");
         when(nablarchHttpServletRequestWrapper.getProtocol()).thenReturn("HTTP/1.1");
         when(nablarchHttpServletRequestWrapper.getCookies()).thenReturn(null);
+        HttpRequest.getUserAgentCache().clear();
     }
 
     /**
@@ -440,6 +441,54 @@ public class HttpRequestWrapperTest {
         assertThat("UserAgentに想定した値が設定されていること", result.getText(), is("custom"));
     }
 
+    /**
+     * {@link SystemRepository}のパーサーを差し替えた場合は、キャッシュされた解析結果が使用されないことを確認
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGetUserAgent_parserReplaced() throws Exception {
+
+        SystemRepository.clear();
+        when(nablarchHttpServletRequestWrapper.getHeader("User-Agent")).thenReturn("test");
+        UserAgent first = new HttpRequestWrapper(nablarchHttpServletRequestWrapper).getUserAgent();
+        assertThat("デフォルトのパーサーで解析されること", first.getText(), is("test"));
+
+        SystemRepository.load(new ObjectLoader() {
+            @Override
+            public Map<String, Object> load() {
+                return new HashMap<String, Object>() {{
+                    put("userAgentParser", new CustomUserAgentParser());
+                }};
+            }
+        });
+
+        UserAgent second = new HttpRequestWrapper(nablarchHttpServletRequestWrapper).getUserAgent();
+        assertThat("差し替えたパーサーで解析されること", second.getText(), is("custom"));
+        assertThat("差し替えたパーサーの解析結果がキャッシュされること",
+                ((UserAgent) new HttpRequestWrapper(nablarchHttpServletRequestWrapper).getUserAgent()).getText(),
+                is("custom"));
+    }
+
+    /**
+     * キャッシュされたUserAgent情報がリクエスト間で共有されないことを確認
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGetUserAgent_notShared() throws Exception {
+
+        when(nablarchHttpServletRequestWrapper.getHeader("User-Agent")).thenReturn("shared");
+        long hitCount = HttpRequest.getUserAgentCache().getHitCount();
+        UserAgent first = new HttpRequestWrapper(nablarchHttpServletRequestWrapper).getUserAgent();
+        first.setBrowserName("changed");
+
+        UserAgent second = new HttpRequestWrapper(nablarchHttpServletRequestWrapper).getUserAgent();
+        assertThat("解析結果はキャッシュされること", HttpRequest.getUserAgentCache().getHitCount(), is(hitCount + 1));
+        assertThat("異なるオブジェクトが返却されること", second == first, is(false));
+        assertThat("他のリクエストでの変更が反映されないこと", second.getBrowserName(), is(UserAgent.DEFAULT_NAME_VALUE));
+    }
+
     /**
      * 入力ストリームを取得できることを確認
      *
@@ -190,6 +190,61 @@ public class NablarchHttpServletRequestWrapperTest {
         }
     }
     
+    /**
+     * リクエストパラメータのMapは、書き込みが行われるまでサーブレットコンテナのMapをコピーしないことを確認する。
+     */
+    @Test
+    public void testParameterCopyOnWrite() {
+
+        MockServletRequest req = new MockServletRequest();
+        req.getParams().put("param1", new String[] {"param_value1"});
+        NablarchHttpServletRequestWrapper target = new NablarchHttpServletRequestWrapper(req);
+
+        // 読み取りではサーブレットコンテナのMapが参照されること。
+        assertThat(target.getParameter("param1"), is("param_value1"));
+        req.getParams().put("param2", new String[] {"param_value2"});
+        assertThat(target.getParameter("param2"), is("param_value2"));
+
+        // 書き込み後はサーブレットコンテナのMapに影響しないこと。
+        target.getParameterMap().put("param3", new String[] {"param_value3"});
+        target.getParameterMap().remove("param1");
+        assertThat(target.getParameter("param3"), is("param_value3"));
+        assertThat(target.getParameterValues("param1"), is(nullValue()));
+        assertThat(req.getParams().containsKey("param3"), is(false));
+        assertThat(req.getParams().get("param1")[0], is("param_value1"));
+
+        // ビューを介した変更も行え、サーブレットコンテナのMapに影響しないこと。
+        target.getParameterMap().keySet().remove("param2");
+        target.getParameterMap().entrySet().iterator().next().setValue(new String[] {"changed"});
+        assertThat(target.getParameterValues("param2"), is(nullValue()));
+        assertThat(target.getParameter("param3"), is("changed"));
+        assertThat(req.getParams().get("param2")[0], is("param_value2"));
+    }
+
+    /**
+     * HTTPヘッダーのMapは最初にアクセスされるまで作成されないことを確認する。
+     */
+    @Test
+    public void testHeaderMapCreatedLazily() {
+
+        final int[] headerNamesCount = {0};
+        MockServletRequest req = new MockServletRequest() {
+            @Override
+            public Enumeration getHeaderNames() {
+                headerNamesCount[0]++;
+                return super.getHeaderNames();
+            }
+        };
+        req.addHeader("Content-Type", "text/plain");
+        NablarchHttpServletRequestWrapper target = new NablarchHttpServletRequestWrapper(req);
+        assertThat(headerNamesCount[0], is(0));
+
+        // 大文字小文字を区別せずに取得できること。
+        assertThat(target.getHeader("content-type"), is("text/plain"));
+        assertThat(target.getHeaderMap().get("CONTENT-TYPE"), is("text/plain"));
+        assertThat(headerNamesCount[0], is(1));
+    }
+
     /**
      * セッションの取得が正しく行えることを確認する。
      */
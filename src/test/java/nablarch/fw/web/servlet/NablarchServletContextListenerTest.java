@@ -31,7 +31,9 @@ import nablarch.fw.web.servlet.staticprop.Foo;
 import nablarch.test.support.log.app.OnMemoryLogWriter;
 import nablarch.test.support.tool.Hereis;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * {@link NablarchServletContextListener}のテストクラス。
@@ -39,6 +41,9 @@ import org.junit.Test;
  * @author Kiyohito Itoh
  */
 public class NablarchServletContextListenerTest extends LogTestSupport {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
     
     private void clear() {
         SystemRepository.clear();
@@ -398,6 +403,124 @@ public class NablarchServletContextListenerTest extends LogTestSupport {
         }
     }
 
+    /**
+     * 初期化完了時に各段階の所要時間が出力されること。
+     */
+    @Test
+    public void testPhaseTimingsAreLogged() {
+        MockServletContext ctx = new MockServletContext();
+        ctx.getInitParams().put("di.config", "classpath:nablarch/fw/web/servlet/nablarch-servlet-context-test.xml");
+        ServletContextListener listener = new NablarchServletContextListener();
+
+        clear();
+        listener.contextInitialized(new ServletContextEvent(ctx));
+
+        String actualLog = OnMemoryLogWriter.getMessages("writer.appLog").toString();
+        assertThat(actualLog, containsString("#contextInitialized] initialization phases: log="));
+        assertThat(actualLog, containsString("loadDefinitions="));
+        assertThat(actualLog, containsString("createContainer="));
+        assertThat(actualLog, containsString("total="));
+    }
+
+    /**
+     * ウォームアップが登録されている場合は、初期化完了前にウォームアップが行われること。
+     */
+    @Test
+    public void testWarmup() {
+        MockServletContext ctx = new MockServletContext() {
+            @Override
+            public String getContextPath() {
+                return "/app";
+            }
+        };
+        ctx.getInitParams().put("di.config", "classpath:nablarch/fw/web/servlet/nablarch-servlet-context-warmup-test.xml");
+        ServletContextListener listener = new NablarchServletContextListener();
+
+        clear();
+        listener.contextInitialized(new ServletContextEvent(ctx));
+
+        assertTrue(NablarchServletContextListener.isInitializationCompleted());
+        String actualLog = OnMemoryLogWriter.getMessages("writer.appLog").toString();
+        assertThat(actualLog, containsString("warmup completed. requests = 10, failures = 0"));
+        assertThat(actualLog, containsString("warmup="));
+    }
+
+    /**
+     * スナップショットを指定した場合は、起動に成功した際に保存され、
+     * 設定ファイルが変更されていなければ次回の起動時にスナップショットから復元されること。
+     */
+    @Test
+    public void testStartupSnapshot() throws IOException {
+        File config = tempFolder.newFile("config.xml");
+        Hereis.file(config.getAbsolutePath());
+        /*
+        <?xml version="1.0" encoding="UTF-8"?>
+        <component-configuration xmlns="http://tis.co.jp/nablarch/component-configuration">
+            <component name="book" class="nablarch.fw.web.servlet.NablarchServletContextListenerTest$Book">
+                <property name="name" value="Nablarch入門" />
+            </component>
+        </component-configuration>*/
+        File snapshot = new File(tempFolder.getRoot(), "snapshot/startup.snapshot");
+
+        MockServletContext ctx = new MockServletContext();
+        ctx.getInitParams().put("di.config", config.toURI().toString());
+        ctx.getInitParams().put("di.startup-snapshot", snapshot.getPath());
+        ServletContextEvent ctxEvt = new ServletContextEvent(ctx);
+
+        // 初回の起動ではスナップショットが存在しないため、設定ファイルを解析して保存する
+        clear();
+        new NablarchServletContextListener().contextInitialized(ctxEvt);
+        String actualLog = OnMemoryLogWriter.getMessages("writer.appLog").toString();
+        assertThat(actualLog, containsString("startup snapshot was not found. snapshot = " + snapshot.getAbsolutePath()));
+        assertThat(actualLog, containsString("saveSnapshot="));
+        assertTrue(snapshot.isFile());
+        String checksum = StartupSnapshot.read(snapshot).getChecksum();
+
+        // 設定ファイルが変更されていない場合はスナップショットから復元する
+        clear();
+        new NablarchServletContextListener().contextInitialized(ctxEvt);
+        actualLog = OnMemoryLogWriter.getMessages("writer.appLog").toString();
+        assertThat(actualLog, containsString("startup snapshot matched. components = "));
+        assertThat(actualLog, not(containsString("saveSnapshot=")));
+        assertThat(((Book) SystemRepository.getObject("book")).getName(), is("Nablarch入門"));
+
+        // 設定ファイルが変更された場合は設定ファイルを解析し、スナップショットを保存し直す
+        Hereis.file(config.getAbsolutePath());
+        /*
+        <?xml version="1.0" encoding="UTF-8"?>
+        <component-configuration xmlns="http://tis.co.jp/nablarch/component-configuration">
+            <component name="book" class="nablarch.fw.web.servlet.NablarchServletContextListenerTest$Book">
+                <property name="name" value="Nablarch入門Vol2" />
+            </component>
+        </component-configuration>*/
+        clear();
+        new NablarchServletContextListener().contextInitialized(ctxEvt);
+        actualLog = OnMemoryLogWriter.getMessages("writer.appLog").toString();
+        assertThat(actualLog, containsString("configuration was changed since startup snapshot was saved."));
+        assertThat(((Book) SystemRepository.getObject("book")).getName(), is("Nablarch入門Vol2"));
+        assertThat(StartupSnapshot.read(snapshot).getChecksum(), not(checksum));
+    }
+
+    /**
+     * 初期化に失敗した場合はスナップショットが保存されないこと。
+     */
+    @Test
+    public void testStartupSnapshotIsNotSavedOnFailure() {
+        File snapshot = new File(tempFolder.getRoot(), "startup.snapshot");
+        MockServletContext ctx = new MockServletContext();
+        ctx.getInitParams().put("di.config", "classpath:nablarch/fw/web/servlet/nablarch-servlet-context-duplication-test.xml");
+        ctx.getInitParams().put("di.duplicate-definition-policy", "DENY");
+        ctx.getInitParams().put("di.startup-snapshot", snapshot.getPath());
+
+        clear();
+        try {
+            new NablarchServletContextListener().contextInitialized(new ServletContextEvent(ctx));
+            fail("初期化に失敗するはず");
+        } catch (ConfigurationLoadException e) {
+            assertFalse(snapshot.exists());
+        }
+    }
+
     public static final class Book {
         private String name;
         
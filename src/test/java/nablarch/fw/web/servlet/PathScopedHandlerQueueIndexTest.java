@@ -0,0 +1,66 @@
+package nablarch.fw.web.servlet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * {@link PathScopedHandlerQueueIndex}のテスト。
+ */
+public class PathScopedHandlerQueueIndexTest {
+
+    /**
+     * 完全一致、最長の前方一致、拡張子の一致の順に優先して選択されること。
+     */
+    @Test
+    public void testFind() {
+        PathScopedHandlerQueue staticQueue = queue("/static/*", "*.css");
+        PathScopedHandlerQueue imageQueue = queue("/static/images/*", "/static/images/logo.svg");
+        PathScopedHandlerQueue healthQueue = queue("/health", "/");
+        PathScopedHandlerQueueIndex index = new PathScopedHandlerQueueIndex(Arrays.asList(staticQueue, imageQueue, healthQueue));
+
+        assertThat(index.find("/static/js/app.js"), is(sameInstance(staticQueue)));
+        assertThat(index.find("/static"), is(sameInstance(staticQueue)));
+        assertThat(index.find("/static/images/a.png"), is(sameInstance(imageQueue)));
+        assertThat(index.find("/static/images/logo.svg"), is(sameInstance(imageQueue)));
+        assertThat(index.find("/health"), is(sameInstance(healthQueue)));
+        assertThat(index.find("/"), is(sameInstance(healthQueue)));
+        assertThat(index.find("/app/style.css"), is(sameInstance(staticQueue)));
+
+        assertThat(index.find("/health/detail"), is(nullValue()));
+        assertThat(index.find("/healthcheck"), is(nullValue()));
+        assertThat(index.find("/staticfiles/a.js"), is(nullValue()));
+        assertThat(index.find("/app.v1/style"), is(nullValue()));
+    }
+
+    /**
+     * "/*"は全てのリクエストパスに一致すること。
+     */
+    @Test
+    public void testFindAll() {
+        PathScopedHandlerQueue all = queue("/*");
+        PathScopedHandlerQueue health = queue("/health");
+        PathScopedHandlerQueueIndex index = new PathScopedHandlerQueueIndex(Arrays.asList(all, health));
+        assertThat(index.find("/action/menu"), is(sameInstance(all)));
+        assertThat(index.find("/health"), is(sameInstance(health)));
+    }
+
+    /**
+     * 不正な形式のパスは設定できないこと。
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPath() {
+        queue("static/*");
+    }
+
+    private static PathScopedHandlerQueue queue(String... paths) {
+        PathScopedHandlerQueue queue = new PathScopedHandlerQueue();
+        queue.setPaths(Arrays.asList(paths));
+        return queue;
+    }
+}
@@ -0,0 +1,171 @@
+package nablarch.fw.web.servlet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.repository.di.ComponentDefinition;
+import nablarch.core.repository.di.ComponentDefinitionLoader;
+import nablarch.core.repository.di.DiContainer;
+import nablarch.core.repository.di.config.xml.XmlComponentDefinitionLoader;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * {@link StartupSnapshot}のテストクラス。
+ */
+public class StartupSnapshotTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * 保存したスナップショットから、設定ファイルを解析した場合と同じコンポーネントが生成されること。
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        File env = write("env.config", "greeting=hello\ncount=3");
+        File config = write("config.xml",
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<component-configuration xmlns=\"http://tis.co.jp/nablarch/component-configuration\">"
+                + "<config-file file=\"" + env.toURI() + "\"/>"
+                + "<component name=\"book\" class=\"" + Book.class.getName() + "\">"
+                + "<property name=\"name\" value=\"${greeting}\"/></component>"
+                + "<component name=\"holder\" class=\"" + Holder.class.getName() + "\">"
+                + "<property name=\"count\" value=\"${count}\"/>"
+                + "<property name=\"book\" ref=\"book\"/>"
+                + "<property name=\"items\"><list><value>a</value><component-ref name=\"book\"/></list></property>"
+                + "<property name=\"entries\"><map><entry key=\"k\" value=\"v\"/>"
+                + "<entry key=\"ref\" value-name=\"book\"/></map></property>"
+                + "</component>"
+                + "</component-configuration>");
+
+        final CapturingLoader capturing = new CapturingLoader(
+                new XmlComponentDefinitionLoader(config.toURI().toString()));
+        new DiContainer(capturing);
+        assertThat(capturing.snapshot, is(notNullValue()));
+
+        File file = new File(tempFolder.getRoot(), "snapshot/startup.snapshot");
+        capturing.snapshot.withChecksum("abc", Arrays.asList("config.xml")).write(file);
+
+        StartupSnapshot read = StartupSnapshot.read(file);
+        assertThat(read.getChecksum(), is("abc"));
+        assertThat(read.getFiles(), contains("config.xml"));
+        assertThat(read.getComponentCount(), is(capturing.snapshot.getComponentCount()));
+
+        DiContainer container = new DiContainer(read.createLoader());
+        Holder holder = container.getComponentByName("holder");
+        Book book = container.getComponentByName("book");
+        assertThat(book.getName(), is("hello"));
+        assertThat(holder.getCount(), is(3));
+        assertThat(holder.getBook(), sameInstance(book));
+        assertThat(holder.getItems().size(), is(2));
+        assertThat(holder.getItems().get(0), is((Object) "a"));
+        assertThat(holder.getItems().get(1), sameInstance((Object) book));
+        assertThat(holder.getEntries().get("k"), is((Object) "v"));
+        assertThat(holder.getEntries().get("ref"), sameInstance((Object) book));
+        assertThat((String) container.getComponentByName("greeting"), is("hello"));
+    }
+
+    /**
+     * 存在しないファイルや形式が不正なファイルは読み込まれないこと。
+     */
+    @Test
+    public void testReadInvalidFile() throws IOException {
+        assertThat(StartupSnapshot.read(new File(tempFolder.getRoot(), "missing")), is(nullValue()));
+        assertThat(StartupSnapshot.read(write("broken", "broken")), is(nullValue()));
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(tempFolder.getRoot(), name);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static final class CapturingLoader implements ComponentDefinitionLoader {
+
+        private final ComponentDefinitionLoader delegate;
+
+        private StartupSnapshot snapshot;
+
+        CapturingLoader(ComponentDefinitionLoader delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public List<ComponentDefinition> load(DiContainer container) {
+            List<ComponentDefinition> definitions = delegate.load(container);
+            snapshot = StartupSnapshot.capture(definitions, container);
+            return definitions;
+        }
+    }
+
+    public static final class Book {
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    public static final class Holder {
+        private int count;
+        private Book book;
+        private List<Object> items;
+        private Map<String, Object> entries;
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public Book getBook() {
+            return book;
+        }
+
+        public void setBook(Book book) {
+            this.book = book;
+        }
+
+        public List<Object> getItems() {
+            return items;
+        }
+
+        public void setItems(List<Object> items) {
+            this.items = items;
+        }
+
+        public Map<String, Object> getEntries() {
+            return entries;
+        }
+
+        public void setEntries(Map<String, Object> entries) {
+            this.entries = entries;
+        }
+    }
+}
@@ -15,11 +15,13 @@ import nablarch.fw.web.HttpResponse;
 import nablarch.fw.web.HttpServer;
 import nablarch.fw.web.MockHttpRequest;
 import nablarch.fw.web.handler.HttpErrorHandler;
+import nablarch.fw.web.handler.latency.HandlerLatencyRecorder;
 import org.junit.After;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
+import java.util.Arrays;
 import java.util.Collections;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
@@ -32,6 +34,8 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 /**
@@ -138,6 +142,70 @@ public class WebFrontControllerTest {
         assertThat(servletRequest, is(instanceOf(PreventSessionCreationHttpServletRequestWrapper.class)));
     }
 
+    /**
+     * リクエストパスに一致する{@link PathScopedHandlerQueue}のハンドラキューで処理されること。
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPathScopedHandlerQueue() throws Exception {
+        Handler<Object, ?> scopedHandler = mock(Handler.class);
+        PathScopedHandlerQueue scopedQueue = new PathScopedHandlerQueue();
+        scopedQueue.setPaths(Arrays.asList("/static/*", "/health"));
+        scopedQueue.setHandlerQueue(Collections.singletonList(scopedHandler));
+
+        WebFrontController sut = new WebFrontController();
+        sut.setServletFilterConfig(new MockServletFilterConfig());
+        sut.setHandlerQueue(Collections.singletonList(handler));
+        sut.setPathScopedHandlerQueues(Collections.singletonList(scopedQueue));
+
+        sut.doFilter(request("/app/static/css/style.css"), response, filterChain);
+        sut.doFilter(request("/app/health"), response, filterChain);
+        verify(scopedHandler, times(2)).handle(any(), any(ExecutionContext.class));
+        verify(handler, never()).handle(any(), any(ExecutionContext.class));
+        assertThat(scopedQueue.getRequestCount(), is(2L));
+        assertThat(scopedQueue.getMaxNanos() <= scopedQueue.getTotalNanos(), is(true));
+
+        sut.doFilter(request("/app/health/detail"), response, filterChain);
+        verify(handler, times(1)).handle(any(), any(ExecutionContext.class));
+        assertThat(scopedQueue.getRequestCount(), is(2L));
+    }
+
+    /**
+     * {@link HandlerLatencyRecorder}を設定した場合は、ハンドラキューの各ハンドラの処理時間が記録されること。
+     * ハンドラキューを変更した場合は、変更後のハンドラキューで記録されること。
+     */
+    @Test
+    public void testHandlerLatencyRecorder() throws Exception {
+        HandlerLatencyRecorder recorder = new HandlerLatencyRecorder();
+        WebFrontController sut = new WebFrontController();
+        sut.setServletFilterConfig(new MockServletFilterConfig());
+        sut.setHandlerQueue(Collections.singletonList(handler));
+        sut.setHandlerLatencyRecorder(recorder);
+        assertThat(sut.getHandlerLatencyRecorder(), is(recorder));
+
+        sut.doFilter(request("/app/index.html"), response, filterChain);
+        sut.doFilter(request("/app/index.html"), response, filterChain);
+        verify(handler, times(2)).handle(any(), any(ExecutionContext.class));
+        assertThat("ハンドラキューは包まれないこと", sut.getHandlerQueue().get(0), is((Object) handler));
+        assertThat(recorder.getLatencies().size(), is(1));
+        assertThat(recorder.getLatencies().get(0).getWallTime().getCount(), is(2L));
+
+        Handler<Object, ?> replaced = mock(Handler.class);
+        sut.setHandlerQueue(Collections.singletonList(replaced));
+        sut.doFilter(request("/app/index.html"), response, filterChain);
+        verify(replaced).handle(any(), any(ExecutionContext.class));
+        verify(handler, times(2)).handle(any(), any(ExecutionContext.class));
+        assertThat(recorder.getLatencies().get(0).getWallTime().getCount(), is(3L));
+    }
+
+    private static MockServletRequest request(String uri) {
+        MockServletRequest request = new MockServletRequest();
+        request.setMethod("GET");
+        request.setContextPath("/app");
+        request.setRequestURI(uri);
+        return request;
+    }
+
     @After
     public void clearRepository() {
         SystemRepository.clear();
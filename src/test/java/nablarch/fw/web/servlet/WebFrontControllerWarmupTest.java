@@ -0,0 +1,363 @@
+package nablarch.fw.web.servlet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.servlet.http.HttpSession;
+
+import nablarch.common.web.handler.HttpAccessLogHandler;
+import nablarch.common.web.session.SessionEntry;
+import nablarch.common.web.session.SessionManager;
+import nablarch.common.web.session.SessionStore;
+import nablarch.common.web.session.SessionStoreHandler;
+import nablarch.core.date.BasicSystemTimeProvider;
+import nablarch.core.repository.ObjectLoader;
+import nablarch.core.repository.SystemRepository;
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.Handler;
+import nablarch.fw.web.HttpRequest;
+import nablarch.fw.web.handler.HttpAccessLogUtil;
+import nablarch.fw.web.handler.latency.HandlerLatency;
+import nablarch.fw.web.handler.latency.HandlerLatencyRecorder;
+import nablarch.fw.web.handler.latency.RequestLatencyHandler;
+import nablarch.fw.web.handler.latency.RequestLatencyRecorder;
+import nablarch.fw.web.servlet.WebFrontControllerWarmup.WarmupResult;
+import nablarch.test.support.log.app.OnMemoryLogWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link WebFrontControllerWarmup}のテストクラス。
+ */
+public class WebFrontControllerWarmupTest {
+
+    private final WebFrontController controller = new WebFrontController();
+
+    private final RecordingAction action = new RecordingAction();
+
+    private final WebFrontControllerWarmup sut = new WebFrontControllerWarmup();
+
+    private final MockServletContext servletContext = new MockServletContext() {
+        @Override
+        public String getContextPath() {
+            return "/app";
+        }
+    };
+
+    @Before
+    public void setUp() {
+        controller.setHandlerQueue(Collections.singletonList(action));
+        SystemRepository.load(new ObjectLoader() {
+            @Override
+            public Map<String, Object> load() {
+                Map<String, Object> components = new HashMap<String, Object>();
+                components.put("webFrontController", controller);
+                components.put("systemTimeProvider", new BasicSystemTimeProvider());
+                return components;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        SystemRepository.clear();
+    }
+
+    /**
+     * 定義した疑似リクエストを順に繰り返して、指定した回数だけ処理すること。
+     */
+    @Test
+    public void testWarmup() {
+        WarmupRequest menu = request("/action/menu");
+        menu.setParams(Collections.singletonMap("page", "1"));
+        menu.setHeaders(Collections.singletonMap("Accept-Language", "ja"));
+        WarmupRequest list = request("/action/list");
+        list.setMethod("HEAD");
+        sut.setRequests(Arrays.asList(menu, list));
+        sut.setIterations(5);
+
+        WarmupResult result = sut.warmup(servletContext);
+
+        assertThat(result.getRequestCount(), is(5));
+        assertThat(result.getFailureCount(), is(0));
+        assertThat(action.requests, contains(
+                "GET /action/menu page=1 ja",
+                "HEAD /action/list page=null null",
+                "GET /action/menu page=1 ja",
+                "HEAD /action/list page=null null",
+                "GET /action/menu page=1 ja"));
+    }
+
+    /**
+     * 疑似リクエストごとに新しいセッションが使用されること。
+     */
+    @Test
+    public void testSessionIsNotShared() {
+        controller.setHandlerQueue(Collections.singletonList(new Handler<HttpRequest, Object>() {
+            @Override
+            public Object handle(HttpRequest request, ExecutionContext context) {
+                Integer count = context.getSessionScopedVar("count");
+                action.requests.add(String.valueOf(count));
+                context.setSessionScopedVar("count", count == null ? 1 : count + 1);
+                return null;
+            }
+        }));
+        sut.setRequests(Collections.singletonList(request("/action/menu")));
+        sut.setIterations(2);
+
+        sut.warmup(servletContext);
+
+        assertThat(action.requests, contains("null", "null"));
+    }
+
+    /**
+     * 例外が発生した場合とステータスコードが500以上の場合は失敗として数え、処理を継続すること。
+     */
+    @Test
+    public void testFailures() {
+        controller.setHandlerQueue(Collections.singletonList(new Handler<HttpRequest, Object>() {
+            @Override
+            public Object handle(HttpRequest request, ExecutionContext context) {
+                if (request.getRequestPath().endsWith("/error")) {
+                    throw new IllegalStateException("error");
+                }
+                if (request.getRequestPath().endsWith("/unavailable")) {
+                    ((ServletExecutionContext) context).getServletResponse().setStatus(503);
+                }
+                return null;
+            }
+        }));
+        sut.setRequests(Arrays.asList(request("/error"), request("/unavailable"), request("/ok")));
+        sut.setIterations(6);
+
+        WarmupResult result = sut.warmup(servletContext);
+
+        assertThat(result.getRequestCount(), is(6));
+        assertThat(result.getFailureCount(), is(4));
+    }
+
+    /**
+     * 最大時間に達した場合は、指定した回数に達していなくても終了すること。
+     */
+    @Test
+    public void testMaxDuration() {
+        sut.setRequests(Collections.singletonList(request("/action/menu")));
+        sut.setIterations(Integer.MAX_VALUE);
+        sut.setMaxDurationMillis(0L);
+
+        WarmupResult result = sut.warmup(servletContext);
+
+        assertThat(result.getRequestCount(), lessThan(Integer.MAX_VALUE));
+    }
+
+    /**
+     * 疑似リクエストが定義されていない場合は何も処理しないこと。
+     */
+    @Test
+    public void testNoRequests() {
+        WarmupResult result = sut.warmup(servletContext);
+
+        assertThat(result.getRequestCount(), is(0));
+        assertThat(action.requests.isEmpty(), is(true));
+    }
+
+    /**
+     * {@link WebFrontController}がリポジトリに登録されていない場合は例外が送出されること。
+     */
+    @Test
+    public void testControllerNotFound() {
+        sut.setControllerName("otherController");
+        try {
+            sut.warmup(servletContext);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is(
+                    "webFrontController must be configured in SystemRepository. controllerName = otherController"));
+        }
+    }
+
+    /**
+     * GETとHEAD以外のメソッドと、スラッシュで始まらないパスは指定できないこと。
+     */
+    @Test
+    public void testInvalidRequestDefinition() {
+        WarmupRequest request = new WarmupRequest();
+        try {
+            request.setMethod("POST");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("warmup request method must be GET or HEAD. method = POST"));
+        }
+        try {
+            request.setPath("action/menu");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("warmup request path must start with '/'. path = action/menu"));
+        }
+    }
+
+    /**
+     * 疑似リクエストにはリクエスト属性が設定され、処理時間の集計に含まれないこと。
+     */
+    @Test
+    public void testWarmupRequestIsNotRecorded() {
+        final List<Boolean> warmupFlags = new ArrayList<Boolean>();
+        Handler<HttpRequest, Object> marker = new Handler<HttpRequest, Object>() {
+            @Override
+            public Object handle(HttpRequest request, ExecutionContext context) {
+                warmupFlags.add(WebFrontControllerWarmup.isWarmupRequest(context));
+                return context.handleNext(request);
+            }
+        };
+        RequestLatencyRecorder requestLatencyRecorder = new RequestLatencyRecorder();
+        RequestLatencyHandler requestLatencyHandler = new RequestLatencyHandler();
+        requestLatencyHandler.setRecorder(requestLatencyRecorder);
+        controller.setHandlerQueue(Arrays.asList(requestLatencyHandler, marker, action));
+        HandlerLatencyRecorder handlerLatencyRecorder = new HandlerLatencyRecorder();
+        controller.setHandlerLatencyRecorder(handlerLatencyRecorder);
+        PathScopedHandlerQueue scoped = new PathScopedHandlerQueue();
+        scoped.setPaths(Collections.singletonList("/static/*"));
+        scoped.setHandlerQueue(Arrays.asList(marker, action));
+        controller.setPathScopedHandlerQueues(Collections.singletonList(scoped));
+        sut.setRequests(Arrays.asList(request("/action/menu"), request("/static/app.css")));
+        sut.setIterations(4);
+
+        WarmupResult result = sut.warmup(servletContext);
+
+        assertThat(result.getFailureCount(), is(0));
+        assertThat(warmupFlags, contains(true, true, true, true));
+        assertThat(requestLatencyRecorder.getRouteCount(), is(0));
+        for (HandlerLatency latency : handlerLatencyRecorder.getLatencies()) {
+            assertThat(latency.getWallTime().getCount(), is(0L));
+        }
+        assertThat(scoped.getRequestCount(), is(0L));
+    }
+
+    /**
+     * 疑似リクエストでは、アクセスログのフォーマットとセッションエントリのエンコードまで行い、
+     * アクセスログの出力とセッションストアへの保存は行わないこと。
+     */
+    @Test
+    public void testLogAndSessionAreDiscarded() {
+        final RecordingStore store = new RecordingStore();
+        SessionManager sessionManager = new SessionManager();
+        sessionManager.setAvailableStores(Collections.<SessionStore>singletonList(store));
+        sessionManager.setDefaultStoreName(store.getName());
+        SessionStoreHandler sessionStoreHandler = new SessionStoreHandler();
+        sessionStoreHandler.setSessionManager(sessionManager);
+        final List<Boolean> logContextCreated = new ArrayList<Boolean>();
+        controller.setHandlerQueue(Arrays.asList(new HttpAccessLogHandler(), sessionStoreHandler,
+                new Handler<HttpRequest, Object>() {
+                    @Override
+                    public Object handle(HttpRequest request, ExecutionContext context) {
+                        logContextCreated.add(HttpAccessLogUtil.getAccessLogContext(
+                                request, (ServletExecutionContext) context).getRequest() == request);
+                        context.setSessionStoredVar("key", new SessionEntry("key", "value", store));
+                        return null;
+                    }
+                }));
+        sut.setRequests(Collections.singletonList(request("/action/menu")));
+        sut.setIterations(2);
+        OnMemoryLogWriter.clear();
+
+        WarmupResult result = sut.warmup(servletContext);
+
+        assertThat(result.getFailureCount(), is(0));
+        assertThat(logContextCreated, contains(true, true));
+        assertThat(OnMemoryLogWriter.getMessages("writer.accessLog").isEmpty(), is(true));
+        assertThat(store.encodedCount, is(2));
+        assertThat(store.savedCount, is(0));
+    }
+
+    /**
+     * 疑似リクエストとレスポンスは、フレームワークが通常使用しないメソッドでも例外を送出しないこと。
+     *
+     * @throws Exception 例外
+     */
+    @Test
+    public void testInertServletObjects() throws Exception {
+        WarmupServletRequest request = new WarmupServletRequest(request("/action/menu"), servletContext);
+        assertThat(request.getAttribute(WebFrontControllerWarmup.WARMUP_REQUEST_ATTRIBUTE), is((Object) Boolean.TRUE));
+        assertThat(request.getPathTranslated(), is((String) null));
+        assertThat(request.isRequestedSessionIdFromCookie(), is(false));
+        assertThat(request.authenticate(new WarmupServletResponse()), is(false));
+        request.logout();
+        assertThat(request.getParts().isEmpty(), is(true));
+        assertThat(request.getPart("file"), is((Object) null));
+        assertThat(request.getServletConnection().getConnectionId(), is(request.getRequestId()));
+
+        HttpSession session = request.getSession();
+        session.setAttribute("key", "value");
+        assertThat(session.getAttribute("key"), is((Object) "value"));
+        session.invalidate();
+        assertThat(request.getSession(false), is((HttpSession) null));
+        assertThat(request.getSession().getId().equals(session.getId()), is(false));
+    }
+
+    private static WarmupRequest request(String path) {
+        WarmupRequest request = new WarmupRequest();
+        request.setPath(path);
+        return request;
+    }
+
+    private static final class RecordingStore extends SessionStore {
+
+        private int encodedCount;
+
+        private int savedCount;
+
+        RecordingStore() {
+            super("recording");
+        }
+
+        @Override
+        protected byte[] encode(List<SessionEntry> entries) {
+            encodedCount++;
+            return super.encode(entries);
+        }
+
+        @Override
+        public List<SessionEntry> load(String sessionId, ExecutionContext executionContext) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void save(String sessionId, List<SessionEntry> entries, ExecutionContext executionContext) {
+            savedCount++;
+        }
+
+        @Override
+        public void delete(String sessionId, ExecutionContext executionContext) {
+        }
+
+        @Override
+        public void invalidate(String sessionId, ExecutionContext executionContext) {
+        }
+    }
+
+    private static final class RecordingAction implements Handler<HttpRequest, Object> {
+
+        private final List<String> requests = new ArrayList<String>();
+
+        @Override
+        public Object handle(HttpRequest request, ExecutionContext context) {
+            String[] page = request.getParam("page");
+            requests.add(request.getMethod() + ' ' + request.getRequestUri()
+                    + " page=" + (page == null ? null : page[0])
+                    + ' ' + request.getHeader("Accept-Language"));
+            return null;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package nablarch.fw.web.upload;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * {@link ContentSniffingPartStreamProcessor}のテストクラス。
+ */
+public class ContentSniffingPartStreamProcessorTest {
+
+    private final ContentSniffingPartStreamProcessor sut = new ContentSniffingPartStreamProcessor();
+
+    /**
+     * マジックナンバーからContent-Typeが判定できること。
+     */
+    @Test
+    public void testSniff() {
+        assertThat(sniff(new byte[] {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0x00}), is("image/png"));
+        assertThat(sniff(new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0}), is("image/jpeg"));
+        assertThat(sniff("GIF89a...".getBytes(StandardCharsets.ISO_8859_1)), is("image/gif"));
+        assertThat(sniff("%PDF-1.7\n".getBytes(StandardCharsets.ISO_8859_1)), is("application/pdf"));
+        assertThat(sniff(new byte[] {'P', 'K', 0x03, 0x04, 0x14}), is("application/zip"));
+        assertThat(sniff("RIFF$\u0000\u0000\u0000WEBPVP8 ".getBytes(StandardCharsets.ISO_8859_1)), is("image/webp"));
+    }
+
+    /**
+     * 判定できない場合や、内容がマジックナンバーより短い場合はnullとなること。
+     */
+    @Test
+    public void testUnknown() {
+        assertThat(sniff("plain text".getBytes(StandardCharsets.ISO_8859_1)), is(nullValue()));
+        assertThat(sniff(new byte[] {(byte) 0x89, 'P', 'N'}), is(nullValue()));
+        assertThat(sniff(new byte[0]), is(nullValue()));
+    }
+
+    /**
+     * 内容を1バイトずつ渡した場合でも判定できること。
+     */
+    @Test
+    public void testSplitUpdate() {
+        byte[] content = "%PDF-1.7\n%...".getBytes(StandardCharsets.ISO_8859_1);
+        PartStreamProcessor.Accumulator accumulator = sut.start(PartInfo.newInstance("file"));
+        for (int i = 0; i < content.length; i++) {
+            accumulator.update(content, i, 1);
+        }
+        assertThat((String) accumulator.getResult(), is("application/pdf"));
+        assertThat(sut.getName(), is("sniffedContentType"));
+    }
+
+    private String sniff(byte[] content) {
+        PartStreamProcessor.Accumulator accumulator = sut.start(PartInfo.newInstance("file"));
+        accumulator.update(content, 0, content.length);
+        return (String) accumulator.getResult();
+    }
+}
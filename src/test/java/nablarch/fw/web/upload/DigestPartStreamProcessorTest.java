@@ -0,0 +1,58 @@
+package nablarch.fw.web.upload;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * {@link DigestPartStreamProcessor}のテストクラス。
+ */
+public class DigestPartStreamProcessorTest {
+
+    private final DigestPartStreamProcessor sut = new DigestPartStreamProcessor();
+
+    /**
+     * 分割して渡された内容のハッシュ値(SHA-256)が算出できること。
+     */
+    @Test
+    public void testDefaultAlgorithm() {
+        byte[] content = "abc".getBytes(StandardCharsets.UTF_8);
+        PartStreamProcessor.Accumulator accumulator = sut.start(PartInfo.newInstance("file"));
+        accumulator.update(content, 0, 1);
+        accumulator.update(content, 1, 2);
+
+        assertThat(sut.getName(), is("digest"));
+        assertThat((String) accumulator.getResult(),
+                is("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"));
+    }
+
+    /**
+     * アルゴリズムと名前が変更できること。
+     */
+    @Test
+    public void testSetAlgorithm() {
+        sut.setAlgorithm("MD5");
+        sut.setName("md5");
+        PartStreamProcessor.Accumulator accumulator = sut.start(PartInfo.newInstance("file"));
+
+        assertThat(sut.getName(), is("md5"));
+        assertThat((String) accumulator.getResult(), is("d41d8cd98f00b204e9800998ecf8427e"));
+    }
+
+    /**
+     * 使用できないアルゴリズムを設定した場合、例外が発生すること。
+     */
+    @Test
+    public void testUnsupportedAlgorithm() {
+        try {
+            sut.setAlgorithm("unknown");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("unsupported digest algorithm. [unknown]"));
+        }
+    }
+}
@@ -18,7 +18,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import static nablarch.fw.web.upload.UploadTestUtil.readAll;
@@ -236,6 +239,120 @@ public class MultipartHandlerTest {
         assertThat(response.getStatusCode(), is(200));
     }
 
+    /**
+     * ストリーミングモードの場合、後続のハンドラがイテレータからアップロードファイルを読み込めること。
+     * 一時ファイルが作成されないこと。
+     */
+    @Test
+    public void testHandleStreaming() {
+        final File tempDir = settings.getSaveDir();
+        final int fileCountBefore = tempDir.list().length;
+        target.setStreaming(true);
+
+        MockServletRequest req = createMockServletRequest();
+        HttpRequestHandler assertion = new HttpRequestHandler() {
+            public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+                Iterator<StreamingPart> parts = MultipartHandler.getStreamingParts(context);
+
+                StreamingPart part1 = parts.next();
+                assertThat(part1.getName(), is("uploadfile1"));
+                assertThat(part1.getFileName(), is("myFile1_ja.txt"));
+                assertThat(part1.getContentType(), is("text/plain"));
+                List<String> lines = readAll(part1.getInputStream(), "UTF-8");
+                assertThat(lines.size(), is(2));
+                assertThat(lines.get(0), is("こんにちは"));
+                assertThat(lines.get(1), is("さようなら"));
+
+                // 読み込まずに次のパートに進めること
+                StreamingPart part2 = parts.next();
+                assertThat(part2.getFileName(), is("myFile2_ja.txt"));
+
+                StreamingPart part3 = parts.next();
+                assertThat(part3.getName(), is("uploadfile2"));
+                lines = readAll(part3.getInputStream(), "UTF-8");
+                assertThat(lines.get(0), is("Hello."));
+                assertThat(lines.get(1), is("Good Bye."));
+
+                assertThat(tempDir.list().length, is(fileCountBefore));
+
+                // 全てのパートを読み込んだ後は、他のパラメータがHTTPリクエストに追加されていること
+                assertThat(parts.hasNext(), is(false));
+                assertThat(request.getParam("username")[0], is("hoge"));
+                assertThat(request.getParam("uploadfile1").length, is(2));
+                assertThat(request.getPart("uploadfile1").isEmpty(), is(true));
+                return new HttpResponse();
+            }
+        };
+        ExecutionContext context = new ExecutionContext()
+                .addHandler(target)
+                .addHandler(assertion);
+        HttpResponse response = context.handleNext(wrap(req));
+        assertThat(response.getStatusCode(), is(200));
+    }
+
+    /**
+     * ストリーミングモードで{@link StreamingPartConsumer}が設定されている場合、
+     * 後続のハンドラの前にアップロードファイルが処理されること。
+     */
+    @Test
+    public void testHandleStreamingWithConsumer() {
+        final List<String> consumed = new ArrayList<String>();
+        target.setPartConsumer(new StreamingPartConsumer() {
+            public void consume(StreamingPart part, HttpRequest request, ExecutionContext context) {
+                consumed.add(part.getFileName() + ":" + readAll(part.getInputStream(), "UTF-8").get(0));
+            }
+        });
+
+        MockServletRequest req = createMockServletRequest();
+        HttpRequestHandler assertion = new HttpRequestHandler() {
+            public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+                assertThat(consumed.size(), is(3));
+                assertThat(consumed.get(0), is("myFile1_ja.txt:こんにちは"));
+                assertThat(consumed.get(1), is("myFile2_ja.txt:こんばんわ"));
+                assertThat(consumed.get(2), is("myFile_en.txt:Hello."));
+                assertThat(request.getParam("username")[0], is("hoge"));
+                assertThat(MultipartHandler.getStreamingParts(context).hasNext(), is(false));
+                return new HttpResponse();
+            }
+        };
+        ExecutionContext context = new ExecutionContext()
+                .addHandler(target)
+                .addHandler(assertion);
+        HttpResponse response = context.handleNext(wrap(req));
+        assertThat(response.getStatusCode(), is(200));
+    }
+
+    /**
+     * ストリーミングモードでも、アップロードファイル数の上限を超過した場合に400が返却されること。
+     */
+    @Test
+    public void testHandleStreamingOverMaxFileCount() {
+        settings.setMaxFileCount(2);
+        target.setPartConsumer(new StreamingPartConsumer() {
+            public void consume(StreamingPart part, HttpRequest request, ExecutionContext context) {
+            }
+        });
+        ExecutionContext context = new ExecutionContext().addHandler(target);
+        HttpResponse response = context.handleNext(wrap(createMockServletRequest()));
+        assertThat(response.getStatusCode(), is(400));
+    }
+
+    /**
+     * ストリーミングモードでも、アップロードサイズ上限を超過した場合に413が返却されること。
+     */
+    @Test
+    public void testHandleStreamingOverLimit() {
+        settings.setContentLengthLimit(300);
+        target.setPartConsumer(new StreamingPartConsumer() {
+            public void consume(StreamingPart part, HttpRequest request, ExecutionContext context) throws IOException {
+                readAll(part.getInputStream(), "UTF-8");
+            }
+        });
+        ExecutionContext context = new ExecutionContext().addHandler(target);
+        HttpResponse response = context.handleNext(wrap(createMockServletRequest()));
+        assertThat(response.getStatusCode(), is(413));
+    }
+
     /**
      * アップロードテスト用のServletRequestを作成する。
      *
@@ -28,6 +28,7 @@ import java.util.Map;
 import static nablarch.fw.web.upload.UploadTestUtil.readAll;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertThrows;
@@ -522,6 +523,227 @@ public class MultipartParserTest {
         assertThat(paramMap.get("username")[0], is("hoge"));
     }
 
+    /**
+     * 同名のパラメータが繰り返し送信された場合、送信順に全ての値が格納されること。
+     * 既存のリクエストパラメータの値が先頭に残ること。
+     */
+    @Test
+    public void testRepeatedParams() {
+        paramMap.put("item", new String[] {"query"});
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            body.append("--BOUNDARY\r\n")
+                .append("Content-Disposition: form-data; name=\"item\"\r\n")
+                .append("\r\n")
+                .append("value").append(i).append("\r\n");
+        }
+        body.append("--BOUNDARY--\r\n");
+
+        MultipartParser target = createParser(body.toString().getBytes());
+        PartInfoHolder multipart = target.parse();
+
+        assertThat(multipart.isEmpty(), is(true));
+        String[] values = paramMap.get("item");
+        assertThat(values.length, is(1001));
+        assertThat(values[0], is("query"));
+        assertThat(values[1], is("value0"));
+        assertThat(values[1000], is("value999"));
+    }
+
+    /**
+     * 境界文字列が読み込みバッファの境界をまたぐ場合や、境界文字列に似たデータを含む場合でも、
+     * パートの内容が正しく読み込めること。
+     *
+     * @throws IOException 予期しない例外
+     */
+    @Test
+    public void testBoundaryAcrossBuffer() throws IOException {
+        for (int size : new int[] {0, 1, 64 * 1024 - 200, 64 * 1024 - 60, 64 * 1024, 200 * 1024 + 7}) {
+            clean();
+            paramMap.clear();
+            byte[] content = new byte[size];
+            for (int i = 0; i < size; i++) {
+                content[i] = (byte) "\r\n--BOUNDAR-x".charAt(i % 13);
+            }
+            java.io.ByteArrayOutputStream body = new java.io.ByteArrayOutputStream();
+            body.write(("--BOUNDARY\r\n"
+                    + "Content-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\n"
+                    + "\r\n").getBytes());
+            body.write(content);
+            body.write(("\r\n--BOUNDARY\r\n"
+                    + "Content-Disposition: form-data; name=\"after\"\r\n"
+                    + "\r\n"
+                    + "ok\r\n"
+                    + "--BOUNDARY--\r\n").getBytes());
+
+            MultipartParser target = createParser(body.toByteArray());
+            PartInfoHolder multipart = target.parse();
+
+            PartInfo part = multipart.get("file").get(0);
+            assertThat("size=" + size, part.size(), is(size));
+            java.io.InputStream saved = part.getInputStream();
+            try {
+                for (int i = 0; i < size; i++) {
+                    assertThat("size=" + size + ", index=" + i, (byte) saved.read(), is(content[i]));
+                }
+                assertThat(saved.read(), is(-1));
+            } finally {
+                saved.close();
+            }
+            assertThat(paramMap.get("after")[0], is("ok"));
+            multipart.cleanup();
+        }
+    }
+
+    /**
+     * 空のパラメータが解析できること。
+     */
+    @Test
+    public void testEmptyParam() {
+        String body = "--BOUNDARY\r\n"
+                + "Content-Disposition: form-data; name=\"empty\"\r\n"
+                + "\r\n"
+                + "\r\n"
+                + "--BOUNDARY\r\n"
+                + "Content-Disposition: form-data; name=\"name\"\r\n"
+                + "\r\n"
+                + "hoge\r\n"
+                + "--BOUNDARY--\r\n";
+
+        createParser(body.getBytes()).parse();
+
+        assertThat(paramMap.get("empty")[0], is(""));
+        assertThat(paramMap.get("name")[0], is("hoge"));
+    }
+
+    /**
+     * 上限以下のアップロードファイルが一時ファイルに保存されないこと。
+     *
+     * @throws IOException 予期しない例外
+     */
+    @Test
+    public void testInMemoryThreshold() throws IOException {
+        settings.setInMemoryThreshold(10);
+        String body = "--BOUNDARY\r\n"
+                + "Content-Disposition: form-data; name=\"small\"; filename=\"small.txt\"\r\n"
+                + "\r\n"
+                + "0123456789\r\n"
+                + "--BOUNDARY\r\n"
+                + "Content-Disposition: form-data; name=\"large\"; filename=\"large.txt\"\r\n"
+                + "\r\n"
+                + "0123456789a\r\n"
+                + "--BOUNDARY--\r\n";
+
+        PartInfoHolder multipart = createParser(body.getBytes()).parse();
+
+        assertThat("上限を超えたファイルのみ一時ファイルに保存されること", TEMP_DIR.listFiles().length, is(1));
+        PartInfo small = multipart.get("small").get(0);
+        assertThat(small.size(), is(10));
+        assertThat(readString(small.getInputStream()), is("0123456789"));
+        PartInfo large = multipart.get("large").get(0);
+        assertThat(large.size(), is(11));
+        assertThat(readString(large.getInputStream()), is("0123456789a"));
+        assertThat(settings.getInMemoryBudget().getUsed(), is(10L));
+
+        multipart.cleanup();
+        assertThat(settings.getInMemoryBudget().getUsed(), is(0L));
+    }
+
+    /**
+     * 自動クリーニングを行わない場合は、上限以下のアップロードファイルも一時ファイルに保存されること。
+     *
+     * @throws IOException 予期しない例外
+     */
+    @Test
+    public void testInMemoryThresholdWithoutAutoCleaning() throws IOException {
+        settings.setInMemoryThreshold(10);
+        settings.setAutoCleaning(false);
+        String body = "--BOUNDARY\r\n"
+                + "Content-Disposition: form-data; name=\"small\"; filename=\"small.txt\"\r\n"
+                + "\r\n"
+                + "0123456789\r\n"
+                + "--BOUNDARY--\r\n";
+
+        PartInfoHolder multipart = createParser(body.getBytes()).parse();
+
+        assertThat(TEMP_DIR.listFiles().length, is(1));
+        assertThat(settings.getInMemoryBudget().getUsed(), is(0L));
+        multipart.cleanup();
+    }
+
+    /**
+     * 一時保存と同時に{@link PartStreamProcessor}の処理が行われ、処理結果がパート情報から取得できること。
+     *
+     * @throws IOException 予期しない例外
+     */
+    @Test
+    public void testPartStreamProcessors() throws IOException {
+        SizeHistogramPartStreamProcessor histogram = new SizeHistogramPartStreamProcessor();
+        histogram.setBuckets("4,1024");
+        settings.setPartStreamProcessors(java.util.Arrays.asList(
+                new DigestPartStreamProcessor(), new ContentSniffingPartStreamProcessor(), histogram));
+        String body = "--BOUNDARY\r\n"
+                + "Content-Disposition: form-data; name=\"pdf\"; filename=\"doc.pdf\"\r\n"
+                + "Content-Type: application/pdf\r\n"
+                + "\r\n"
+                + "%PDF-1.7\r\n"
+                + "--BOUNDARY\r\n"
+                + "Content-Disposition: form-data; name=\"text\"; filename=\"abc.txt\"\r\n"
+                + "\r\n"
+                + "abc\r\n"
+                + "--BOUNDARY--\r\n";
+
+        PartInfoHolder multipart = createParser(body.getBytes()).parse();
+
+        PartInfo pdf = multipart.get("pdf").get(0);
+        assertThat(pdf.<String>getProcessingResult("sniffedContentType"), is("application/pdf"));
+        assertThat(pdf.<String>getProcessingResult("sizeBucket"), is("1024"));
+        assertThat(readString(pdf.getInputStream()), is("%PDF-1.7"));
+
+        PartInfo text = multipart.get("text").get(0);
+        assertThat(text.<String>getProcessingResult("digest"),
+                is("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"));
+        assertThat(text.getProcessingResult("sniffedContentType"), is(nullValue()));
+        assertThat(text.<String>getProcessingResult("sizeBucket"), is("4"));
+        assertThat(text.getProcessingResult("unknown"), is(nullValue()));
+
+        assertThat(histogram.getCounts(), is(new long[] {1, 1, 0}));
+        multipart.cleanup();
+    }
+
+    /**
+     * 入力ストリームの内容を文字列として読み込む。
+     *
+     * @param in 入力ストリーム
+     * @return 読み込んだ文字列
+     * @throws IOException 入出力例外
+     */
+    private static String readString(java.io.InputStream in) throws IOException {
+        try {
+            java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 境界文字列"BOUNDARY"のリクエストボディを解析するパーサを生成する。
+     *
+     * @param body リクエストボディ
+     * @return パーサ
+     */
+    private MultipartParser createParser(byte[] body) {
+        MockServletInputStream in = new MockServletInputStream(body);
+        MultipartContext ctx = new MultipartContext("multipart/form-data; boundary=BOUNDARY", body.length, "UTF-8");
+        return new MultipartParser(in, paramMap, settings, ctx);
+    }
+
     /**
      * 入力エラーが発生したときに {@link nablarch.fw.results.InternalError} がスローされることをテスト。
      */
@@ -1,15 +1,24 @@
 package nablarch.fw.web.upload;
 
+import nablarch.core.repository.ObjectLoader;
+import nablarch.core.repository.SystemRepository;
 import nablarch.fw.results.BadRequest;
+import nablarch.fw.results.ServiceUnavailable;
+import nablarch.fw.web.TempStorageManager;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.containsString;
@@ -178,6 +187,311 @@ public class PartInfoTest {
         }
     }
 
+    /**
+     * 上限以下の内容はメモリ上に保持され、一時ファイルを作成せずに読み込み、移動ができること。
+     */
+    @Test
+    public void testInMemory() throws Exception {
+        InMemoryBudget budget = new InMemoryBudget(1024);
+        PartInfo info = PartInfo.newInstance(Arrays.asList("Content-Disposition: form-data; name=\"file\"; filename=\"upload.txt\""));
+        OutputStream out = info.getOutputStream(folder.getRoot(), 10, budget);
+        out.write("0123".getBytes());
+        out.write('4');
+        out.close();
+        info.setSize(5);
+
+        assertThat("一時ファイルが作成されないこと", folder.getRoot().listFiles().length, is(0));
+        assertThat(budget.getUsed(), is(5L));
+        assertThat(read(info.getInputStream()), is("01234"));
+        assertThat("何度でも読み込めること", read(info.getInputStream()), is("01234"));
+        assertThat(info.size(), is(5));
+
+        info.moveTo(folder.getRoot(), "moved.txt");
+        assertThat(read(new FileInputStream(new File(folder.getRoot(), "moved.txt"))), is("01234"));
+        assertThat("移動後はメモリが解放されること", budget.getUsed(), is(0L));
+        try {
+            info.moveTo(folder.getRoot(), "moved.txt");
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("upload already removed."));
+        }
+        info.clean();
+        assertThat(budget.getUsed(), is(0L));
+    }
+
+    /**
+     * 上限を超えた場合は、一時ファイルに保存されること。
+     */
+    @Test
+    public void testInMemoryOverThreshold() throws Exception {
+        InMemoryBudget budget = new InMemoryBudget(1024);
+        PartInfo info = PartInfo.newInstance(Arrays.asList("Content-Disposition: form-data; name=\"file\"; filename=\"upload.txt\""));
+        OutputStream out = info.getOutputStream(folder.getRoot(), 10, budget);
+        out.write("0123456789".getBytes());
+        assertThat(folder.getRoot().listFiles().length, is(0));
+        out.write("abc".getBytes());
+        out.close();
+
+        assertThat(folder.getRoot().listFiles().length, is(1));
+        assertThat(budget.getUsed(), is(0L));
+        assertThat(read(info.getInputStream()), is("0123456789abc"));
+        info.clean();
+        assertThat(folder.getRoot().listFiles().length, is(0));
+    }
+
+    /**
+     * 合計サイズの上限に達した場合は、一時ファイルに保存されること。
+     */
+    @Test
+    public void testInMemoryBudgetExceeded() throws Exception {
+        InMemoryBudget budget = new InMemoryBudget(8);
+        PartInfo first = PartInfo.newInstance(Arrays.asList("Content-Disposition: form-data; name=\"file\"; filename=\"first.txt\""));
+        OutputStream out = first.getOutputStream(folder.getRoot(), 10, budget);
+        out.write("01234".getBytes());
+        out.close();
+
+        PartInfo second = PartInfo.newInstance(Arrays.asList("Content-Disposition: form-data; name=\"file\"; filename=\"second.txt\""));
+        out = second.getOutputStream(folder.getRoot(), 10, budget);
+        out.write("56789".getBytes());
+        out.close();
+
+        assertThat(folder.getRoot().listFiles().length, is(1));
+        assertThat(budget.getUsed(), is(5L));
+        assertThat(read(second.getInputStream()), is("56789"));
+
+        first.clean();
+        second.clean();
+        assertThat(budget.getUsed(), is(0L));
+        assertThat(folder.getRoot().listFiles().length, is(0));
+    }
+
+    /**
+     * メモリ上に保持した内容は、getSavedFileの呼び出し時に一時ファイルに保存されること。
+     */
+    @Test
+    public void testGetSavedFileInMemory() throws Exception {
+        InMemoryBudget budget = new InMemoryBudget(1024);
+        PartInfo info = PartInfo.newInstance(Arrays.asList("Content-Disposition: form-data; name=\"file\"; filename=\"upload.txt\""));
+        OutputStream out = info.getOutputStream(folder.getRoot(), 10, budget);
+        out.write("01234".getBytes());
+        out.close();
+
+        File saved = info.getSavedFile();
+        assertThat(saved.getParentFile(), is(folder.getRoot()));
+        assertThat(read(new FileInputStream(saved)), is("01234"));
+        assertThat(budget.getUsed(), is(0L));
+        assertThat("2回目以降は同じファイルが返却されること", info.getSavedFile(), is(saved));
+        assertThat(read(info.getInputStream()), is("01234"));
+
+        info.clean();
+        assertThat(saved.exists(), is(false));
+    }
+
+    /**
+     * 一時ファイルに書き込んだサイズが{@link TempStorageManager}で集計され、削除時に解放されること。
+     */
+    @Test
+    public void testTempStorageManager() throws Exception {
+        TempStorageManager manager = new TempStorageManager();
+        manager.setMaxTotalBytes(8);
+        register(manager);
+        try {
+            PartInfo info = PartInfo.newInstance(Arrays.asList("Content-Disposition: form-data; name=\"file\"; filename=\"upload.txt\""));
+            OutputStream out = info.getOutputStream(folder.getRoot());
+            out.write("01234".getBytes());
+            out.close();
+            assertThat(manager.getLiveBytes(), is(5L));
+            assertThat(manager.getLiveFiles(), is(1L));
+
+            PartInfo over = PartInfo.newInstance(Arrays.asList("Content-Disposition: form-data; name=\"file\"; filename=\"over.txt\""));
+            out = over.getOutputStream(folder.getRoot());
+            try {
+                out.write("56789".getBytes());
+                fail("一時ファイルの上限を超えるため、例外が発生すること");
+            } catch (ServiceUnavailable e) {
+                assertThat(e.getStatusCode(), is(503));
+            } finally {
+                out.close();
+            }
+            assertThat("一時ファイルを作成する前に拒否されること", folder.getRoot().listFiles().length, is(1));
+            assertThat(manager.getLiveFiles(), is(1L));
+
+            info.clean();
+            over.clean();
+            assertThat(manager.getLiveBytes(), is(0L));
+            assertThat(manager.getLiveFiles(), is(0L));
+        } finally {
+            SystemRepository.clear();
+        }
+    }
+
+    /**
+     * 一時ファイルへの書き込み途中で上限を超えた場合は、書き込み途中の一時ファイルが削除されること。
+     */
+    @Test
+    public void testTempStorageRejectAfterTempFileCreated() throws Exception {
+        TempStorageManager manager = new TempStorageManager();
+        manager.setMaxTotalBytes(8);
+        register(manager);
+        try {
+            PartInfo info = PartInfo.newInstance(Arrays.asList("Content-Disposition: form-data; name=\"file\"; filename=\"upload.txt\""));
+            OutputStream out = info.getOutputStream(folder.getRoot());
+            out.write("01234".getBytes());
+            assertThat(folder.getRoot().listFiles().length, is(1));
+            try {
+                out.write("56789".getBytes());
+                fail("一時ファイルの上限を超えるため、例外が発生すること");
+            } catch (ServiceUnavailable e) {
+                assertThat(e.getStatusCode(), is(503));
+            } finally {
+                out.close();
+            }
+            assertThat(folder.getRoot().listFiles().length, is(0));
+            assertThat(manager.getLiveBytes(), is(0L));
+            assertThat(manager.getLiveFiles(), is(0L));
+
+            PartInfo inMemory = PartInfo.newInstance(Arrays.asList("Content-Disposition: form-data; name=\"file\"; filename=\"memory.txt\""));
+            out = inMemory.getOutputStream(folder.getRoot(), 2, new InMemoryBudget(1024));
+            out.write("01234".getBytes());
+            assertThat("メモリ上に保持できないため一時ファイルに出力されること", folder.getRoot().listFiles().length, is(1));
+            try {
+                out.write("56789".getBytes());
+                fail("一時ファイルの上限を超えるため、例外が発生すること");
+            } catch (ServiceUnavailable e) {
+                assertThat(e.getStatusCode(), is(503));
+            } finally {
+                out.close();
+            }
+            assertThat(folder.getRoot().listFiles().length, is(0));
+            assertThat(manager.getLiveBytes(), is(0L));
+            assertThat(manager.getLiveFiles(), is(0L));
+            inMemory.clean();
+        } finally {
+            SystemRepository.clear();
+        }
+    }
+
+    /**
+     * 一時ファイルの上限を超える場合にMEMORYが設定されていれば、メモリ上に保持されること。
+     */
+    @Test
+    public void testTempStorageMemoryFallback() throws Exception {
+        TempStorageManager manager = new TempStorageManager();
+        manager.setMaxTotalBytes(4);
+        manager.setOverflowPolicy("MEMORY");
+        register(manager);
+        try {
+            InMemoryBudget budget = new InMemoryBudget(1024);
+            PartInfo info = PartInfo.newInstance(Arrays.asList("Content-Disposition: form-data; name=\"file\"; filename=\"upload.txt\""));
+            OutputStream out = info.getOutputStream(folder.getRoot(), 0, budget);
+            out.write("01234".getBytes());
+            out.write("56789".getBytes());
+            out.close();
+
+            assertThat(folder.getRoot().listFiles().length, is(0));
+            assertThat(budget.getUsed(), is(10L));
+            assertThat(read(info.getInputStream()), is("0123456789"));
+            assertThat(manager.getLiveFiles(), is(0L));
+            assertThat("パート毎に1回だけ数えること", manager.getMemoryFallbackCount(), is(1L));
+
+            info.clean();
+            assertThat(budget.getUsed(), is(0L));
+        } finally {
+            SystemRepository.clear();
+        }
+    }
+
+    /**
+     * メモリ上に保持した内容を{@link PartInfo#getSavedFile()}でファイルに出力する場合は、
+     * 一時ファイルの上限に関わらず出力されること。
+     */
+    @Test
+    public void testGetSavedFileOverTempStorageLimit() throws Exception {
+        TempStorageManager manager = new TempStorageManager();
+        manager.setMaxTotalBytes(4);
+        register(manager);
+        try {
+            InMemoryBudget budget = new InMemoryBudget(1024);
+            PartInfo info = PartInfo.newInstance(Arrays.asList("Content-Disposition: form-data; name=\"file\"; filename=\"upload.txt\""));
+            OutputStream out = info.getOutputStream(folder.getRoot(), 1024, budget);
+            out.write("0123456789".getBytes());
+            out.close();
+
+            File saved = info.getSavedFile();
+            assertThat(saved.exists(), is(true));
+            assertThat(saved.length(), is(10L));
+            assertThat(manager.getLiveBytes(), is(10L));
+            assertThat(manager.getRejectedCount(), is(0L));
+
+            info.clean();
+            assertThat(manager.getLiveBytes(), is(0L));
+        } finally {
+            SystemRepository.clear();
+        }
+    }
+
+    /**
+     * 業務アクションが一時ファイルを移動した場合でも、リクエストの処理終了時にサイズが解放されること。
+     */
+    @Test
+    public void testTempStorageReleasedAtRequestEnd() throws Exception {
+        TempStorageManager manager = new TempStorageManager();
+        register(manager);
+        TempStorageManager.beginRequest();
+        try {
+            PartInfo info = PartInfo.newInstance(Arrays.asList("Content-Disposition: form-data; name=\"file\"; filename=\"upload.txt\""));
+            OutputStream out = info.getOutputStream(folder.getRoot());
+            out.write("01234".getBytes());
+            out.close();
+            assertThat(manager.getLiveBytes(), is(5L));
+
+            File moved = new File(folder.newFolder(), "moved.txt");
+            assertThat(info.getSavedFile().renameTo(moved), is(true));
+            assertThat("一時ファイルを削除していないため解放されないこと", manager.getLiveBytes(), is(5L));
+        } finally {
+            TempStorageManager.endRequest();
+            SystemRepository.clear();
+        }
+        assertThat(manager.getLiveBytes(), is(0L));
+        assertThat(manager.getLiveFiles(), is(0L));
+    }
+
+    /**
+     * {@link TempStorageManager}をリポジトリに登録する。
+     *
+     * @param manager {@link TempStorageManager}
+     */
+    private static void register(final TempStorageManager manager) {
+        SystemRepository.load(new ObjectLoader() {
+            @Override
+            public Map<String, Object> load() {
+                Map<String, Object> components = new HashMap<String, Object>();
+                components.put("tempStorageManager", manager);
+                return components;
+            }
+        });
+    }
+
+    /**
+     * 入力ストリームの内容を文字列として読み込む。
+     *
+     * @param in 入力ストリーム
+     * @return 読み込んだ文字列
+     * @throws IOException 入出力例外
+     */
+    private static String read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                out.write(b);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
     /**
      * getSavedFileのテスト
      */
@@ -0,0 +1,400 @@
+package nablarch.fw.web.upload;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.common.web.MockHttpSession;
+
+import nablarch.fw.ExecutionContext;
+import nablarch.fw.web.HttpRequest;
+import nablarch.fw.web.HttpRequestHandler;
+import nablarch.fw.web.HttpResponse;
+import nablarch.fw.web.servlet.HttpRequestWrapper;
+import nablarch.fw.web.servlet.MockServletRequest;
+import nablarch.fw.web.servlet.NablarchHttpServletRequestWrapper;
+import nablarch.fw.web.servlet.ServletExecutionContext;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * {@link ResumableUploadHandler}のテストクラス。
+ */
+public class ResumableUploadHandlerTest {
+
+    private final UploadSettings settings = new UploadSettings();
+
+    private final ResumableUploadHandler target = new ResumableUploadHandler();
+
+    /** 後続のハンドラが受け取ったパート */
+    private final List<PartInfo> received = new ArrayList<PartInfo>();
+
+    /** 後続のハンドラが受け取ったファイルの内容 */
+    private final List<String> receivedContents = new ArrayList<String>();
+
+    private final HttpRequestHandler action = new HttpRequestHandler() {
+        @Override
+        public HttpResponse handle(HttpRequest request, ExecutionContext context) {
+            List<PartInfo> parts = request.getPart("file");
+            if (parts != null && !parts.isEmpty()) {
+                PartInfo part = parts.get(0);
+                received.add(part);
+                receivedContents.add(UploadTestUtil.readAll(part.getInputStream(), "UTF-8").toString());
+            }
+            return new HttpResponse(201);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        target.dispose();
+        assertThat("一時ファイルが残っていないこと", tempFiles().length, is(0));
+    }
+
+    /**
+     * 分割して送信したファイルが結合され、最後のチャンクの受信時に後続のハンドラに渡されること。
+     */
+    @Test
+    public void testUpload() {
+        target.setUploadSettings(settings);
+
+        HttpResponse first = send(null, 0, 3, "abc", "%E3%83%86%E3%82%B9%E3%83%88.txt");
+        assertThat(first.getStatusCode(), is(202));
+        String uploadId = first.getHeader("X-Upload-Id");
+        assertThat(uploadId, is(notNullValue()));
+        assertThat(first.getHeader("X-Upload-Received-Chunks"), is("1"));
+        assertThat(first.getHeader("X-Upload-Received-Bytes"), is("3"));
+        assertThat(tempFiles().length, is(1));
+
+        HttpResponse second = send(uploadId, 1, 3, "def", null);
+        assertThat(second.getStatusCode(), is(202));
+        assertThat(second.getHeader("X-Upload-Received-Bytes"), is("6"));
+        assertThat("最後のチャンクまでは後続のハンドラが呼ばれないこと", received.size(), is(0));
+
+        HttpResponse last = send(uploadId, 2, 3, "gh", null);
+        assertThat(last.getStatusCode(), is(201));
+        assertThat(received.size(), is(1));
+        PartInfo part = received.get(0);
+        assertThat(part.getName(), is("file"));
+        assertThat(part.getFileName(), is("テスト.txt"));
+        assertThat(part.getContentType(), is("text/plain"));
+        assertThat(part.size(), is(8));
+        assertThat(receivedContents.get(0), is("[abcdefgh]"));
+        assertThat(target.getUploadCount(), is(0));
+    }
+
+    /**
+     * 進捗を問い合わせた後、続きのチャンクから再開できること。
+     * 受信済みのチャンクは読み捨てられ、総数を超える番号のチャンクは400となること。
+     */
+    @Test
+    public void testResume() {
+        target.setUploadSettings(settings);
+        String uploadId = send(null, 0, 2, "abc", "a.txt").getHeader("X-Upload-Id");
+
+        HttpResponse progress = send(uploadId, -1, 2, null, null);
+        assertThat(progress.getStatusCode(), is(200));
+        assertThat(progress.getHeader("X-Upload-Received-Chunks"), is("1"));
+
+        HttpResponse resent = send(uploadId, 0, 2, "abc", null);
+        assertThat(resent.getStatusCode(), is(202));
+        assertThat(resent.getHeader("X-Upload-Received-Bytes"), is("3"));
+
+        HttpResponse skipped = send(uploadId, 2, 3, "xyz", null);
+        assertThat(skipped.getStatusCode(), is(400));
+
+        assertThat(send(uploadId, 1, 2, "de", null).getStatusCode(), is(201));
+        assertThat(receivedContents.get(0), is("[abcde]"));
+
+        assertThat("完了したアップロードは404となること", send(uploadId, 1, 2, "de", null).getStatusCode(), is(404));
+    }
+
+    /**
+     * 未受信のチャンクを飛ばして送信した場合、409となること。
+     */
+    @Test
+    public void testOutOfOrder() {
+        target.setUploadSettings(settings);
+        String uploadId = send(null, 0, 3, "abc", "a.txt").getHeader("X-Upload-Id");
+
+        HttpResponse response = send(uploadId, 2, 3, "ghi", null);
+        assertThat(response.getStatusCode(), is(409));
+        assertThat(response.getHeader("X-Upload-Received-Chunks"), is("1"));
+    }
+
+    /**
+     * 存在しないアップロードIDや不正なヘッダの場合はエラーとなること。
+     */
+    @Test
+    public void testInvalidRequest() {
+        target.setUploadSettings(settings);
+        assertThat(send("unknown", 0, 1, "abc", null).getStatusCode(), is(404));
+        assertThat(send("../../etc/passwd", 0, 1, "abc", null).getStatusCode(), is(404));
+        assertThat("チャンクの総数がない", send(null, 0, 0, "abc", null).getStatusCode(), is(400));
+        assertThat(target.getUploadCount(), is(0));
+    }
+
+    /**
+     * ファイルサイズの上限を超えた場合、413となり受信済みの内容が維持されること。
+     */
+    @Test
+    public void testMaxFileSize() {
+        target.setUploadSettings(settings);
+        target.setMaxFileSize(5);
+        String uploadId = send(null, 0, 2, "abc", "a.txt").getHeader("X-Upload-Id");
+
+        HttpResponse response = send(uploadId, 1, 2, "def", null);
+        assertThat(response.getStatusCode(), is(413));
+        assertThat(response.getHeader("X-Upload-Received-Bytes"), is("3"));
+        assertThat(tempFiles()[0].length(), is(3L));
+
+        assertThat(send(uploadId, 1, 2, "de", null).getStatusCode(), is(201));
+        assertThat(receivedContents.get(0), is("[abcde]"));
+    }
+
+    /**
+     * チャンク分割されていないリクエストは、後続のハンドラに委譲されること。
+     */
+    @Test
+    public void testHandleNext() {
+        target.setUploadSettings(settings);
+        MockServletRequest req = new MockServletRequest();
+        req.setMethod("POST");
+        req.setRequestUrl("/");
+
+        HttpResponse response = new ExecutionContext().addHandler(target).addHandler(action).handleNext(wrap(req));
+        assertThat(response.getStatusCode(), is(201));
+        assertThat(received.size(), is(0));
+    }
+
+    /**
+     * 有効期限が経過したアップロードが一時ファイルとともに削除されること。
+     */
+    @Test
+    public void testRemoveExpiredUploads() {
+        target.setUploadSettings(settings);
+        target.setExpirationSeconds(60);
+        String uploadId = send(null, 0, 2, "abc", "a.txt").getHeader("X-Upload-Id");
+
+        target.removeExpiredUploads(System.currentTimeMillis());
+        assertThat("有効期限内のアップロードは削除されないこと", target.getUploadCount(), is(1));
+
+        target.removeExpiredUploads(System.currentTimeMillis() + 61 * 1000L);
+        assertThat(target.getUploadCount(), is(0));
+        assertThat(tempFiles().length, is(0));
+        assertThat(send(uploadId, 1, 2, "de", null).getStatusCode(), is(404));
+    }
+
+    /**
+     * 定期処理を開始、停止できること。
+     */
+    @Test
+    public void testInitializeAndDispose() {
+        target.setUploadSettings(settings);
+        target.setCleanupIntervalSeconds(1);
+        target.initialize();
+        send(null, 0, 2, "abc", "a.txt");
+        assertThat(target.getUploadCount(), is(1));
+
+        target.dispose();
+        assertThat("停止時に全てのアップロードが削除されること", target.getUploadCount(), is(0));
+    }
+
+    /**
+     * 受信中のアップロード数が上限に達している場合、新しいアップロードは503となること。
+     */
+    @Test
+    public void testMaxConcurrentUploads() {
+        target.setUploadSettings(settings);
+        target.setMaxConcurrentUploads(1);
+        String uploadId = send(null, 0, 2, "abc", "a.txt").getHeader("X-Upload-Id");
+
+        assertThat(send(null, 0, 2, "xyz", "b.txt").getStatusCode(), is(503));
+        assertThat(target.getUploadCount(), is(1));
+        assertThat(tempFiles().length, is(1));
+
+        assertThat(send(uploadId, 1, 2, "de", null).getStatusCode(), is(201));
+        assertThat("完了した後は新しいアップロードを開始できること",
+                send(null, 0, 2, "xyz", "b.txt").getStatusCode(), is(202));
+    }
+
+    /**
+     * アップロードは開始したセッションに紐付けられ、別のセッションからのリクエストは404となること。
+     * セッション毎の受信中のアップロード数が上限に達している場合、新しいアップロードは429となること。
+     */
+    @Test
+    public void testSessionOwner() {
+        target.setUploadSettings(settings);
+        target.setMaxUploadsPerSession(1);
+        String uploadId = send("s1", null, 0, 2, "abc", "a.txt").getHeader("X-Upload-Id");
+
+        assertThat(send("s2", uploadId, -1, 2, (String) null, null).getStatusCode(), is(404));
+        assertThat(send("s2", uploadId, 1, 2, "de", null).getStatusCode(), is(404));
+        assertThat(send(uploadId, 1, 2, "de", null).getStatusCode(), is(404));
+
+        assertThat(send("s1", null, 0, 2, "xyz", "b.txt").getStatusCode(), is(429));
+        assertThat(send("s2", null, 0, 2, "xyz", "b.txt").getStatusCode(), is(202));
+        assertThat(target.getUploadCount(), is(2));
+
+        assertThat(send("s1", uploadId, 1, 2, "de", null).getStatusCode(), is(201));
+        assertThat(receivedContents.get(0), is("[abcde]"));
+    }
+
+    /**
+     * セッションを持たずに開始したアップロードは、最初にセッションを持つリクエストのセッションに紐付けられること。
+     */
+    @Test
+    public void testBindOwnerLater() {
+        target.setUploadSettings(settings);
+        String uploadId = send(null, 0, 3, "abc", "a.txt").getHeader("X-Upload-Id");
+
+        assertThat(send("s1", uploadId, 1, 3, "def", null).getStatusCode(), is(202));
+        assertThat(send("s2", uploadId, 2, 3, "gh", null).getStatusCode(), is(404));
+        assertThat(send("s1", uploadId, 2, 3, "gh", null).getStatusCode(), is(201));
+        assertThat(receivedContents.get(0), is("[abcdefgh]"));
+    }
+
+    /**
+     * チャンクの受信中に、同じアップロードへの他のリクエストが待たされないこと。
+     */
+    @Test
+    public void testReceiveWithoutLock() throws Exception {
+        target.setUploadSettings(settings);
+        final String uploadId = send(null, 0, 2, "abc", "a.txt").getHeader("X-Upload-Id");
+
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final InputStream slow = new InputStream() {
+            private final InputStream body = new ByteArrayInputStream("de".getBytes(StandardCharsets.UTF_8));
+            @Override
+            public int read() throws IOException {
+                reading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return body.read();
+            }
+        };
+        final HttpResponse[] slowResponse = new HttpResponse[1];
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                slowResponse[0] = send(null, uploadId, 1, 2, slow, null);
+            }
+        });
+        sender.start();
+        assertThat(reading.await(10, TimeUnit.SECONDS), is(true));
+
+        assertThat("受信済みのチャンクの再送は待たされずに応答されること",
+                send(uploadId, 0, 2, "abc", null).getStatusCode(), is(202));
+
+        release.countDown();
+        sender.join(10000);
+        assertThat(slowResponse[0].getStatusCode(), is(201));
+        assertThat(receivedContents.get(0), is("[abcde]"));
+    }
+
+    /**
+     * チャンクを送信する。
+     *
+     * @param uploadId アップロードID(nullの場合は指定しない)
+     * @param index    チャンクの番号(負数の場合は指定しない)
+     * @param count    チャンクの総数
+     * @param content  チャンクの内容(nullの場合は空)
+     * @param fileName ファイル名(nullの場合は指定しない)
+     * @return HTTPレスポンス
+     */
+    private HttpResponse send(String uploadId, int index, int count, String content, String fileName) {
+        return send(null, uploadId, index, count, content, fileName);
+    }
+
+    /**
+     * HTTPセッションを持つリクエストでチャンクを送信する。
+     *
+     * @param sessionId HTTPセッションID(nullの場合はHTTPセッションなし)
+     * @param uploadId  アップロードID(nullの場合は指定しない)
+     * @param index     チャンクの番号(負数の場合は指定しない)
+     * @param count     チャンクの総数
+     * @param content   チャンクの内容(nullの場合は空)
+     * @param fileName  ファイル名(nullの場合は指定しない)
+     * @return HTTPレスポンス
+     */
+    private HttpResponse send(String sessionId, String uploadId, int index, int count, String content,
+            String fileName) {
+        byte[] body = content == null ? new byte[0] : content.getBytes(StandardCharsets.UTF_8);
+        return send(sessionId, uploadId, index, count, new ByteArrayInputStream(body), fileName);
+    }
+
+    /**
+     * HTTPセッションを持つリクエストでチャンクを送信する。
+     *
+     * @param sessionId HTTPセッションID(nullの場合はHTTPセッションなし)
+     * @param uploadId  アップロードID(nullの場合は指定しない)
+     * @param index     チャンクの番号(負数の場合は指定しない)
+     * @param count     チャンクの総数
+     * @param body      チャンクの内容
+     * @param fileName  ファイル名(nullの場合は指定しない)
+     * @return HTTPレスポンス
+     */
+    private HttpResponse send(String sessionId, String uploadId, int index, int count, InputStream body,
+            String fileName) {
+        MockServletRequest req = new MockServletRequest();
+        req.setMethod("POST");
+        req.setRequestUrl("/upload");
+        req.setContentType("text/plain");
+        req.setInputStream(body);
+        if (uploadId != null) {
+            req.addHeader("X-Upload-Id", uploadId);
+        }
+        if (index >= 0) {
+            req.addHeader("X-Upload-Chunk-Index", String.valueOf(index));
+        }
+        if (count > 0) {
+            req.addHeader("X-Upload-Chunk-Count", String.valueOf(count));
+        }
+        if (fileName != null) {
+            req.addHeader("X-Upload-File-Name", fileName);
+        }
+        if (sessionId == null) {
+            return new ExecutionContext().addHandler(target).addHandler(action).handleNext(wrap(req));
+        }
+        MockHttpSession session = new MockHttpSession();
+        session.setId(sessionId);
+        req.setSession(session);
+        ServletExecutionContext context = new ServletExecutionContext(req, null, null);
+        return context.addHandler(target).addHandler(action).handleNext(context.getHttpRequest());
+    }
+
+    /**
+     * 受信中の一時ファイルを取得する。
+     *
+     * @return 一時ファイル
+     */
+    private File[] tempFiles() {
+        File[] files = settings.getSaveDir().listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("nablarch_resumable_");
+            }
+        });
+        return files == null ? new File[0] : files;
+    }
+
+    private static HttpRequestWrapper wrap(MockServletRequest req) {
+        return new HttpRequestWrapper(new NablarchHttpServletRequestWrapper(req));
+    }
+}
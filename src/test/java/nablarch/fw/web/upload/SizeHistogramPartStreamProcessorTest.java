@@ -0,0 +1,68 @@
+package nablarch.fw.web.upload;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * {@link SizeHistogramPartStreamProcessor}のテストクラス。
+ */
+public class SizeHistogramPartStreamProcessorTest {
+
+    private final SizeHistogramPartStreamProcessor sut = new SizeHistogramPartStreamProcessor();
+
+    /**
+     * 区間毎の件数が集計されること。
+     */
+    @Test
+    public void testHistogram() {
+        sut.setBuckets("10, 100");
+
+        assertThat(process(0), is("10"));
+        assertThat(process(10), is("10"));
+        assertThat(process(11), is("100"));
+        assertThat(process(101), is("+Inf"));
+
+        assertThat(sut.getBuckets(), is(new long[] {10, 100}));
+        assertThat(sut.getCounts(), is(new long[] {2, 1, 1}));
+        assertThat(sut.getName(), is("sizeBucket"));
+    }
+
+    /**
+     * デフォルトの境界値で集計されること。
+     */
+    @Test
+    public void testDefaultBuckets() {
+        assertThat(process(2048), is("10240"));
+        assertThat(sut.getCounts(), is(new long[] {0, 1, 0, 0, 0, 0, 0}));
+    }
+
+    /**
+     * 不正な境界値を設定した場合、例外が発生すること。
+     */
+    @Test
+    public void testInvalidBuckets() {
+        try {
+            sut.setBuckets("10,abc");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("invalid bucket. [10,abc]"));
+        }
+        try {
+            sut.setBuckets("100,10");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("buckets must be in ascending order. [100,10]"));
+        }
+    }
+
+    private String process(int size) {
+        PartStreamProcessor.Accumulator accumulator = sut.start(PartInfo.newInstance("file"));
+        byte[] content = new byte[size];
+        accumulator.update(content, 0, size / 2);
+        accumulator.update(content, size / 2, size - size / 2);
+        return (String) accumulator.getResult();
+    }
+}
@@ -46,4 +46,43 @@ public class UploadSettingsTest {
         target.setAutoCleaning(true);
         assertThat(target.isAutoCleaning(), is(true));
     }
+
+    /** メモリ上に保持するアップロードファイルのサイズの上限の設定取得ができること。 */
+    @Test
+    public void testSetInMemoryThreshold() {
+        // 初期値は0（メモリ上に保持しない）
+        assertThat(target.getInMemoryThreshold(), is(0));
+
+        target.setInMemoryThreshold(4096);
+        assertThat(target.getInMemoryThreshold(), is(4096));
+    }
+
+    /** メモリ上に保持するアップロードファイルのサイズの上限に負数を設定したとき、例外が発生すること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetInMemoryThresholdFail() {
+        target.setInMemoryThreshold(-1);
+    }
+
+    /** メモリ上に保持するアップロードファイルの合計サイズの上限が設定できること。 */
+    @Test
+    public void testSetInMemoryBudget() {
+        InMemoryBudget budget = target.getInMemoryBudget();
+        assertThat("初期値は32MB", budget.reserve(32 * 1024 * 1024), is(true));
+        assertThat(budget.reserve(1), is(false));
+        budget.release(32 * 1024 * 1024);
+        assertThat(budget.getUsed(), is(0L));
+
+        target.setInMemoryBudget(10);
+        budget = target.getInMemoryBudget();
+        assertThat(budget.reserve(6), is(true));
+        assertThat(budget.reserve(5), is(false));
+        assertThat(budget.reserve(4), is(true));
+        assertThat(budget.getUsed(), is(10L));
+    }
+
+    /** メモリ上に保持するアップロードファイルの合計サイズの上限に負数を設定したとき、例外が発生すること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetInMemoryBudgetFail() {
+        target.setInMemoryBudget(-1);
+    }
 }
@@ -0,0 +1,127 @@
+package nablarch.fw.web.useragent;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * {@link UserAgentCache}のテストクラス。
+ */
+public class UserAgentCacheTest {
+
+    /** {@link UserAgentCache.Loader}が呼び出されたUser-Agent */
+    private final List<String> loaded = new ArrayList<String>();
+
+    /** User-Agent文字列から{@link UserAgent}を生成する{@link UserAgentCache.Loader} */
+    private final UserAgentCache.Loader<UserAgent> loader = new UserAgentCache.Loader<UserAgent>() {
+        @Override
+        public UserAgent load(String userAgent) {
+            loaded.add(userAgent);
+            return new UserAgent(userAgent);
+        }
+    };
+
+    /**
+     * 同じUser-Agentに対しては保持した値が返却され、ヒット率が集計されること。
+     */
+    @Test
+    public void testGet() {
+        UserAgentCache<UserAgent> sut = new UserAgentCache<UserAgent>();
+        UserAgent first = sut.get("Mozilla/5.0", loader);
+        UserAgent second = sut.get("Mozilla/5.0", loader);
+        sut.get("Mozilla/5.0", loader);
+        sut.get("curl/8.0", loader);
+
+        assertThat(second, is(sameInstance(first)));
+        assertThat(loaded.size(), is(2));
+        assertThat(sut.size(), is(2));
+        assertThat(sut.getHitCount(), is(2L));
+        assertThat(sut.getMissCount(), is(2L));
+        assertThat(sut.getHitRate(), is(0.5));
+
+        sut.clear();
+        assertThat(sut.size(), is(0));
+        assertThat(sut.get("Mozilla/5.0", loader), is(not(sameInstance(first))));
+    }
+
+    /**
+     * nullや長すぎるUser-Agent、上限が0の場合は保持されないこと。
+     */
+    @Test
+    public void testNotCached() {
+        UserAgentCache<UserAgent> sut = new UserAgentCache<UserAgent>();
+        sut.setMaxKeyLength(5);
+        sut.get(null, loader);
+        sut.get("123456", loader);
+        assertThat(sut.size(), is(0));
+        assertThat(loaded.size(), is(2));
+        assertThat("集計の対象外であること", sut.getMissCount(), is(0L));
+
+        UserAgentCache<UserAgent> disabled = new UserAgentCache<UserAgent>(0);
+        disabled.get("12345", loader);
+        disabled.get("12345", loader);
+        assertThat(disabled.size(), is(0));
+        assertThat(loaded.size(), is(4));
+        assertThat(sut.getHitRate(), is(0.0));
+    }
+
+    /**
+     * 上限に達した後、一度しか使用されないUser-Agentを大量に参照しても、保持しているUser-Agentが追い出されないこと。
+     */
+    @Test
+    public void testCardinalityAttack() {
+        UserAgentCache<UserAgent> sut = new UserAgentCache<UserAgent>(2);
+        UserAgent a = sut.get("a", loader);
+        UserAgent b = sut.get("b", loader);
+        for (int i = 0; i < 3; i++) {
+            sut.get("b", loader);
+        }
+        for (int i = 0; i < 1000; i++) {
+            sut.get("attack" + i, loader);
+            sut.get("a", loader);
+        }
+        assertThat(sut.size(), is(2));
+        assertThat(sut.get("a", loader), is(sameInstance(a)));
+        assertThat(sut.get("b", loader), is(sameInstance(b)));
+        assertThat(sut.getEvictionCount(), is(0L));
+    }
+
+    /**
+     * 保持していないUser-Agentが、保持しているUser-Agentより多く参照された場合は入れ替えられること。
+     */
+    @Test
+    public void testEviction() {
+        UserAgentCache<UserAgent> sut = new UserAgentCache<UserAgent>(2);
+        sut.get("a", loader);
+        sut.get("a", loader);
+        sut.get("a", loader);
+        sut.get("b", loader);
+
+        sut.get("c", loader);
+        assertThat("初回は保持されないこと", sut.get("b", loader).getText(), is("b"));
+        sut.get("c", loader);
+        sut.get("c", loader);
+        assertThat(sut.getEvictionCount(), is(1L));
+
+        loaded.clear();
+        sut.get("c", loader);
+        sut.get("a", loader);
+        assertThat("入れ替えたUser-Agentは保持されていること", loaded.size(), is(0));
+        sut.get("b", loader);
+        assertThat("参照回数の少ないUser-Agentが追い出されること", loaded.size(), is(1));
+    }
+
+    /**
+     * 上限に負数を指定した場合は例外が発生すること。
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxSize() {
+        new UserAgentCache<UserAgent>(-1);
+    }
+}
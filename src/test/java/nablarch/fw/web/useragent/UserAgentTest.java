@@ -46,6 +46,32 @@ public class UserAgentTest {
         assertThat(target.getBrowserVersion(), is("browserVersion"));
     }
 
+    /** {@link UserAgent#copy()}のテスト。*/
+    @Test
+    public void testCopy() {
+        UserAgent orig = getFilled();
+        target = orig.copy();
+        assertThat(target == orig, is(false));
+        assertThat(target.getText(), is("UA text"));
+        assertThat(target.getOsName(), is("osName"));
+        assertThat(target.getBrowserVersion(), is("browserVersion"));
+
+        // 複製を変更しても元のオブジェクトは変更されないこと
+        target.setOsName("changed");
+        assertThat(orig.getOsName(), is("osName"));
+    }
+
+    /** サブクラスの{@link UserAgent#copy()}のテスト。*/
+    @Test
+    public void testCopySubclass() {
+        CustomUserAgent orig = new CustomUserAgent("UA text");
+        orig.deviceType = "mobile";
+        UserAgent copied = orig.copy();
+        // サブクラスの型とフィールドが保たれること
+        assertThat(copied instanceof CustomUserAgent, is(true));
+        assertThat(((CustomUserAgent) copied).deviceType, is("mobile"));
+    }
+
     private UserAgent getFilled() {
         UserAgent ua = new UserAgent("UA text");
         ua.setOsName("osName");
@@ -67,4 +93,13 @@ public class UserAgentTest {
         assertThat(ua.getBrowserVersion(), is("UnknownVersion"));
     }
 
-}
\ No newline at end of file
+    /** フィールドを追加した{@link UserAgent}のサブクラス */
+    private static class CustomUserAgent extends UserAgent {
+
+        private String deviceType;
+
+        CustomUserAgent(String text) {
+            super(text);
+        }
+    }
+}